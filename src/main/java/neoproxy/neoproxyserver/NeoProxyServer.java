@@ -7,6 +7,7 @@ import top.ceroxe.api.thread.ThreadManager;
 import top.ceroxe.api.utils.MyConsole;
 import top.ceroxe.api.utils.Sleeper;
 import neoproxy.neoproxyserver.core.*;
+import neoproxy.neoproxyserver.core.constants.ProtocolConstants;
 import neoproxy.neoproxyserver.core.exceptions.*;
 import neoproxy.neoproxyserver.core.management.*;
 import neoproxy.neoproxyserver.core.threads.TCPTransformer;
@@ -121,9 +122,11 @@ public class NeoProxyServer {
         if (isStopped) return;
         UpdateManager.init();
         if (isStopped) return;
+        AccessLog.open();
+        if (isStopped) return;
         try {
             hostServerHookServerSocket = new SecureServerSocket(HOST_HOOK_PORT);
-            Debugger.debugOperation("Bound HostHookPort: " + HOST_HOOK_PORT);
+            Debugger.debugOperation("Bound HostHookPort: {}", HOST_HOOK_PORT);
             TransferSocketAdapter.startThread();
         } catch (IOException e) {
             Debugger.debugOperation(e);
@@ -131,11 +134,12 @@ public class NeoProxyServer {
             System.exit(-1);
         }
         loadBannedIPs();
+        BalanceNotifier.start();
         Debugger.debugOperation("Exit: initStructure() completed");
     }
 
     private static void checkARGS(String[] args) {
-        Debugger.debugOperation("Checking ARGS: " + Arrays.toString(args));
+        Debugger.debugOperation(() -> "Checking ARGS: " + Arrays.toString(args));
         for (String arg : args) {
             switch (arg) {
                 case "--debug" -> {
@@ -182,7 +186,8 @@ public class NeoProxyServer {
 
     private static void printLogo() {
         ServerLogger.info("neoProxyServer.logo");
-        myConsole.log("NeoProxyServer", ASCII_LOGO);
+        // 与上一行同走异步队列，保证先后顺序
+        ServerLogger.logRaw("NeoProxyServer", ASCII_LOGO);
     }
 
     public static void main(String[] args) {
@@ -223,7 +228,7 @@ public class NeoProxyServer {
     }
 
     private static void handleNewHostClient(HostClient hostClient) {
-        Debugger.debugOperation("Entry: handleNewHostClient for IP: " + hostClient.getIP());
+        Debugger.debugOperation(() -> "Entry: handleNewHostClient for IP: " + hostClient.getIP());
         ThreadManager.runAsync(() -> {
             try {
                 // 执行握手和合法性检查
@@ -233,12 +238,12 @@ public class NeoProxyServer {
             } catch (IndexOutOfBoundsException | IOException | NoMorePortException | PortOccupiedException |
                      UnRecognizedKeyException | OutDatedKeyException e) {
                 // 这些是常规业务异常，记录日志并断开
-                Debugger.debugOperation("Handshake failed with exception: " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                Debugger.debugOperation(() -> "Handshake failed with exception: " + e.getClass().getSimpleName() + ": " + e.getMessage());
                 ServerLogger.sayHostClientDiscInfo(hostClient, "NeoProxyServer");
                 hostClient.close();
             } catch (UnSupportHostVersionException e) {
                 // 版本不支持
-                Debugger.debugOperation("Unsupported version detected for client: " + hostClient.getIP());
+                Debugger.debugOperation(() -> "Unsupported version detected for client: " + hostClient.getIP());
                 UpdateManager.handle(hostClient);
             } catch (SilentException ignore) {
                 // 静默异常（如IP封禁），不处理
@@ -246,7 +251,7 @@ public class NeoProxyServer {
                 // [重点修改] 捕获由 RemoteKeyProvider 抛出的包含 BlockingMessageException 的运行时异常
                 if (e instanceof RuntimeException && e.getCause() instanceof BlockingMessageException) {
                     String msg = ((BlockingMessageException) e.getCause()).getCustomMessage();
-                    Debugger.debugOperation("Blocking client with message: " + msg);
+                    Debugger.debugOperation("Blocking client with message: {}", msg);
                     try {
                         // 将 NKM 返回的自定义消息发送给 HostClient
                         InternetOperator.sendStr(hostClient, msg);
@@ -276,11 +281,11 @@ public class NeoProxyServer {
             SilentException.throwException();
         }
         String clientAddress = hostServerHook.getInetAddress().getHostAddress();
-        Debugger.debugOperation("HostClient connected from: " + clientAddress);
+        Debugger.debugOperation("HostClient connected from: {}", clientAddress);
 
         if (alert) ServerLogger.info("neoProxyServer.clientTryToConnect", clientAddress);
-        if (IPChecker.exec(clientAddress, IPChecker.CHECK_IS_BAN)) {
-            Debugger.debugOperation("IP is banned: " + clientAddress);
+        if (!ConnectionGuard.admit(hostServerHook.getInetAddress())) {
+            Debugger.debugOperation("IP is banned or rate-limited: {}", clientAddress);
             close(hostServerHook);
             if (alert) ServerLogger.info("neoProxyServer.banConnectInfo", clientAddress);
             SilentException.throwException();
@@ -291,16 +296,16 @@ public class NeoProxyServer {
     }
 
     public static void handleTransformerServiceWithNewThread(HostClient hostClient) {
-        Debugger.debugOperation("Starting Transformer threads for client: " + hostClient.getIP());
+        Debugger.debugOperation(() -> "Starting Transformer threads for client: " + hostClient.getIP());
 
         ThreadManager.runAsync(() -> {
-            Debugger.debugOperation("TCP Service Loop started for client: " + hostClient.getIP());
+            Debugger.debugOperation(() -> "TCP Service Loop started for client: " + hostClient.getIP());
             while (!hostClient.isStopped()) {
                 Socket client;
                 try {
                     client = hostClient.getClientServerSocket().accept();
-                    if (IPChecker.exec(client.getInetAddress().getHostAddress(), IPChecker.CHECK_IS_BAN)) {
-                        Debugger.debugOperation("Blocked banned IP trying to use proxy: " + client.getInetAddress().getHostAddress());
+                    if (!ConnectionGuard.admit(client.getInetAddress())) {
+                        Debugger.debugOperation(() -> "Blocked banned or rate-limited IP trying to use proxy: " + client.getInetAddress().getHostAddress());
                         client.close();
                         continue;
                     }
@@ -322,7 +327,7 @@ public class NeoProxyServer {
                             if (MC_ONLY_MODE) {
                                 preReadBytes = MinecraftTrafficInspector.readHandshakePrefix(rawInput);
                                 if (preReadBytes == null) {
-                                    Debugger.debugOperation("TCP Probe: Rejected non-Minecraft TCP traffic from " + client.getInetAddress());
+                                    Debugger.debugOperation("TCP Probe: Rejected non-Minecraft TCP traffic from {}", client.getInetAddress());
                                     close(client);
                                     return;
                                 }
@@ -373,23 +378,27 @@ public class NeoProxyServer {
                         }
 
                         long socketID = AtomicIdGenerator.GLOBAL.nextId();
-                        Debugger.debugOperation("Allocated TCP SocketID: " + socketID + " for " + client.getInetAddress());
+                        Debugger.debugOperation("Allocated TCP SocketID: {} for {}", socketID, client.getInetAddress());
 
-                        sendCommand(hostClient, "sendSocketTCP;" + socketID + ";" + getInternetAddressAndPort(client));
+                        if (!InternetOperator.sendOpenSocket(hostClient, TransferSocketAdapter.CONN_TYPE.TCP, socketID, client.getInetAddress(), client.getPort())) {
+                            Debugger.debugOperation("Control queue full, dropping TCP connection ID: {}", socketID);
+                            close(client);
+                            return;
+                        }
                         hostClient.refreshHeartbeat();
 
                         HostReply hostReply;
                         try {
                             hostReply = TransferSocketAdapter.getHostReply(socketID, TransferSocketAdapter.CONN_TYPE.TCP);
                         } catch (SocketTimeoutException e) {
-                            Debugger.debugOperation("Timeout waiting for HostReply (TCP) ID: " + socketID);
+                            Debugger.debugOperation("Timeout waiting for HostReply (TCP) ID: {}", socketID);
                             ServerLogger.sayClientSuccConnectToChaSerButHostClientTimeOut(hostClient);
                             ServerLogger.sayKillingClientSideConnection(client);
                             close(client);
                             return;
                         }
 
-                        Debugger.debugOperation("Starting TCPTransformer for SocketID: " + socketID);
+                        Debugger.debugOperation("Starting TCPTransformer for SocketID: {}", socketID);
                         InputStream transformerInput = rawInput;
                         if (preReadBytes != null && preReadBytes.length > 0) {
                             transformerInput = new PreReadInputStream(preReadBytes, rawInput);
@@ -402,16 +411,16 @@ public class NeoProxyServer {
                     }
                 });
             }
-            Debugger.debugOperation("TCP Service Loop exited for client: " + hostClient.getIP());
+            Debugger.debugOperation(() -> "TCP Service Loop exited for client: " + hostClient.getIP());
         });
 
         if (MC_ONLY_MODE) {
-            Debugger.debugOperation("UDP Service Loop skipped because MC-only mode is enabled for client: " + hostClient.getIP());
+            Debugger.debugOperation(() -> "UDP Service Loop skipped because MC-only mode is enabled for client: " + hostClient.getIP());
             return;
         }
 
         ThreadManager.runAsync(() -> {
-            Debugger.debugOperation("UDP Service Loop started for client: " + hostClient.getIP());
+            Debugger.debugOperation(() -> "UDP Service Loop started for client: " + hostClient.getIP());
             while (!hostClient.isStopped()) {
                 byte[] buffer = new byte[UDPTransformer.RECEIVE_BUFFER_LEN];
                 DatagramPacket datagramPacket = new DatagramPacket(buffer, buffer.length);
@@ -444,30 +453,33 @@ public class NeoProxyServer {
                 if (existingReply != null) {
                     byte[] serializedData = UDPTransformer.serializeDatagramPacket(datagramPacket);
                     if (!existingReply.addPacketToSend(serializedData)) {
-                        Debugger.debugOperation("UDP: Dropped packet because send queue is full or session stopped: " + clientIP + ":" + clientOutPort);
+                        Debugger.debugOperation("UDP: Dropped packet because send queue is full or session stopped: {}:{}", clientIP, clientOutPort);
                     }
                     continue;
                 }
 
                 if (existingReply == null) {
-                    Debugger.debugOperation("UDP: New session for " + clientIP + ":" + clientOutPort);
+                    Debugger.debugOperation("UDP: New session for {}:{}", clientIP, clientOutPort);
                     ThreadManager.runAsync(() -> {
                         try {
                             long socketID = AtomicIdGenerator.GLOBAL.nextId();
-                            Debugger.debugOperation("Allocated UDP SocketID: " + socketID);
+                            Debugger.debugOperation("Allocated UDP SocketID: {}", socketID);
 
-                            sendCommand(hostClient, "sendSocketUDP;" + socketID + ";" + getInternetAddressAndPort(datagramPacket));
+                            if (!InternetOperator.sendOpenSocket(hostClient, TransferSocketAdapter.CONN_TYPE.UDP, socketID, datagramPacket.getAddress(), datagramPacket.getPort())) {
+                                Debugger.debugOperation("Control queue full, dropping UDP session ID: {}", socketID);
+                                return;
+                            }
                             hostClient.refreshHeartbeat();
                             HostReply hostReply;
                             try {
                                 hostReply = TransferSocketAdapter.getHostReply(socketID, TransferSocketAdapter.CONN_TYPE.UDP);
                             } catch (SocketTimeoutException e) {
-                                Debugger.debugOperation("Timeout waiting for HostReply (UDP) ID: " + socketID);
+                                Debugger.debugOperation("Timeout waiting for HostReply (UDP) ID: {}", socketID);
                                 ServerLogger.sayClientSuccConnectToChaSerButHostClientTimeOut(hostClient);
                                 return;
                             }
 
-                            Debugger.debugOperation("Starting UDPTransformer for SocketID: " + socketID);
+                            Debugger.debugOperation("Starting UDPTransformer for SocketID: {}", socketID);
                             UDPTransformer newUdpTransformer = new UDPTransformer(hostClient, hostReply, datagramSocket, clientIP, clientOutPort);
                             UDP_GLOBAL_LOCK.lock();
                             try {
@@ -479,7 +491,7 @@ public class NeoProxyServer {
                             if (!newUdpTransformer.addPacketToSend(firstData)) {
                                 UDPTransformer.udpClientConnections.remove(newUdpTransformer);
                                 close(hostReply.host());
-                                Debugger.debugOperation("UDP: Failed to enqueue first packet for " + clientIP + ":" + clientOutPort);
+                                Debugger.debugOperation("UDP: Failed to enqueue first packet for {}:{}", clientIP, clientOutPort);
                                 return;
                             }
                             ThreadManager.runAsync(newUdpTransformer);
@@ -490,15 +502,23 @@ public class NeoProxyServer {
                     });
                 }
             }
-            Debugger.debugOperation("UDP Service Loop exited for client: " + hostClient.getIP());
+            Debugger.debugOperation(() -> "UDP Service Loop exited for client: " + hostClient.getIP());
         });
     }
 
     private static int getCurrentAvailableOutPort(SequenceKey sequenceKey) {
-        Debugger.debugOperation("Searching for available port in range " + sequenceKey.getDyStart() + "-" + sequenceKey.getDyEnd());
+        Debugger.debugOperation(() -> "Searching for available port in range " + sequenceKey.getDyStart() + "-" + sequenceKey.getDyEnd());
+        // 第一轮跳过宽限期内被其他密钥保留的端口，让它们的主人重连时还能拿回原端口
+        for (int i = sequenceKey.getDyStart(); i <= sequenceKey.getDyEnd(); i++) {
+            if (!PortReservationCache.isReservedByOther(i, sequenceKey.getName()) && isRequiredProtocolPortAvailable(i)) {
+                Debugger.debugOperation("Found available port: {}", i);
+                return i;
+            }
+        }
+        // 第二轮：区间内只剩保留端口时，可用性优先于粘性
         for (int i = sequenceKey.getDyStart(); i <= sequenceKey.getDyEnd(); i++) {
             if (isRequiredProtocolPortAvailable(i)) {
-                Debugger.debugOperation("Found available port: " + i);
+                Debugger.debugOperation("Found available reserved port: {}", i);
                 return i;
             }
         }
@@ -506,6 +526,24 @@ public class NeoProxyServer {
         return -1;
     }
 
+    /**
+     * 尝试取回该密钥在宽限期内保留的动态端口，避免重连时重新扫描整个区间。
+     *
+     * @return 仍在动态区间内且当前可用的保留端口；否则返回 -1
+     */
+    private static int reclaimReservedOutPort(SequenceKey sequenceKey) {
+        int port = PortReservationCache.claim(sequenceKey.getName());
+        if (port == -1) {
+            return -1;
+        }
+        if (port < sequenceKey.getDyStart() || port > sequenceKey.getDyEnd() || !isRequiredProtocolPortAvailable(port)) {
+            Debugger.debugOperation(() -> "Reserved port " + port + " is no longer usable for key " + sequenceKey.getName());
+            return -1;
+        }
+        Debugger.debugOperation(() -> "Reclaimed reserved port " + port + " for key " + sequenceKey.getName());
+        return port;
+    }
+
     private static boolean isRequiredProtocolPortAvailable(int port) {
         return MC_ONLY_MODE ? isTCPAvailable(port) : isTCPAndUDPAvailable(port);
     }
@@ -516,14 +554,17 @@ public class NeoProxyServer {
         int port;
         if (hostClient.getKey().getPort() != DYNAMIC_PORT) {
             port = hostClient.getKey().getPort();
-            Debugger.debugOperation("Using static port: " + port);
+            Debugger.debugOperation("Using static port: {}", port);
         } else {
-            port = NeoProxyServer.getCurrentAvailableOutPort(hostClient.getKey());
+            port = NeoProxyServer.reclaimReservedOutPort(hostClient.getKey());
+            if (port == -1) {
+                port = NeoProxyServer.getCurrentAvailableOutPort(hostClient.getKey());
+            }
             if (port == -1) {
                 Debugger.debugOperation("Dynamic port allocation failed.");
                 NoMorePortException.throwException();
             }
-            Debugger.debugOperation("Assigned dynamic port: " + port);
+            Debugger.debugOperation("Assigned dynamic port: {}", port);
         }
         hostClient.setOutPort(port);
         if (hostClient.isTCPEnabled()) hostClient.setClientServerSocket(new ServerSocket(port));
@@ -545,13 +586,14 @@ public class NeoProxyServer {
     private static void checkHostClientVersionAndKeyAndLang(HostClient hostClient) throws Exception {
         Debugger.debugOperation("Reading client info string...");
         String hostClientInfo = InternetOperator.receiveStr(hostClient);
-        Debugger.debugOperation("Received client info: " + hostClientInfo);
+        Debugger.debugOperation("Received client info: {}", hostClientInfo);
 
         if (hostClientInfo == null || hostClientInfo.isEmpty())
             UnSupportHostVersionException.throwException(hostClient.getIP(), "_NULL_");
 
         String[] info = hostClientInfo.split(";", -1);
-        if (info.length < 3 || info.length > 4 || info[0].isBlank() || info[1].isBlank() || info[2].isBlank())
+        // 第四段为 T/U 协议标志，第五段为可选能力列表（逗号分隔，例如 cf1 表示支持二进制控制帧）
+        if (info.length < 3 || info.length > 5 || info[0].isBlank() || info[1].isBlank() || info[2].isBlank())
             UnSupportHostVersionException.throwException(hostClient.getIP(), "_NULL_");
 
         // 提取语言信息
@@ -606,7 +648,7 @@ public class NeoProxyServer {
         // 处理 TCP/UDP 开启状态 (T/U 标志位)
         if (MC_ONLY_MODE) {
             forceTcpOnly(hostClient);
-        } else if (info.length == 4) {
+        } else if (info.length >= 4) {
             applyProtocolFlags(hostClient, info[3]);
         }
 
@@ -618,10 +660,32 @@ public class NeoProxyServer {
             }
         }
 
+        // 能力协商放在所有文本拒绝消息之后：确认命令是最后一条文本命令，此后控制消息全部走二进制帧
+        if (info.length == 5 && hasCapability(info[4], ProtocolConstants.CONTROL_FRAME_CAPABILITY)) {
+            InternetOperator.sendCommand(hostClient, ProtocolConstants.CONTROL_FRAME_ACK + ";" + ProtocolConstants.CONTROL_FRAME_VERSION);
+            hostClient.setControlFrameEnabled(true);
+            Debugger.debugOperation(() -> "Binary control frames negotiated with " + hostClient.getIP());
+        }
+
         hostClient.enableCheckAliveThread();
         availableHostClient.add(hostClient);
+        // 归属地在后台解析，握手不等待查库
+        IPGeolocationHelper.getLocationInfoAsync(hostClient.getHostServerHook().getInetAddress().getHostAddress())
+                .thenAccept(locInfo -> {
+                    hostClient.setCachedLocation(locInfo.location());
+                    hostClient.setCachedISP(locInfo.isp());
+                });
         InternetOperator.sendStr(hostClient, languageData.CONNECTION_BUILD_UP_SUCCESSFULLY);
-        Debugger.debugOperation("Handshake completed successfully with version: " + clientVersion);
+        Debugger.debugOperation("Handshake completed successfully with version: {}", clientVersion);
+    }
+
+    private static boolean hasCapability(String capabilities, String capability) {
+        for (String item : capabilities.split(",")) {
+            if (capability.equalsIgnoreCase(item.trim())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static void applyProtocolFlags(HostClient hostClient, String flags) throws UnSupportHostVersionException {
@@ -682,6 +746,14 @@ public class NeoProxyServer {
             if (hostServerTransferServerSocket != null) hostServerTransferServerSocket.close();
         } catch (Exception ignored) {
         }
+        try {
+            BalanceNotifier.stop();
+        } catch (Exception ignored) {
+        }
+        try {
+            HeartbeatBatcher.stop();
+        } catch (Exception ignored) {
+        }
         try {
             TransferSocketAdapter.shutdown();
         } catch (Exception ignored) {
@@ -694,7 +766,12 @@ public class NeoProxyServer {
             if (SequenceKey.PROVIDER != null) SequenceKey.PROVIDER.shutdown();
         } catch (Exception ignored) {
         }
+        try {
+            AccessLog.close();
+        } catch (Exception ignored) {
+        }
         Debugger.debugOperation("Shutdown process finished.");
+        ServerLogger.flush();
     }
 
     public static void copyResourceToJarDirectory(String resourcePath) throws IOException {
@@ -0,0 +1,499 @@
+package neoproxy.neoproxyserver.core;
+
+import com.google.gson.stream.JsonWriter;
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import neoproxy.neoproxyserver.core.management.SequenceKey;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * AccessLog - 每条隧道连接一条的结构化访问日志
+ *
+ * <p>TCPTransformer / UDPTransformer 的会话结束时，各写出一行 JSON（JSONL）到 {@code accesslog/access.jsonl}：</p>
+ * <pre>
+ * {"start":"2026-01-01T00:00:00Z","durationMs":1532,"protocol":"TCP","key":"demo","outPort":25565,
+ *  "clientIp":"203.0.113.7","clientPort":51234,"clientToHost":1024,"hostToClient":40960,
+ *  "stallMs":120,"closeReason":"CLIENT_CLOSED"}
+ * </pre>
+ * <p>字节数为载荷字节（不含加密与 UDP 封装开销），stallMs 为该会话在 RateLimiter 中休眠的总时长。</p>
+ *
+ * <p>【异步】会话结束时只把记录放进 {@link LogRingBuffer}，JSON 序列化、写文件与切分都在后台线程
+ * "NeoProxy-AccessLog" 上进行。后台线程按批写出，队列空时定时醒来检查按时切分，生产者不负责唤醒，
+ * 数据面线程上没有任何 I/O 或系统调用。队列满时丢弃并计数，后台线程补一条汇总告警。</p>
+ *
+ * <p>【切分】当前文件超过 {@link #MAX_FILE_MB} 或打开时间超过 {@link #ROTATE_HOURS} 时，
+ * 改名为 {@code access-yyyyMMdd-HHmmss.jsonl}，只保留最近 {@link #MAX_FILES} 个。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class AccessLog {
+    /**
+     * 是否记录访问日志。reload 时由 {@link #reload()} 按新值打开或关闭
+     */
+    public static volatile boolean ENABLED = true;
+    /**
+     * 单个文件的大小上限（MiB）
+     */
+    public static int MAX_FILE_MB = ServerConstants.DEFAULT_ACCESS_LOG_MAX_MB;
+    /**
+     * 按时切分的间隔（小时），0 表示只按大小切分
+     */
+    public static int ROTATE_HOURS = ServerConstants.DEFAULT_ACCESS_LOG_ROTATE_HOURS;
+    /**
+     * 保留的已切分文件数，0 表示不清理
+     */
+    public static int MAX_FILES = ServerConstants.DEFAULT_ACCESS_LOG_MAX_FILES;
+
+    static final String ACTIVE_FILE = "access.jsonl";
+    private static final String ROTATED_PREFIX = "access-";
+    private static final String ROTATED_SUFFIX = ".jsonl";
+    private static final DateTimeFormatter ROTATED_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneId.systemDefault());
+
+    private static volatile AccessLog active;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long rotateMillis;
+    private final int maxFiles;
+    private final LongSupplier clock;
+    private final LogRingBuffer<Entry> ring;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile long written;
+
+    // 以下字段只有后台线程读写
+    private OutputStream out;
+    private long size;
+    private long openedAt;
+    private long droppedReported;
+    private boolean failing;
+
+    /**
+     * @param maxBytes     单个文件的大小上限
+     * @param rotateMillis 按时切分的间隔，0 表示不按时切分
+     * @param maxFiles     保留的已切分文件数，0 表示不清理
+     * @param clock        当前时间（毫秒），测试时可替换
+     */
+    AccessLog(Path directory, long maxBytes, long rotateMillis, int maxFiles, LongSupplier clock) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.rotateMillis = rotateMillis;
+        this.maxFiles = maxFiles;
+        this.clock = clock;
+        this.ring = new LogRingBuffer<>(ServerConstants.ACCESS_LOG_RING_CAPACITY);
+        Files.createDirectories(directory);
+        openActive();
+        this.worker = new Thread(this::run, "NeoProxy-AccessLog");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // ==================== 全局实例 ====================
+
+    /**
+     * 按当前配置打开访问日志；已打开或未启用时什么都不做
+     */
+    public static synchronized void open() {
+        if (active != null || !ENABLED) {
+            return;
+        }
+        Path directory = Path.of(NeoProxyServer.CURRENT_DIR_PATH, "accesslog");
+        try {
+            active = new AccessLog(directory, MAX_FILE_MB * 1024L * 1024L,
+                    TimeUnit.HOURS.toMillis(ROTATE_HOURS), MAX_FILES, System::currentTimeMillis);
+        } catch (IOException e) {
+            ServerLogger.error("accessLog.openFailed", e, e.getMessage());
+            return;
+        }
+        Debugger.debugOperation("AccessLog opened at {}", directory);
+    }
+
+    /**
+     * 配置重载后调用：按 {@link #ENABLED} 打开或关闭；切分参数有变化时写完当前队列再按新参数重新打开
+     */
+    public static synchronized void reload() {
+        AccessLog log = active;
+        if (!ENABLED) {
+            close();
+            return;
+        }
+        if (log != null && log.maxBytes == MAX_FILE_MB * 1024L * 1024L
+                && log.rotateMillis == TimeUnit.HOURS.toMillis(ROTATE_HOURS) && log.maxFiles == MAX_FILES) {
+            return;
+        }
+        close();
+        open();
+    }
+
+    /**
+     * 写出已提交的记录并关闭访问日志
+     */
+    public static synchronized void close() {
+        AccessLog log = active;
+        if (log == null) {
+            return;
+        }
+        active = null;
+        log.shutdown(ServerConstants.LOG_FLUSH_TIMEOUT_MILLIS);
+        Debugger.debugOperation("AccessLog closed.");
+    }
+
+    /**
+     * 开始记录一个 TCP 会话
+     */
+    public static Session begin(HostClient hostClient, InetAddress clientAddress, int clientPort) {
+        return begin("TCP", hostClient, clientAddress == null ? "" : clientAddress.getHostAddress(), clientPort);
+    }
+
+    /**
+     * 开始记录一个 UDP 会话
+     */
+    public static Session begin(HostClient hostClient, String clientIp, int clientPort) {
+        return begin("UDP", hostClient, clientIp, clientPort);
+    }
+
+    private static Session begin(String protocol, HostClient hostClient, String clientIp, int clientPort) {
+        SequenceKey key = hostClient.getKey();
+        return new Session(protocol, key == null ? "" : key.getName(), hostClient.getOutPort(), clientIp, clientPort);
+    }
+
+    // ==================== 实例实现 ====================
+
+    /**
+     * @return 队列已满、记录被丢弃时为 false
+     */
+    boolean offer(Entry entry) {
+        if (ring.offer(entry)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * 等待调用前已入队的记录全部写入文件
+     *
+     * @return 超时前写完为 true
+     */
+    boolean flush(long timeoutMillis) {
+        long target = ring.enqueued();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        LockSupport.unpark(worker);
+        while (written < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    /**
+     * 写完队列中的记录后停止后台线程并关闭文件
+     */
+    void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                int count = ring.drain(this::write, ServerConstants.ACCESS_LOG_DRAIN_BATCH);
+                if (count > 0) {
+                    flushStream();
+                    written += count;
+                    continue;
+                }
+                reportDrops();
+                if (!running && ring.isEmpty()) {
+                    break;
+                }
+                rotateIfDue(0);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(ServerConstants.ACCESS_LOG_IDLE_PARK_MILLIS));
+            }
+        } finally {
+            closeStream();
+        }
+    }
+
+    private void write(Entry entry) {
+        byte[] line = (toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            rotateIfDue(line.length);
+            if (out == null) {
+                openActive();
+            }
+            out.write(line);
+            size += line.length;
+            failing = false;
+        } catch (IOException e) {
+            closeStream();
+            // 连续失败只报告一次，恢复后再次失败时重新报告
+            if (!failing) {
+                failing = true;
+                ServerLogger.error("accessLog.writeFailed", e, e.getMessage());
+            }
+        }
+    }
+
+    private void rotateIfDue(int pendingBytes) {
+        long now = clock.getAsLong();
+        boolean bySize = size > 0 && size + pendingBytes > maxBytes;
+        boolean byTime = size > 0 && rotateMillis > 0 && now - openedAt >= rotateMillis;
+        if (!bySize && !byTime) {
+            return;
+        }
+        try {
+            closeStream();
+            Path target = directory.resolve(ROTATED_PREFIX + ROTATED_NAME.format(Instant.ofEpochMilli(now)) + ROTATED_SUFFIX);
+            for (int i = 1; Files.exists(target); i++) {
+                target = directory.resolve(ROTATED_PREFIX + ROTATED_NAME.format(Instant.ofEpochMilli(now)) + "-" + i + ROTATED_SUFFIX);
+            }
+            Files.move(directory.resolve(ACTIVE_FILE), target);
+            Debugger.debugOperation("AccessLog rotated to {}", target);
+            pruneRotated();
+            openActive();
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+        }
+    }
+
+    private void pruneRotated() throws IOException {
+        if (maxFiles <= 0) {
+            return;
+        }
+        List<Path> rotated = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(ROTATED_PREFIX) && name.endsWith(ROTATED_SUFFIX);
+            }).forEach(rotated::add);
+        }
+        // 文件名以时间开头，按名字排序即按时间排序
+        rotated.sort(null);
+        for (int i = 0; i < rotated.size() - maxFiles; i++) {
+            Files.deleteIfExists(rotated.get(i));
+        }
+    }
+
+    private void openActive() throws IOException {
+        Path file = directory.resolve(ACTIVE_FILE);
+        if (Files.exists(file)) {
+            size = Files.size(file);
+            // 沿用上次运行留下的文件时，从它的创建时间起算按时切分
+            openedAt = Files.readAttributes(file, BasicFileAttributes.class).creationTime().toMillis();
+        } else {
+            size = 0;
+            openedAt = clock.getAsLong();
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    private void flushStream() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            closeStream();
+            Debugger.debugOperation(e);
+        }
+    }
+
+    private void closeStream() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+        }
+        out = null;
+    }
+
+    private void reportDrops() {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            ServerLogger.warn("accessLog.dropped", total - droppedReported);
+            droppedReported = total;
+        }
+    }
+
+    static String toJson(Entry entry) {
+        StringWriter buffer = new StringWriter(256);
+        try (JsonWriter json = new JsonWriter(buffer)) {
+            json.beginObject();
+            json.name("start").value(Instant.ofEpochMilli(entry.startMillis()).toString());
+            json.name("durationMs").value(entry.durationMillis());
+            json.name("protocol").value(entry.protocol());
+            json.name("key").value(entry.key());
+            json.name("outPort").value(entry.outPort());
+            json.name("clientIp").value(entry.clientIp());
+            json.name("clientPort").value(entry.clientPort());
+            json.name("clientToHost").value(entry.clientToHostBytes());
+            json.name("hostToClient").value(entry.hostToClientBytes());
+            json.name("stallMs").value(entry.stallMillis());
+            json.name("closeReason").value(entry.closeReason().name());
+            json.endObject();
+        } catch (IOException e) {
+            // StringWriter 不会抛出 IOException
+            throw new IllegalStateException(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * 会话结束的原因；同一会话以最先记录的为准
+     */
+    public enum CloseReason {
+        /**
+         * 访客一侧先关闭连接
+         */
+        CLIENT_CLOSED,
+        /**
+         * 客户端（内网穿透客户端）一侧先关闭连接
+         */
+        HOST_CLOSED,
+        /**
+         * UDP 会话长时间没有数据
+         */
+        IDLE_TIMEOUT,
+        /**
+         * 密钥流量耗尽
+         */
+        NO_FLOW,
+        /**
+         * 被网页拦截
+         */
+        BLOCKED,
+        /**
+         * 读写出错
+         */
+        ERROR
+    }
+
+    /**
+     * 一条访问记录
+     */
+    record Entry(long startMillis, long durationMillis, String protocol, String key, int outPort,
+                 String clientIp, int clientPort, long clientToHostBytes, long hostToClientBytes,
+                 long stallMillis, CloseReason closeReason) {
+    }
+
+    /**
+     * 一个会话的统计。两个方向的字节数各只由对应方向的线程累加，限速休眠时长两个方向都会累加
+     */
+    public static final class Session {
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final String protocol;
+        private final String key;
+        private final int outPort;
+        private final String clientIp;
+        private final int clientPort;
+        private final AtomicLong stallNanos = new AtomicLong();
+        private final AtomicReference<CloseReason> closeReason = new AtomicReference<>();
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile long clientToHostBytes;
+        private volatile long hostToClientBytes;
+
+        Session(String protocol, String key, int outPort, String clientIp, int clientPort) {
+            this.protocol = protocol;
+            this.key = key;
+            this.outPort = outPort;
+            this.clientIp = clientIp;
+            this.clientPort = clientPort;
+        }
+
+        /**
+         * 只能由访客 → 客户端方向的线程调用
+         */
+        public void clientToHost(long bytes, long stalledNanos) {
+            clientToHostBytes += bytes;
+            stalled(stalledNanos);
+        }
+
+        /**
+         * 只能由客户端 → 访客方向的线程调用
+         */
+        public void hostToClient(long bytes, long stalledNanos) {
+            hostToClientBytes += bytes;
+            stalled(stalledNanos);
+        }
+
+        /**
+         * 记录结束原因，已有原因时忽略
+         */
+        public void closedBy(CloseReason reason) {
+            closeReason.compareAndSet(null, reason);
+        }
+
+        /**
+         * 结束会话并提交记录，只有第一次调用生效
+         *
+         * @param override 非空时覆盖已记录的原因（如流量耗尽）；没有任何原因时记为 {@link CloseReason#ERROR}
+         */
+        public void end(CloseReason override) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            AccessLog log = active;
+            if (log == null) {
+                return;
+            }
+            log.offer(toEntry(override));
+        }
+
+        Entry toEntry(CloseReason override) {
+            CloseReason reason = override != null ? override : closeReason.get();
+            return new Entry(startMillis, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    protocol, key, outPort, clientIp, clientPort, clientToHostBytes, hostToClientBytes,
+                    TimeUnit.NANOSECONDS.toMillis(stallNanos.get()), reason != null ? reason : CloseReason.ERROR);
+        }
+
+        private void stalled(long nanos) {
+            if (nanos > 0) {
+                stallNanos.addAndGet(nanos);
+            }
+        }
+    }
+}
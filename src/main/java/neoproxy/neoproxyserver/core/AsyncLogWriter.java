@@ -0,0 +1,147 @@
+package neoproxy.neoproxyserver.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * AsyncLogWriter - 日志的异步写出：调用方只把事件放进 {@link LogRingBuffer}，由后台线程格式化并写出
+ *
+ * <p>事件携带资源键与原始参数，ResourceBundle 查找、MessageFormat 与控制台 / 文件 / WebAdmin 写出
+ * 全部在后台线程上完成，数据面线程（如 ALERT 模式下的连接建立 / 断开日志）入队即返回。
+ * 后台线程每次最多取 {@code batchSize} 条连续写出，队列空时 park，有新事件时才被唤醒。</p>
+ *
+ * <p>【溢出策略】队列满时：</p>
+ * <ul>
+ *   <li>INFO：丢弃并计数，后台线程下次写出时补一条汇总告警，说明丢了多少条</li>
+ *   <li>WARN / ERROR：不丢，退回在调用线程上同步写出</li>
+ * </ul>
+ *
+ * <p>【并发】{@link #submit} 可被任意线程调用，不加锁；sink 只在后台线程上调用，
+ * 溢出时的同步写出除外，因此 sink 须线程安全。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class AsyncLogWriter {
+    private final LogRingBuffer<LogEvent> ring;
+    private final Consumer<LogEvent> sink;
+    private final LongConsumer dropReporter;
+    private final int batchSize;
+    private final Thread worker;
+
+    private final LongAdder dropped = new LongAdder();
+    // 以下字段只有后台线程写
+    private long droppedReported;
+    private volatile long written;
+    private volatile boolean sleeping;
+
+    /**
+     * @param sink         写出一个事件；抛出的异常只打印到 stderr，不会终止后台线程
+     * @param dropReporter 在后台线程上接收自上次汇报以来丢弃的 INFO 条数
+     */
+    AsyncLogWriter(int capacity, int batchSize, Consumer<LogEvent> sink, LongConsumer dropReporter) {
+        this.ring = new LogRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.dropReporter = dropReporter;
+        this.worker = new Thread(this::run, "NeoProxy-Logger");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    void submit(LogEvent event) {
+        if (ring.offer(event)) {
+            if (sleeping) {
+                LockSupport.unpark(worker);
+            }
+            return;
+        }
+        if (event.level() == Level.INFO) {
+            dropped.increment();
+            return;
+        }
+        write(event);
+    }
+
+    /**
+     * 等待调用前已入队的事件全部写出
+     *
+     * @return 超时前写完为 true；在后台线程上调用时直接返回 false
+     */
+    boolean flush(long timeoutMillis) {
+        if (Thread.currentThread() == worker) {
+            return false;
+        }
+        long target = ring.enqueued();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        LockSupport.unpark(worker);
+        while (written < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        while (true) {
+            int count = ring.drain(this::write, batchSize);
+            if (count > 0) {
+                // 先汇报丢弃再推进 written，flush 返回时汇总告警也已写出
+                reportDrops();
+                written += count;
+                continue;
+            }
+            reportDrops();
+            sleeping = true;
+            // 与 submit 的"先发布、再读 sleeping"配对：两边至少有一方看到对方的写入，不会漏唤醒
+            if (ring.isEmpty()) {
+                LockSupport.park(this);
+            } else {
+                // 有生产者已领取槽位但尚未发布
+                Thread.onSpinWait();
+            }
+            sleeping = false;
+        }
+    }
+
+    private void reportDrops() {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            long delta = total - droppedReported;
+            droppedReported = total;
+            try {
+                dropReporter.accept(delta);
+            } catch (Throwable t) {
+                t.printStackTrace(System.err);
+            }
+        }
+    }
+
+    private void write(LogEvent event) {
+        try {
+            sink.accept(event);
+        } catch (Throwable t) {
+            t.printStackTrace(System.err);
+        }
+    }
+
+    enum Level {
+        INFO, WARN, ERROR
+    }
+
+    /**
+     * 一条待写出的日志。key 非空时按资源键与 args 格式化，否则直接使用 message
+     */
+    record LogEvent(Level level, String source, String key, Object[] args, String message, Throwable throwable) {
+    }
+}
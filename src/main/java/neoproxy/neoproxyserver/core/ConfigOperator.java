@@ -3,8 +3,15 @@ package neoproxy.neoproxyserver.core;
 import top.ceroxe.api.utils.config.LineConfigReader;
 import neoproxy.neoproxyserver.NeoProxyServer;
 import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import neoproxy.neoproxyserver.core.management.BalanceNotifier;
+import neoproxy.neoproxyserver.core.management.ConnectionGuard;
+import neoproxy.neoproxyserver.core.management.Database;
 import neoproxy.neoproxyserver.core.management.IPChecker;
+import neoproxy.neoproxyserver.core.management.KeyCache;
+import neoproxy.neoproxyserver.core.management.PortReservationCache;
 import neoproxy.neoproxyserver.core.management.TransferSocketAdapter;
+import neoproxy.neoproxyserver.core.management.UsageLedger;
+import neoproxy.neoproxyserver.core.management.provider.RemoteKeyProvider;
 import neoproxy.neoproxyserver.core.threads.TCPTransformer;
 import neoproxy.neoproxyserver.core.webadmin.WebAdminManager;
 
@@ -112,15 +119,28 @@ public final class ConfigOperator {
         NeoProxyServer.HOST_CONNECT_PORT = readPort(reader, "HOST_CONNECT_PORT", ServerConstants.DEFAULT_HOST_CONNECT_PORT);
         WebAdminManager.WEB_ADMIN_PORT = readPort(reader, "WEB_ADMIN_PORT", ServerConstants.DEFAULT_WEB_ADMIN_PORT);
         IPChecker.ENABLE_BAN = readBoolean(reader, "ENABLE_BAN", true);
+        ConnectionGuard.CONNECTS_PER_SECOND = readInt(reader, "AUTO_BAN_CONNECTS_PER_SECOND", ServerConstants.DEFAULT_AUTO_BAN_CONNECTS_PER_SECOND, 0, Integer.MAX_VALUE);
+        ConnectionGuard.TEMP_BAN_SECONDS = readInt(reader, "AUTO_BAN_SECONDS", ServerConstants.DEFAULT_AUTO_BAN_SECONDS, 0, Integer.MAX_VALUE);
         ServerLogger.alert = readBoolean(reader, "ALERT", true);
         HostClient.SAVE_DELAY = readInt(reader, "SAVE_DELAY", ServerConstants.DEFAULT_SAVE_DELAY, 0, Integer.MAX_VALUE);
         HostClient.AES_KEY_SIZE = readAesKeySize(reader, "AES_KEY_SIZE", ServerConstants.AES_KEY_SIZE);
         HostClient.HEARTBEAT_TIMEOUT = readInt(reader, "HEARTBEAT_TIMEOUT", ServerConstants.DEFAULT_HEARTBEAT_TIMEOUT, 0, Integer.MAX_VALUE);
         TCPTransformer.CUSTOM_BLOCKING_MESSAGE = reader.getOptional("CUSTOM_BLOCKING_MESSAGE").orElse("您没有访问网页的权限<br>请联系管理员以获取进一步支持");
         TCPTransformer.TELL_BALANCE_MIB = readInt(reader, "TELL_BALANCE_MIB", 10, 1, Integer.MAX_VALUE);
+        BalanceNotifier.INTERVAL_MS = readInt(reader, "TELL_BALANCE_INTERVAL", ServerConstants.DEFAULT_TELL_BALANCE_INTERVAL, 100, Integer.MAX_VALUE);
         TCPTransformer.BUFFER_LEN = readInt(reader, "BUFFER_LEN", ServerConstants.TCP_BUFFER_SIZE,
                 ServerConstants.MIN_TCP_BUFFER_SIZE, ServerConstants.TCP_BUFFER_SIZE);
         TransferSocketAdapter.SO_TIMEOUT = readInt(reader, "SO_TIMEOUT", 5000, 1, Integer.MAX_VALUE);
+        PortReservationCache.GRACE_SECONDS = readInt(reader, "PORT_RESERVE_SECONDS", ServerConstants.DEFAULT_PORT_RESERVE_SECONDS, 0, Integer.MAX_VALUE);
+        KeyCache.MAX_ENTRIES = readInt(reader, "KEY_CACHE_SIZE", ServerConstants.DEFAULT_KEY_CACHE_SIZE, 1, Integer.MAX_VALUE);
+        KeyCache.TTL_SECONDS = readInt(reader, "KEY_CACHE_TTL", ServerConstants.DEFAULT_KEY_CACHE_TTL_SECONDS, 1, Integer.MAX_VALUE);
+        KeyCache.NEGATIVE_TTL_SECONDS = readInt(reader, "KEY_NEGATIVE_CACHE_TTL", ServerConstants.DEFAULT_KEY_NEGATIVE_TTL_SECONDS, 0, Integer.MAX_VALUE);
+        Database.STORAGE_BACKEND = readStorageBackend(reader, "STORAGE_BACKEND");
+        UsageLedger.COMPACT_INTERVAL_SECONDS = readInt(reader, "LEDGER_COMPACT_INTERVAL", ServerConstants.DEFAULT_LEDGER_COMPACT_SECONDS, 0, Integer.MAX_VALUE);
+        AccessLog.ENABLED = readBoolean(reader, "ACCESS_LOG", true);
+        AccessLog.MAX_FILE_MB = readInt(reader, "ACCESS_LOG_MAX_MB", ServerConstants.DEFAULT_ACCESS_LOG_MAX_MB, 1, Integer.MAX_VALUE);
+        AccessLog.ROTATE_HOURS = readInt(reader, "ACCESS_LOG_ROTATE_HOURS", ServerConstants.DEFAULT_ACCESS_LOG_ROTATE_HOURS, 0, Integer.MAX_VALUE);
+        AccessLog.MAX_FILES = readInt(reader, "ACCESS_LOG_MAX_FILES", ServerConstants.DEFAULT_ACCESS_LOG_MAX_FILES, 0, Integer.MAX_VALUE);
 
         String permToken = reader.getOptional("WEB_ADMIN_TOKEN").orElse("").trim();
         WebAdminManager.setPermanentToken(permToken);
@@ -159,6 +179,8 @@ public final class ConfigOperator {
 
         MANAGER_TOKEN = reader.getOptional("MANAGER_TOKEN").orElse("");
         NODE_ID = reader.getOptional("NODE_ID").orElse("Default-Node");
+        RemoteKeyProvider.KEY_STALE_SECONDS = readInt(reader, "KEY_STALE_SECONDS", ServerConstants.DEFAULT_KEY_STALE_SECONDS, 0, Integer.MAX_VALUE);
+        RemoteKeyProvider.MAX_CONCURRENT_REQUESTS = readInt(reader, "MAX_CONCURRENT_REQUESTS", ServerConstants.DEFAULT_NKM_MAX_CONCURRENT_REQUESTS, 1, Integer.MAX_VALUE);
 
         if (MANAGER_URL != null && !MANAGER_URL.isBlank()) {
             ServerLogger.info("configOperator.syncModeEnabled", MANAGER_URL, NODE_ID);
@@ -178,6 +200,19 @@ public final class ConfigOperator {
         return defaultValue;
     }
 
+    private static String readStorageBackend(LineConfigReader reader, String key) {
+        String rawValue = reader.getOptional(key).orElse(null);
+        if (rawValue == null || rawValue.isBlank()) {
+            return ServerConstants.DEFAULT_STORAGE_BACKEND;
+        }
+        String backend = Database.normalizeBackend(rawValue);
+        if (backend == null) {
+            Debugger.debugOperation("Invalid storage backend for " + key + ": " + rawValue + ", fallback to " + ServerConstants.DEFAULT_STORAGE_BACKEND);
+            return ServerConstants.DEFAULT_STORAGE_BACKEND;
+        }
+        return backend;
+    }
+
     private static int readInt(LineConfigReader reader, String key, int defaultValue, int min, int max) {
         String rawValue = reader.getOptional(key).orElse(null);
         if (rawValue == null || rawValue.isBlank()) {
@@ -0,0 +1,241 @@
+package neoproxy.neoproxyserver.core;
+
+import neoproxy.neoproxyserver.core.constants.ProtocolConstants;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ControlFrameCodec - Hook 通道二进制控制帧编解码器
+ *
+ * <p>旧协议中每条控制消息（如 {@code sendSocketTCP;id;ip:port}）都是一次独立的加密文本写出，
+ * 连接突发时 Hook 通道会被大量小包和字符串拼接拖慢。二进制控制帧把多条消息打包进同一帧，
+ * 一次加密、一次写出即可送达。</p>
+ *
+ * <p>帧格式（大端序）：</p>
+ * <pre>
+ * +-------+---------+-------+-------------+----------------------+
+ * | "NP"  | version | count | body length | message * count      |
+ * | 2B    | 1B      | 1B    | 4B          | body length 字节      |
+ * +-------+---------+-------+-------------+----------------------+
+ *
+ * OPEN_TCP / OPEN_UDP : type(1) socketId(8) addrLen(1) addr(4|16) port(2)
+ * COMMAND / INFO      : type(1) textLen(2) utf8(textLen)
+ * </pre>
+ *
+ * <p>协商：客户端在握手信息第五段声明 {@link ProtocolConstants#CONTROL_FRAME_CAPABILITY}，
+ * 服务端回复文本命令 {@link ProtocolConstants#CONTROL_FRAME_ACK} 后，服务端发往该客户端的控制消息
+ * 全部改用本编码；未声明能力的旧客户端继续使用文本协议。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class ControlFrameCodec {
+    private static final int MAX_TEXT_BYTES = 0xFFFF;
+
+    private ControlFrameCodec() {
+    }
+
+    /**
+     * 将多条控制消息编码为一个或多个帧。
+     *
+     * <p>单帧最多 {@link ProtocolConstants#CONTROL_FRAME_MAX_MESSAGES} 条消息，
+     * 消息体不超过 {@link ProtocolConstants#MAX_BODY_LENGTH} 字节，超出时自动拆分。</p>
+     *
+     * @param messages 待发送的控制消息，按顺序编码
+     * @return 编码后的帧列表
+     */
+    public static List<byte[]> encode(List<ControlMessage> messages) {
+        List<byte[]> frames = new ArrayList<>(1);
+        int from = 0;
+        while (from < messages.size()) {
+            int to = from;
+            int bodyLength = 0;
+            while (to < messages.size() && to - from < ProtocolConstants.CONTROL_FRAME_MAX_MESSAGES) {
+                int size = encodedSize(messages.get(to));
+                if (to > from && bodyLength + size > ProtocolConstants.MAX_BODY_LENGTH) {
+                    break;
+                }
+                bodyLength += size;
+                to++;
+            }
+            frames.add(encodeFrame(messages, from, to, bodyLength));
+            from = to;
+        }
+        return frames;
+    }
+
+    /**
+     * 将单条控制消息编码为一个帧
+     */
+    public static byte[] encode(ControlMessage message) {
+        return encodeFrame(List.of(message), 0, 1, encodedSize(message));
+    }
+
+    /**
+     * 解码一个完整的控制帧
+     *
+     * @param frame 帧数据
+     * @return 帧内的控制消息
+     * @throws IOException 帧格式非法时抛出
+     */
+    public static List<ControlMessage> decode(byte[] frame) throws IOException {
+        if (frame == null || frame.length < ProtocolConstants.HEADER_LENGTH) {
+            throw new IOException("Control frame too short");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        if (buffer.get() != ProtocolConstants.PROTOCOL_MAGIC[0] || buffer.get() != ProtocolConstants.PROTOCOL_MAGIC[1]) {
+            throw new IOException("Bad control frame magic");
+        }
+        byte version = buffer.get();
+        if (version != ProtocolConstants.CONTROL_FRAME_VERSION) {
+            throw new IOException("Unsupported control frame version: " + version);
+        }
+        int count = buffer.get() & 0xFF;
+        int bodyLength = buffer.getInt();
+        if (bodyLength < 0 || bodyLength != buffer.remaining()) {
+            throw new IOException("Control frame length mismatch");
+        }
+
+        List<ControlMessage> messages = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                messages.add(readMessage(buffer));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated control frame", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Trailing bytes in control frame");
+        }
+        return messages;
+    }
+
+    /**
+     * 判断一段数据是否以控制帧魔数开头
+     */
+    public static boolean isControlFrame(byte[] data) {
+        return data != null && data.length >= ProtocolConstants.HEADER_LENGTH
+                && data[0] == ProtocolConstants.PROTOCOL_MAGIC[0]
+                && data[1] == ProtocolConstants.PROTOCOL_MAGIC[1];
+    }
+
+    static int encodedSize(ControlMessage message) {
+        return switch (message.type()) {
+            case ProtocolConstants.CTRL_OPEN_TCP, ProtocolConstants.CTRL_OPEN_UDP ->
+                    1 + 8 + 1 + message.address().getAddress().length + 2;
+            case ProtocolConstants.CTRL_COMMAND, ProtocolConstants.CTRL_INFO -> 1 + 2 + textBytes(message).length;
+            default -> throw new IllegalArgumentException("Unknown control message type: " + message.type());
+        };
+    }
+
+    private static byte[] encodeFrame(List<ControlMessage> messages, int from, int to, int bodyLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(ProtocolConstants.HEADER_LENGTH + bodyLength);
+        buffer.put(ProtocolConstants.PROTOCOL_MAGIC);
+        buffer.put(ProtocolConstants.CONTROL_FRAME_VERSION);
+        buffer.put((byte) (to - from));
+        buffer.putInt(bodyLength);
+        for (int i = from; i < to; i++) {
+            writeMessage(buffer, messages.get(i));
+        }
+        return buffer.array();
+    }
+
+    private static void writeMessage(ByteBuffer buffer, ControlMessage message) {
+        buffer.put(message.type());
+        switch (message.type()) {
+            case ProtocolConstants.CTRL_OPEN_TCP, ProtocolConstants.CTRL_OPEN_UDP -> {
+                byte[] address = message.address().getAddress();
+                buffer.putLong(message.socketId());
+                buffer.put((byte) address.length);
+                buffer.put(address);
+                buffer.putShort((short) message.port());
+            }
+            case ProtocolConstants.CTRL_COMMAND, ProtocolConstants.CTRL_INFO -> {
+                byte[] text = textBytes(message);
+                buffer.putShort((short) text.length);
+                buffer.put(text);
+            }
+            default -> throw new IllegalArgumentException("Unknown control message type: " + message.type());
+        }
+    }
+
+    private static ControlMessage readMessage(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case ProtocolConstants.CTRL_OPEN_TCP, ProtocolConstants.CTRL_OPEN_UDP -> {
+                long socketId = buffer.getLong();
+                int addressLength = buffer.get() & 0xFF;
+                if (addressLength != 4 && addressLength != 16) {
+                    throw new IOException("Bad address length: " + addressLength);
+                }
+                byte[] address = new byte[addressLength];
+                buffer.get(address);
+                int port = buffer.getShort() & 0xFFFF;
+                try {
+                    return new ControlMessage(type, socketId, InetAddress.getByAddress(address), port, null);
+                } catch (UnknownHostException e) {
+                    throw new IOException(e);
+                }
+            }
+            case ProtocolConstants.CTRL_COMMAND, ProtocolConstants.CTRL_INFO -> {
+                byte[] text = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(text);
+                return new ControlMessage(type, 0, null, 0, new String(text, StandardCharsets.UTF_8));
+            }
+            default -> throw new IOException("Unknown control message type: " + type);
+        }
+    }
+
+    private static byte[] textBytes(ControlMessage message) {
+        byte[] text = message.text().getBytes(StandardCharsets.UTF_8);
+        if (text.length > MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("Control message text too long: " + text.length);
+        }
+        return text;
+    }
+
+    /**
+     * 单条控制消息。不同类型只使用其中一部分字段，请通过静态工厂方法创建。
+     */
+    public record ControlMessage(byte type, long socketId, InetAddress address, int port, String text) {
+
+        public static ControlMessage openTcp(long socketId, InetAddress address, int port) {
+            return new ControlMessage(ProtocolConstants.CTRL_OPEN_TCP, socketId, address, port, null);
+        }
+
+        public static ControlMessage openUdp(long socketId, InetAddress address, int port) {
+            return new ControlMessage(ProtocolConstants.CTRL_OPEN_UDP, socketId, address, port, null);
+        }
+
+        public static ControlMessage command(String command) {
+            return new ControlMessage(ProtocolConstants.CTRL_COMMAND, 0, null, 0, command);
+        }
+
+        public static ControlMessage info(String info) {
+            return new ControlMessage(ProtocolConstants.CTRL_INFO, 0, null, 0, info);
+        }
+
+        /**
+         * 转换为旧文本协议的等价字符串，供未协商二进制帧的客户端使用
+         */
+        public String toLegacyText() {
+            return switch (type) {
+                case ProtocolConstants.CTRL_OPEN_TCP ->
+                        InternetOperator.COMMAND_PREFIX + "sendSocketTCP;" + socketId + ";" + address.getHostAddress() + ":" + port;
+                case ProtocolConstants.CTRL_OPEN_UDP ->
+                        InternetOperator.COMMAND_PREFIX + "sendSocketUDP;" + socketId + ";" + address.getHostAddress() + ":" + port;
+                case ProtocolConstants.CTRL_COMMAND -> InternetOperator.COMMAND_PREFIX + text;
+                case ProtocolConstants.CTRL_INFO -> text;
+                default -> throw new IllegalArgumentException("Unknown control message type: " + type);
+            };
+        }
+    }
+}
@@ -1,8 +1,29 @@
 package neoproxy.neoproxyserver.core;
 
+import java.util.function.Supplier;
+
 import static neoproxy.neoproxyserver.NeoProxyServer.IS_DEBUG_MODE;
 
+/**
+ * 调试日志。只在 debug 模式（{@code --debug} 或控制台 {@code debug enable}）下输出。
+ * <p>
+ * 【热路径】{@link #debugOperation(String)} 的参数在调用前就已拼好，debug 关闭时拼接的开销照付。
+ * 热路径上改用：
+ * <ul>
+ *   <li>模板 + 参数：{@code debugOperation("Allocated UDP SocketID: {}", socketID)}，
+ *       按顺序替换 {@code {}}；固定参数个数、long 参数不装箱，关闭时不分配任何对象</li>
+ *   <li>Supplier：{@code debugOperation(() -> "... " + hostClient.getIP())}，
+ *       用于需要调用方法才能得到的参数，关闭时不会调用；
+ *       捕获局部变量的 lambda 本身仍要创建实例，最热的路径优先用模板</li>
+ * </ul>
+ */
 public class Debugger {
+    private static final String PLACEHOLDER = "{}";
+
+    public static boolean isEnabled() {
+        return IS_DEBUG_MODE;
+    }
+
     public static void debugOperation(Exception e) {
         if (IS_DEBUG_MODE) {
             ServerLogger.error("neoProxyServer.debugOperation", e, e.getMessage());
@@ -15,4 +36,66 @@ public class Debugger {
             ServerLogger.logRaw("Debugger", msg);
         }
     }
+
+    public static void debugOperation(Supplier<String> message) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", message.get());
+        }
+    }
+
+    public static void debugOperation(String format, Object arg) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg));
+        }
+    }
+
+    public static void debugOperation(String format, long arg) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg));
+        }
+    }
+
+    public static void debugOperation(String format, Object arg1, Object arg2) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg1, arg2));
+        }
+    }
+
+    public static void debugOperation(String format, Object arg1, long arg2) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg1, arg2));
+        }
+    }
+
+    public static void debugOperation(String format, long arg1, Object arg2) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg1, arg2));
+        }
+    }
+
+    public static void debugOperation(String format, Object arg1, Object arg2, Object arg3) {
+        if (IS_DEBUG_MODE) {
+            ServerLogger.logRaw("Debugger", format(format, arg1, arg2, arg3));
+        }
+    }
+
+    /**
+     * 按顺序把 {@code {}} 替换为参数；多余的占位符原样保留，多余的参数忽略
+     */
+    static String format(String format, Object... args) {
+        if (format == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int from = 0;
+        for (Object arg : args) {
+            int at = format.indexOf(PLACEHOLDER, from);
+            if (at < 0) {
+                break;
+            }
+            sb.append(format, from, at).append(arg);
+            from = at + PLACEHOLDER.length();
+        }
+        return sb.append(format, from, format.length()).toString();
+    }
 }
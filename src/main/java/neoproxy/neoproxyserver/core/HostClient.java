@@ -4,6 +4,8 @@ import top.ceroxe.api.net.SecureSocket;
 import top.ceroxe.api.thread.ThreadManager;
 import top.ceroxe.api.utils.Sleeper;
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.management.HeartbeatBatcher;
+import neoproxy.neoproxyserver.core.management.PortReservationCache;
 import neoproxy.neoproxyserver.core.management.SequenceKey;
 import neoproxy.neoproxyserver.core.management.provider.Protocol;
 import neoproxy.neoproxyserver.core.threads.RateLimiter;
@@ -18,8 +20,6 @@ import java.net.SocketTimeoutException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
 
@@ -63,6 +63,8 @@ public final class HostClient implements Closeable {
     private final Set<SecureSocket> activeTransferSockets = ConcurrentHashMap.newKeySet();
 
     private final RateLimiter globalRateLimiter = new RateLimiter(0);
+    // Hook 通道的单写者出站队列：所有控制消息都经由它串行写出
+    private final HostControlChannel controlChannel = new HostControlChannel(this);
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
     // 【修复】isStopped 被多个线程读取（AutoSave、KeyDetection、AliveCheck），
     // 必须 volatile 保证跨线程可见性，与 isClosed（AtomicBoolean）的语义对齐
@@ -72,15 +74,17 @@ public final class HostClient implements Closeable {
     private DatagramSocket clientDatagramSocket = null;
     private LanguageData languageData = new LanguageData();
     private int outPort = -1;
-    private String cachedLocation;
-    private String cachedISP;
+    // 由归属地异步查询回填
+    private volatile String cachedLocation;
+    private volatile String cachedISP;
     private boolean isTCPEnabled = true;
     private boolean isUDPEnabled = true;
-    private ScheduledFuture<?> remoteHeartbeatTask;
+    // 握手时协商：为 true 后服务端发往该客户端的控制消息改用二进制控制帧
+    private volatile boolean controlFrameEnabled = false;
     private volatile long lastValidHeartbeatTime = System.currentTimeMillis();
 
     public HostClient(SecureSocket hostServerHook) throws IOException {
-        Debugger.debugOperation("Creating HostClient for connection: " + InternetOperator.getInternetAddressAndPort(hostServerHook));
+        Debugger.debugOperation(() -> "Creating HostClient for connection: " + InternetOperator.getInternetAddressAndPort(hostServerHook));
         this.hostServerHook = hostServerHook;
         this.lastValidHeartbeatTime = System.currentTimeMillis();
 
@@ -90,23 +94,23 @@ public final class HostClient implements Closeable {
 
     private static void enableAutoSaveThread(HostClient hostClient) {
         ThreadManager.runAsync(() -> {
-            Debugger.debugOperation("AutoSave thread started for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "AutoSave thread started for " + hostClient.getIP());
             while (!hostClient.isStopped) {
                 if (hostClient.getKey() != null) {
                     saveToDB(hostClient.getKey());
                 }
                 Sleeper.sleep(SAVE_DELAY);
             }
-            Debugger.debugOperation("AutoSave thread stopped for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "AutoSave thread stopped for " + hostClient.getIP());
         });
     }
 
     private static void enableKeyDetectionTread(HostClient hostClient) {
         ThreadManager.runAsync(() -> {
-            Debugger.debugOperation("KeyDetection thread started for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "KeyDetection thread started for " + hostClient.getIP());
             while (!hostClient.isStopped) {
                 if (hostClient.getKey() != null && hostClient.getKey().isOutOfDate()) {
-                    Debugger.debugOperation("Key Detection: Key out of date (" + hostClient.getKey().getName() + "). Closing client.");
+                    Debugger.debugOperation(() -> "Key Detection: Key out of date (" + hostClient.getKey().getName() + "). Closing client.");
                     ServerLogger.info("hostClient.keyOutOfDate", hostClient.getKey().getName());
                     try {
                         InternetOperator.sendStr(hostClient, hostClient.getLangData().THE_KEY + hostClient.getKey().getName() + hostClient.getLangData().ARE_OUT_OF_DATE);
@@ -121,7 +125,7 @@ public final class HostClient implements Closeable {
                 }
 
                 if (hostClient.getKey() != null && !hostClient.getKey().isEnable()) {
-                    Debugger.debugOperation("Key Detection: Key disabled (" + hostClient.getKey().getName() + "). Closing client.");
+                    Debugger.debugOperation(() -> "Key Detection: Key disabled (" + hostClient.getKey().getName() + "). Closing client.");
                     hostClient.close();
                     break;
                 }
@@ -132,7 +136,7 @@ public final class HostClient implements Closeable {
     }
 
     public static void waitForTcpEnabled(HostClient hostClient) {
-        Debugger.debugOperation("Waiting for TCP to be enabled for " + hostClient.getIP());
+        Debugger.debugOperation(() -> "Waiting for TCP to be enabled for " + hostClient.getIP());
         CountDownLatch latch = new CountDownLatch(1);
         Thread.startVirtualThread(() -> {
             try {
@@ -147,14 +151,14 @@ public final class HostClient implements Closeable {
         });
         try {
             latch.await();
-            Debugger.debugOperation("TCP now enabled for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "TCP now enabled for " + hostClient.getIP());
         } catch (InterruptedException e) {
             debugOperation(e);
         }
     }
 
     public static void waitForUDPEnabled(HostClient hostClient) {
-        Debugger.debugOperation("Waiting for UDP to be enabled for " + hostClient.getIP());
+        Debugger.debugOperation(() -> "Waiting for UDP to be enabled for " + hostClient.getIP());
         CountDownLatch latch = new CountDownLatch(1);
         Thread.startVirtualThread(() -> {
             try {
@@ -169,7 +173,7 @@ public final class HostClient implements Closeable {
         });
         try {
             latch.await();
-            Debugger.debugOperation("UDP now enabled for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "UDP now enabled for " + hostClient.getIP());
         } catch (InterruptedException e) {
             debugOperation(e);
         }
@@ -177,53 +181,32 @@ public final class HostClient implements Closeable {
 
     public void applyDynamicUpdates() {
         if (this.sequenceKey != null) {
-            Debugger.debugOperation("Applying dynamic update. Rate limit: " + this.sequenceKey.getRate());
+            Debugger.debugOperation(() -> "Applying dynamic update. Rate limit: " + this.sequenceKey.getRate());
             this.globalRateLimiter.setMaxMbps(this.sequenceKey.getRate());
         }
     }
 
     public void startRemoteHeartbeat() {
-        Debugger.debugOperation("Starting remote heartbeat task.");
-        if (this.sequenceKey == null || this.remoteHeartbeatTask != null) {
+        Debugger.debugOperation("Registering remote heartbeat.");
+        if (this.sequenceKey == null) {
             return;
         }
+        // 心跳由 HeartbeatBatcher 每个周期为所有隧道合并发送一次
+        HeartbeatBatcher.register(this);
+    }
 
-        Runnable task = () -> {
-            if (isStopped() || this.sequenceKey == null) {
-                return;
-            }
-
-            try {
-                Protocol.HeartbeatPayload payload = new Protocol.HeartbeatPayload();
-
-                payload.serial = this.sequenceKey.getName();
-                payload.nodeId = ConfigOperator.NODE_ID;
-                payload.port = String.valueOf(this.outPort);
-                payload.timestamp = System.currentTimeMillis();
-                payload.currentConnections = this.activeTcpSockets.size(); // 保持兼容旧字段
-
-                // [新增] 获取外部连接的详细字符串 (T:X U:X)
-                payload.connectionDetail = getExternalConnectionsStr();
+    public Protocol.HeartbeatPayload buildHeartbeatPayload() {
+        Protocol.HeartbeatPayload payload = new Protocol.HeartbeatPayload();
 
-                boolean keepAlive = SequenceKey.PROVIDER.sendHeartbeat(payload);
+        payload.serial = this.sequenceKey.getName();
+        payload.nodeId = ConfigOperator.NODE_ID;
+        payload.port = String.valueOf(this.outPort);
+        payload.timestamp = System.currentTimeMillis();
+        payload.currentConnections = this.activeTcpSockets.size(); // 保持兼容旧字段
 
-                if (!keepAlive) {
-                    ServerLogger.warn("hostClient.kickedByManager", this.sequenceKey.getName());
-                    Debugger.debugOperation("Client kicked by NKM manager.");
-                    this.close();
-                }
-            } catch (Exception e) {
-                ServerLogger.warn("hostClient.heartbeatError", e.getMessage());
-                Debugger.debugOperation("Remote heartbeat failed: " + e.getMessage());
-            }
-        };
-
-        this.remoteHeartbeatTask = ThreadManager.getScheduledExecutor().scheduleAtFixedRate(
-                task,
-                0,
-                Protocol.HEARTBEAT_INTERVAL_MS,
-                TimeUnit.MILLISECONDS
-        );
+        // [新增] 获取外部连接的详细字符串 (T:X U:X)
+        payload.connectionDetail = getExternalConnectionsStr();
+        return payload;
     }
 
     public RateLimiter getGlobalRateLimiter() {
@@ -240,7 +223,7 @@ public final class HostClient implements Closeable {
 
     public void enableCheckAliveThread() {
         HostClient hostClient = this;
-        Debugger.debugOperation("AliveCheck thread started for " + hostClient.getIP());
+        Debugger.debugOperation(() -> "AliveCheck thread started for " + hostClient.getIP());
 
         ThreadManager.runAsync(() -> {
             while (!hostClient.isStopped) {
@@ -248,14 +231,14 @@ public final class HostClient implements Closeable {
                     String message = hostClient.hostServerHook.receiveStr(1000);
 
                     if (message == null) {
-                        Debugger.debugOperation("Received null heartbeat from " + hostClient.getIP() + ". Closing.");
+                        Debugger.debugOperation(() -> "Received null heartbeat from " + hostClient.getIP() + ". Closing.");
                         sayHostClientDiscInfo(hostClient, "HC-Checker:" + getKey().getName());
                         hostClient.close();
                         break;
                     } else if (EXPECTED_HEARTBEAT.equals(message)) {
                         hostClient.refreshHeartbeat();
                     } else {
-                        Debugger.debugOperation("Received command from " + hostClient.getIP() + ": " + message);
+                        Debugger.debugOperation(() -> "Received command from " + hostClient.getIP() + ": " + message);
                         hostClient.refreshHeartbeat();
                         handleHostClientCommand(message);
                     }
@@ -271,7 +254,7 @@ public final class HostClient implements Closeable {
                             continue;
                         }
 
-                        Debugger.debugOperation("Heartbeat timeout (" + timeSinceLastValidHeartbeat + "ms). Closing client " + hostClient.getIP());
+                        Debugger.debugOperation(() -> "Heartbeat timeout (" + timeSinceLastValidHeartbeat + "ms). Closing client " + hostClient.getIP());
                         sayHostClientDiscInfo(hostClient, "HC-Checker:Timeout:" + getKey().getName());
                         hostClient.close();
                         break;
@@ -284,22 +267,22 @@ public final class HostClient implements Closeable {
                     break;
                 }
             }
-            Debugger.debugOperation("AliveCheck thread stopped for " + hostClient.getIP());
+            Debugger.debugOperation(() -> "AliveCheck thread stopped for " + hostClient.getIP());
         });
     }
 
     private void handleHostClientCommand(String message) {
-        Debugger.debugOperation("Handling client command: " + message);
+        Debugger.debugOperation("Handling client command: {}", message);
         String flags = message == null ? "" : message.trim();
         if (!flags.isEmpty() && !"T".equals(flags) && !"U".equals(flags) && !"TU".equals(flags)) {
-            Debugger.debugOperation("Ignoring invalid protocol flags from client: " + message);
+            Debugger.debugOperation("Ignoring invalid protocol flags from client: {}", message);
             return;
         }
 
         boolean enableTcp = NeoProxyServer.MC_ONLY_MODE || flags.contains("T");
         boolean enableUdp = !NeoProxyServer.MC_ONLY_MODE && flags.contains("U");
         if (!canSwitchProtocolState(enableTcp, enableUdp)) {
-            Debugger.debugOperation("Protocol switch rejected because port " + getOutPort() + " is not available for requested protocol state.");
+            Debugger.debugOperation(() -> "Protocol switch rejected because port " + getOutPort() + " is not available for requested protocol state.");
             try {
                 InternetOperator.sendStr(this, languageData.THE_PORT_HAS_ALREADY_BIND);
             } catch (IOException e) {
@@ -333,12 +316,12 @@ public final class HostClient implements Closeable {
             if (openedTcpSocket != null) {
                 clientServerSocket = openedTcpSocket;
                 openedTcpSocket = null;
-                Debugger.debugOperation("Client-Side TCP Socket opened on port " + getOutPort());
+                Debugger.debugOperation(() -> "Client-Side TCP Socket opened on port " + getOutPort());
             }
             if (openedUdpSocket != null) {
                 clientDatagramSocket = openedUdpSocket;
                 openedUdpSocket = null;
-                Debugger.debugOperation("Client-Side UDP Socket opened on port " + getOutPort());
+                Debugger.debugOperation(() -> "Client-Side UDP Socket opened on port " + getOutPort());
             }
 
             setTCPEnabled(enableTcp);
@@ -459,7 +442,7 @@ public final class HostClient implements Closeable {
     }
 
     private void cleanActiveTcpSockets() {
-        Debugger.debugOperation("Cleaning " + activeTcpSockets.size() + " active TCP sockets.");
+        Debugger.debugOperation("Cleaning {} active TCP sockets.", activeTcpSockets.size());
         for (Socket socket : activeTcpSockets) {
             InternetOperator.close(socket);
         }
@@ -467,7 +450,7 @@ public final class HostClient implements Closeable {
     }
 
     private void cleanActiveTransferSockets() {
-        Debugger.debugOperation("Cleaning " + activeTransferSockets.size() + " active transfer sockets.");
+        Debugger.debugOperation("Cleaning {} active transfer sockets.", activeTransferSockets.size());
         for (SecureSocket socket : activeTransferSockets) {
             InternetOperator.close(socket);
         }
@@ -479,14 +462,12 @@ public final class HostClient implements Closeable {
             return;
         }
 
-        Debugger.debugOperation("Closing HostClient " + getIP());
+        Debugger.debugOperation(() -> "Closing HostClient " + getIP());
         this.isStopped = true;
 
-        if (this.remoteHeartbeatTask != null) {
-            this.remoteHeartbeatTask.cancel(true);
-            this.remoteHeartbeatTask = null;
-        }
+        HeartbeatBatcher.unregister(this);
 
+        controlChannel.close();
         cleanActiveTcpSockets();
         cleanActiveTransferSockets();
         neoproxy.neoproxyserver.NeoProxyServer.availableHostClient.remove(this);
@@ -499,10 +480,14 @@ public final class HostClient implements Closeable {
         neoproxy.neoproxyserver.core.InternetOperator.close(clientDatagramSocket);
 
         if (this.sequenceKey != null) {
-            Debugger.debugOperation("Releasing key " + this.sequenceKey.getName() + " on close.");
+            // 动态端口在宽限期内为该密钥保留，重连时可直接取回同一个公网端口
+            if (this.sequenceKey.getPort() == SequenceKey.DYNAMIC_PORT && this.outPort > 0) {
+                PortReservationCache.reserve(this.sequenceKey.getName(), this.outPort);
+            }
+            Debugger.debugOperation(() -> "Releasing key " + this.sequenceKey.getName() + " on close.");
             neoproxy.neoproxyserver.core.management.SequenceKey.releaseKey(this.sequenceKey.getName());
         }
-        Debugger.debugOperation("HostClient closed: " + getIP());
+        Debugger.debugOperation(() -> "HostClient closed: " + getIP());
     }
 
     /**
@@ -559,6 +544,10 @@ public final class HostClient implements Closeable {
         }
     }
 
+    public HostControlChannel getControlChannel() {
+        return controlChannel;
+    }
+
     public SecureSocket getHostServerHook() {
         return hostServerHook;
     }
@@ -631,6 +620,14 @@ public final class HostClient implements Closeable {
         this.cachedISP = cachedISP;
     }
 
+    public boolean isControlFrameEnabled() {
+        return controlFrameEnabled;
+    }
+
+    public void setControlFrameEnabled(boolean controlFrameEnabled) {
+        this.controlFrameEnabled = controlFrameEnabled;
+    }
+
     public boolean isTCPEnabled() {
         return isTCPEnabled;
     }
@@ -0,0 +1,167 @@
+package neoproxy.neoproxyserver.core;
+
+import neoproxy.neoproxyserver.core.ControlFrameCodec.ControlMessage;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HostControlChannel - Hook 通道单写者出站队列
+ *
+ * <p>同一个 HostClient 的 Hook 通道会被 TCP 接入任务、UDP 会话建立、KeyDetection、
+ * 余额通知等多个线程同时写入。本类为每个客户端提供一个出站队列，由单一写者排空：</p>
+ * <ul>
+ *   <li>优先级：建连请求（OPEN_TCP / OPEN_UDP）先于余额信息</li>
+ *   <li>合并：一次排空的所有消息作为一批写出；已协商二进制控制帧的客户端只需一次加密写出，
+ *       余额信息只保留最新一条（旧值已经没有意义）</li>
+ *   <li>有界：建连队列有容量上限，慢客户端只会让新消息被拒绝，而不会撑爆堆内存</li>
+ * </ul>
+ *
+ * <p>同步发送（{@link #sendNow}）与后台排空共用同一把写锁，并在写出前先排空队列，
+ * 因此同一客户端的所有写出严格串行，且不会越过更早入队的消息。通道关闭后两者都不再写出。</p>
+ *
+ * <p>后台写出失败说明 Hook 通道已断开，本批中的建连请求无法送达，此时直接关闭客户端，
+ * 由 HostClient 的清理逻辑统一回收，而不是静默丢弃后继续接受新的建连请求。</p>
+ *
+ * <p>线程安全：此类是线程安全的。使用 ReentrantLock 避免虚拟线程 Pinning。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class HostControlChannel {
+    private final HostClient hostClient;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ArrayBlockingQueue<ControlMessage> urgentQueue;
+    private final AtomicReference<String> pendingBalance = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final LongAdder droppedMessages = new LongAdder();
+    private volatile boolean closed = false;
+
+    public HostControlChannel(HostClient hostClient) {
+        this(hostClient, ServerConstants.CONTROL_QUEUE_CAPACITY);
+    }
+
+    HostControlChannel(HostClient hostClient, int capacity) {
+        this.hostClient = hostClient;
+        this.urgentQueue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 入队高优先级消息（建连请求等），由后台写者尽快发出
+     *
+     * @return 队列已满或通道已关闭时返回 false，调用方应视为发送失败
+     */
+    public boolean enqueueUrgent(ControlMessage message) {
+        if (closed || !urgentQueue.offer(message)) {
+            droppedMessages.increment();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 提交余额信息。未发出的旧余额信息会被新值覆盖，同一时刻最多占用一个槽位
+     */
+    public void enqueueBalance(String balanceInfo) {
+        if (closed) {
+            return;
+        }
+        pendingBalance.set(balanceInfo);
+        scheduleDrain();
+    }
+
+    /**
+     * 同步发送一条消息：先排空此前入队的消息，再写出本消息，返回时数据已交给 Socket
+     *
+     * @throws IOException 通道已关闭或写出失败时抛出
+     */
+    public void sendNow(ControlMessage message) throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Control channel closed");
+            }
+            List<ControlMessage> batch = collectPending();
+            batch.add(message);
+            InternetOperator.writeMessages(hostClient, batch);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 因队列已满或通道已关闭而被拒绝的建连请求数
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    public int getPendingCount() {
+        return urgentQueue.size() + (pendingBalance.get() == null ? 0 : 1);
+    }
+
+    /**
+     * 关闭通道并丢弃所有未发出的消息
+     */
+    public void close() {
+        closed = true;
+        urgentQueue.clear();
+        pendingBalance.set(null);
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            ThreadManager.runAsync(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        do {
+            IOException failure = null;
+            writeLock.lock();
+            try {
+                List<ControlMessage> batch = collectPending();
+                if (!batch.isEmpty() && !closed) {
+                    InternetOperator.writeMessages(hostClient, batch);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                writeLock.unlock();
+                draining.set(false);
+            }
+            if (failure != null) {
+                // 在写锁外关闭，HostClient.close() 会回调本通道的 close()
+                Debugger.debugOperation(failure);
+                Debugger.debugOperation(() -> "Control channel write failed, closing client " + hostClient.getIP());
+                hostClient.close();
+                return;
+            }
+            // 释放标记后再检查一次，避免与并发入队者之间丢失唤醒
+        } while (hasPending() && draining.compareAndSet(false, true));
+    }
+
+    private List<ControlMessage> collectPending() {
+        List<ControlMessage> batch = new ArrayList<>(urgentQueue.size() + 1);
+        urgentQueue.drainTo(batch);
+        String balance = pendingBalance.getAndSet(null);
+        if (balance != null) {
+            batch.add(ControlMessage.info(balance));
+        }
+        return batch;
+    }
+
+    private boolean hasPending() {
+        return !closed && (!urgentQueue.isEmpty() || pendingBalance.get() != null);
+    }
+}
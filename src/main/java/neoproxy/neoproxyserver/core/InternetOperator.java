@@ -3,10 +3,12 @@ package neoproxy.neoproxyserver.core;
 import top.ceroxe.api.management.bufferedFile.SizeCalculator;
 import top.ceroxe.api.net.SecureSocket;
 import neoproxy.neoproxyserver.core.exceptions.NoMoreNetworkFlowException;
+import neoproxy.neoproxyserver.core.management.TransferSocketAdapter;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.*;
+import java.util.List;
 
 import static neoproxy.neoproxyserver.core.Debugger.debugOperation;
 
@@ -16,9 +18,55 @@ public final class InternetOperator {
     private InternetOperator() {
     }
 
+    /**
+     * 同步发送提示信息。经由客户端的出站队列串行写出，返回时数据已交给 Socket
+     */
     public static void sendStr(HostClient hostClient, String str) throws IOException {
-        int length = hostClient.getHostServerHook().sendStr(str);
+        hostClient.getControlChannel().sendNow(ControlFrameCodec.ControlMessage.info(str));
+    }
+
+    /**
+     * 异步发送余额信息。尚未发出的旧余额信息会被覆盖，不阻塞调用线程
+     */
+    public static void sendBalance(HostClient hostClient, String balanceInfo) {
+        hostClient.getControlChannel().enqueueBalance(balanceInfo);
+    }
+
+    /**
+     * 通知客户端为新的外部连接建立传输通道（高优先级，异步写出）。
+     * 已协商二进制控制帧的客户端收到 OPEN_TCP/OPEN_UDP 帧，旧客户端收到 sendSocketTCP/sendSocketUDP 文本命令。
+     *
+     * @return 出站队列已满（客户端消费过慢）或已关闭时返回 false
+     */
+    public static boolean sendOpenSocket(HostClient hostClient, int connType, long socketID, InetAddress address, int port) {
+        ControlFrameCodec.ControlMessage message = connType == TransferSocketAdapter.CONN_TYPE.UDP
+                ? ControlFrameCodec.ControlMessage.openUdp(socketID, address, port)
+                : ControlFrameCodec.ControlMessage.openTcp(socketID, address, port);
+        return hostClient.getControlChannel().enqueueUrgent(message);
+    }
+
+    /**
+     * 实际写出一批控制消息，只应由 {@link HostControlChannel} 在持有写锁时调用。
+     * 已协商二进制控制帧时整批合并为尽量少的帧，否则逐条按旧文本协议写出。
+     */
+    static void writeMessages(HostClient hostClient, List<ControlFrameCodec.ControlMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        int length = 0;
+        if (hostClient.isControlFrameEnabled()) {
+            for (byte[] frame : ControlFrameCodec.encode(messages)) {
+                length += hostClient.getHostServerHook().sendBytes(frame);
+            }
+        } else {
+            for (ControlFrameCodec.ControlMessage message : messages) {
+                length += hostClient.getHostServerHook().sendStr(message.toLegacyText());
+            }
+        }
+        chargeControlTraffic(hostClient, length);
+    }
 
+    private static void chargeControlTraffic(HostClient hostClient, int length) {
         if (hostClient.getKey() != null) {
             try {
                 hostClient.getKey().mineMib("InternetOperator", SizeCalculator.byteToMib(length));
@@ -79,7 +127,7 @@ public final class InternetOperator {
 
     public static void sendCommand(HostClient hostClient, String command) {
         try {
-            sendStr(hostClient, COMMAND_PREFIX + command);
+            hostClient.getControlChannel().sendNow(ControlFrameCodec.ControlMessage.command(command));
         } catch (Exception ignored) {
         }
     }
@@ -0,0 +1,88 @@
+package neoproxy.neoproxyserver.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * LogRingBuffer - 有界无锁多生产者单消费者环形队列
+ *
+ * <p>生产者用 CAS 推进 tail 领取槽位，再把元素写入槽位完成发布；消费者按 head 顺序读取，
+ * 遇到已领取但尚未发布的空槽就停下，下次再读。满时 {@link #offer} 直接返回 false，不阻塞也不分配。</p>
+ *
+ * <p>【并发】任意多个线程可以同时 offer；drain 只能由同一个线程调用。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class LogRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 只有消费者写；生产者读它判断是否已满
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return 队列已满时为 false
+     */
+    boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.set((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * 按入队顺序取出至多 limit 个元素
+     *
+     * @return 取出的个数
+     */
+    int drain(Consumer<? super E> consumer, int limit) {
+        long position = head;
+        int count = 0;
+        while (count < limit) {
+            int index = (int) position & mask;
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            // 先清空槽位再推进 head，生产者看到空位时槽位一定已经是 null；
+            // 逐个推进，consumer 抛异常也不会把队列卡住
+            slots.set(index, null);
+            head = ++position;
+            count++;
+            consumer.accept(element);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * @return 已领取的槽位总数，即入队过的元素总数
+     */
+    long enqueued() {
+        return tail.get();
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
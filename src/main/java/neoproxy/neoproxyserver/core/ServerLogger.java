@@ -1,8 +1,12 @@
 package neoproxy.neoproxyserver.core;
 
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.AsyncLogWriter.Level;
+import neoproxy.neoproxyserver.core.AsyncLogWriter.LogEvent;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
 
 import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.text.MessageFormat;
 import java.util.Locale;
@@ -12,6 +16,10 @@ import java.util.ResourceBundle;
 /**
  * 国际化日志工具类
  * 负责根据当前设置的Locale加载资源文件并格式化日志消息。
+ * <p>
+ * 【异步】info / warn / error / logRaw 只把资源键和原始参数交给 {@link AsyncLogWriter}，
+ * 查资源、格式化与写出都在后台线程上进行；队列满时的处理见 {@link AsyncLogWriter}。
+ * 需要确保日志已写出时（如退出前）调用 {@link #flush()}。
  */
 public class ServerLogger {
 
@@ -20,9 +28,13 @@ public class ServerLogger {
     public static boolean alert = true;
     private static ResourceBundle bundle;
     private static Locale currentLocale = Locale.ENGLISH;
+    private static final AsyncLogWriter WRITER = new AsyncLogWriter(
+            ServerConstants.LOG_RING_CAPACITY, ServerConstants.LOG_DRAIN_BATCH,
+            ServerLogger::write, ServerLogger::reportDropped);
 
     static {
         setLocale(currentLocale);
+        Runtime.getRuntime().addShutdownHook(new Thread(ServerLogger::flush));
     }
 
     // ==================== 信息 ====================
@@ -61,8 +73,7 @@ public class ServerLogger {
      * @param args 格式化参数
      */
     public static void info(String key, Object... args) {
-        String message = getMessage(key, args);
-        writeInfo("NeoProxyServer", message);
+        WRITER.submit(new LogEvent(Level.INFO, "NeoProxyServer", key, args, null, null));
     }
 
     // ==================== 警告 ====================
@@ -75,8 +86,7 @@ public class ServerLogger {
      * @param args   格式化参数
      */
     public static void infoWithSource(String source, String key, Object... args) {
-        String message = getMessage(key, args);
-        writeInfo(source, message);
+        WRITER.submit(new LogEvent(Level.INFO, source, key, args, null, null));
     }
 
     /**
@@ -86,8 +96,7 @@ public class ServerLogger {
      * @param args 格式化参数
      */
     public static void warn(String key, Object... args) {
-        String message = getMessage(key, args);
-        writeWarn("NeoProxyServer", message);
+        WRITER.submit(new LogEvent(Level.WARN, "NeoProxyServer", key, args, null, null));
     }
 
     /**
@@ -98,8 +107,7 @@ public class ServerLogger {
      * @param args   格式化参数
      */
     public static void warnWithSource(String source, String key, Object... args) {
-        String message = getMessage(key, args);
-        writeWarn(source, message);
+        WRITER.submit(new LogEvent(Level.WARN, source, key, args, null, null));
     }
 
     // ==================== 错误 ====================
@@ -111,8 +119,7 @@ public class ServerLogger {
      * @param args 格式化参数
      */
     public static void error(String key, Object... args) {
-        String message = getMessage(key, args);
-        writeError("NeoProxyServer", message, null);
+        WRITER.submit(new LogEvent(Level.ERROR, "NeoProxyServer", key, args, null, null));
     }
 
     /**
@@ -123,8 +130,7 @@ public class ServerLogger {
      * @param args      格式化参数
      */
     public static void error(String key, Throwable throwable, Object... args) {
-        String message = getMessage(key, args);
-        writeError("NeoProxyServer", message, throwable);
+        WRITER.submit(new LogEvent(Level.ERROR, "NeoProxyServer", key, args, null, throwable));
     }
 
     /**
@@ -135,8 +141,7 @@ public class ServerLogger {
      * @param args   格式化参数
      */
     public static void errorWithSource(String source, String key, Object... args) {
-        String message = getMessage(key, args);
-        writeError(source, message, null);
+        WRITER.submit(new LogEvent(Level.ERROR, source, key, args, null, null));
     }
 
     /**
@@ -148,8 +153,7 @@ public class ServerLogger {
      * @param args      格式化参数
      */
     public static void errorWithSource(String source, String key, Throwable throwable, Object... args) {
-        String message = getMessage(key, args);
-        writeError(source, message, throwable);
+        WRITER.submit(new LogEvent(Level.ERROR, source, key, args, null, throwable));
     }
 
     /**
@@ -169,12 +173,7 @@ public class ServerLogger {
             // 【新方案】在格式化之前，将所有数字参数转换为字符串
             Object[] formattedArgs = new Object[args.length];
             for (int i = 0; i < args.length; i++) {
-                if (args[i] instanceof Number) {
-                    // 使用 String.valueOf 来转换数字，它不会添加任何千位分隔符
-                    formattedArgs[i] = String.valueOf(args[i]);
-                } else {
-                    formattedArgs[i] = args[i];
-                }
+                formattedArgs[i] = formatArg(args[i]);
             }
             // 现在使用标准的 MessageFormat，但它的参数已经是字符串了，不会再格式化数字
             return MessageFormat.format(pattern, formattedArgs);
@@ -184,6 +183,30 @@ public class ServerLogger {
         }
     }
 
+    /**
+     * 把单个参数转成格式化用的值。
+     * <p>
+     * 【异步】连接相关的参数以原始对象（{@link Socket}、{@link HostClient}、{@link InetSocketAddress}）提交，
+     * 在这里——也就是后台线程上——才拼成 {@code ip:port}，调用方不为地址字符串付出开销。
+     * Socket 关闭后仍返回关闭前的对端地址，所以晚一点格式化不影响内容。
+     */
+    private static Object formatArg(Object arg) {
+        if (arg instanceof Number) {
+            // 使用 String.valueOf 来转换数字，它不会添加任何千位分隔符
+            return String.valueOf(arg);
+        }
+        if (arg instanceof Socket socket) {
+            return InternetOperator.getInternetAddressAndPort(socket);
+        }
+        if (arg instanceof HostClient hostClient) {
+            return hostClient.getAddressAndPort();
+        }
+        if (arg instanceof InetSocketAddress address) {
+            return address.getAddress().getHostAddress() + ":" + address.getPort();
+        }
+        return arg;
+    }
+
     /**
      * 记录原始的、不需要国际化的日志消息。
      *
@@ -191,7 +214,30 @@ public class ServerLogger {
      * @param message 原始消息
      */
     public static void logRaw(String source, String message) {
-        writeInfo(source, message);
+        WRITER.submit(new LogEvent(Level.INFO, source, null, null, message, null));
+    }
+
+    /**
+     * 等待已提交的日志全部写出，最多等待 {@link ServerConstants#LOG_FLUSH_TIMEOUT_MILLIS} 毫秒
+     */
+    public static void flush() {
+        WRITER.flush(ServerConstants.LOG_FLUSH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 在后台线程上格式化并写出一个事件
+     */
+    private static void write(LogEvent event) {
+        String message = event.key() != null ? getMessage(event.key(), event.args()) : event.message();
+        switch (event.level()) {
+            case INFO -> writeInfo(event.source(), message);
+            case WARN -> writeWarn(event.source(), message);
+            case ERROR -> writeError(event.source(), message, event.throwable());
+        }
+    }
+
+    private static void reportDropped(long count) {
+        writeWarn("ServerLogger", getMessage("serverLogger.eventsDropped", count));
     }
 
     private static void writeInfo(String source, String message) {
@@ -234,42 +280,44 @@ public class ServerLogger {
     // 这些方法的存在是 InfoBox 等类中调用它们的原因。
 
     public static void sayHostClientDiscInfo(HostClient hostClient, String subject) {
-        ServerLogger.infoWithSource(subject, "infoBox.hostClientDisconnected", hostClient.getAddressAndPort());
+        ServerLogger.infoWithSource(subject, "infoBox.hostClientDisconnected", hostClient);
     }
 
     public static void sayClientTCPConnectBuildUpInfo(HostClient hostClient, Socket client) {
         if (alert) {
-            ServerLogger.info("infoBox.tcpConnectionBuild", InternetOperator.getInternetAddressAndPort(client), hostClient.getAddressAndPort());
+            ServerLogger.info("infoBox.tcpConnectionBuild", client, hostClient);
         }
     }
 
     public static void sayClientUDPConnectBuildUpInfo(HostClient hostClient, DatagramPacket datagramPacket) {
         if (alert) {
-            ServerLogger.info("infoBox.udpConnectionBuild", InternetOperator.getInternetAddressAndPort(datagramPacket), hostClient.getAddressAndPort());
+            // DatagramPacket 会被接收循环复用，这里先取出地址和端口
+            ServerLogger.info("infoBox.udpConnectionBuild",
+                    new InetSocketAddress(datagramPacket.getAddress(), datagramPacket.getPort()), hostClient);
         }
     }
 
     public static void sayClientTCPConnectDestroyInfo(HostClient hostClient, Socket client) {
         if (alert) {
-            ServerLogger.info("infoBox.tcpConnectionDestroy", InternetOperator.getInternetAddressAndPort(client), hostClient.getAddressAndPort());
+            ServerLogger.info("infoBox.tcpConnectionDestroy", client, hostClient);
         }
     }
 
     public static void sayClientUDPConnectDestroyInfo(HostClient hostClient, String ipAndPort) {
         if (alert) {
-            ServerLogger.info("infoBox.udpConnectionDestroy", ipAndPort, hostClient.getAddressAndPort());
+            ServerLogger.info("infoBox.udpConnectionDestroy", ipAndPort, hostClient);
         }
     }
 
     public static void sayClientSuccConnectToChaSerButHostClientTimeOut(HostClient hostClient) {
         if (alert) {
-            ServerLogger.info("infoBox.clientConnectButHostTimeout", hostClient.getAddressAndPort());
+            ServerLogger.info("infoBox.clientConnectButHostTimeout", hostClient);
         }
     }
 
     public static void sayKillingClientSideConnection(Socket client) {
         if (alert) {
-            ServerLogger.info("infoBox.killingClientConnection", InternetOperator.getInternetAddressAndPort(client));
+            ServerLogger.info("infoBox.killingClientConnection", client);
         }
     }
 }
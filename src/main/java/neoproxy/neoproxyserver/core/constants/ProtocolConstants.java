@@ -76,6 +76,40 @@ public final class ProtocolConstants {
      */
     public static final int STATUS_SERVER_ERROR = 500;
 
+    // 二进制控制帧（Hook 通道）
+    /**
+     * 控制帧协议版本
+     */
+    public static final byte CONTROL_FRAME_VERSION = 1;
+    /**
+     * 客户端在握手信息第五段声明的能力标识，声明后服务端才会切换到二进制控制帧
+     */
+    public static final String CONTROL_FRAME_CAPABILITY = "cf1";
+    /**
+     * 服务端确认切换到二进制控制帧的文本命令（切换前最后一条文本命令）
+     */
+    public static final String CONTROL_FRAME_ACK = "controlFrame";
+    /**
+     * 单帧最多携带的控制消息条数（帧头计数字段为 1 字节）
+     */
+    public static final int CONTROL_FRAME_MAX_MESSAGES = 255;
+    /**
+     * 控制消息：请求客户端建立 TCP 传输连接
+     */
+    public static final byte CTRL_OPEN_TCP = 0x10;
+    /**
+     * 控制消息：请求客户端建立 UDP 传输连接
+     */
+    public static final byte CTRL_OPEN_UDP = 0x11;
+    /**
+     * 控制消息：文本命令（等价于旧协议中带 ":>" 前缀的命令）
+     */
+    public static final byte CTRL_COMMAND = 0x12;
+    /**
+     * 控制消息：提示信息（等价于旧协议中的普通文本消息）
+     */
+    public static final byte CTRL_INFO = 0x13;
+
     private ProtocolConstants() {
         throw new AssertionError("常量类禁止实例化");
     }
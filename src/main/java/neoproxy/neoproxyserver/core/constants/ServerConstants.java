@@ -42,6 +42,11 @@ public final class ServerConstants {
      */
     public static final int DEFAULT_SAVE_DELAY = 3000;
 
+    /**
+     * 默认余额提示检查间隔（毫秒） — 与 config.cfg TELL_BALANCE_INTERVAL 一致
+     */
+    public static final int DEFAULT_TELL_BALANCE_INTERVAL = 5000;
+
     /**
      * 默认检测延迟（毫秒）
      */
@@ -97,6 +102,131 @@ public final class ServerConstants {
      */
     public static final int DYNAMIC_PORT = -1;
 
+    /**
+     * 默认动态端口保留时长（秒） — 与 config.cfg PORT_RESERVE_SECONDS 一致
+     */
+    public static final int DEFAULT_PORT_RESERVE_SECONDS = 60;
+
+    /**
+     * 动态端口保留表的最大条目数。超出后按最早保留的顺序淘汰，防止大量一次性密钥撑爆内存。
+     */
+    public static final int PORT_RESERVE_MAX_ENTRIES = 4096;
+
+    /**
+     * 默认密钥缓存容量 — 与 config.cfg KEY_CACHE_SIZE 一致
+     */
+    public static final int DEFAULT_KEY_CACHE_SIZE = 10000;
+
+    /**
+     * 默认密钥缓存存活时间（秒） — 与 config.cfg KEY_CACHE_TTL 一致
+     */
+    public static final int DEFAULT_KEY_CACHE_TTL_SECONDS = 300;
+
+    /**
+     * 默认不存在密钥的负向缓存时间（秒） — 与 config.cfg KEY_NEGATIVE_CACHE_TTL 一致
+     */
+    public static final int DEFAULT_KEY_NEGATIVE_TTL_SECONDS = 10;
+
+    /**
+     * 缓存条目寿命过了该百分比后，再被访问时异步提前刷新
+     */
+    public static final int KEY_CACHE_REFRESH_AHEAD_PERCENT = 80;
+
+    /**
+     * 默认远程密钥快照时效（秒） — 与 sync.cfg KEY_STALE_SECONDS 一致
+     */
+    public static final int DEFAULT_KEY_STALE_SECONDS = 300;
+
+    /**
+     * NKM 请求连续失败多少次后熔断
+     */
+    public static final int NKM_BREAKER_FAILURE_THRESHOLD = 5;
+
+    /**
+     * NKM 熔断后多少秒再放行探测请求
+     */
+    public static final int NKM_BREAKER_OPEN_SECONDS = 30;
+
+    /**
+     * 默认 NKM 并发请求上限 — 与 sync.cfg MAX_CONCURRENT_REQUESTS 一致
+     */
+    public static final int DEFAULT_NKM_MAX_CONCURRENT_REQUESTS = 32;
+
+    /**
+     * NKM 连续出现多少次连接级错误后重建 HttpClient
+     */
+    public static final int NKM_CLIENT_REBUILD_FAILURES = 3;
+
+    /**
+     * 默认用量账本合并间隔（秒） — 与 config.cfg LEDGER_COMPACT_INTERVAL 一致
+     */
+    public static final int DEFAULT_LEDGER_COMPACT_SECONDS = 30;
+
+    /**
+     * 默认 sk 存储后端 — 与 config.cfg STORAGE_BACKEND 一致
+     */
+    public static final String DEFAULT_STORAGE_BACKEND = "sqlite";
+
+    /**
+     * 用量账本单个段文件的大小上限，写满后切换到新段并触发一次合并
+     */
+    public static final long LEDGER_SEGMENT_MAX_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * 批量导入时每个事务写入的密钥数
+     */
+    public static final int KEY_IMPORT_BATCH_SIZE = 1000;
+
+    /**
+     * 批量导入每处理多少行报告一次进度
+     */
+    public static final int KEY_IMPORT_PROGRESS_INTERVAL = 10_000;
+
+    /**
+     * key list 每页显示的本地密钥数
+     */
+    public static final int KEY_LIST_PAGE_SIZE = 100;
+
+    /**
+     * 封禁日志至少积累多少行才压缩回 banList.json；规则更多时以规则数为准
+     */
+    public static final int BAN_JOURNAL_COMPACT_MIN_ENTRIES = 1024;
+
+    /**
+     * 默认每个来源每秒允许的新连接数 — 与 config.cfg AUTO_BAN_CONNECTS_PER_SECOND 一致
+     */
+    public static final int DEFAULT_AUTO_BAN_CONNECTS_PER_SECOND = 100;
+
+    /**
+     * 默认超速后临时封禁的秒数 — 与 config.cfg AUTO_BAN_SECONDS 一致
+     */
+    public static final int DEFAULT_AUTO_BAN_SECONDS = 300;
+
+    /**
+     * 连接速率 Count-Min Sketch 每行的计数器数。共 2 × 4 行，约占 512 KiB
+     */
+    public static final int CONNECT_RATE_SKETCH_WIDTH = 16384;
+
+    /**
+     * 临时封禁表的最大条目数，防止伪造大量来源的洪泛撑爆内存
+     */
+    public static final int TEMP_BAN_MAX_ENTRIES = 65536;
+
+    /**
+     * 归属地查询结果 LRU 缓存的最大条目数
+     */
+    public static final int GEOLOCATION_CACHE_SIZE = 8192;
+
+    /**
+     * 每个 ip2region 库的 Searcher 数，即同时进行的查询数上限。LOW_RAM 模式下每个占一个文件句柄
+     */
+    public static final int GEOLOCATION_SEARCHER_POOL_SIZE = Math.clamp(Runtime.getRuntime().availableProcessors(), 2, 8);
+
+    /**
+     * 每个客户端 Hook 通道出站队列（建连队列、信息队列各自）的容量。满了说明客户端消费过慢，新的建连请求会被直接拒绝。
+     */
+    public static final int CONTROL_QUEUE_CAPACITY = 1024;
+
     /**
      * 默认本地域名 — 与 config.cfg LOCAL_DOMAIN_NAME 一致
      */
@@ -107,6 +237,51 @@ public final class ServerConstants {
      */
     public static final String DEFAULT_LANGUAGE = "zh-CN";
 
+    /**
+     * 异步日志队列容量（条）。队列满时 INFO 被丢弃并计数，WARN / ERROR 改为同步写出
+     */
+    public static final int LOG_RING_CAPACITY = 8192;
+
+    /**
+     * 日志后台线程每批最多连续写出的条数
+     */
+    public static final int LOG_DRAIN_BATCH = 256;
+
+    /**
+     * ServerLogger.flush() 最长等待时间（毫秒）
+     */
+    public static final int LOG_FLUSH_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * 默认访问日志单个文件大小上限（MiB） — 与 config.cfg ACCESS_LOG_MAX_MB 一致
+     */
+    public static final int DEFAULT_ACCESS_LOG_MAX_MB = 64;
+
+    /**
+     * 默认访问日志按时切分间隔（小时） — 与 config.cfg ACCESS_LOG_ROTATE_HOURS 一致
+     */
+    public static final int DEFAULT_ACCESS_LOG_ROTATE_HOURS = 24;
+
+    /**
+     * 默认保留的已切分访问日志文件数 — 与 config.cfg ACCESS_LOG_MAX_FILES 一致
+     */
+    public static final int DEFAULT_ACCESS_LOG_MAX_FILES = 14;
+
+    /**
+     * 访问日志队列容量（条）。队列满时新记录被丢弃并计数
+     */
+    public static final int ACCESS_LOG_RING_CAPACITY = 16384;
+
+    /**
+     * 访问日志后台线程每批最多写出的条数，每批写完 flush 一次
+     */
+    public static final int ACCESS_LOG_DRAIN_BATCH = 512;
+
+    /**
+     * 访问日志队列为空时后台线程的休眠时长（毫秒），也是记录写出的最大延迟
+     */
+    public static final int ACCESS_LOG_IDLE_PARK_MILLIS = 1000;
+
     private ServerConstants() {
         throw new AssertionError("常量类禁止实例化");
     }
@@ -0,0 +1,105 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.HostClient;
+import neoproxy.neoproxyserver.core.InternetOperator;
+import neoproxy.neoproxyserver.core.LanguageData;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import neoproxy.neoproxyserver.core.threads.TCPTransformer;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BalanceNotifier - 余额提示的周期性合并发送
+ *
+ * <p>以前每条 TCP/UDP 连接的两个传输方向各自累计流量，每满 {@link TCPTransformer#TELL_BALANCE_MIB}
+ * 就在数据面线程里加锁读余额并做一次加密发送，高速下载时会把控制通道刷满。</p>
+ *
+ * <p>现在改为按密钥（而非按连接）计算：共享调度器每 {@link #INTERVAL_MS} 毫秒检查一次在线密钥，
+ * 仅当余额相对上次提示的变化量达到 {@link TCPTransformer#TELL_BALANCE_MIB} 时，
+ * 才向使用该密钥的客户端各发送一条提示。数据面线程不再参与。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class BalanceNotifier {
+    /**
+     * 检查间隔（毫秒），即单个密钥两次余额提示之间的最短间隔
+     */
+    public static int INTERVAL_MS = ServerConstants.DEFAULT_TELL_BALANCE_INTERVAL;
+
+    // 密钥名 → 上次提示（或握手时告知）的余额
+    private static final Map<String, Double> LAST_NOTIFIED = new ConcurrentHashMap<>();
+    private static ScheduledFuture<?> task;
+
+    private BalanceNotifier() {
+    }
+
+    public static synchronized void start() {
+        if (task != null) {
+            return;
+        }
+        task = ThreadManager.getScheduledExecutor().scheduleWithFixedDelay(() -> {
+            try {
+                notifyChangedBalances(NeoProxyServer.availableHostClient);
+            } catch (Exception e) {
+                Debugger.debugOperation(e);
+            }
+        }, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Debugger.debugOperation("BalanceNotifier started, interval " + INTERVAL_MS + "ms");
+    }
+
+    public static synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        LAST_NOTIFIED.clear();
+    }
+
+    /**
+     * 执行一轮检查：按密钥分组，余额变化足够大时向该密钥的所有在线客户端发送一次提示
+     *
+     * @param clients 当前在线客户端
+     * @return 本轮发出提示的密钥数
+     */
+    static int notifyChangedBalances(Collection<HostClient> clients) {
+        Map<String, List<HostClient>> clientsByKey = new HashMap<>();
+        for (HostClient client : clients) {
+            SequenceKey key = client.getKey();
+            if (key == null || client.isStopped()) {
+                continue;
+            }
+            clientsByKey.computeIfAbsent(key.getName(), k -> new ArrayList<>(1)).add(client);
+        }
+        // 下线的密钥不再跟踪，重新上线时以握手告知的余额为新基线
+        LAST_NOTIFIED.keySet().retainAll(clientsByKey.keySet());
+
+        int notified = 0;
+        for (Map.Entry<String, List<HostClient>> entry : clientsByKey.entrySet()) {
+            List<HostClient> keyClients = entry.getValue();
+            double balance = keyClients.get(0).getKey().getBalance();
+            Double last = LAST_NOTIFIED.putIfAbsent(entry.getKey(), balance);
+            if (last == null || Math.abs(last - balance) < TCPTransformer.TELL_BALANCE_MIB) {
+                continue;
+            }
+            LAST_NOTIFIED.put(entry.getKey(), balance);
+            for (HostClient client : keyClients) {
+                LanguageData languageData = client.getLangData();
+                InternetOperator.sendBalance(client, languageData.THIS_ACCESS_CODE_HAVE + balance + languageData.MB_OF_FLOW_LEFT);
+            }
+            notified++;
+        }
+        return notified;
+    }
+}
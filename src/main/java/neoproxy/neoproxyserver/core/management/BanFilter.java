@@ -0,0 +1,139 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * BanFilter - 增量维护的封禁过滤器，accept 路径的 {@link IPChecker#isBanned} 查询它
+ *
+ * <p>以前每次封禁 / 解封都把整个 {@link BanSet} 重建一遍，并把 hook 端的忽略列表清空再整体填回，
+ * 两者都是 O(规则数)。现在按规则类型分开维护：</p>
+ * <ul>
+ *   <li>单个地址：以 InetAddress 为键的并发集合，增删 O(1)；InetAddress 按地址比较，查询不分配对象</li>
+ *   <li>CIDR 前缀：只在前缀规则本身增删时重建 {@link BanSet}（前缀规则通常很少）</li>
+ *   <li>hook 端忽略列表：只增删变动的那一个地址；列表对象换了（hook 端口重建）才整体同步一次</li>
+ * </ul>
+ *
+ * <p>【并发】查询无锁；修改由 {@link IPChecker} 在持有 LOCK 时调用。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class BanFilter {
+    private final Set<InetAddress> exact = ConcurrentHashMap.newKeySet();
+    // 单个地址规则的原始字符串，与 hook 端忽略列表的内容一致
+    private final Set<String> exactRules = new LinkedHashSet<>();
+    private final Set<String> prefixRules = new HashSet<>();
+    private final Supplier<CopyOnWriteArrayList<String>> ignoreListSupplier;
+    private volatile BanSet prefixes = BanSet.EMPTY;
+    private CopyOnWriteArrayList<String> syncedIgnoreList;
+
+    /**
+     * @param ignoreListSupplier 返回 hook 端当前的忽略列表，hook 端口尚未创建时返回 null
+     */
+    BanFilter(Supplier<CopyOnWriteArrayList<String>> ignoreListSupplier) {
+        this.ignoreListSupplier = ignoreListSupplier;
+    }
+
+    boolean contains(InetAddress address) {
+        return address != null && (exact.contains(address) || prefixes.contains(address));
+    }
+
+    /**
+     * @param rule 已规范化的单个地址或 {@code 网络地址/长度}
+     */
+    void add(String rule) {
+        if (rule.indexOf('/') >= 0) {
+            if (prefixRules.add(rule)) {
+                prefixes = BanSet.of(prefixRules);
+            }
+            return;
+        }
+        InetAddress address = parseLiteral(rule);
+        if (address == null || !exactRules.add(rule)) {
+            return;
+        }
+        exact.add(address);
+        CopyOnWriteArrayList<String> ignoreList = ignoreList();
+        if (ignoreList != null) {
+            ignoreList.addIfAbsent(rule);
+        }
+    }
+
+    void remove(String rule) {
+        if (rule.indexOf('/') >= 0) {
+            if (prefixRules.remove(rule)) {
+                prefixes = BanSet.of(prefixRules);
+            }
+            return;
+        }
+        if (!exactRules.remove(rule)) {
+            return;
+        }
+        InetAddress address = parseLiteral(rule);
+        if (address != null) {
+            exact.remove(address);
+        }
+        CopyOnWriteArrayList<String> ignoreList = ignoreList();
+        if (ignoreList != null) {
+            ignoreList.remove(rule);
+        }
+    }
+
+    /**
+     * 整体替换为给定规则，只在加载封禁列表时使用
+     */
+    void reset(Collection<String> rules) {
+        exact.clear();
+        exactRules.clear();
+        prefixRules.clear();
+        for (String rule : rules) {
+            if (rule.indexOf('/') >= 0) {
+                prefixRules.add(rule);
+            } else {
+                InetAddress address = parseLiteral(rule);
+                if (address != null) {
+                    exactRules.add(rule);
+                    exact.add(address);
+                }
+            }
+        }
+        prefixes = BanSet.of(prefixRules);
+        syncedIgnoreList = null;
+        ignoreList();
+    }
+
+    int size() {
+        return exactRules.size() + prefixRules.size();
+    }
+
+    /**
+     * @return hook 端当前的忽略列表；第一次见到这个列表对象时先整体同步
+     */
+    private CopyOnWriteArrayList<String> ignoreList() {
+        CopyOnWriteArrayList<String> current = ignoreListSupplier.get();
+        if (current != null && current != syncedIgnoreList) {
+            // hook 端的忽略列表按字符串精确匹配，前缀规则只能由 isBanned 拦截
+            current.clear();
+            current.addAll(exactRules);
+            syncedIgnoreList = current;
+        }
+        return current;
+    }
+
+    /**
+     * 规则已经过 IPChecker.normalizeRule，因此不会触发 DNS 查询
+     */
+    private static InetAddress parseLiteral(String ip) {
+        try {
+            return InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
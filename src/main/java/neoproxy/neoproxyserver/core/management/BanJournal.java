@@ -0,0 +1,306 @@
+package neoproxy.neoproxyserver.core.management;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BanJournal - 封禁列表的持久化：快照 + 追加日志
+ *
+ * <p>快照即 banList.json（格式与旧版一致，仍可手工编辑）；每次封禁 / 解封只在 banList.journal
+ * 末尾追加一行 JSON（{@code {"op":"+",...}} 或 {@code {"op":"-","ip":...}}），代价与列表大小无关。
+ * 日志行数超过 max({@link ServerConstants#BAN_JOURNAL_COMPACT_MIN_ENTRIES}, 当前规则数) 时压缩：
+ * 全量写临时文件，原子改名为 banList.json，再清空日志。压缩的总代价摊到每次修改上仍是 O(1)。</p>
+ *
+ * <p>【崩溃安全】日志中的操作都是幂等的（封禁 = 覆盖写入，解封 = 删除），
+ * 改名成功但清空日志前崩溃时，下次加载重放一遍结果不变；最后一行写到一半的日志被跳过。</p>
+ *
+ * <p>【并发】本类不加锁，由 {@link IPChecker} 在持有 LOCK 时调用。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class BanJournal {
+    private static final Gson GSON = new Gson();
+    private static final String OP_BAN = "+";
+    private static final String OP_UNBAN = "-";
+
+    private final File snapshot;
+    private final File journal;
+    private Writer appender;
+    private int journalEntries;
+
+    BanJournal(File snapshot, File journal) {
+        this.snapshot = snapshot;
+        this.journal = journal;
+    }
+
+    boolean exists() {
+        return snapshot.exists() || journal.exists();
+    }
+
+    /**
+     * 流式读取快照，再按顺序重放日志
+     *
+     * @return 以 ip 为键、保持文件顺序的规则；ip 尚未规范化
+     */
+    Map<String, IPChecker.BanInfo> load() throws IOException {
+        Map<String, IPChecker.BanInfo> entries = new LinkedHashMap<>();
+        if (snapshot.exists()) {
+            readSnapshot(entries);
+        }
+        journalEntries = 0;
+        if (journal.exists()) {
+            replayJournal(entries);
+        }
+        return entries;
+    }
+
+    private void readSnapshot(Map<String, IPChecker.BanInfo> entries) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshot.toPath(), StandardCharsets.UTF_8))) {
+            if (snapshot.length() == 0 || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                IPChecker.BanInfo info = readEntry(reader);
+                if (info.ip != null) {
+                    entries.put(info.ip, info);
+                }
+            }
+            reader.endArray();
+        } catch (IllegalStateException | EOFException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static IPChecker.BanInfo readEntry(JsonReader reader) throws IOException {
+        String ip = null;
+        String location = null;
+        String isp = null;
+        long expiresAt = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "ip" -> ip = reader.nextString();
+                case "location" -> location = reader.nextString();
+                case "isp" -> isp = reader.nextString();
+                case "expiresAt" -> expiresAt = reader.nextLong();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new IPChecker.BanInfo(ip, location, isp, expiresAt);
+    }
+
+    private void replayJournal(Map<String, IPChecker.BanInfo> entries) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                // 坏行也计数，保证加载后会触发一次压缩，不会有新行接在半行后面
+                journalEntries++;
+                JournalEntry entry;
+                try {
+                    entry = GSON.fromJson(line, JournalEntry.class);
+                } catch (JsonParseException e) {
+                    entry = null;
+                }
+                if (entry == null || entry.ip == null) {
+                    // 通常是崩溃时写到一半的最后一行
+                    ServerLogger.warnWithSource("IPChecker", "ipChecker.journalLineSkipped", lineNumber);
+                    continue;
+                }
+                if (OP_UNBAN.equals(entry.op)) {
+                    entries.remove(entry.ip);
+                } else {
+                    entries.put(entry.ip, new IPChecker.BanInfo(entry.ip, entry.location, entry.isp,
+                            entry.expiresAt == null ? 0 : entry.expiresAt));
+                }
+            }
+        }
+    }
+
+    boolean appendBan(IPChecker.BanInfo info) {
+        JournalEntry entry = new JournalEntry();
+        entry.op = OP_BAN;
+        entry.ip = info.ip;
+        entry.location = info.location;
+        entry.isp = info.isp;
+        entry.expiresAt = info.expiresAt == 0 ? null : info.expiresAt;
+        return append(List.of(entry));
+    }
+
+    boolean appendUnban(String ip) {
+        return appendUnbans(List.of(ip));
+    }
+
+    /**
+     * 批量解封（如到期清理）只 flush 一次
+     */
+    boolean appendUnbans(Collection<String> ips) {
+        List<JournalEntry> entries = new ArrayList<>(ips.size());
+        for (String ip : ips) {
+            JournalEntry entry = new JournalEntry();
+            entry.op = OP_UNBAN;
+            entry.ip = ip;
+            entries.add(entry);
+        }
+        return append(entries);
+    }
+
+    private boolean append(List<JournalEntry> entries) {
+        try {
+            if (appender == null) {
+                boolean torn = !endsWithNewline(journal);
+                appender = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(journal, true), StandardCharsets.UTF_8));
+                if (torn) {
+                    // 上次写入失败留下了半行，先补换行，新行不会接在它后面
+                    appender.write('\n');
+                }
+            }
+            for (JournalEntry entry : entries) {
+                appender.write(GSON.toJson(entry));
+                appender.write('\n');
+            }
+            appender.flush();
+            journalEntries += entries.size();
+            return true;
+        } catch (IOException e) {
+            ServerLogger.errorWithSource("IPChecker", "ipChecker.failedToWriteJournal", e.getMessage());
+            closeAppender();
+            return false;
+        }
+    }
+
+    /**
+     * @return 文件不存在、为空或以换行结尾时为 true
+     */
+    private static boolean endsWithNewline(File file) throws IOException {
+        if (file.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * @param liveEntries 当前规则数，日志比它长时才值得压缩
+     */
+    boolean needsCompaction(int liveEntries) {
+        return journalEntries > Math.max(ServerConstants.BAN_JOURNAL_COMPACT_MIN_ENTRIES, liveEntries);
+    }
+
+    /**
+     * @return 日志中尚未并入快照的行数（含无法解析的行）
+     */
+    int journalEntries() {
+        return journalEntries;
+    }
+
+    /**
+     * 把当前规则写成新快照并清空日志。写快照失败时日志保持不动，数据不丢
+     */
+    boolean compact(Collection<IPChecker.BanInfo> entries) {
+        Path target = snapshot.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+                writer.setIndent("  ");
+                writer.beginArray();
+                for (IPChecker.BanInfo info : entries) {
+                    writer.beginObject();
+                    writer.name("ip").value(info.ip);
+                    writer.name("location").value(info.location == null ? "" : info.location);
+                    writer.name("isp").value(info.isp == null ? "" : info.isp);
+                    if (info.expiresAt != 0) {
+                        writer.name("expiresAt").value(info.expiresAt);
+                    }
+                    writer.endObject();
+                }
+                writer.endArray();
+                writer.flush();
+                out.getFD().sync();
+            }
+            moveAtomically(temp, target);
+
+            closeAppender();
+            Files.deleteIfExists(journal.toPath());
+            Debugger.debugOperation("Ban list compacted: " + entries.size() + " rules, " + journalEntries + " journal entries folded");
+            journalEntries = 0;
+            return true;
+        } catch (IOException e) {
+            ServerLogger.errorWithSource("IPChecker", "ipChecker.failedToWriteJson", e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    void close() {
+        closeAppender();
+    }
+
+    private void closeAppender() {
+        if (appender == null) {
+            return;
+        }
+        try {
+            appender.close();
+        } catch (IOException ignored) {
+        }
+        appender = null;
+    }
+
+    /**
+     * 日志一行的结构；解封只有 op 与 ip，永久封禁没有 expiresAt
+     */
+    private static final class JournalEntry {
+        String op;
+        String ip;
+        String location;
+        String isp;
+        Long expiresAt;
+    }
+}
@@ -0,0 +1,185 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+
+/**
+ * BanSet - 不可变的封禁规则集合，供 accept 路径无锁查询
+ *
+ * <p>地址按原始字节存成两个 long（IPv4 映射为 {@code ::ffff:a.b.c.d}）。规则分两类存放：</p>
+ * <ul>
+ *   <li>单个地址：开放寻址（线性探测）的数组，装载因子不超过 1/2，O(1) 命中</li>
+ *   <li>CIDR 前缀（如 {@code 10.0.0.0/24}、{@code 2001:db8::/32}）：{@link BanTrie}，O(前缀长度)</li>
+ * </ul>
+ *
+ * <p>【并发】实例构造后不再修改，由 {@link BanFilter} 在前缀规则变动后整体替换（volatile 发布）。
+ * 查询不加锁、不经过字符串，IPv4 不分配任何对象。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class BanSet {
+    static final BanSet EMPTY = new BanSet(new long[2], new long[2], new boolean[2], 0, BanTrie.EMPTY);
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+    // IPv4 前缀在 128 位空间中的偏移（::ffff:0:0/96）
+    private static final int IPV4_PREFIX_OFFSET = 96;
+
+    private final long[] highs;
+    private final long[] lows;
+    private final boolean[] used;
+    private final int mask;
+    private final int size;
+    private final BanTrie prefixes;
+
+    private BanSet(long[] highs, long[] lows, boolean[] used, int size, BanTrie prefixes) {
+        this.highs = highs;
+        this.lows = lows;
+        this.used = used;
+        this.mask = used.length - 1;
+        this.size = size;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * @param rules 已规范化的 IP 字面量或 {@code 地址/前缀长度}；无法解析的条目被忽略
+     */
+    static BanSet of(Collection<String> rules) {
+        if (rules.isEmpty()) {
+            return EMPTY;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, rules.size()) * 2 - 1) << 1;
+        long[] highs = new long[capacity];
+        long[] lows = new long[capacity];
+        boolean[] used = new boolean[capacity];
+        long[] prefixHighs = new long[rules.size()];
+        long[] prefixLows = new long[rules.size()];
+        int[] prefixLengths = new int[rules.size()];
+        int size = 0;
+        int prefixCount = 0;
+        for (String rule : rules) {
+            int slash = rule.indexOf('/');
+            InetAddress address = parseLiteral(slash < 0 ? rule : rule.substring(0, slash));
+            if (address == null) {
+                continue;
+            }
+            int fullLength = address instanceof Inet4Address ? 32 : 128;
+            int length = slash < 0 ? fullLength : parseLength(rule.substring(slash + 1), fullLength);
+            if (length < 0) {
+                continue;
+            }
+            if (length == fullLength) {
+                if (insert(highs, lows, used, high(address), low(address))) {
+                    size++;
+                }
+                continue;
+            }
+            prefixHighs[prefixCount] = high(address);
+            prefixLows[prefixCount] = low(address);
+            prefixLengths[prefixCount] = fullLength == 32 ? IPV4_PREFIX_OFFSET + length : length;
+            prefixCount++;
+        }
+        BanTrie trie = BanTrie.build(prefixHighs, prefixLows, prefixLengths, prefixCount);
+        return new BanSet(highs, lows, used, size + trie.ruleCount(), trie);
+    }
+
+    boolean contains(InetAddress address) {
+        if (size == 0 || address == null) {
+            return false;
+        }
+        long high;
+        long low;
+        if (address instanceof Inet4Address) {
+            // Inet4Address.hashCode() 即地址本身，避免 getAddress() 复制数组
+            high = 0;
+            low = IPV4_MAPPED_PREFIX | (address.hashCode() & 0xFFFF_FFFFL);
+        } else {
+            byte[] raw = address.getAddress();
+            high = readLong(raw, 0);
+            low = readLong(raw, 8);
+        }
+        for (int slot = slot(high, low, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return true;
+            }
+        }
+        return prefixes.contains(high, low);
+    }
+
+    /**
+     * @return 单个地址数 + 前缀规则数（被更短前缀覆盖的规则不计）
+     */
+    int size() {
+        return size;
+    }
+
+    private static int parseLength(String value, int fullLength) {
+        try {
+            int length = Integer.parseInt(value);
+            return length >= 0 && length <= fullLength ? length : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean insert(long[] highs, long[] lows, boolean[] used, long high, long low) {
+        int mask = used.length - 1;
+        int slot = slot(high, low, mask);
+        while (used[slot]) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        highs[slot] = high;
+        lows[slot] = low;
+        return true;
+    }
+
+    private static int slot(long high, long low, int mask) {
+        long h = (high * 0x9E37_79B9_7F4A_7C15L) ^ low;
+        h ^= h >>> 32;
+        h *= 0xD6E8_FEB8_6659_FD93L;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+
+    private static long high(InetAddress address) {
+        byte[] raw = address.getAddress();
+        return raw.length == 4 ? 0 : readLong(raw, 0);
+    }
+
+    private static long low(InetAddress address) {
+        byte[] raw = address.getAddress();
+        if (raw.length == 4) {
+            return IPV4_MAPPED_PREFIX | (readInt(raw) & 0xFFFF_FFFFL);
+        }
+        return readLong(raw, 8);
+    }
+
+    private static int readInt(byte[] raw) {
+        return (raw[0] & 0xFF) << 24 | (raw[1] & 0xFF) << 16 | (raw[2] & 0xFF) << 8 | (raw[3] & 0xFF);
+    }
+
+    private static long readLong(byte[] raw, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (raw[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 调用方保证是 IP 字面量（已经过 IPChecker.normalizeIP），因此不会触发 DNS 查询
+     */
+    private static InetAddress parseLiteral(String ip) {
+        try {
+            return InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.util.Arrays;
+
+/**
+ * BanTrie - 不可变的压缩二叉前缀树（Patricia），保存 CIDR 封禁规则
+ *
+ * <p>地址统一为 128 位（IPv4 映射到 {@code ::ffff:0:0/96}，前缀长度 +96），存成高低两个 long。
+ * 每个节点保存从根到它的完整前缀，只有分叉处才有节点，因此深度不超过分叉数，也不超过 128。</p>
+ *
+ * <p>查询：从根往下，前缀不符立即返回 false，遇到规则节点立即返回 true，
+ * 否则按下一位选择子节点。规则节点下面的更长前缀被它覆盖，构造时直接剪掉。
+ * 节点平铺在数组里，查询只读数组，不分配对象。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class BanTrie {
+    static final BanTrie EMPTY = new BanTrie(new long[0], new long[0], new int[0], new int[0], new int[0], 0);
+
+    private static final int NONE = -1;
+
+    // 节点 i 的前缀（已按长度清零低位）与长度；prefixLength 为负表示规则节点
+    private final long[] highs;
+    private final long[] lows;
+    private final int[] lengths;
+    private final int[] zeroChild;
+    private final int[] oneChild;
+    private final int rules;
+
+    private BanTrie(long[] highs, long[] lows, int[] lengths, int[] zeroChild, int[] oneChild, int rules) {
+        this.highs = highs;
+        this.lows = lows;
+        this.lengths = lengths;
+        this.zeroChild = zeroChild;
+        this.oneChild = oneChild;
+        this.rules = rules;
+    }
+
+    /**
+     * @param prefixHighs 前缀高 64 位，与 prefixLows、prefixLengths 一一对应；低于长度的位无需预先清零
+     * @param count       有效条目数
+     */
+    static BanTrie build(long[] prefixHighs, long[] prefixLows, int[] prefixLengths, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            prefixHighs[i] &= highMask(prefixLengths[i]);
+            prefixLows[i] &= lowMask(prefixLengths[i]);
+        }
+        // 按 128 位无符号值排序：同一子树的前缀在数组中连续
+        Arrays.sort(order, (a, b) -> {
+            int c = Long.compareUnsigned(prefixHighs[a], prefixHighs[b]);
+            if (c != 0) return c;
+            c = Long.compareUnsigned(prefixLows[a], prefixLows[b]);
+            return c != 0 ? c : Integer.compare(prefixLengths[a], prefixLengths[b]);
+        });
+        long[] sortedHighs = new long[count];
+        long[] sortedLows = new long[count];
+        int[] sortedLengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedHighs[i] = prefixHighs[order[i]];
+            sortedLows[i] = prefixLows[order[i]];
+            sortedLengths[i] = prefixLengths[order[i]];
+        }
+        Builder builder = new Builder(sortedHighs, sortedLows, sortedLengths, count);
+        builder.node(0, count);
+        return builder.finish();
+    }
+
+    /**
+     * @param high 地址高 64 位
+     * @param low  地址低 64 位
+     */
+    boolean contains(long high, long low) {
+        int node = rules == 0 ? NONE : 0;
+        while (node != NONE) {
+            int length = lengths[node];
+            boolean rule = length < 0;
+            if (rule) {
+                length = ~length;
+            }
+            if ((high & highMask(length)) != highs[node] || (low & lowMask(length)) != lows[node]) {
+                return false;
+            }
+            if (rule) {
+                return true;
+            }
+            node = bit(high, low, length) == 0 ? zeroChild[node] : oneChild[node];
+        }
+        return false;
+    }
+
+    /**
+     * @return 剪枝后的规则数（被更短前缀覆盖的规则不计）
+     */
+    int ruleCount() {
+        return rules;
+    }
+
+    int nodeCount() {
+        return lengths.length;
+    }
+
+    static long highMask(int length) {
+        return length <= 0 ? 0 : length >= 64 ? -1L : -1L << (64 - length);
+    }
+
+    static long lowMask(int length) {
+        return length <= 64 ? 0 : length >= 128 ? -1L : -1L << (128 - length);
+    }
+
+    private static int bit(long high, long low, int index) {
+        return index < 64 ? (int) (high >>> (63 - index)) & 1 : (int) (low >>> (127 - index)) & 1;
+    }
+
+    private static int commonLength(long highA, long lowA, long highB, long lowB) {
+        long diff = highA ^ highB;
+        if (diff != 0) {
+            return Long.numberOfLeadingZeros(diff);
+        }
+        diff = lowA ^ lowB;
+        return diff != 0 ? 64 + Long.numberOfLeadingZeros(diff) : 128;
+    }
+
+    /**
+     * 在排好序的前缀数组上递归建树：区间的公共前缀即节点前缀，区间内最短的前缀若恰好等于它则为规则节点
+     */
+    private static final class Builder {
+        private final long[] prefixHighs;
+        private final long[] prefixLows;
+        private final int[] prefixLengths;
+
+        private long[] highs;
+        private long[] lows;
+        private int[] lengths;
+        private int[] zeroChild;
+        private int[] oneChild;
+        private int size;
+        private int rules;
+
+        private Builder(long[] prefixHighs, long[] prefixLows, int[] prefixLengths, int count) {
+            this.prefixHighs = prefixHighs;
+            this.prefixLows = prefixLows;
+            this.prefixLengths = prefixLengths;
+            // n 个互不覆盖的前缀最多产生 2n - 1 个节点
+            int capacity = Math.max(1, 2 * count - 1);
+            highs = new long[capacity];
+            lows = new long[capacity];
+            lengths = new int[capacity];
+            zeroChild = new int[capacity];
+            oneChild = new int[capacity];
+        }
+
+        private int node(int from, int to) {
+            int last = to - 1;
+            int length = commonLength(prefixHighs[from], prefixLows[from], prefixHighs[last], prefixLows[last]);
+            int shortest = Integer.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                shortest = Math.min(shortest, prefixLengths[i]);
+            }
+            boolean rule = shortest <= length;
+            if (rule) {
+                length = shortest;
+            }
+            int index = size++;
+            highs[index] = prefixHighs[from] & highMask(length);
+            lows[index] = prefixLows[from] & lowMask(length);
+            zeroChild[index] = NONE;
+            oneChild[index] = NONE;
+            if (rule) {
+                lengths[index] = ~length;
+                rules++;
+                return index;
+            }
+            lengths[index] = length;
+            // 区间内第 length 位先 0 后 1，且两侧都非空
+            int split = from;
+            while (bit(prefixHighs[split], prefixLows[split], length) == 0) {
+                split++;
+            }
+            int zero = node(from, split);
+            int one = node(split, to);
+            zeroChild[index] = zero;
+            oneChild[index] = one;
+            return index;
+        }
+
+        private BanTrie finish() {
+            return new BanTrie(Arrays.copyOf(highs, size), Arrays.copyOf(lows, size), Arrays.copyOf(lengths, size),
+                    Arrays.copyOf(zeroChild, size), Arrays.copyOf(oneChild, size), rules);
+        }
+    }
+}
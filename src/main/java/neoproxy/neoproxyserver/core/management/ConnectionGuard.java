@@ -0,0 +1,183 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionGuard - accept 路径上的准入判断：封禁列表 + 按来源限速 + 自动临时封禁
+ *
+ * <p>扫描器对隧道端口和 hook 端口的连接洪泛，以前只能靠人工 {@code ban}。现在每个新连接先查
+ * {@link IPChecker#isBanned}，再由 {@link ConnectionRateSketch} 估计该来源最近一秒的连接数；
+ * 超过 {@link #CONNECTS_PER_SECOND} 的连接直接关闭，并把来源临时封禁 {@link #TEMP_BAN_SECONDS} 秒。</p>
+ *
+ * <p>核心特性：</p>
+ * <ul>
+ *   <li>内存有界：计数用固定大小的 Count-Min Sketch，临时封禁表最多
+ *       {@link ServerConstants#TEMP_BAN_MAX_ENTRIES} 条，表满后超速连接照样被拒，只是不再登记</li>
+ *   <li>共享定时器：所有临时封禁由共享调度器上的单个任务每秒清理一次，首个封禁时惰性启动，表空后自动停止</li>
+ *   <li>临时封禁只在内存中，不写 banList，重启即失效；回环地址不限速</li>
+ *   <li>计数器：因封禁列表、因超速 / 临时封禁而丢弃的连接数，以及触发过的临时封禁次数</li>
+ * </ul>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class ConnectionGuard {
+    /**
+     * 每个来源每秒允许的新连接数，0 表示不限速
+     */
+    public static volatile int CONNECTS_PER_SECOND = ServerConstants.DEFAULT_AUTO_BAN_CONNECTS_PER_SECOND;
+    /**
+     * 超速后临时封禁的秒数，0 表示只丢弃超速的连接、不封禁
+     */
+    public static volatile int TEMP_BAN_SECONDS = ServerConstants.DEFAULT_AUTO_BAN_SECONDS;
+
+    private static final ConnectionRateSketch SKETCH = new ConnectionRateSketch(ServerConstants.CONNECT_RATE_SKETCH_WIDTH);
+    // 来源 → 解封时刻（System.nanoTime()）。InetAddress 按地址比较，查询不分配对象
+    private static final Map<InetAddress, Long> TEMP_BANS = new ConcurrentHashMap<>();
+    private static final LongAdder DROPPED_BANNED = new LongAdder();
+    private static final LongAdder DROPPED_RATE_LIMITED = new LongAdder();
+    private static final LongAdder AUTO_BANS = new LongAdder();
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static ScheduledFuture<?> sweeper;
+
+    private ConnectionGuard() {
+    }
+
+    /**
+     * @return 允许该连接时为 true；false 时调用方应立即关闭连接
+     */
+    public static boolean admit(InetAddress address) {
+        if (IPChecker.isBanned(address)) {
+            DROPPED_BANNED.increment();
+            return false;
+        }
+        int limit = CONNECTS_PER_SECOND;
+        if (limit <= 0 || address == null || address.isLoopbackAddress()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (!TEMP_BANS.isEmpty()) {
+            Long until = TEMP_BANS.get(address);
+            if (until != null && now - until < 0) {
+                DROPPED_RATE_LIMITED.increment();
+                return false;
+            }
+        }
+        int rate = SKETCH.record(address.hashCode(), now);
+        if (rate <= limit) {
+            return true;
+        }
+        DROPPED_RATE_LIMITED.increment();
+        tempBan(address, rate, now);
+        return false;
+    }
+
+    private static void tempBan(InetAddress address, int rate, long now) {
+        int seconds = TEMP_BAN_SECONDS;
+        if (seconds <= 0 || (TEMP_BANS.size() >= ServerConstants.TEMP_BAN_MAX_ENTRIES && !TEMP_BANS.containsKey(address))) {
+            return;
+        }
+        Long previous = TEMP_BANS.put(address, now + TimeUnit.SECONDS.toNanos(seconds));
+        if (previous == null || now - previous >= 0) {
+            AUTO_BANS.increment();
+            ServerLogger.warnWithSource("ConnectionGuard", "connectionGuard.autoBanned", address.getHostAddress(), rate, seconds);
+        }
+        ensureSweeper();
+    }
+
+    /**
+     * 提前解除临时封禁
+     *
+     * @return 该来源此前是否处于临时封禁中
+     */
+    public static boolean lift(InetAddress address) {
+        Long until = TEMP_BANS.remove(address);
+        return until != null && System.nanoTime() - until < 0;
+    }
+
+    public static int activeTempBans() {
+        return TEMP_BANS.size();
+    }
+
+    public static long droppedBanned() {
+        return DROPPED_BANNED.sum();
+    }
+
+    public static long droppedRateLimited() {
+        return DROPPED_RATE_LIMITED.sum();
+    }
+
+    public static long autoBans() {
+        return AUTO_BANS.sum();
+    }
+
+    /**
+     * 清空临时封禁与计数器
+     */
+    public static void clear() {
+        LOCK.lock();
+        try {
+            TEMP_BANS.clear();
+            DROPPED_BANNED.reset();
+            DROPPED_RATE_LIMITED.reset();
+            AUTO_BANS.reset();
+            stopSweeper();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void ensureSweeper() {
+        LOCK.lock();
+        try {
+            if (sweeper != null) {
+                return;
+            }
+            sweeper = ThreadManager.getScheduledExecutor().scheduleAtFixedRate(
+                    ConnectionGuard::sweep, 1, 1, TimeUnit.SECONDS);
+            Debugger.debugOperation("ConnectionGuard sweeper started.");
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    static void sweep() {
+        long now = System.nanoTime();
+        TEMP_BANS.entrySet().removeIf(entry -> {
+            if (now - entry.getValue() < 0) {
+                return false;
+            }
+            Debugger.debugOperation("Temporary ban expired: " + entry.getKey().getHostAddress());
+            return true;
+        });
+        LOCK.lock();
+        try {
+            // 与 tempBan 的 put + ensureSweeper 在同一把锁下交错，不会漏掉刚加入的封禁
+            if (TEMP_BANS.isEmpty()) {
+                stopSweeper();
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+            sweeper = null;
+            Debugger.debugOperation("ConnectionGuard sweeper stopped: no temporary bans left.");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionRateSketch - 按来源统计每秒连接数的 Count-Min Sketch
+ *
+ * <p>两张 {@code DEPTH × width} 的计数表轮流充当"当前秒"和"上一秒"，估计值为
+ * 当前秒计数 + 上一秒计数 × 上一秒仍落在滑动窗口内的比例，即最近一秒的滑动窗口近似。
+ * 内存固定为 {@code 2 × DEPTH × width} 个 int，与来源数量无关；哈希冲突只会高估、不会低估。</p>
+ *
+ * <p>【并发】计数用 AtomicIntegerArray，记录不加锁；只有跨秒换表时短暂持锁清空旧表。
+ * 换表瞬间与之并发的少量计数可能落在被清空的表里，对限流来说可以接受。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class ConnectionRateSketch {
+    static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E37_79B9, 0x85EB_CA6B, 0xC2B2_AE35, 0x27D4_EB2F};
+
+    private final int width;
+    private final int widthMask;
+    // windows[w & 1] 是第 w 秒的计数表
+    private final AtomicIntegerArray[] windows;
+    private final ReentrantLock rotateLock = new ReentrantLock();
+    private volatile long currentWindow = Long.MIN_VALUE;
+
+    /**
+     * @param width 每行的计数器数，向上取整为 2 的幂
+     */
+    ConnectionRateSketch(int width) {
+        this.width = Integer.highestOneBit(Math.max(15, width - 1) << 1);
+        this.widthMask = this.width - 1;
+        this.windows = new AtomicIntegerArray[]{
+                new AtomicIntegerArray(DEPTH * this.width),
+                new AtomicIntegerArray(DEPTH * this.width)};
+    }
+
+    /**
+     * 记一次连接
+     *
+     * @param hash 来源的哈希（如 {@code InetAddress.hashCode()}）
+     * @param now  {@link System#nanoTime()}
+     * @return 包含本次在内，最近一秒内该来源的估计连接数
+     */
+    int record(int hash, long now) {
+        long window = Math.floorDiv(now, WINDOW_NANOS);
+        if (window > currentWindow) {
+            rotate(window);
+        }
+        long active = currentWindow;
+        AtomicIntegerArray current = windows[(int) (active & 1)];
+        AtomicIntegerArray previous = windows[(int) ((active + 1) & 1)];
+
+        int currentCount = Integer.MAX_VALUE;
+        int previousCount = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * width + index(hash, row);
+            currentCount = Math.min(currentCount, current.incrementAndGet(index));
+            previousCount = Math.min(previousCount, previous.get(index));
+        }
+        // 上一秒里仍落在 [now - 1s, now] 内的比例
+        double overlap = 1.0 - (double) Math.max(0, now - active * WINDOW_NANOS) / WINDOW_NANOS;
+        return currentCount + (int) Math.round(previousCount * Math.max(0, overlap));
+    }
+
+    int width() {
+        return width;
+    }
+
+    private void rotate(long window) {
+        rotateLock.lock();
+        try {
+            long active = currentWindow;
+            if (window <= active) {
+                return;
+            }
+            if (active == Long.MIN_VALUE || window - active >= 2) {
+                // 中间空了一秒以上，上一秒的计数也已失效
+                clear(windows[0]);
+                clear(windows[1]);
+            } else {
+                clear(windows[(int) (window & 1)]);
+            }
+            currentWindow = window;
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+
+    private static void clear(AtomicIntegerArray table) {
+        for (int i = 0; i < table.length(); i++) {
+            table.lazySet(i, 0);
+        }
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x7FEB_352D;
+        h ^= h >>> 15;
+        return h & widthMask;
+    }
+}
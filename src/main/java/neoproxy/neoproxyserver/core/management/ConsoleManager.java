@@ -1,17 +1,22 @@
 package neoproxy.neoproxyserver.core.management;
 
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.AccessLog;
 import neoproxy.neoproxyserver.core.ConfigOperator;
 import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.HostClient;
 import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
 import neoproxy.neoproxyserver.core.exceptions.*;
 import neoproxy.neoproxyserver.core.management.provider.RemoteKeyProvider;
 import neoproxy.neoproxyserver.core.webadmin.WebAdminManager;
 import neoproxy.neoproxyserver.core.webadmin.WebConsole;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -112,14 +117,19 @@ public class ConsoleManager {
             ServerLogger.logRaw(COMMAND_SOURCE.get(), "==============================================");
         });
 
-        registerWrapper("ban", "Ban a specific IP address", (List<String> params) -> {
-            if (params.size() != 1) {
+        registerWrapper("ban", "Ban a specific IP address or CIDR range", (List<String> params) -> {
+            if (params.isEmpty() || params.size() > 2) {
                 ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.ban");
                 return;
             }
             String ipToBan = params.getFirst();
-            if (isValidIP(ipToBan)) {
-                if (IPChecker.exec(ipToBan, IPChecker.DO_BAN)) {
+            long duration = params.size() == 2 ? parseBanDuration(params.get(1)) : 0;
+            if (duration < 0) {
+                ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.ban");
+                return;
+            }
+            if (isValidRule(ipToBan)) {
+                if (IPChecker.ban(ipToBan, duration)) {
                     ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.ipBanned", ipToBan);
                 } else {
                     ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.banFailed", ipToBan);
@@ -129,13 +139,13 @@ public class ConsoleManager {
             }
         });
 
-        registerWrapper("unban", "Unban a specific IP address", (List<String> params) -> {
+        registerWrapper("unban", "Unban a specific IP address or CIDR range", (List<String> params) -> {
             if (params.size() != 1) {
                 ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.unban");
                 return;
             }
             String ipToUnban = params.getFirst();
-            if (isValidIP(ipToUnban)) {
+            if (isValidRule(ipToUnban)) {
                 if (IPChecker.exec(ipToUnban, UNBAN)) {
                     ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.ipUnbanned", ipToUnban);
                 } else {
@@ -167,6 +177,9 @@ public class ConsoleManager {
 
         registerWrapper("listbans", "List all banned IP addresses", (List<String> params) -> {
             listBannedIPs();
+            ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "connectionGuard.stats",
+                    ConnectionGuard.activeTempBans(), ConnectionGuard.autoBans(),
+                    ConnectionGuard.droppedBanned(), ConnectionGuard.droppedRateLimited());
         });
 
         registerWrapper("list", "List all currently active HostClients and their connection info", (List<String> params) -> {
@@ -188,6 +201,8 @@ public class ConsoleManager {
                     case "set" -> handleSetCommand(params);
                     case "enable" -> handleEnableCommand(params);
                     case "disable" -> handleDisableCommand(params);
+                    case "import" -> handleImportCommand(params);
+                    case "export" -> handleExportCommand(params);
                     default -> printKeyUsage();
                 }
             } catch (Exception e) {
@@ -250,8 +265,11 @@ public class ConsoleManager {
             try {
                 SequenceKey keyFromDB = Database.getKey(keyName, false);
                 if (keyFromDB != null) {
-                    keyFromDB.setHTMLEnabled(enable);
-                    if (Database.saveKey(keyFromDB)) {
+                    // 只写 enableWebHTML 一列：整行保存会覆盖读取之后落盘的流量扣减
+                    KeyDelta delta = new KeyDelta(keyName, KeyDelta.WEB_HTML, 0,
+                            keyFromDB.getBalanceNoLock(), keyFromDB.getExpireTime(), keyFromDB.getPortStr(),
+                            keyFromDB.getRateNoLock(), keyFromDB.isEnableNoLock(), enable);
+                    if (Database.applyDelta(delta)) {
                         String logKey = enable ? "consoleManager.webHtmlEnabled" : "consoleManager.webHtmlDisabled";
                         ServerLogger.infoWithSource(COMMAND_SOURCE.get(), logKey, keyName);
                         if (!foundInMemory) {
@@ -283,6 +301,19 @@ public class ConsoleManager {
             }
             handleProfileCommand();
         });
+
+        registerWrapper("storage", "Show or migrate the key storage backend", (List<String> params) -> {
+            if (params.isEmpty()) {
+                ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.storageInfo",
+                        Database.getBackendName(), Database.countKeys());
+                return;
+            }
+            if (params.size() != 2 || !"migrate".equals(params.getFirst())) {
+                ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.storage");
+                return;
+            }
+            handleStorageMigrateCommand(params.get(1));
+        });
     }
 
     private static void handleAlert(boolean b) {
@@ -301,6 +332,8 @@ public class ConsoleManager {
 
         Database.reload();
 
+        AccessLog.reload();
+
         SequenceKey.reloadProvider();
 
         ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.configReloaded");
@@ -325,6 +358,24 @@ public class ConsoleManager {
         }
     }
 
+    private static void handleStorageMigrateCommand(String rawTarget) {
+        String source = Database.getBackendName();
+        String target = Database.normalizeBackend(rawTarget);
+        if (target == null || target.equals(source)) {
+            ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.storageInvalidTarget", source);
+            return;
+        }
+        ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.storageMigrating", source, target);
+        int migrated = Database.migrate(target);
+        if (migrated > 0) {
+            ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.storageMigrated", migrated, target);
+        } else if (migrated == 0) {
+            ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.storageNothingToMigrate");
+        } else {
+            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.storageMigrateFailed", target);
+        }
+    }
+
     private static void printAsciiTable(String[] headers, List<String[]> data) {
         if (data == null || data.isEmpty()) {
             ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.noDataToDisplay");
@@ -560,7 +611,9 @@ public class ConsoleManager {
 
     private static void handleListCommand(List<String> params) {
         if (params.size() == 1) {
-            listAllKeys();
+            listAllKeys(null);
+        } else if (params.size() == 3 && "from".equals(params.get(1))) {
+            listAllKeys(params.get(2));
         } else if (params.size() == 2) {
             String listType = params.get(1);
             switch (listType) {
@@ -751,14 +804,67 @@ public class ConsoleManager {
         }
     }
 
-    private static void listAllKeys() {
+    private static void handleImportCommand(List<String> params) {
+        if (params.size() != 2) {
+            ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.keyImport");
+            return;
+        }
+        File file = KeyTransfer.resolve(params.get(1));
+        if (!file.isFile()) {
+            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyImportFileNotFound", file.getAbsolutePath());
+            return;
+        }
+        String source = COMMAND_SOURCE.get();
+        try {
+            KeyTransfer.ImportResult result = KeyTransfer.importKeys(file,
+                    rows -> ServerLogger.infoWithSource(source, "consoleManager.keyImportProgress", rows));
+            ServerLogger.infoWithSource(source, "consoleManager.keyImportDone", result.imported(), result.skipped(), result.invalid());
+            if (result.invalid() > 0) {
+                ServerLogger.warnWithSource(source, "consoleManager.keyImportInvalidRows", result.invalid(), result.firstInvalidLine());
+            }
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+            ServerLogger.errorWithSource(source, "consoleManager.keyImportFailed", e.getMessage());
+        }
+    }
+
+    private static void handleExportCommand(List<String> params) {
+        if (params.size() != 2) {
+            ServerLogger.warnWithSource(COMMAND_SOURCE.get(), "consoleManager.usage.keyExport");
+            return;
+        }
+        File file = KeyTransfer.resolve(params.get(1));
+        try {
+            int exported = KeyTransfer.exportKeys(file);
+            ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.keyExportDone", exported, file.getAbsolutePath());
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyExportFailed", e.getMessage());
+        }
+    }
+
+    /**
+     * 分页列出密钥：本地密钥按名称键集分页，远程缓存中的密钥只在第一页显示
+     *
+     * @param cursor 上一页最后一个本地密钥名；null 表示第一页
+     */
+    private static void listAllKeys(String cursor) {
         Map<String, KeyListDTO> keyMap = new HashMap<>();
-        List<SequenceKey> localKeys = Database.getAllKeys();
+        Map<String, SequenceKey> remoteKeys = SequenceKey.PROVIDER instanceof RemoteKeyProvider
+                ? SequenceKey.getKeyCacheSnapshot() : Map.of();
+        int pageSize = ServerConstants.KEY_LIST_PAGE_SIZE;
+        List<SequenceKey> localKeys = Database.getKeysAfter(cursor, pageSize + 1);
+        boolean hasMore = localKeys.size() > pageSize;
+        if (hasMore) {
+            localKeys = localKeys.subList(0, pageSize);
+        }
         for (SequenceKey k : localKeys) {
-            keyMap.put(k.getName(), new KeyListDTO(k.getName(), k.getBalanceNoLock(), k.getExpireTime(), k.getPortStr(), k.getRateNoLock(), k.isEnable(), k.isHTMLEnabled(), " (L)"));
+            if (!remoteKeys.containsKey(k.getName())) {
+                keyMap.put(k.getName(), new KeyListDTO(k.getName(), k.getBalanceNoLock(), k.getExpireTime(), k.getPortStr(), k.getRateNoLock(), k.isEnable(), k.isHTMLEnabled(), " (L)"));
+            }
         }
-        if (SequenceKey.PROVIDER instanceof RemoteKeyProvider) {
-            for (SequenceKey k : SequenceKey.getKeyCacheSnapshot().values()) {
+        if (cursor == null) {
+            for (SequenceKey k : remoteKeys.values()) {
                 keyMap.put(k.getName(), new KeyListDTO(k, " (R)"));
             }
         }
@@ -780,60 +886,53 @@ public class ConsoleManager {
         }).collect(Collectors.toList());
 
         printAsciiTable(ServerLogger.getMessage("consoleManager.headers.keyList").split("\\|"), rows);
+        if (hasMore) {
+            ServerLogger.infoWithSource(COMMAND_SOURCE.get(), "consoleManager.keyListMore",
+                    localKeys.size(), Database.countKeys(), localKeys.getLast().getName());
+        }
     }
 
     private static void listKeyNames() {
-        List<SequenceKey> keys = Database.getAllKeys();
-        if (keys.isEmpty()) {
-            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyNotFound");
-            return;
-        }
-        String result = keys.stream().map(k -> String.format("%s%s(%d)", k.getName(), k.isEnable() ? "" : "(disabled)", findKeyClientNum(k.getName()))).collect(Collectors.joining(" "));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), result.replace("(disabled)", getDisabledMarker()));
+        listKeys(k -> String.format("%s%s(%d)", k.getName(), k.isEnable() ? "" : "(disabled)", findKeyClientNum(k.getName())), " ", true);
     }
 
     private static void listKeyBalances() {
-        List<SequenceKey> keys = Database.getAllKeys();
-        if (keys.isEmpty()) {
-            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyNotFound");
-            return;
-        }
-        String result = keys.stream().map(k -> String.format("%s%s(%.2f)", k.getName(), k.isEnable() ? "" : "(disabled)", k.getBalanceNoLock())).collect(Collectors.joining("\n"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), result.replace("(disabled)", getDisabledMarker()));
+        listKeys(k -> String.format("%s%s(%.2f)", k.getName(), k.isEnable() ? "" : "(disabled)", k.getBalanceNoLock()), "\n", true);
     }
 
     private static void listKeyRates() {
-        List<SequenceKey> keys = Database.getAllKeys();
-        if (keys.isEmpty()) {
-            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyNotFound");
-            return;
-        }
-        String result = keys.stream().map(k -> String.format("%s%s(%smbps)", k.getName(), k.isEnable() ? "" : "(disabled)", killDoubleEndZero(k.getRateNoLock()))).collect(Collectors.joining(" "));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), result.replace("(disabled)", getDisabledMarker()));
+        listKeys(k -> String.format("%s%s(%smbps)", k.getName(), k.isEnable() ? "" : "(disabled)", killDoubleEndZero(k.getRateNoLock())), " ", true);
     }
 
     private static void listKeyExpireTimes() {
-        List<SequenceKey> keys = Database.getAllKeys();
-        if (keys.isEmpty()) {
-            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyNotFound");
-            return;
-        }
-        String result = keys.stream().map(k -> String.format("%s%s( %s )", k.getName(), k.isEnable() ? "" : "(disabled)", k.getExpireTime())).collect(Collectors.joining("\n"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), result.replace("(disabled)", getDisabledMarker()));
+        listKeys(k -> String.format("%s%s( %s )", k.getName(), k.isEnable() ? "" : "(disabled)", k.getExpireTime()), "\n", true);
     }
 
     private static void listKeyEnableStatus() {
-        List<SequenceKey> keys = Database.getAllKeys();
-        if (keys.isEmpty()) {
+        String enabled = ServerLogger.getMessage("consoleManager.keyStatus.enabled");
+        String disabled = ServerLogger.getMessage("consoleManager.keyStatus.disabled");
+        listKeys(k -> String.format("%s: %s", k.getName(), k.isEnable() ? enabled : disabled), "\n", false);
+    }
+
+    /**
+     * 经 {@link Database#forEachKey} 逐页读取，只保留格式化后的文本，不把全部密钥读入内存
+     *
+     * @param markDisabled 是否把 "(disabled)" 替换为带颜色的标记
+     */
+    private static void listKeys(Function<SequenceKey, String> formatter, String delimiter, boolean markDisabled) {
+        StringJoiner result = new StringJoiner(delimiter);
+        try {
+            Database.forEachKey(k -> result.add(formatter.apply(k)));
+        } catch (IOException e) {
+            ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyListFailed", e.getMessage());
+            return;
+        }
+        if (result.length() == 0) {
             ServerLogger.errorWithSource(COMMAND_SOURCE.get(), "consoleManager.keyNotFound");
             return;
         }
-        String enabled = ServerLogger.getMessage("consoleManager.keyStatus.enabled");
-        String disabled = ServerLogger.getMessage("consoleManager.keyStatus.disabled");
-        String result = keys.stream()
-                .map(k -> String.format("%s: %s", k.getName(), k.isEnable() ? enabled : disabled))
-                .collect(Collectors.joining("\n"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), result);
+        String text = result.toString();
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), markDisabled ? text.replace("(disabled)", getDisabledMarker()) : text);
     }
 
     private static void printKeyUsage() {
@@ -843,12 +942,14 @@ public class ConsoleManager {
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key del <name> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.del"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key enable <name> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.enable"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key disable <name> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.disable"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key list -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.list"));
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key list [from <name>] -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.list"));
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key import <file.csv|file.jsonl> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.import"));
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key export <file.csv|file.jsonl> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.export"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  key lp <name> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.lp"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  web <enable|disable> <key> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.web"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  list -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.listCmd"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  ban <ip_address> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.banCmd"));
-        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  unban <ip_address> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.unbanCmd"));
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  ban <ip_address|cidr> [duration] -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.banCmd"));
+        ServerLogger.logRaw(COMMAND_SOURCE.get(), "  unban <ip_address|cidr> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.unbanCmd"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  listbans -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.listbansCmd"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  find <ip_address> -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.findCmd"));
         ServerLogger.logRaw(COMMAND_SOURCE.get(), "  reload -- " + ServerLogger.getMessage("consoleManager.printKeyUsage.reloadCmd"));
@@ -858,7 +959,7 @@ public class ConsoleManager {
         return ServerLogger.getMessage("consoleManager.keyStatus.disabledSuffix");
     }
 
-    private static String validateAndFormatPortInput(String portInput) {
+    static String validateAndFormatPortInput(String portInput) {
         if (portInput == null || portInput.trim().isEmpty()) return null;
         Matcher m = PORT_INPUT_REGEX.matcher(portInput.trim());
         if (!m.matches()) return null;
@@ -905,7 +1006,7 @@ public class ConsoleManager {
         return d == (long) d ? String.valueOf((long) d) : String.valueOf(d);
     }
 
-    private static String correctInputTime(String time) {
+    static String correctInputTime(String time) {
         if (time == null) return null;
         Matcher m = TIME_PATTERN.matcher(time);
         if (!m.matches()) return null;
@@ -3,30 +3,112 @@ package neoproxy.neoproxyserver.core.management;
 import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.ServerLogger;
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * 核心数据库管理类 (SQLite 版)
- * 负责 sk 表的持久化存储，采用 WAL 模式高性能读写。
+ * 核心数据库管理类
+ * 负责 sk 表的持久化存储，默认使用 SQLite（WAL 模式高性能读写）。
  * [新增] 支持 reload() 重载连接
+ *
+ * <p>【存储后端】静态方法是所有调用方的唯一入口，实际读写转发给 {@link #STORAGE_BACKEND} 选定的
+ * {@link KeyStore}：{@code sqlite}（本类内的实现）或 {@code mvstore}（{@link MvStoreKeyStore}）。
+ * 切换后端前先用 {@code storage migrate} 把数据复制过去。</p>
+ *
+ * <p>【连接模型】SQLite 同一时刻只允许一个写者，因此：</p>
+ * <ul>
+ *   <li>所有写操作都提交到单一写线程（SQLite-Writer-Thread）串行执行，
+ *       写线程独占 {@link #keepAliveConn} 并缓存各条 SQL 的 PreparedStatement</li>
+ *   <li>读操作从一个小型连接池借用只读连接，连接与其语句缓存一起复用，
+ *       不再每次调用都重新打开连接、重跑 PRAGMA、重新编译 SQL</li>
+ * </ul>
  */
 public class Database {
+    /**
+     * 存储后端：sqlite 或 mvstore，在 init 时生效
+     */
+    public static String STORAGE_BACKEND = ServerConstants.DEFAULT_STORAGE_BACKEND;
+
+    static final String BACKEND_SQLITE = "sqlite";
+    static final String BACKEND_MVSTORE = "mvstore";
+
     private static final String DB_DRIVER = "org.sqlite.JDBC";
     private static final String DB_URL = "jdbc:sqlite:" + new File(NeoProxyServer.CURRENT_DIR_PATH, "sk").getAbsolutePath();
 
-    // 保持一个连接以锁定 WAL 共享内存，减少 IO 开销
+    private static final String SQL_SELECT_KEY = "SELECT * FROM sk WHERE name = ?";
+    private static final String SQL_SELECT_ENABLED_KEY = "SELECT * FROM sk WHERE name = ? AND isEnable = 1";
+    private static final String SQL_EXISTS = "SELECT 1 FROM sk WHERE name = ? LIMIT 1";
+    private static final String SQL_SELECT_ALL = "SELECT * FROM sk ORDER BY name ASC";
+    private static final String SQL_REPLACE_KEY = "REPLACE INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_INSERT_IGNORE_KEY = "INSERT OR IGNORE INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_SELECT_PAGE = "SELECT * FROM sk WHERE name > ? ORDER BY name ASC LIMIT ?";
+    private static final String SQL_COUNT = "SELECT COUNT(*) FROM sk";
+    private static final String SQL_INSERT_KEY = "INSERT INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, 1, 0)";
+    private static final String SQL_DELETE_KEY = "DELETE FROM sk WHERE name = ?";
+    private static final String SQL_DEDUCT_BALANCE = "UPDATE sk SET balance = balance - ? WHERE name = ?";
+    private static final String SQL_UPDATE_STATUS = "UPDATE sk SET isEnable = ? WHERE name = ?";
+    private static final String SQL_LAST_LEDGER_SEGMENT = "SELECT last_segment FROM ledger_meta WHERE id = 0";
+    private static final String SQL_SET_LEDGER_SEGMENT = "REPLACE INTO ledger_meta (id, last_segment) VALUES (0, ?)";
+
+    // forEachKey 每次从存储取出的行数
+    private static final int FOR_EACH_PAGE_SIZE = 500;
+
+    private static final int READER_POOL_SIZE = NeoProxyServer.LOW_RAM_MODE ? 1 : 4;
+
+    // 写线程：所有写操作在此串行执行
+    private static volatile Thread writerThread;
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SQLite-Writer-Thread");
+        t.setDaemon(true);
+        writerThread = t;
+        return t;
+    });
+    // 写连接的语句缓存，仅由写线程访问
+    private static final Map<String, PreparedStatement> WRITER_STATEMENTS = new HashMap<>();
+
+    // 空闲读连接；借不到时临时新建，归还时池满则直接关闭
+    private static final ArrayBlockingQueue<ReaderConnection> READERS = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+    // reload 后递增，旧代的读连接归还时被丢弃
+    private static volatile int readerGeneration = 0;
+
+    // 写连接，同时保持 WAL 共享内存常驻，减少 IO 开销
     private static Connection keepAliveConn;
 
-    public static void init() {
-        Debugger.debugOperation("Initializing SQLite Database (sk)...");
+    private static final KeyStore SQLITE = new SqliteStore();
+    // 当前后端；未 init 时按 SQLite 处理，与引入后端选择之前的行为一致
+    private static volatile KeyStore store = SQLITE;
+    // 写操作持读锁，迁移持写锁：复制与切换之间不会有写入落到旧后端
+    private static final ReentrantReadWriteLock SWITCH_LOCK = new ReentrantReadWriteLock();
+
+    /**
+     * 按 {@link #STORAGE_BACKEND} 打开存储。已打开其它后端时先关闭它
+     */
+    public static synchronized void init() {
+        Debugger.debugOperation("Initializing key storage (" + STORAGE_BACKEND + ")...");
+        KeyStore next = BACKEND_MVSTORE.equals(normalizeBackend(STORAGE_BACKEND)) ? new MvStoreKeyStore() : SQLITE;
         try {
-            Class.forName(DB_DRIVER);
-            connectAndConfigure();
-            ServerLogger.infoWithSource("Database", "db.initSuccess");
+            if (store != next) {
+                store.close();
+            }
+            next.open();
+            store = next;
         } catch (Exception e) {
             ServerLogger.error("db.initFailed", e, e.getMessage());
             Debugger.debugOperation(e);
@@ -34,23 +116,150 @@ public class Database {
         }
     }
 
+    /**
+     * 关闭当前后端。之后的 SQLite 读写会按需重新连接，MVStore 读写直接失败，直到下次 init
+     */
+    public static synchronized void close() {
+        store.close();
+    }
+
+    /**
+     * @return 规范化的后端名；无法识别时返回 null
+     */
+    public static String normalizeBackend(String backend) {
+        if (backend == null) {
+            return null;
+        }
+        String normalized = backend.trim().toLowerCase(Locale.ROOT);
+        return BACKEND_SQLITE.equals(normalized) || BACKEND_MVSTORE.equals(normalized) ? normalized : null;
+    }
+
+    /**
+     * 当前生效的后端名
+     */
+    public static String getBackendName() {
+        return store.name();
+    }
+
+    static KeyStore activeStore() {
+        return store;
+    }
+
+    /**
+     * 把当前后端的全部密钥与账本进度复制到另一个后端，并立即切换过去。
+     * 目标中多出的密钥被删除，迁移后两边完全一致；迁移期间写操作等待，读操作照常走旧后端。
+     * 尚未合并的账本段与内存中未落盘的变更都是相对值，切换后写入新后端即可，无需先刷盘。
+     *
+     * <p>只切换本次运行；下次 reload / 重启前须把 config.cfg 的 STORAGE_BACKEND 改成目标后端。</p>
+     *
+     * @return 复制的密钥数；当前后端为空时返回 0 且不切换；读取或写入失败时返回 -1，当前后端不变
+     */
+    static synchronized int migrate(String backend) {
+        String target = normalizeBackend(backend);
+        KeyStore source = store;
+        if (target == null || target.equals(source.name())) {
+            return -1;
+        }
+        KeyStore destination = BACKEND_MVSTORE.equals(target) ? new MvStoreKeyStore() : SQLITE;
+        SWITCH_LOCK.writeLock().lock();
+        try {
+            List<SequenceKey> page = source.getKeysAfter(null, FOR_EACH_PAGE_SIZE);
+            if (page == null) {
+                return -1;
+            }
+            if (page.isEmpty()) {
+                return 0;
+            }
+            destination.open();
+            if (!deleteStaleKeys(source, destination)) {
+                destination.close();
+                return -1;
+            }
+            // 逐页复制，任一时刻只有一页密钥在内存中
+            int copied = 0;
+            while (true) {
+                if (destination.saveKeys(page) < 0) {
+                    destination.close();
+                    return -1;
+                }
+                copied += page.size();
+                if (page.size() < FOR_EACH_PAGE_SIZE) {
+                    break;
+                }
+                page = source.getKeysAfter(page.getLast().getName(), FOR_EACH_PAGE_SIZE);
+                if (page == null) {
+                    destination.close();
+                    return -1;
+                }
+            }
+            long segment = source.getLastLedgerSegment();
+            if (segment > 0 && !destination.applyLedgerSegment(segment, Map.of())) {
+                destination.close();
+                return -1;
+            }
+            store = destination;
+            STORAGE_BACKEND = target;
+            source.close();
+            return copied;
+        } catch (Exception e) {
+            Debugger.debugOperation(e);
+            destination.close();
+            return -1;
+        } finally {
+            SWITCH_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除目标中源后端没有的密钥，使迁移后两边完全一致；按页遍历目标，不整表读入
+     *
+     * @return 目标某页读取失败时返回 false
+     */
+    private static boolean deleteStaleKeys(KeyStore source, KeyStore destination) {
+        String cursor = null;
+        while (true) {
+            List<SequenceKey> page = destination.getKeysAfter(cursor, FOR_EACH_PAGE_SIZE);
+            if (page == null) {
+                return false;
+            }
+            for (SequenceKey key : page) {
+                if (!source.exists(key.getName())) {
+                    destination.deleteKey(key.getName());
+                }
+            }
+            if (page.size() < FOR_EACH_PAGE_SIZE) {
+                return true;
+            }
+            // 游标按名称定位，删掉当前页的行不影响下一页
+            cursor = page.getLast().getName();
+        }
+    }
+
+    private static <T> T guarded(Supplier<T> write) {
+        SWITCH_LOCK.readLock().lock();
+        try {
+            return write.get();
+        } finally {
+            SWITCH_LOCK.readLock().unlock();
+        }
+    }
+
     /**
      * [新增] 彻底重载数据库连接
      * 用于在 reload 命令时确保数据库连接状态刷新（例如文件被外部替换后）
      */
     public static synchronized void reload() {
         Debugger.debugOperation("Reloading Database connection...");
-        // 1. 尝试关闭旧的保活连接
-        try {
-            if (keepAliveConn != null && !keepAliveConn.isClosed()) {
-                keepAliveConn.close();
-            }
-        } catch (SQLException ignored) {
+        // 1. 作废连接池中的读连接（借出中的连接归还时会因代数不符被关闭）
+        readerGeneration++;
+        ReaderConnection reader;
+        while ((reader = READERS.poll()) != null) {
+            reader.closeQuietly();
         }
 
-        // 2. 重新建立连接并配置环境
+        // 2. 重新打开当前后端（SQLite：在写线程上关闭旧的写连接，重新建立连接并配置环境）
         try {
-            connectAndConfigure();
+            store.reload();
             ServerLogger.infoWithSource("Database", "db.reloadSuccess");
         } catch (Exception e) {
             ServerLogger.error("db.initFailed", e, "Reload failed");
@@ -59,14 +268,17 @@ public class Database {
 
     /**
      * [重构] 提取连接配置逻辑，供 init 和 reload 复用
+     * 必须在写线程上调用
      */
     private static void connectAndConfigure() throws SQLException {
-        // 1. 建立连接
-        keepAliveConn = DriverManager.getConnection(DB_URL);
-        configureConnection(keepAliveConn);
+        // 1. 关闭旧的写连接及其语句缓存
+        closeWriter();
 
-        // 2. 确保表结构存在 (防止用户误删文件后 reload 报错)
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+        // 2. 建立连接
+        keepAliveConn = getConnection();
+
+        // 3. 确保表结构存在 (防止用户误删文件后 reload 报错)
+        try (Statement stmt = keepAliveConn.createStatement()) {
             // SQLite 兼容性建表 (0/1 代替 Boolean)
             stmt.execute("""
                     CREATE TABLE IF NOT EXISTS sk (
@@ -83,7 +295,27 @@ public class Database {
             // 热更新字段 (兼容旧版本升级)
             safeAddColumn(stmt, "sk", "isEnable", "BOOLEAN DEFAULT 1");
             safeAddColumn(stmt, "sk", "enableWebHTML", "BOOLEAN DEFAULT 0");
+
+            // 用量账本：记录已合并的最大段号，保证段重放幂等
+            stmt.execute("CREATE TABLE IF NOT EXISTS ledger_meta (id INTEGER PRIMARY KEY CHECK (id = 0), last_segment INTEGER NOT NULL)");
+        }
+    }
+
+    private static void closeWriter() {
+        for (PreparedStatement stmt : WRITER_STATEMENTS.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+            }
         }
+        WRITER_STATEMENTS.clear();
+        try {
+            if (keepAliveConn != null && !keepAliveConn.isClosed()) {
+                keepAliveConn.close();
+            }
+        } catch (SQLException ignored) {
+        }
+        keepAliveConn = null;
     }
 
     private static void configureConnection(Connection connection) throws SQLException {
@@ -101,6 +333,21 @@ public class Database {
         return connection;
     }
 
+    /**
+     * 读连接池用的连接：打开 query_only，误把写语句交给读连接时由 SQLite 直接拒绝，
+     * 保证所有写入都只经过写线程
+     */
+    private static Connection getReaderConnection() throws SQLException {
+        Connection connection = getConnection();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON;");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
     private static void safeAddColumn(Statement stmt, String table, String col, String def) {
         try {
             stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + col + " " + def);
@@ -109,138 +356,668 @@ public class Database {
         }
     }
 
-    // ==================== 数据操作方法 (DAO) ====================
+    // ==================== 写线程与读连接池 ====================
 
-    public static SequenceKey getKey(String name, boolean onlyEnabled) {
-        String sql = "SELECT * FROM sk WHERE name = ?" + (onlyEnabled ? " AND isEnable = 1" : "");
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, name);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return new SequenceKey(
-                            rs.getString("name"),
-                            rs.getDouble("balance"),
-                            rs.getString("expireTime"),
-                            rs.getString("port"),
-                            rs.getDouble("rate"),
-                            rs.getBoolean("isEnable"),
-                            rs.getBoolean("enableWebHTML")
-                    );
-                }
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ReaderWork<T> {
+        T run(ReaderConnection reader) throws SQLException;
+    }
+
+    private static <T> T callOnWriter(SqlWork<T> work) throws SQLException {
+        if (Thread.currentThread() == writerThread) {
+            return work.run();
+        }
+        try {
+            return WRITER.submit(work::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for SQLite writer", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
             }
+            throw new SQLException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new SQLException("SQLite writer rejected task", e);
+        }
+    }
+
+    /**
+     * 在写线程上执行一次写操作，失败时返回 fallback
+     */
+    private static <T> T write(SqlWork<T> work, T fallback) {
+        try {
+            return callOnWriter(() -> {
+                if (keepAliveConn == null || keepAliveConn.isClosed()) {
+                    connectAndConfigure();
+                }
+                return work.run();
+            });
         } catch (Exception e) {
             Debugger.debugOperation(e);
+            return fallback;
         }
-        return null;
     }
 
-    public static boolean exists(String name) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM sk WHERE name = ? LIMIT 1")) {
-            stmt.setString(1, name);
-            return stmt.executeQuery().next();
-        } catch (Exception e) {
-            return false;
+    /**
+     * 取得写连接上缓存的语句，仅可在写线程上调用
+     */
+    private static PreparedStatement writerStatement(String sql) throws SQLException {
+        PreparedStatement stmt = WRITER_STATEMENTS.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = keepAliveConn.prepareStatement(sql);
+            WRITER_STATEMENTS.put(sql, stmt);
         }
+        return stmt;
     }
 
     /**
-     * 插入或更新 Key (Upsert)
-     * SQLite 使用 REPLACE INTO 实现 Insert or Update
+     * 借用一个读连接执行查询。出错的连接不再归还，直接关闭
      */
-    public static boolean saveKey(SequenceKey key) {
-        // REPLACE INTO: 如果主键存在则删除旧记录插入新记录，适合全量更新
-        String sql = "REPLACE INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, key.getName());
-            stmt.setDouble(2, key.getBalanceNoLock());
-            stmt.setString(3, key.getExpireTime());
-            stmt.setString(4, key.getPortStr());
-            stmt.setDouble(5, key.getRateNoLock());
-            // 【修复】外层 saveToDB() 已持有 sequenceKey.lock，此处必须使用 NoLock 版本
-            // 避免与 isEnable()/isHTMLEnabled() 的加锁版本产生 ReentrantLock 重入
-            // 虽然重入在语义上是正确的，但统一使用 NoLock 可明确表达“调用方已持锁”的契约
-            stmt.setBoolean(6, key.isEnableNoLock());
-            stmt.setBoolean(7, key.isHTMLEnabledNoLock());
-            return stmt.executeUpdate() > 0;
+    private static <T> T read(ReaderWork<T> work, T fallback) {
+        ReaderConnection reader = null;
+        try {
+            reader = borrowReader();
+            T result = work.run(reader);
+            releaseReader(reader);
+            reader = null;
+            return result;
         } catch (Exception e) {
             Debugger.debugOperation(e);
-            return false;
+            return fallback;
+        } finally {
+            if (reader != null) {
+                reader.closeQuietly();
+            }
         }
     }
 
-    public static boolean createKey(String name, double balance, String expireTime, String portStr, double rate) {
-        String sql = "INSERT INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, 1, 0)";
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    private static ReaderConnection borrowReader() throws SQLException {
+        int generation = readerGeneration;
+        ReaderConnection reader;
+        while ((reader = READERS.poll()) != null) {
+            if (reader.generation == generation) {
+                return reader;
+            }
+            reader.closeQuietly();
+        }
+        return new ReaderConnection(getReaderConnection(), generation);
+    }
+
+    private static void releaseReader(ReaderConnection reader) {
+        if (reader.generation != readerGeneration || !READERS.offer(reader)) {
+            reader.closeQuietly();
+        }
+    }
+
+    private static SequenceKey readKey(ResultSet rs) throws SQLException {
+        return new SequenceKey(
+                rs.getString("name"),
+                rs.getDouble("balance"),
+                rs.getString("expireTime"),
+                rs.getString("port"),
+                rs.getDouble("rate"),
+                rs.getBoolean("isEnable"),
+                rs.getBoolean("enableWebHTML")
+        );
+    }
+
+    /**
+     * sk 表一行的快照，对应 SQL_REPLACE_KEY 的参数顺序
+     */
+    private record KeyRow(String name, double balance, String expireTime, String port,
+                          double rate, boolean isEnable, boolean enableWebHTML) {
+        private static KeyRow of(SequenceKey key) {
+            return new KeyRow(key.getName(), key.getBalanceNoLock(), key.getExpireTime(), key.getPortStr(),
+                    key.getRateNoLock(), key.isEnableNoLock(), key.isHTMLEnabledNoLock());
+        }
+
+        private void bind(PreparedStatement stmt) throws SQLException {
             stmt.setString(1, name);
             stmt.setDouble(2, balance);
             stmt.setString(3, expireTime);
-            stmt.setString(4, portStr);
+            stmt.setString(4, port);
             stmt.setDouble(5, rate);
-            return stmt.executeUpdate() > 0;
-        } catch (Exception e) {
-            Debugger.debugOperation(e);
-            return false;
+            stmt.setBoolean(6, isEnable);
+            stmt.setBoolean(7, enableWebHTML);
         }
     }
 
-    public static boolean deleteKey(String name) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement("DELETE FROM sk WHERE name = ?")) {
-            stmt.setString(1, name);
-            return stmt.executeUpdate() > 0;
-        } catch (Exception e) {
-            Debugger.debugOperation(e);
-            return false;
+    /**
+     * 池化的读连接及其语句缓存
+     */
+    private static final class ReaderConnection {
+        private final Connection connection;
+        private final int generation;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private ReaderConnection(Connection connection, int generation) {
+            this.connection = connection;
+            this.generation = generation;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            return stmt;
+        }
+
+        private void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
         }
     }
 
+    // ==================== 数据操作方法 (DAO) ====================
+
+    public static SequenceKey getKey(String name, boolean onlyEnabled) {
+        return store.getKey(name, onlyEnabled);
+    }
+
+    public static boolean exists(String name) {
+        return store.exists(name);
+    }
+
+    /**
+     * 插入或更新 Key (Upsert)，整行覆盖写入；日常落盘请走 {@link SequenceKey#saveToDB}，它只写入变化的部分
+     */
+    public static boolean saveKey(SequenceKey key) {
+        return guarded(() -> store.saveKey(key));
+    }
+
+    /**
+     * 在一个事务内批量写入多个 Key，全部成功或全部回滚
+     *
+     * @return 成功写入的行数；失败时返回 -1
+     */
+    public static int saveKeys(Collection<SequenceKey> keys) {
+        return guarded(() -> store.saveKeys(keys));
+    }
+
+    /**
+     * 在一个事务内批量插入密钥，已存在的同名密钥被跳过而不是覆盖
+     *
+     * @return 实际插入的行数；失败（已回滚）时返回 -1
+     */
+    public static int insertKeys(Collection<SequenceKey> keys) {
+        return guarded(() -> store.insertKeys(keys));
+    }
+
+    /**
+     * 写入一个密钥的增量变更：只更新变化的列，流量消耗以增量扣减。目标行不存在时退化为整行写入
+     */
+    public static boolean applyDelta(KeyDelta delta) {
+        return guarded(() -> store.applyDelta(delta));
+    }
+
+    /**
+     * 在一个事务内写入多个增量变更
+     *
+     * @return 写入的密钥数；失败（已回滚）时返回 -1
+     */
+    public static int applyDeltas(List<KeyDelta> deltas) {
+        return guarded(() -> store.applyDeltas(deltas));
+    }
+
+    /**
+     * 读取已合并的最大账本段号，没有记录时返回 0
+     */
+    public static long getLastLedgerSegment() {
+        return store.getLastLedgerSegment();
+    }
+
+    /**
+     * 把一个账本段的汇总扣减与段号在同一事务内提交；段号不大于已记录值时直接跳过（已应用过）
+     */
+    public static boolean applyLedgerSegment(long segmentId, Map<String, Double> debits) {
+        return guarded(() -> store.applyLedgerSegment(segmentId, debits));
+    }
+
+    public static boolean createKey(String name, double balance, String expireTime, String portStr, double rate) {
+        return guarded(() -> store.createKey(name, balance, expireTime, portStr, rate));
+    }
+
+    public static boolean deleteKey(String name) {
+        return guarded(() -> store.deleteKey(name));
+    }
+
     public static void updateBalance(String name, double amountToDeduct) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement("UPDATE sk SET balance = balance - ? WHERE name = ?")) {
-            stmt.setDouble(1, amountToDeduct);
-            stmt.setString(2, name);
-            stmt.executeUpdate();
-        } catch (Exception e) {
-            Debugger.debugOperation(e);
-        }
+        guarded(() -> store.updateBalance(name, amountToDeduct));
     }
 
     public static boolean updateStatus(String name, boolean isEnable) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement("UPDATE sk SET isEnable = ? WHERE name = ?")) {
-            stmt.setBoolean(1, isEnable);
-            stmt.setString(2, name);
-            return stmt.executeUpdate() > 0;
-        } catch (Exception e) {
-            Debugger.debugOperation(e);
-            return false;
-        }
+        return guarded(() -> store.updateStatus(name, isEnable));
     }
 
     public static List<SequenceKey> getAllKeys() {
-        List<SequenceKey> list = new ArrayList<>();
-        String sql = "SELECT * FROM sk ORDER BY name ASC";
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                list.add(new SequenceKey(
-                        rs.getString("name"),
-                        rs.getDouble("balance"),
-                        rs.getString("expireTime"),
-                        rs.getString("port"),
-                        rs.getDouble("rate"),
-                        rs.getBoolean("isEnable"),
-                        rs.getBoolean("enableWebHTML")
-                ));
+        return store.getAllKeys();
+    }
+
+    /**
+     * 键集分页：按名称升序返回 afterName 之后的至多 limit 个密钥。
+     * 以上一页最后一个名称作为游标，翻到深处也不需要 OFFSET 扫描
+     *
+     * @param afterName 上一页最后一个密钥名；null 表示第一页
+     */
+    public static List<SequenceKey> getKeysAfter(String afterName, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<SequenceKey> page = store.getKeysAfter(afterName, limit);
+        return page == null ? new ArrayList<>() : page;
+    }
+
+    /**
+     * 逐页遍历全部密钥，任一时刻只有一页在内存中
+     *
+     * @throws IOException 某一页读取失败；此时已遍历的只是部分密钥，调用方不能把结果当作完整数据
+     */
+    public static void forEachKey(Consumer<SequenceKey> action) throws IOException {
+        String cursor = null;
+        while (true) {
+            List<SequenceKey> page = store.getKeysAfter(cursor, FOR_EACH_PAGE_SIZE);
+            if (page == null) {
+                throw new IOException("Failed to read keys after " + (cursor == null ? "the beginning" : cursor));
             }
-        } catch (Exception e) {
-            Debugger.debugOperation(e);
+            for (SequenceKey key : page) {
+                action.accept(key);
+            }
+            if (page.size() < FOR_EACH_PAGE_SIZE) {
+                return;
+            }
+            cursor = page.getLast().getName();
+        }
+    }
+
+    public static int countKeys() {
+        return store.countKeys();
+    }
+
+    // ==================== SQLite 后端 ====================
+
+    private static int executeDelta(PreparedStatement stmt, KeyDelta delta) throws SQLException {
+        bindDelta(stmt, delta);
+        return stmt.executeUpdate();
+    }
+
+    /**
+     * 按 {@link KeyDelta#toUpdateSql()} 的列顺序绑定参数
+     */
+    private static void bindDelta(PreparedStatement stmt, KeyDelta delta) throws SQLException {
+        int index = 1;
+        if (delta.has(KeyDelta.BALANCE)) {
+            stmt.setDouble(index++, delta.balance());
+        } else if (delta.debit() != 0) {
+            stmt.setDouble(index++, delta.debit());
+        }
+        if (delta.has(KeyDelta.EXPIRE_TIME)) stmt.setString(index++, delta.expireTime());
+        if (delta.has(KeyDelta.PORT)) stmt.setString(index++, delta.port());
+        if (delta.has(KeyDelta.RATE)) stmt.setDouble(index++, delta.rate());
+        if (delta.has(KeyDelta.ENABLE)) stmt.setBoolean(index++, delta.isEnable());
+        if (delta.has(KeyDelta.WEB_HTML)) stmt.setBoolean(index++, delta.enableWebHTML());
+        stmt.setString(index, delta.name());
+    }
+
+    private static void replaceRow(KeyDelta delta) throws SQLException {
+        PreparedStatement stmt = writerStatement(SQL_REPLACE_KEY);
+        new KeyRow(delta.name(), delta.balance(), delta.expireTime(), delta.port(),
+                delta.rate(), delta.isEnable(), delta.enableWebHTML()).bind(stmt);
+        stmt.executeUpdate();
+    }
+
+    /**
+     * SQLite 后端。连接状态是 {@link Database} 的静态字段，因此全局只有这一个实例
+     */
+    private static final class SqliteStore implements KeyStore {
+        @Override
+        public String name() {
+            return BACKEND_SQLITE;
+        }
+
+        @Override
+        public void open() throws Exception {
+            Class.forName(DB_DRIVER);
+            callOnWriter(() -> {
+                connectAndConfigure();
+                return null;
+            });
+            ServerLogger.infoWithSource("Database", "db.initSuccess");
+        }
+
+        @Override
+        public void reload() throws Exception {
+            callOnWriter(() -> {
+                connectAndConfigure();
+                return null;
+            });
+        }
+
+        @Override
+        public void close() {
+            readerGeneration++;
+            ReaderConnection reader;
+            while ((reader = READERS.poll()) != null) {
+                reader.closeQuietly();
+            }
+            try {
+                callOnWriter(() -> {
+                    closeWriter();
+                    return null;
+                });
+            } catch (SQLException e) {
+                Debugger.debugOperation(e);
+            }
+        }
+
+        @Override
+        public SequenceKey getKey(String name, boolean onlyEnabled) {
+            return read(reader -> {
+                PreparedStatement stmt = reader.prepare(onlyEnabled ? SQL_SELECT_ENABLED_KEY : SQL_SELECT_KEY);
+                stmt.setString(1, name);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? readKey(rs) : null;
+                }
+            }, null);
+        }
+
+        @Override
+        public boolean exists(String name) {
+            return read(reader -> {
+                PreparedStatement stmt = reader.prepare(SQL_EXISTS);
+                stmt.setString(1, name);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next();
+                }
+            }, false);
+        }
+
+        /**
+         * 插入或更新 Key (Upsert)
+         * SQLite 使用 REPLACE INTO 实现 Insert or Update
+         * 整行覆盖写入；日常落盘请走 {@link SequenceKey#saveToDB}，它只写入变化的部分
+         */
+        @Override
+        public boolean saveKey(SequenceKey key) {
+            // 字段在调用线程上读取（volatile 字段使用 NoLock 版本），写线程只负责执行
+            KeyRow row = KeyRow.of(key);
+            return write(() -> {
+                // REPLACE INTO: 如果主键存在则删除旧记录插入新记录，适合全量更新
+                PreparedStatement stmt = writerStatement(SQL_REPLACE_KEY);
+                row.bind(stmt);
+                return stmt.executeUpdate() > 0;
+            }, false);
+        }
+
+        /**
+         * 在一个事务内批量写入多个 Key，全部成功或全部回滚
+         *
+         * @return 成功写入的行数；失败时返回 -1
+         */
+        @Override
+        public int saveKeys(Collection<SequenceKey> keys) {
+            if (keys.isEmpty()) {
+                return 0;
+            }
+            // 同 saveKey：字段在调用线程上取快照
+            List<KeyRow> rows = new ArrayList<>(keys.size());
+            for (SequenceKey key : keys) {
+                rows.add(KeyRow.of(key));
+            }
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_REPLACE_KEY);
+                keepAliveConn.setAutoCommit(false);
+                try {
+                    for (KeyRow row : rows) {
+                        row.bind(stmt);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    keepAliveConn.commit();
+                    return rows.size();
+                } catch (SQLException e) {
+                    stmt.clearBatch();
+                    keepAliveConn.rollback();
+                    throw e;
+                } finally {
+                    keepAliveConn.setAutoCommit(true);
+                }
+            }, -1);
+        }
+
+        /**
+         * 在一个事务内用 INSERT OR IGNORE 批量插入，按每条语句的更新计数统计实际插入数
+         */
+        @Override
+        public int insertKeys(Collection<SequenceKey> keys) {
+            if (keys.isEmpty()) {
+                return 0;
+            }
+            List<KeyRow> rows = new ArrayList<>(keys.size());
+            for (SequenceKey key : keys) {
+                rows.add(KeyRow.of(key));
+            }
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_INSERT_IGNORE_KEY);
+                keepAliveConn.setAutoCommit(false);
+                try {
+                    for (KeyRow row : rows) {
+                        row.bind(stmt);
+                        stmt.addBatch();
+                    }
+                    int inserted = 0;
+                    for (int count : stmt.executeBatch()) {
+                        if (count > 0) {
+                            inserted++;
+                        }
+                    }
+                    keepAliveConn.commit();
+                    return inserted;
+                } catch (SQLException e) {
+                    stmt.clearBatch();
+                    keepAliveConn.rollback();
+                    throw e;
+                } finally {
+                    keepAliveConn.setAutoCommit(true);
+                }
+            }, -1);
+        }
+
+        /**
+         * 写入一个密钥的增量变更：只更新变化的列，流量消耗用 {@code balance = balance - ?}。
+         * 目标行不存在时退化为整行写入。
+         */
+        @Override
+        public boolean applyDelta(KeyDelta delta) {
+            return write(() -> {
+                if (executeDelta(writerStatement(delta.toUpdateSql()), delta) == 0) {
+                    replaceRow(delta);
+                }
+                return true;
+            }, false);
+        }
+
+        /**
+         * 在一个事务内写入多个增量变更；相同列组合的变更共用一条批量语句
+         *
+         * @return 写入的密钥数；失败（已回滚）时返回 -1
+         */
+        @Override
+        public int applyDeltas(List<KeyDelta> deltas) {
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+            Map<String, List<KeyDelta>> bySql = new HashMap<>();
+            for (KeyDelta delta : deltas) {
+                bySql.computeIfAbsent(delta.toUpdateSql(), k -> new ArrayList<>()).add(delta);
+            }
+            return write(() -> {
+                keepAliveConn.setAutoCommit(false);
+                try {
+                    for (Map.Entry<String, List<KeyDelta>> entry : bySql.entrySet()) {
+                        PreparedStatement stmt = writerStatement(entry.getKey());
+                        List<KeyDelta> group = entry.getValue();
+                        for (KeyDelta delta : group) {
+                            bindDelta(stmt, delta);
+                            stmt.addBatch();
+                        }
+                        int[] counts = stmt.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) {
+                                replaceRow(group.get(i));
+                            }
+                        }
+                    }
+                    keepAliveConn.commit();
+                    return deltas.size();
+                } catch (SQLException e) {
+                    for (String sql : bySql.keySet()) {
+                        PreparedStatement stmt = WRITER_STATEMENTS.get(sql);
+                        if (stmt != null) stmt.clearBatch();
+                    }
+                    keepAliveConn.rollback();
+                    throw e;
+                } finally {
+                    keepAliveConn.setAutoCommit(true);
+                }
+            }, -1);
+        }
+
+        /**
+         * 读取已合并进 sk 表的最大账本段号，没有记录时返回 0
+         */
+        @Override
+        public long getLastLedgerSegment() {
+            return write(() -> {
+                try (ResultSet rs = writerStatement(SQL_LAST_LEDGER_SEGMENT).executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            }, 0L);
+        }
+
+        /**
+         * 把一个账本段的汇总扣减与段号在同一事务内提交；段号不大于已记录值时直接跳过（已应用过）
+         */
+        @Override
+        public boolean applyLedgerSegment(long segmentId, Map<String, Double> debits) {
+            return write(() -> {
+                keepAliveConn.setAutoCommit(false);
+                PreparedStatement deduct = writerStatement(SQL_DEDUCT_BALANCE);
+                try {
+                    try (ResultSet rs = writerStatement(SQL_LAST_LEDGER_SEGMENT).executeQuery()) {
+                        if (rs.next() && rs.getLong(1) >= segmentId) {
+                            keepAliveConn.rollback();
+                            return true;
+                        }
+                    }
+                    for (Map.Entry<String, Double> entry : debits.entrySet()) {
+                        deduct.setDouble(1, entry.getValue());
+                        deduct.setString(2, entry.getKey());
+                        deduct.addBatch();
+                    }
+                    deduct.executeBatch();
+                    PreparedStatement meta = writerStatement(SQL_SET_LEDGER_SEGMENT);
+                    meta.setLong(1, segmentId);
+                    meta.executeUpdate();
+                    keepAliveConn.commit();
+                    return true;
+                } catch (SQLException e) {
+                    deduct.clearBatch();
+                    keepAliveConn.rollback();
+                    throw e;
+                } finally {
+                    keepAliveConn.setAutoCommit(true);
+                }
+            }, false);
+        }
+
+        @Override
+        public boolean createKey(String name, double balance, String expireTime, String portStr, double rate) {
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_INSERT_KEY);
+                stmt.setString(1, name);
+                stmt.setDouble(2, balance);
+                stmt.setString(3, expireTime);
+                stmt.setString(4, portStr);
+                stmt.setDouble(5, rate);
+                return stmt.executeUpdate() > 0;
+            }, false);
+        }
+
+        @Override
+        public boolean deleteKey(String name) {
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_DELETE_KEY);
+                stmt.setString(1, name);
+                return stmt.executeUpdate() > 0;
+            }, false);
+        }
+
+        @Override
+        public boolean updateBalance(String name, double amountToDeduct) {
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_DEDUCT_BALANCE);
+                stmt.setDouble(1, amountToDeduct);
+                stmt.setString(2, name);
+                return stmt.executeUpdate() > 0;
+            }, false);
+        }
+
+        @Override
+        public boolean updateStatus(String name, boolean isEnable) {
+            return write(() -> {
+                PreparedStatement stmt = writerStatement(SQL_UPDATE_STATUS);
+                stmt.setBoolean(1, isEnable);
+                stmt.setString(2, name);
+                return stmt.executeUpdate() > 0;
+            }, false);
+        }
+
+        @Override
+        public List<SequenceKey> getAllKeys() {
+            return read(reader -> {
+                List<SequenceKey> list = new ArrayList<>();
+                try (ResultSet rs = reader.prepare(SQL_SELECT_ALL).executeQuery()) {
+                    while (rs.next()) {
+                        list.add(readKey(rs));
+                    }
+                }
+                return list;
+            }, new ArrayList<>());
+        }
+
+        @Override
+        public List<SequenceKey> getKeysAfter(String afterName, int limit) {
+            return read(reader -> {
+                PreparedStatement stmt = reader.prepare(SQL_SELECT_PAGE);
+                stmt.setString(1, afterName == null ? "" : afterName);
+                stmt.setInt(2, limit);
+                List<SequenceKey> page = new ArrayList<>(Math.min(limit, 1024));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        page.add(readKey(rs));
+                    }
+                }
+                return page;
+            }, null);
+        }
+
+        @Override
+        public int countKeys() {
+            return read(reader -> {
+                try (ResultSet rs = reader.prepare(SQL_COUNT).executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }, 0);
         }
-        return list;
     }
 }
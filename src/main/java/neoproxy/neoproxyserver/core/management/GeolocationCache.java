@@ -0,0 +1,163 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * GeolocationCache - 归属地查询结果的有界 LRU 缓存
+ *
+ * <p>以数值地址为键：同一地址的不同写法（如 {@code ::1} 与 {@code 0:0:0:0:0:0:0:1}）命中同一条目，
+ * IPv4 按 IPv4-mapped 形式存入，与 {@link BanSet} 的编码一致。超过容量时淘汰最久未使用的条目。</p>
+ *
+ * <p>线程安全：所有状态由一把 ReentrantLock 保护，临界区只有一次哈希表操作；查库在锁外进行。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class GeolocationCache {
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true：get 会把条目移到队尾，队首即最久未使用
+    private final LinkedHashMap<Key, IPGeolocationHelper.LocationInfo> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    GeolocationCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, IPGeolocationHelper.LocationInfo> eldest) {
+                return size() > GeolocationCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return 缓存的结果；未命中时为 null
+     */
+    IPGeolocationHelper.LocationInfo get(Key key) {
+        IPGeolocationHelper.LocationInfo info;
+        lock.lock();
+        try {
+            info = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (info == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return info;
+    }
+
+    void put(Key key, IPGeolocationHelper.LocationInfo info) {
+        lock.lock();
+        try {
+            entries.put(key, info);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * 把 IP 字面量转成数值键，不会触发 DNS 查询
+     *
+     * @return 不是合法 IP 字面量时为 null
+     */
+    static Key keyOf(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        String trimmed = ip.trim();
+        if (trimmed.indexOf(':') < 0) {
+            long v4 = parseIPv4(trimmed);
+            return v4 < 0 ? null : new Key(0, IPV4_MAPPED_PREFIX | v4);
+        }
+        try {
+            // 含冒号的字符串只会按 IPv6 字面量解析，不会查 DNS
+            byte[] raw = InetAddress.getByName(trimmed).getAddress();
+            if (raw.length == 4) {
+                return new Key(0, IPV4_MAPPED_PREFIX | (readLong(raw, 0, 4)));
+            }
+            return new Key(readLong(raw, 0, 8), readLong(raw, 8, 8));
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 无符号的 32 位地址；格式不对时为 -1
+     */
+    private static long parseIPv4(String ip) {
+        long value = 0;
+        int octets = 0;
+        int octet = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (octet < 0 || ++octets > 4) {
+                    return -1;
+                }
+                value = (value << 8) | octet;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static long readLong(byte[] raw, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (raw[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 128 位地址的高低两半
+     */
+    record Key(long high, long low) {
+    }
+}
@@ -0,0 +1,142 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.HostClient;
+import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.management.provider.KeyDataProvider;
+import neoproxy.neoproxyserver.core.management.provider.Protocol;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HeartbeatBatcher - 远程心跳的周期性批量发送
+ *
+ * <p>以前每个隧道在 {@link HostClient#startRemoteHeartbeat()} 中各自调度一个定时任务，
+ * 每 {@link Protocol#HEARTBEAT_INTERVAL_MS} 毫秒单独向 NKM 发一次 HTTP 请求，
+ * 请求数随隧道数线性增长。</p>
+ *
+ * <p>现在隧道只在此处登记，共享调度器上的单个任务每个周期收集所有已登记隧道的心跳，
+ * 通过 {@link KeyDataProvider#sendHeartbeatBatch} 一次发出，再按下标逐隧道应用踢出决定。
+ * 首个隧道登记时惰性启动，最后一个隧道注销后自动停止。</p>
+ *
+ * <p>共享调度器只负责按周期触发，HTTP 请求在虚拟线程上发出，NKM 响应慢时不会占住调度线程；
+ * 上一轮尚未结束时跳过本轮。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class HeartbeatBatcher {
+    private static final Set<HostClient> REGISTERED = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean SENDING = new AtomicBoolean(false);
+    private static ScheduledFuture<?> task;
+
+    private HeartbeatBatcher() {
+    }
+
+    public static void register(HostClient hostClient) {
+        if (REGISTERED.add(hostClient)) {
+            ensureStarted();
+        }
+    }
+
+    public static void unregister(HostClient hostClient) {
+        if (REGISTERED.remove(hostClient) && REGISTERED.isEmpty()) {
+            stopIfIdle();
+        }
+    }
+
+    public static int size() {
+        return REGISTERED.size();
+    }
+
+    public static synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        REGISTERED.clear();
+    }
+
+    private static synchronized void ensureStarted() {
+        if (task != null) {
+            return;
+        }
+        task = ThreadManager.getScheduledExecutor().scheduleAtFixedRate(HeartbeatBatcher::dispatch,
+                0, Protocol.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Debugger.debugOperation("HeartbeatBatcher started.");
+    }
+
+    private static void dispatch() {
+        if (!SENDING.compareAndSet(false, true)) {
+            Debugger.debugOperation("Remote heartbeat round skipped: previous round still running.");
+            return;
+        }
+        try {
+            ThreadManager.runAsync(() -> {
+                try {
+                    sendBatch(SequenceKey.PROVIDER);
+                } catch (Exception e) {
+                    ServerLogger.warn("hostClient.heartbeatError", e.getMessage());
+                    Debugger.debugOperation("Remote heartbeat batch failed: " + e.getMessage());
+                } finally {
+                    SENDING.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            SENDING.set(false);
+            Debugger.debugOperation(e);
+        }
+    }
+
+    private static synchronized void stopIfIdle() {
+        if (task != null && REGISTERED.isEmpty()) {
+            task.cancel(false);
+            task = null;
+            Debugger.debugOperation("HeartbeatBatcher stopped: no tunnels left.");
+        }
+    }
+
+    /**
+     * 执行一轮批量心跳
+     *
+     * @param provider 当前数据提供者
+     * @return 本轮发送心跳的隧道数
+     */
+    static int sendBatch(KeyDataProvider provider) {
+        if (provider == null) {
+            return 0;
+        }
+        List<HostClient> clients = new ArrayList<>(REGISTERED.size());
+        List<Protocol.HeartbeatPayload> payloads = new ArrayList<>(REGISTERED.size());
+        for (HostClient client : REGISTERED) {
+            if (client.isStopped() || client.getKey() == null) {
+                REGISTERED.remove(client);
+                continue;
+            }
+            clients.add(client);
+            payloads.add(client.buildHeartbeatPayload());
+        }
+        if (payloads.isEmpty()) {
+            return 0;
+        }
+
+        boolean[] keepAlive = provider.sendHeartbeatBatch(payloads);
+        for (int i = 0; i < clients.size() && i < keepAlive.length; i++) {
+            if (!keepAlive[i]) {
+                HostClient client = clients.get(i);
+                ServerLogger.warn("hostClient.kickedByManager", payloads.get(i).serial);
+                Debugger.debugOperation("Client kicked by NKM manager.");
+                client.close();
+            }
+        }
+        return payloads.size();
+    }
+}
@@ -1,8 +1,10 @@
 package neoproxy.neoproxyserver.core.management;
 
+import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.HostClient;
 import neoproxy.neoproxyserver.core.ServerLogger;
 import neoproxy.neoproxyserver.NeoProxyServer;
+import top.ceroxe.api.thread.ThreadManager;
 
 import java.io.*;
 import java.net.InetAddress;
@@ -10,9 +12,13 @@ import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,6 +30,15 @@ import static neoproxy.neoproxyserver.NeoProxyServer.hostServerHookServerSocket;
  * IP 封禁管理器（兼容 Java 21 Virtual Threads）
  * <p>
  * 修改：使用 ReentrantLock 替代 synchronized，防止文件 IO 导致虚拟线程 Pinning。
+ * <p>
+ * 【热路径】封禁判断走 {@link #isBanned(InetAddress)}：查询增量维护的 {@link BanFilter}，
+ * 不加锁、不做字符串转换。封禁 / 解封仍在 LOCK 内串行执行，每次只增删变动的那一条，
+ * 写盘期间 accept 线程不会被阻塞。
+ * <p>
+ * 【限时封禁】{@link BanInfo#expiresAt} 非 0 的封禁按到期时间排在 EXPIRIES 中，
+ * 共享调度器上的单个任务每秒检查一次，把所有到期的封禁在一次加锁内批量解除。
+ * <p>
+ * 【持久化】每次修改只向 banList.journal 追加一行，由 {@link BanJournal} 定期压缩回 banList.json。
  */
 public class IPChecker {
 
@@ -33,12 +48,24 @@ public class IPChecker {
 
     private static final File BAN_LIST_JSON = new File(NeoProxyServer.CURRENT_DIR_PATH, "banList.json");
     private static final File BAN_LIST_TXT_OLD = new File(NeoProxyServer.CURRENT_DIR_PATH, "banList.txt");
+    private static final File BAN_LIST_JOURNAL = new File(NeoProxyServer.CURRENT_DIR_PATH, "banList.journal");
+    // 快照 + 追加日志，仅在持有 LOCK 时访问
+    private static final BanJournal JOURNAL = new BanJournal(BAN_LIST_JSON, BAN_LIST_JOURNAL);
 
     private static final Map<String, BanInfo> bannedIPMap = new ConcurrentHashMap<>();
+    // 与 bannedIPMap 同步增删，仅在持有 LOCK 时修改
+    private static final BanFilter FILTER = new BanFilter(
+            () -> hostServerHookServerSocket == null ? null : hostServerHookServerSocket.getIgnoreIPs());
+    // 限时封禁按到期时间排序；被手动解封或覆盖的条目不在此删除，出队时与 bannedIPMap 比对后跳过
+    private static final PriorityQueue<BanInfo> EXPIRIES = new PriorityQueue<>(Comparator.comparingLong(info -> info.expiresAt));
+    private static final DateTimeFormatter EXPIRY_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    private static ScheduledFuture<?> expiryTask;
 
     private static final String IPV4_REGEX =
             "^((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$";
     private static final Pattern IPV4_PATTERN = Pattern.compile(IPV4_REGEX);
+    private static final Pattern PREFIX_LENGTH_PATTERN = Pattern.compile("^\\d{1,3}$");
+    private static final Pattern BAN_DURATION_PATTERN = Pattern.compile("^(\\d{1,12})([smhd]?)$");
     // 【新增】全局锁
     private static final ReentrantLock LOCK = new ReentrantLock();
     public static volatile boolean ENABLE_BAN = true;
@@ -46,7 +73,7 @@ public class IPChecker {
     public static void loadBannedIPs() {
         LOCK.lock();
         try {
-            if (BAN_LIST_TXT_OLD.exists() && !BAN_LIST_JSON.exists()) {
+            if (BAN_LIST_TXT_OLD.exists() && !JOURNAL.exists()) {
                 ServerLogger.infoWithSource("IPChecker", "ipChecker.migrating", "banList.txt -> banList.json");
                 migrateTxtToJson();
             }
@@ -64,9 +91,9 @@ public class IPChecker {
             String line;
             while ((line = reader.readLine()) != null) {
                 String ip = line.trim();
-                String normalizedIp = normalizeIP(ip);
+                String normalizedIp = normalizeRule(ip);
                 if (normalizedIp != null) {
-                    IPGeolocationHelper.LocationInfo info = IPGeolocationHelper.getLocationInfo(normalizedIp);
+                    IPGeolocationHelper.LocationInfo info = IPGeolocationHelper.getLocationInfo(ruleAddress(normalizedIp));
                     tempList.add(new BanInfo(normalizedIp, info.location(), info.isp()));
                 }
             }
@@ -79,7 +106,8 @@ public class IPChecker {
         for (BanInfo info : tempList) {
             bannedIPMap.put(info.ip, info);
         }
-        saveToJson();
+        JOURNAL.compact(bannedIPMap.values());
+        FILTER.reset(bannedIPMap.keySet());
 
         try {
             Files.move(BAN_LIST_TXT_OLD.toPath(),
@@ -91,148 +119,146 @@ public class IPChecker {
     }
 
     private static void reloadFromJson() {
-        if (!BAN_LIST_JSON.exists()) {
-            try {
-                BAN_LIST_JSON.createNewFile();
-                saveToJson();
-            } catch (IOException e) {
+        if (!JOURNAL.exists()) {
+            if (!JOURNAL.compact(List.of())) {
                 ServerLogger.warnWithSource("IPChecker", "ipChecker.failedToCreateJson");
             }
             return;
         }
 
+        Map<String, BanInfo> loaded;
         try {
-            String content = Files.readString(BAN_LIST_JSON.toPath(), StandardCharsets.UTF_8);
-            if (content == null || content.isBlank()) return;
-
-            Pattern pattern = Pattern.compile("\"ip\":\\s*\"(.*?)\"[\\s\\S]*?\"location\":\\s*\"(.*?)\"[\\s\\S]*?\"isp\":\\s*\"(.*?)\"");
-            Matcher matcher = pattern.matcher(content);
-
-            Map<String, BanInfo> newMap = new ConcurrentHashMap<>();
-            while (matcher.find()) {
-                String ip = matcher.group(1);
-                String loc = matcher.group(2);
-                String isp = matcher.group(3);
-                String normalizedIp = normalizeIP(ip);
-                if (normalizedIp != null) {
-                    newMap.put(normalizedIp, new BanInfo(normalizedIp, loc, isp));
-                }
+            loaded = JOURNAL.load();
+        } catch (IOException e) {
+            ServerLogger.errorWithSource("IPChecker", "ipChecker.failedToReadJson", e.getMessage());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        Map<String, BanInfo> newMap = new HashMap<>();
+        for (BanInfo info : loaded.values()) {
+            String normalizedRule = normalizeRule(info.ip);
+            if (normalizedRule == null) continue;
+            if (info.isExpired(now)) {
+                expired++;
+                continue;
             }
+            newMap.put(normalizedRule, new BanInfo(normalizedRule, info.location, info.isp, info.expiresAt));
+        }
+
+        bannedIPMap.clear();
+        bannedIPMap.putAll(newMap);
+        FILTER.reset(bannedIPMap.keySet());
+        EXPIRIES.clear();
+        for (BanInfo info : bannedIPMap.values()) {
+            if (info.expiresAt > 0) EXPIRIES.add(info);
+        }
+        if (!EXPIRIES.isEmpty()) ensureExpiryTask();
 
-            bannedIPMap.clear();
-            bannedIPMap.putAll(newMap);
-            syncIgnoreIPs();
+        // 启动时把上次留下的日志和停机期间到期的封禁一并清出快照
+        if (JOURNAL.journalEntries() > 0 || expired > 0) {
+            JOURNAL.compact(bannedIPMap.values());
+        }
+    }
 
-        } catch (IOException e) {
-            ServerLogger.errorWithSource("IPChecker", "ipChecker.failedToReadJson", e.getMessage());
+    /**
+     * 日志过长时并入快照。调用前须持有锁
+     */
+    private static void compactIfNeeded() {
+        if (JOURNAL.needsCompaction(bannedIPMap.size())) {
+            JOURNAL.compact(bannedIPMap.values());
         }
     }
 
+    private static void ensureExpiryTask() {
+        if (expiryTask != null) return;
+        expiryTask = ThreadManager.getScheduledExecutor().scheduleAtFixedRate(
+                IPChecker::liftExpiredBans, 1, 1, TimeUnit.SECONDS);
+        Debugger.debugOperation("Ban expiry task started.");
+    }
+
     /**
-     * 保存格式化的 JSON (Pretty Print)
-     * 调用此方法必须持有锁，或由外部加锁
+     * 批量解除所有到期的封禁：一次加锁、一次批量写日志
+     *
+     * @return 本次解除的封禁数
      */
-    private static boolean saveToJson() {
-        // 由于 loadBannedIPs 和 exec 都会调用此方法，且它们都加了锁，
-        // 这里的 synchronized 可以移除，依赖外部 ReentrantLock 即可。
-        // 为防意外直接调用，也可以再次 lock()，ReentrantLock 是可重入的。
+    static int liftExpiredBans() {
         LOCK.lock();
         try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("[\n");
-
-            Iterator<BanInfo> iterator = bannedIPMap.values().iterator();
-            while (iterator.hasNext()) {
-                BanInfo info = iterator.next();
-                sb.append("  {\n");
-                sb.append(String.format("    \"ip\": \"%s\",\n", info.ip));
-                sb.append(String.format("    \"location\": \"%s\",\n", escapeJson(info.location)));
-                sb.append(String.format("    \"isp\": \"%s\"\n", escapeJson(info.isp)));
-                sb.append("  }");
-
-                if (iterator.hasNext()) {
-                    sb.append(",\n");
-                } else {
-                    sb.append("\n");
+            long now = System.currentTimeMillis();
+            List<String> lifted = new ArrayList<>();
+            while (!EXPIRIES.isEmpty() && EXPIRIES.peek().isExpired(now)) {
+                BanInfo info = EXPIRIES.poll();
+                // 已被手动解封或被新的封禁覆盖
+                if (bannedIPMap.get(info.ip) != info) continue;
+                bannedIPMap.remove(info.ip);
+                FILTER.remove(info.ip);
+                lifted.add(info.ip);
+            }
+            if (!lifted.isEmpty()) {
+                if (JOURNAL.appendUnbans(lifted)) {
+                    compactIfNeeded();
                 }
+                ServerLogger.infoWithSource("IPChecker", "ipChecker.bansExpired", lifted.size());
+                Debugger.debugOperation("Expired bans lifted: " + lifted);
             }
-            sb.append("]");
-
-            try (BufferedWriter writer = new BufferedWriter(
-                    new OutputStreamWriter(new FileOutputStream(BAN_LIST_JSON), StandardCharsets.UTF_8))) {
-                writer.write(sb.toString());
-                writer.flush();
-                return true;
-            } catch (IOException e) {
-                ServerLogger.errorWithSource("IPChecker", "ipChecker.failedToWriteJson", e.getMessage());
-                return false;
+            if (EXPIRIES.isEmpty() && expiryTask != null) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+                Debugger.debugOperation("Ban expiry task stopped: no timed bans left.");
             }
+            return lifted.size();
         } finally {
             LOCK.unlock();
         }
     }
 
-    private static String escapeJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
-    }
-
-    private static void syncIgnoreIPs() {
-        if (hostServerHookServerSocket == null) return;
-        CopyOnWriteArrayList<String> ignoreIPs = hostServerHookServerSocket.getIgnoreIPs();
-        ignoreIPs.clear();
-        ignoreIPs.addAll(bannedIPMap.keySet());
+    /**
+     * accept 路径上的封禁判断：无锁，直接按地址字节查询
+     */
+    public static boolean isBanned(InetAddress address) {
+        return ENABLE_BAN && FILTER.contains(address);
     }
 
+    /**
+     * @param ip 单个地址；DO_BAN / UNBAN 还接受 CIDR 前缀（如 203.0.113.0/24）
+     */
     public static boolean exec(String ip, int execMode) {
-        String normalizedIp = normalizeIP(ip);
-        if (normalizedIp == null) return false;
-        ip = normalizedIp;
+        if (execMode == CHECK_IS_BAN) {
+            // 与 isBanned 相同，不需要全局锁；命中单个地址或任一前缀规则即为封禁
+            String normalizedIp = normalizeIP(ip);
+            return normalizedIp != null && isBanned(parseLiteral(normalizedIp));
+        }
+        String normalizedRule = normalizeRule(ip);
+        if (normalizedRule == null) return false;
+        ip = normalizedRule;
 
         LOCK.lock();
         try {
             switch (execMode) {
                 case DO_BAN:
-                    if (!ENABLE_BAN) return false;
-                    if (bannedIPMap.containsKey(ip)) return true;
-
-                    for (HostClient client : availableHostClient) {
-                        String addr = client.getHostServerHook().getInetAddress().getHostAddress();
-                        if (ip.equals(addr)) {
-                            client.close();
-                        }
-                    }
-
-                    IPGeolocationHelper.LocationInfo locInfo = IPGeolocationHelper.getLocationInfo(ip);
-                    BanInfo info = new BanInfo(ip, locInfo.location(), locInfo.isp());
-
-                    bannedIPMap.put(ip, info);
+                    return ban(ip, 0);
 
-                    if (saveToJson()) {
-                        syncIgnoreIPs();
-                        ServerLogger.infoWithSource("IPChecker", "ipChecker.ipBanned", ip + " (" + info.location + ")");
+                case UNBAN:
+                    // unban 同时解除限速触发的临时封禁
+                    boolean lifted = ip.indexOf('/') < 0 && ConnectionGuard.lift(parseLiteral(ip));
+                    BanInfo removed = bannedIPMap.remove(ip);
+                    if (removed == null) {
+                        if (lifted) ServerLogger.infoWithSource("IPChecker", "ipChecker.ipUnbanned", ip);
                         return true;
-                    } else {
-                        bannedIPMap.remove(ip);
-                        return false;
                     }
 
-                case UNBAN:
-                    if (!bannedIPMap.containsKey(ip)) return true;
-
-                    bannedIPMap.remove(ip);
-                    if (saveToJson()) {
-                        syncIgnoreIPs();
+                    if (JOURNAL.appendUnban(ip)) {
+                        compactIfNeeded();
+                        FILTER.remove(ip);
                         ServerLogger.infoWithSource("IPChecker", "ipChecker.ipUnbanned", ip);
                         return true;
                     } else {
-                        reloadFromJson();
+                        bannedIPMap.put(ip, removed);
                         return false;
                     }
 
-                case CHECK_IS_BAN:
-                    return ENABLE_BAN && bannedIPMap.containsKey(ip);
-
                 default:
                     return false;
             }
@@ -241,6 +267,68 @@ public class IPChecker {
         }
     }
 
+    /**
+     * 封禁单个地址或 CIDR 前缀
+     *
+     * @param rule            单个地址或 CIDR 前缀
+     * @param durationSeconds 封禁时长（秒），0 表示永久。已有更长或永久的封禁时不缩短
+     */
+    public static boolean ban(String rule, long durationSeconds) {
+        String ip = normalizeRule(rule);
+        if (ip == null || durationSeconds < 0) return false;
+        long expiresAt = durationSeconds == 0 ? 0 : System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(durationSeconds);
+        // 新规则的归属地在加锁前查好（前缀规则按网络地址查），查库期间不阻塞其他封禁操作
+        IPGeolocationHelper.LocationInfo locInfo = bannedIPMap.containsKey(ip) ? null
+                : IPGeolocationHelper.getLocationInfo(ruleAddress(ip));
+
+        LOCK.lock();
+        try {
+            if (!ENABLE_BAN) return false;
+            BanInfo existing = bannedIPMap.get(ip);
+            if (existing != null && (existing.expiresAt == 0 || (expiresAt != 0 && expiresAt <= existing.expiresAt))) {
+                return true;
+            }
+
+            if (existing == null) {
+                BanSet newRule = BanSet.of(List.of(ip));
+                for (HostClient client : availableHostClient) {
+                    if (newRule.contains(client.getHostServerHook().getInetAddress())) {
+                        client.close();
+                    }
+                }
+            }
+
+            BanInfo info;
+            if (existing == null) {
+                if (locInfo == null) {
+                    // 加锁前它还在列表里，之后被解封了
+                    locInfo = IPGeolocationHelper.getLocationInfo(ruleAddress(ip));
+                }
+                info = new BanInfo(ip, locInfo.location(), locInfo.isp(), expiresAt);
+            } else {
+                // 延长已有的限时封禁，归属地沿用
+                info = new BanInfo(ip, existing.location, existing.isp, expiresAt);
+            }
+
+            bannedIPMap.put(ip, info);
+            if (!JOURNAL.appendBan(info)) {
+                if (existing == null) bannedIPMap.remove(ip);
+                else bannedIPMap.put(ip, existing);
+                return false;
+            }
+            compactIfNeeded();
+            FILTER.add(ip);
+            if (expiresAt != 0) {
+                EXPIRIES.add(info);
+                ensureExpiryTask();
+            }
+            ServerLogger.infoWithSource("IPChecker", "ipChecker.ipBanned", ip + " (" + info.location + ")");
+            return true;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
     public static Set<String> getBannedIPs() {
         return new HashSet<>(bannedIPMap.keySet());
     }
@@ -249,7 +337,7 @@ public class IPChecker {
         LOCK.lock();
         try {
             return bannedIPMap.values().stream()
-                    .map(info -> new BanInfo(info.ip, info.location, info.isp))
+                    .map(info -> new BanInfo(info.ip, info.location, info.isp, info.expiresAt))
                     .sorted(Comparator.comparing(info -> info.ip))
                     .toList();
         } finally {
@@ -257,10 +345,95 @@ public class IPChecker {
         }
     }
 
+    /**
+     * 解析封禁时长：纯数字为秒，或带 s / m / h / d 后缀（如 30m、12h、7d）
+     *
+     * @return 秒数；格式不对、为 0 或到期时间超出可表示范围时返回 -1
+     */
+    public static long parseBanDuration(String value) {
+        Matcher m = BAN_DURATION_PATTERN.matcher(value == null ? "" : value.trim().toLowerCase(Locale.ROOT));
+        if (!m.matches()) return -1;
+        try {
+            long amount = Long.parseLong(m.group(1));
+            long unit = switch (m.group(2)) {
+                case "m" -> 60;
+                case "h" -> 3600;
+                case "d" -> 86400;
+                default -> 1;
+            };
+            long seconds = Math.multiplyExact(amount, unit);
+            // 到期时间以 epoch 毫秒保存，换算后溢出的时长同样视为非法
+            Math.addExact(System.currentTimeMillis(), Math.multiplyExact(seconds, 1000L));
+            return seconds > 0 ? seconds : -1;
+        } catch (ArithmeticException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return 到期时间的本地时间表示；永久封禁显示为 PERMANENT，与密钥过期时间的写法一致
+     */
+    public static String formatExpiry(BanInfo info) {
+        if (info.expiresAt == 0) return "PERMANENT";
+        return EXPIRY_FORMAT.format(Instant.ofEpochMilli(info.expiresAt).atZone(ZoneId.systemDefault()));
+    }
+
     public static boolean isValidIP(String ip) {
         return normalizeIP(ip) != null;
     }
 
+    /**
+     * @return 单个地址或 CIDR 前缀是否合法
+     */
+    public static boolean isValidRule(String rule) {
+        return normalizeRule(rule) != null;
+    }
+
+    /**
+     * 规范化封禁规则：单个地址同 {@link #normalizeIP}；CIDR 清零主机位后写成 {@code 网络地址/长度}，
+     * 长度等于地址全长时退化为单个地址。无效时返回 null
+     */
+    static String normalizeRule(String rule) {
+        if (rule == null || rule.isBlank()) return null;
+        String trimmed = rule.trim();
+        int slash = trimmed.indexOf('/');
+        if (slash < 0) {
+            return normalizeIP(trimmed);
+        }
+        String ip = normalizeIP(trimmed.substring(0, slash));
+        String lengthStr = trimmed.substring(slash + 1);
+        if (ip == null || !PREFIX_LENGTH_PATTERN.matcher(lengthStr).matches()) return null;
+        int length = Integer.parseInt(lengthStr);
+        byte[] raw = parseLiteral(ip).getAddress();
+        if (length > raw.length * 8) return null;
+        if (length == raw.length * 8) return ip;
+        for (int i = 0; i < raw.length; i++) {
+            int keep = Math.max(0, Math.min(8, length - i * 8));
+            raw[i] &= (byte) (0xFF00 >>> keep);
+        }
+        try {
+            return InetAddress.getByAddress(raw).getHostAddress() + "/" + length;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static String ruleAddress(String rule) {
+        int slash = rule.indexOf('/');
+        return slash < 0 ? rule : rule.substring(0, slash);
+    }
+
+    /**
+     * 解析已经过 normalizeIP 校验的字面量，不会触发 DNS 查询
+     */
+    private static InetAddress parseLiteral(String ip) {
+        try {
+            return InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
     private static String normalizeIP(String ip) {
         if (ip == null || ip.isBlank()) return null;
         String normalized = ip.trim();
@@ -290,24 +463,26 @@ public class IPChecker {
         int wIp = 15;
         int wLoc = 10;
         int wIsp = 10;
+        int wExp = 10;
 
         for (BanInfo i : bannedIPMap.values()) {
             wIp = Math.max(wIp, getDisplayWidth(i.ip));
             wLoc = Math.max(wLoc, getDisplayWidth(i.location));
             wIsp = Math.max(wIsp, getDisplayWidth(i.isp));
+            wExp = Math.max(wExp, getDisplayWidth(formatExpiry(i)));
         }
 
-        String format = "│ %-" + wIp + "s │ %-" + wLoc + "s │ %-" + wIsp + "s │\n";
-        String border = "─".repeat(wIp + 2) + "┬" + "─".repeat(wLoc + 2) + "┬" + "─".repeat(wIsp + 2);
+        String format = "│ %-" + wIp + "s │ %-" + wLoc + "s │ %-" + wIsp + "s │ %-" + wExp + "s │\n";
+        String border = "─".repeat(wIp + 2) + "┬" + "─".repeat(wLoc + 2) + "┬" + "─".repeat(wIsp + 2) + "┬" + "─".repeat(wExp + 2);
         String[] headers = ServerLogger.getMessage("ipChecker.headers.banList").split("\\|", -1);
 
         StringBuilder sb = new StringBuilder();
         sb.append("\n┌").append(border.replace("┬", "─")).append("┐\n");
-        sb.append(String.format(format, headers[0], headers[1], headers[2]));
+        sb.append(String.format(format, headers[0], headers[1], headers[2], headers[3]));
         sb.append("├").append(border).append("┤\n");
 
         for (BanInfo i : bannedIPMap.values()) {
-            sb.append(String.format(format, i.ip, i.location, i.isp));
+            sb.append(String.format(format, i.ip, i.location, i.isp, formatExpiry(i)));
         }
         sb.append("└").append(border.replace("┬", "─")).append("┘");
 
@@ -327,11 +502,24 @@ public class IPChecker {
         public final String ip;
         public final String location;
         public final String isp;
+        /**
+         * 到期时间（epoch 毫秒），0 表示永久
+         */
+        public final long expiresAt;
 
         public BanInfo(String ip, String location, String isp) {
+            this(ip, location, isp, 0);
+        }
+
+        public BanInfo(String ip, String location, String isp, long expiresAt) {
             this.ip = ip;
             this.location = location;
             this.isp = isp;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(long nowMillis) {
+            return expiresAt > 0 && expiresAt <= nowMillis;
         }
     }
 }
@@ -1,10 +1,13 @@
 package neoproxy.neoproxyserver.core.management;
 
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
 import org.lionsoul.ip2region.xdb.LongByteArray;
 import org.lionsoul.ip2region.xdb.Searcher;
 import org.lionsoul.ip2region.xdb.Version;
+import top.ceroxe.api.thread.ThreadManager;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,8 +18,24 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+/**
+ * IPGeolocationHelper - 基于 ip2region 的 IP 归属地查询
+ *
+ * <p>【并发】以前所有查询对同一个 Searcher 加 {@code synchronized}，全节点串行。现在每个版本的库有一个
+ * {@link SearcherPool}：内存模式下池中的 Searcher 共享同一份 {@link LongByteArray}，只多出几个小对象。
+ * 每次查询独占借出一个，用完归还。LOW_RAM 模式改为 {@link MappedXdbSearcher} 直接在映射的文件上查询，
+ * 无需池也无需加锁；映射失败时才退回每个 Searcher 持有自己文件句柄的池。</p>
+ *
+ * <p>【缓存】查询结果按数值地址缓存在有界 LRU（{@link GeolocationCache}）中，
+ * 封禁、{@code find}、列表刷新反复查同一批地址时不再访问库。</p>
+ *
+ * <p>【异步】连接路径上只调用 {@link #getLocationInfoAsync}，归属地在后台线程上解析后回填。</p>
+ */
 public class IPGeolocationHelper {
 
     private static final String FILE_V4 = "ip2region_v4.xdb";
@@ -24,8 +43,10 @@ public class IPGeolocationHelper {
     private static final int XDB_LOAD_SLICE_BYTES = 1024 * 1024;
     private static final List<Path> TEMP_XDB_FILES = new ArrayList<>();
 
-    private static Searcher searcherV4;
-    private static Searcher searcherV6;
+    private static final GeolocationCache CACHE = new GeolocationCache(ServerConstants.GEOLOCATION_CACHE_SIZE);
+
+    private static volatile RegionSearcher searcherV4;
+    private static volatile RegionSearcher searcherV6;
     private static boolean v4Loaded = false;
     private static boolean v6Loaded = false;
     private static Path tempXdbDirectory;
@@ -54,31 +75,76 @@ public class IPGeolocationHelper {
         }
     }
 
-    private static Searcher openSearcher(String fileName, Version version, String successKey, String failedKey) {
+    private static RegionSearcher openSearcher(String fileName, Version version, String successKey, String failedKey) {
+        int poolSize = ServerConstants.GEOLOCATION_SEARCHER_POOL_SIZE;
+        String sourceName = version == Version.IPv4 ? "Ip2region-v4" : "Ip2region-v6";
+        SearcherPool pool = new SearcherPool(poolSize, lowRamMode ? sourceName + "-file" : sourceName);
         try {
             if (lowRamMode) {
                 File xdbFile = resolveFileBackedDatabase(fileName);
                 if (xdbFile == null) {
                     return null;
                 }
-                Searcher searcher = Searcher.newWithFileOnly(version, xdbFile);
+                RegionSearcher mapped = openMapped(xdbFile, version, sourceName + "-mmap");
+                if (mapped != null) {
+                    ServerLogger.infoWithSource("IPGeolocationHelper", successKey, "mmap:" + xdbFile.length());
+                    return mapped;
+                }
+                for (int i = 0; i < poolSize; i++) {
+                    pool.add(Searcher.newWithFileOnly(version, xdbFile));
+                }
                 ServerLogger.infoWithSource("IPGeolocationHelper", successKey, "file:" + xdbFile.length());
-                return searcher;
-            }
-
-            LongByteArray content = loadResourceToBuffer(fileName);
-            if (content == null) {
-                return null;
+            } else {
+                LongByteArray content = loadResourceToBuffer(fileName);
+                if (content == null) {
+                    return null;
+                }
+                // 所有 Searcher 共享同一份只读内容
+                for (int i = 0; i < poolSize; i++) {
+                    pool.add(Searcher.newWithBuffer(version, content));
+                }
+                ServerLogger.infoWithSource("IPGeolocationHelper", successKey, String.valueOf(content.length()));
             }
-            Searcher searcher = Searcher.newWithBuffer(version, content);
-            ServerLogger.infoWithSource("IPGeolocationHelper", successKey, String.valueOf(content.length()));
-            return searcher;
+            Debugger.debugOperation("Geolocation searcher pool ready: " + fileName + " x" + poolSize);
+            return pool;
         } catch (IOException e) {
+            pool.close();
             ServerLogger.errorWithSource("IPGeolocationHelper", failedKey, e.getMessage());
             return null;
         }
     }
 
+    /**
+     * LOW_RAM 模式优先内存映射：索引留在页缓存里，不占堆，也不需要 Searcher 池
+     *
+     * @return 无法映射（如地址空间不足）时为 null，由调用方退回逐次读文件
+     */
+    private static RegionSearcher openMapped(File xdbFile, Version version, String sourceName) {
+        try {
+            MappedXdbSearcher searcher = MappedXdbSearcher.open(xdbFile.toPath(), version == Version.IPv4 ? 4 : 6);
+            Debugger.debugOperation("Geolocation database memory-mapped: " + xdbFile + " (" + searcher.size() + " bytes)");
+            return new RegionSearcher() {
+                @Override
+                public String search(String ip) throws IOException {
+                    return searcher.search(ip);
+                }
+
+                @Override
+                public String source() {
+                    return sourceName;
+                }
+
+                @Override
+                public void close() {
+                    // 映射随对象回收而解除
+                }
+            };
+        } catch (IOException | UnsupportedOperationException e) {
+            Debugger.debugOperation("Memory-mapping " + xdbFile + " failed, falling back to file reads: " + e.getMessage());
+            return null;
+        }
+    }
+
     private static LongByteArray loadResourceToBuffer(String fileName) {
         try (InputStream inputStream = IPGeolocationHelper.class.getClassLoader().getResourceAsStream(fileName)) {
             if (inputStream == null) {
@@ -130,29 +196,42 @@ public class IPGeolocationHelper {
                 return new LocationInfo("Localhost", "Intranet", true, "Local");
             }
 
+            GeolocationCache.Key key = GeolocationCache.keyOf(ip);
+            if (key != null) {
+                LocationInfo cached = CACHE.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
             boolean isIpv6 = ip.indexOf(':') > -1;
             String region;
             String usedSource;
 
             if (isIpv6) {
-                if (!v6Loaded || searcherV6 == null) {
+                RegionSearcher searcher = searcherV6;
+                if (!v6Loaded || searcher == null) {
                     return LocationInfo.failed("IPv6 DB not loaded");
                 }
-                region = search(searcherV6, ip);
-                usedSource = lowRamMode ? "Ip2region-v6-file" : "Ip2region-v6";
+                region = searcher.search(ip);
+                usedSource = searcher.source();
             } else {
-                if (!v4Loaded || searcherV4 == null) {
+                RegionSearcher searcher = searcherV4;
+                if (!v4Loaded || searcher == null) {
                     return LocationInfo.failed("IPv4 DB not loaded");
                 }
-                region = search(searcherV4, ip);
-                usedSource = lowRamMode ? "Ip2region-v4-file" : "Ip2region-v4";
+                region = searcher.search(ip);
+                usedSource = searcher.source();
             }
 
-            if (region == null || region.isEmpty()) {
-                return LocationInfo.failed();
+            LocationInfo info = region == null || region.isEmpty()
+                    ? LocationInfo.failed()
+                    : parseRegionStr(region, usedSource);
+            // 库给出了答案（哪怕是查不到）才缓存；库未加载或查询异常时下次重试
+            if (key != null) {
+                CACHE.put(key, info);
             }
-
-            return parseRegionStr(region, usedSource);
+            return info;
         } catch (Exception e) {
             ServerLogger.warnWithSource("IPGeolocationHelper", "ipGeolocationHelper.query.error",
                     ip + ", " + e.getMessage());
@@ -160,13 +239,16 @@ public class IPGeolocationHelper {
         }
     }
 
-    private static String search(Searcher searcher, String ip) throws Exception {
-        // Searcher 持有可变的游标和计数状态；同步可以避免 RandomAccessFile 的 seek 状态被并发破坏。
-        synchronized (searcher) {
-            return searcher.search(ip);
-        }
+    /**
+     * 在后台线程上查询，供连接路径使用；结果同样进入缓存
+     */
+    public static CompletableFuture<LocationInfo> getLocationInfoAsync(String ip) {
+        CompletableFuture<LocationInfo> future = new CompletableFuture<>();
+        ThreadManager.runAsync(() -> future.complete(getLocationInfo(ip)));
+        return future;
     }
 
+
     private static LocationInfo parseRegionStr(String region, String sourceName) {
         if (region == null || region.isEmpty()) {
             return LocationInfo.failed();
@@ -213,8 +295,9 @@ public class IPGeolocationHelper {
     }
 
     public static synchronized void shutdown() {
-        closeSearcher(searcherV4);
-        closeSearcher(searcherV6);
+        if (searcherV4 != null) searcherV4.close();
+        if (searcherV6 != null) searcherV6.close();
+        CACHE.clear();
         searcherV4 = null;
         searcherV6 = null;
         v4Loaded = false;
@@ -247,6 +330,79 @@ public class IPGeolocationHelper {
         }
     }
 
+    /**
+     * 一个版本的库的查询入口，可被多个线程同时调用
+     */
+    private interface RegionSearcher {
+        String search(String ip) throws Exception;
+
+        /**
+         * @return 写入 {@link LocationInfo#source()} 的来源名
+         */
+        String source();
+
+        void close();
+    }
+
+    /**
+     * 固定数量的 Searcher，借出时独占；池空时等待其他查询归还
+     */
+    private static final class SearcherPool implements RegionSearcher {
+        private final BlockingQueue<Searcher> idle;
+        private final String source;
+        private volatile boolean closed;
+
+        SearcherPool(int size, String source) {
+            this.idle = new ArrayBlockingQueue<>(size);
+            this.source = source;
+        }
+
+        @Override
+        public String search(String ip) throws Exception {
+            // Searcher 持有可变的游标和计数状态，借出期间由当前线程独占
+            Searcher searcher = borrow();
+            try {
+                return searcher.search(ip);
+            } finally {
+                release(searcher);
+            }
+        }
+
+        @Override
+        public String source() {
+            return source;
+        }
+
+        void add(Searcher searcher) {
+            idle.offer(searcher);
+        }
+
+        Searcher borrow() throws InterruptedException {
+            if (closed) {
+                throw new IllegalStateException("Searcher pool closed");
+            }
+            return idle.take();
+        }
+
+        void release(Searcher searcher) {
+            // shutdown 之后归还的直接关闭
+            if (closed) {
+                closeSearcher(searcher);
+            } else {
+                idle.offer(searcher);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            Searcher searcher;
+            while ((searcher = idle.poll()) != null) {
+                closeSearcher(searcher);
+            }
+        }
+    }
+
     public record LocationInfo(String location, String isp, boolean success, String source) {
         public static LocationInfo failed() {
             return new LocationInfo("N/A", "N/A", false, "Failed");
@@ -0,0 +1,427 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * KeyCache - 有界密钥缓存
+ *
+ * <p>取代原先只增不减的 {@code ConcurrentHashMap}，核心特性：</p>
+ * <ul>
+ *   <li>有界：超过 {@link #MAX_ENTRIES} 条时按 LRU 淘汰</li>
+ *   <li>TTL：正向条目存活 {@link #TTL_SECONDS} 秒，过期后下次访问重新加载</li>
+ *   <li>负向缓存：不存在的密钥在 {@link #NEGATIVE_TTL_SECONDS} 秒内直接拒绝，不再访问存储，
+ *       防止暴力枚举密钥打满 SQLite / NKM</li>
+ *   <li>提前刷新：热点条目在寿命过了 {@link ServerConstants#KEY_CACHE_REFRESH_AHEAD_PERCENT}% 后被访问时，
+ *       异步重新加载并原地 {@link SequenceKey#refreshFrom}，访问方不必等待</li>
+ * </ul>
+ *
+ * <p>【钉住】以下条目既不会被 LRU 淘汰也不会因 TTL 被丢弃，只会原地刷新：</p>
+ * <ul>
+ *   <li>被在线客户端持有（{@link #acquire} / {@link #release} 计数）</li>
+ *   <li>外部判定仍需保留的，例如还有未落盘的变更——丢掉它们就等于丢掉这些变更</li>
+ * </ul>
+ * <p>因此同一密钥在本地模式下始终只有一个内存对象，扣费线程与落盘线程不会各持一份余额。</p>
+ *
+ * <p>线程安全：所有状态由一把 ReentrantLock 保护，刷新在锁外异步执行。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class KeyCache {
+    /**
+     * 最大条目数（正向、负向各自计）
+     */
+    public static int MAX_ENTRIES = ServerConstants.DEFAULT_KEY_CACHE_SIZE;
+    /**
+     * 正向条目存活时间（秒）
+     */
+    public static int TTL_SECONDS = ServerConstants.DEFAULT_KEY_CACHE_TTL_SECONDS;
+    /**
+     * 负向条目存活时间（秒），0 表示不缓存不存在的密钥
+     */
+    public static int NEGATIVE_TTL_SECONDS = ServerConstants.DEFAULT_KEY_NEGATIVE_TTL_SECONDS;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final long negativeTtlNanos;
+    private final Refresher refresher;
+    private final Predicate<SequenceKey> pinned;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true：get 会把条目移到队尾，队首即最久未使用
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 负向条目 TTL 统一，插入顺序即过期顺序
+    private final LinkedHashMap<String, Long> missing = new LinkedHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * 从存储重新加载密钥并写回原对象
+     */
+    @FunctionalInterface
+    interface Refresher {
+        /**
+         * @return 密钥在存储中已不存在时返回 false
+         */
+        boolean refresh(SequenceKey key);
+    }
+
+    private static final class Entry {
+        SequenceKey key;
+        long loadedAt;
+        int refs;
+        boolean refreshing;
+
+        Entry(SequenceKey key, long loadedAt) {
+            this.key = key;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * @param refresher 为 null 时不做提前刷新，过期的钉住条目原样保留
+     * @param pinned    额外的钉住条件
+     */
+    KeyCache(int maxEntries, long ttlSeconds, long negativeTtlSeconds,
+             Refresher refresher, Predicate<SequenceKey> pinned, LongSupplier clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.refreshAheadNanos = ttlNanos / 100 * ServerConstants.KEY_CACHE_REFRESH_AHEAD_PERCENT;
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, negativeTtlSeconds));
+        this.refresher = refresher;
+        this.pinned = pinned;
+        this.clock = clock;
+    }
+
+    /**
+     * 查找正向条目。命中且已接近过期时触发异步刷新
+     *
+     * @return 未命中或已过期（且未被钉住）时返回 null
+     */
+    SequenceKey get(String name) {
+        Entry entry;
+        boolean refresh = false;
+        lock.lock();
+        try {
+            entry = entries.get(name);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            long age = clock.getAsLong() - entry.loadedAt;
+            if (age >= ttlNanos && !isPinned(entry)) {
+                entries.remove(name);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            if (age >= refreshAheadNanos && refresher != null && !entry.refreshing) {
+                entry.refreshing = true;
+                refresh = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (refresh) {
+            Entry target = entry;
+            ThreadManager.runAsync(() -> refresh(name, target));
+        }
+        return entry.key;
+    }
+
+    /**
+     * 查看条目，不计入命中统计，也不会因过期而丢弃条目
+     */
+    SequenceKey peek(String name) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(name);
+            return entry == null ? null : entry.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean contains(String name) {
+        return peek(name) != null;
+    }
+
+    /**
+     * 放入条目；已有条目时保留原对象并返回它，保证同一密钥只有一个内存对象
+     */
+    SequenceKey putIfAbsent(String name, SequenceKey key) {
+        lock.lock();
+        try {
+            missing.remove(name);
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                return entry.key;
+            }
+            entries.put(name, new Entry(key, clock.getAsLong()));
+            evictOverflow();
+            return key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 放入条目并替换旧对象，持有计数保留（远程模式下每次登录都由 NKM 下发新快照）
+     */
+    void put(String name, SequenceKey key) {
+        lock.lock();
+        try {
+            missing.remove(name);
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                entry.key = key;
+                entry.loadedAt = clock.getAsLong();
+                return;
+            }
+            entries.put(name, new Entry(key, clock.getAsLong()));
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在线客户端开始持有该密钥。条目在加载后、持有前被淘汰时重新放入
+     *
+     * @return 缓存中的对象，客户端应持有它而不是传入的对象
+     */
+    SequenceKey acquire(String name, SequenceKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(name);
+            if (entry == null) {
+                entry = new Entry(key, clock.getAsLong());
+                entries.put(name, entry);
+                entry.refs++;
+                evictOverflow();
+                return key;
+            }
+            entry.refs++;
+            return entry.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(String name) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(name);
+            if (entry != null && entry.refs > 0) {
+                entry.refs--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断密钥是否在负向缓存中（确认不存在且未过期）
+     */
+    boolean isMissing(String name) {
+        if (negativeTtlNanos == 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Long expiresAt = missing.get(name);
+            if (expiresAt == null) {
+                return false;
+            }
+            if (clock.getAsLong() - expiresAt >= 0) {
+                missing.remove(name);
+                return false;
+            }
+            negativeHits.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void putMissing(String name) {
+        if (negativeTtlNanos == 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            // 先清掉队首已过期的，再按容量淘汰最早的
+            Iterator<Long> it = missing.values().iterator();
+            while (it.hasNext() && now - it.next() >= 0) {
+                it.remove();
+            }
+            missing.remove(name);
+            missing.put(name, now + negativeTtlNanos);
+            if (missing.size() > maxEntries) {
+                Iterator<String> eldest = missing.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 只清除负向条目，已缓存的密钥对象保持不变（用于批量导入：同名的已有密钥被跳过，不应被逐出）
+     */
+    void removeMissing(String name) {
+        lock.lock();
+        try {
+            missing.remove(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(String name) {
+        lock.lock();
+        try {
+            entries.remove(name);
+            missing.remove(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, SequenceKey> snapshot() {
+        lock.lock();
+        try {
+            Map<String, SequenceKey> copy = new HashMap<>(entries.size() * 2);
+            entries.forEach((name, entry) -> copy.put(name, entry.key));
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int negativeSize() {
+        lock.lock();
+        try {
+            return missing.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private boolean isPinned(Entry entry) {
+        return entry.refs > 0 || (pinned != null && pinned.test(entry.key));
+    }
+
+    // 须持有 lock
+    private void evictOverflow() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        List<String> skipped = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (isPinned(eldest.getValue())) {
+                skipped.add(eldest.getKey());
+                continue;
+            }
+            it.remove();
+            evictions.increment();
+        }
+        // 被钉住的条目移到队尾，下次淘汰不必再扫过它们；全部被钉住时允许暂时超出上限
+        for (String name : skipped) {
+            entries.get(name);
+        }
+    }
+
+    private void refresh(String name, Entry entry) {
+        boolean refreshed = false;
+        boolean exists = true;
+        try {
+            exists = refresher.refresh(entry.key);
+            refreshed = exists;
+        } catch (Exception e) {
+            Debugger.debugOperation(e);
+        }
+        lock.lock();
+        try {
+            entry.refreshing = false;
+            if (refreshed) {
+                entry.loadedAt = clock.getAsLong();
+                refreshes.increment();
+            } else if (!exists && !isPinned(entry)) {
+                // 只移除本次刷新的那个条目，期间被替换的新条目不受影响
+                entries.remove(name, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
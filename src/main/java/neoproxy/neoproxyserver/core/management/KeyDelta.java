@@ -0,0 +1,62 @@
+package neoproxy.neoproxyserver.core.management;
+
+/**
+ * KeyDelta - 一次落盘需要写入的密钥变更
+ *
+ * <p>由 {@link SequenceKey#takeDelta()} 在密钥锁内生成：</p>
+ * <ul>
+ *   <li>{@link #debit}：上次落盘以来流量消耗的累计值，以 {@code balance = balance - ?} 增量写入</li>
+ *   <li>{@link #fields}：被管理操作（console / web）直接修改过的字段位图，以绝对值写入。
+ *       若包含 {@link #BALANCE}，则余额以绝对值写入，debit 已被其覆盖而为 0</li>
+ * </ul>
+ * <p>其余字段携带当时的完整行快照，仅在目标行不存在、需要退化为整行写入时使用。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+record KeyDelta(String name, int fields, double debit,
+                double balance, String expireTime, String port,
+                double rate, boolean isEnable, boolean enableWebHTML) {
+    static final int BALANCE = 1;
+    static final int EXPIRE_TIME = 1 << 1;
+    static final int PORT = 1 << 2;
+    static final int RATE = 1 << 3;
+    static final int ENABLE = 1 << 4;
+    static final int WEB_HTML = 1 << 5;
+
+    boolean isEmpty() {
+        return fields == 0 && debit == 0;
+    }
+
+    boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    /**
+     * 生成只包含变更列的 UPDATE 语句；列的顺序与 {@link Database} 中的参数绑定顺序一致
+     */
+    String toUpdateSql() {
+        StringBuilder sql = new StringBuilder("UPDATE sk SET ");
+        int columns = 0;
+        if (has(BALANCE)) {
+            columns = appendColumn(sql, columns, "balance = ?");
+        } else if (debit != 0) {
+            columns = appendColumn(sql, columns, "balance = balance - ?");
+        }
+        if (has(EXPIRE_TIME)) columns = appendColumn(sql, columns, "expireTime = ?");
+        if (has(PORT)) columns = appendColumn(sql, columns, "port = ?");
+        if (has(RATE)) columns = appendColumn(sql, columns, "rate = ?");
+        if (has(ENABLE)) columns = appendColumn(sql, columns, "isEnable = ?");
+        if (has(WEB_HTML)) appendColumn(sql, columns, "enableWebHTML = ?");
+        return sql.append(" WHERE name = ?").toString();
+    }
+
+    private static int appendColumn(StringBuilder sql, int columns, String column) {
+        if (columns > 0) {
+            sql.append(", ");
+        }
+        sql.append(column);
+        return columns + 1;
+    }
+}
@@ -0,0 +1,99 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KeyStore - sk 数据的持久化后端
+ *
+ * <p>{@link Database} 的静态方法是唯一入口，按 {@link Database#STORAGE_BACKEND} 把调用转发给当前后端：</p>
+ * <ul>
+ *   <li>{@code sqlite}：默认，sk 文件（WAL 模式、单写线程 + 读连接池）</li>
+ *   <li>{@code mvstore}：sk.mv 文件（H2 MVStore），读不加锁，适合几十万密钥的节点</li>
+ * </ul>
+ *
+ * <p>【约定】所有实现必须满足：</p>
+ * <ul>
+ *   <li>写操作失败时返回约定的失败值（false / -1），不抛异常，调用方据此把变更放回内存重试</li>
+ *   <li>{@link #saveKeys}、{@link #insertKeys}、{@link #applyDeltas}、{@link #applyLedgerSegment} 是原子的：全部生效或全部不生效</li>
+ *   <li>{@link #applyLedgerSegment} 对段号幂等，已应用过的段直接返回 true</li>
+ *   <li>{@link #getAllKeys}、{@link #getKeysAfter} 按密钥名升序返回</li>
+ * </ul>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+interface KeyStore {
+    /**
+     * 后端名称，与 config.cfg STORAGE_BACKEND 的取值一致
+     */
+    String name();
+
+    /**
+     * 打开存储并确保结构存在
+     */
+    void open() throws Exception;
+
+    /**
+     * 关闭后重新打开，用于文件被外部替换后的 reload
+     */
+    void reload() throws Exception;
+
+    void close();
+
+    SequenceKey getKey(String name, boolean onlyEnabled);
+
+    boolean exists(String name);
+
+    boolean saveKey(SequenceKey key);
+
+    /**
+     * @return 写入的行数；失败时返回 -1
+     */
+    int saveKeys(Collection<SequenceKey> keys);
+
+    /**
+     * 只插入尚不存在的密钥，已存在的跳过，不覆盖
+     *
+     * @return 实际插入的行数；失败时返回 -1
+     */
+    int insertKeys(Collection<SequenceKey> keys);
+
+    /**
+     * 写入一个增量变更，目标不存在时退化为整行写入
+     */
+    boolean applyDelta(KeyDelta delta);
+
+    /**
+     * @return 写入的密钥数；失败时返回 -1
+     */
+    int applyDeltas(List<KeyDelta> deltas);
+
+    /**
+     * @return 已合并的最大账本段号，没有记录时返回 0
+     */
+    long getLastLedgerSegment();
+
+    boolean applyLedgerSegment(long segmentId, Map<String, Double> debits);
+
+    boolean createKey(String name, double balance, String expireTime, String portStr, double rate);
+
+    boolean deleteKey(String name);
+
+    boolean updateBalance(String name, double amountToDeduct);
+
+    boolean updateStatus(String name, boolean isEnable);
+
+    List<SequenceKey> getAllKeys();
+
+    /**
+     * 按名称升序返回 afterName 之后（不含）的至多 limit 个密钥；afterName 为 null 时从头开始
+     *
+     * @return 读取失败时返回 null，与"没有更多密钥"的空列表区分
+     */
+    List<SequenceKey> getKeysAfter(String afterName, int limit);
+
+    int countKeys();
+}
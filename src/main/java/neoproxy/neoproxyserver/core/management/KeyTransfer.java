@@ -0,0 +1,362 @@
+package neoproxy.neoproxyserver.core.management;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * KeyTransfer - 密钥的批量导入与导出
+ *
+ * <p>支持两种格式，按扩展名区分：</p>
+ * <ul>
+ *   <li>CSV（默认）：{@code name,balance,expireTime,port,rate[,enable[,webHTML]]}，首行表头可有可无，
+ *       空行与 {@code #} 开头的行被忽略</li>
+ *   <li>JSONL（{@code .jsonl} / {@code .ndjson}）：每行一个对象，字段名同 CSV 表头</li>
+ * </ul>
+ *
+ * <p>【流式】导入逐行读取，每 {@link ServerConstants#KEY_IMPORT_BATCH_SIZE} 行在一个事务内插入一次；
+ * 导出经 {@link Database#forEachKey} 逐页读取后直接写出。无论文件多大，内存中最多只有一批密钥。</p>
+ *
+ * <p>【不覆盖】已存在的同名密钥被跳过；格式不合法的行被计数并跳过，不中断整个导入。
+ * 已提交的批次不会因为后面的批次失败而回滚。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class KeyTransfer {
+    static final String CSV_HEADER = "name,balance,expireTime,port,rate,enable,webHTML";
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 标记 JSONL 中类型不对的开关字段
+     */
+    private static final String INVALID_FLAG = "\0";
+
+    private KeyTransfer() {
+    }
+
+    /**
+     * 一次导入的结果
+     *
+     * @param firstInvalidLine 第一个不合法行的行号（从 1 开始），没有时为 0
+     */
+    public record ImportResult(int imported, int skipped, int invalid, int firstInvalidLine) {
+    }
+
+    /**
+     * 相对路径按服务端工作目录解析，与 Web 管理面板的文件管理根目录一致
+     */
+    public static File resolve(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(NeoProxyServer.CURRENT_DIR_PATH, path);
+    }
+
+    /**
+     * @param progress 每处理 {@link ServerConstants#KEY_IMPORT_PROGRESS_INTERVAL} 行回调一次，参数为已处理行数
+     * @throws IOException 读取失败，或存储拒绝写入某一批（此前的批次已提交）
+     */
+    public static ImportResult importKeys(File file, IntConsumer progress) throws IOException {
+        boolean jsonl = isJsonl(file);
+        List<SequenceKey> batch = new ArrayList<>(ServerConstants.KEY_IMPORT_BATCH_SIZE);
+        int lineNumber = 0;
+        int rows = 0;
+        int imported = 0;
+        int skipped = 0;
+        int invalid = 0;
+        int firstInvalidLine = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                if (lineNumber == 1 && !jsonl && trimmed.toLowerCase(Locale.ROOT).startsWith("name,")) {
+                    continue;
+                }
+                rows++;
+                SequenceKey key = jsonl ? parseJsonLine(trimmed) : parseCsvLine(trimmed);
+                if (key == null) {
+                    invalid++;
+                    if (firstInvalidLine == 0) {
+                        firstInvalidLine = lineNumber;
+                    }
+                } else {
+                    batch.add(key);
+                }
+                if (batch.size() >= ServerConstants.KEY_IMPORT_BATCH_SIZE) {
+                    int inserted = flush(batch, lineNumber);
+                    imported += inserted;
+                    skipped += batch.size() - inserted;
+                    batch.clear();
+                }
+                if (rows % ServerConstants.KEY_IMPORT_PROGRESS_INTERVAL == 0) {
+                    progress.accept(rows);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            int inserted = flush(batch, lineNumber);
+            imported += inserted;
+            skipped += batch.size() - inserted;
+        }
+        return new ImportResult(imported, skipped, invalid, firstInvalidLine);
+    }
+
+    private static int flush(List<SequenceKey> batch, int lineNumber) throws IOException {
+        int inserted = Database.insertKeys(batch);
+        // 与 createNewKey 一样清掉负向缓存，否则刚导入的密钥在负向 TTL 内仍被当作不存在
+        KeyCache cache = SequenceKey.getKeyCache();
+        for (SequenceKey key : batch) {
+            cache.removeMissing(key.getName());
+        }
+        if (inserted < 0) {
+            throw new IOException("Storage rejected the batch ending at line " + lineNumber);
+        }
+        Debugger.debugOperation("Key import batch committed: " + inserted + "/" + batch.size() + " up to line " + lineNumber);
+        return inserted;
+    }
+
+    /**
+     * 先写到同目录的临时文件，完成后再替换目标，导出中途失败不会留下半个文件。
+     * 任一页读取失败时整次导出失败，目标文件保持原样，不会被截断的结果替换
+     *
+     * @return 导出的密钥数
+     */
+    public static int exportKeys(File file) throws IOException {
+        boolean jsonl = isJsonl(file);
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        int[] count = {0};
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            if (!jsonl) {
+                writer.write(CSV_HEADER);
+                writer.newLine();
+            }
+            IOException[] failure = {null};
+            Database.forEachKey(key -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.write(jsonl ? toJsonLine(key) : toCsvLine(key));
+                    writer.newLine();
+                    count[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        return count[0];
+    }
+
+    static boolean isJsonl(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    // ==================== 行格式 ====================
+
+    /**
+     * @return 解析并校验后的密钥；不合法时返回 null
+     */
+    static SequenceKey parseCsvLine(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields == null || fields.size() < 5 || fields.size() > 7) {
+            return null;
+        }
+        return toKey(fields.get(0), fields.get(1), fields.get(2), fields.get(3), fields.get(4),
+                fields.size() > 5 ? fields.get(5) : null, fields.size() > 6 ? fields.get(6) : null);
+    }
+
+    static SequenceKey parseJsonLine(String line) {
+        try {
+            KeyRecord record = GSON.fromJson(line, KeyRecord.class);
+            if (record == null || record.balance == null || record.rate == null) {
+                return null;
+            }
+            String enable = jsonFlag(record.enable);
+            String webHTML = jsonFlag(record.webHTML);
+            if (INVALID_FLAG.equals(enable) || INVALID_FLAG.equals(webHTML)) {
+                return null;
+            }
+            return toKey(record.name, String.valueOf(record.balance), record.expireTime, record.port,
+                    String.valueOf(record.rate), enable, webHTML);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    static String toCsvLine(SequenceKey key) {
+        return String.join(",",
+                quoteCsv(key.getName()),
+                String.valueOf(key.getBalanceNoLock()),
+                quoteCsv(key.getExpireTime()),
+                quoteCsv(key.getPortStr()),
+                String.valueOf(key.getRateNoLock()),
+                String.valueOf(key.isEnableNoLock()),
+                String.valueOf(key.isHTMLEnabledNoLock()));
+    }
+
+    static String toJsonLine(SequenceKey key) {
+        KeyRecord record = new KeyRecord();
+        record.name = key.getName();
+        record.balance = key.getBalanceNoLock();
+        record.expireTime = key.getExpireTime();
+        record.port = key.getPortStr();
+        record.rate = key.getRateNoLock();
+        record.enable = new JsonPrimitive(key.isEnableNoLock());
+        record.webHTML = new JsonPrimitive(key.isHTMLEnabledNoLock());
+        return GSON.toJson(record);
+    }
+
+    /**
+     * 与 console {@code key add} 相同的校验规则；另外接受 PERMANENT，以便导出的文件能原样导回
+     */
+    private static SequenceKey toKey(String name, String balanceStr, String expireStr, String portStr,
+                                     String rateStr, String enableStr, String webStr) {
+        if (name == null || name.isBlank() || name.chars().anyMatch(Character::isWhitespace)) {
+            return null;
+        }
+        Double balance = parseFinite(balanceStr);
+        Double rate = parseFinite(rateStr);
+        String expireTime = expireStr != null && "PERMANENT".equalsIgnoreCase(expireStr.strip())
+                ? "PERMANENT" : ConsoleManager.correctInputTime(expireStr == null ? null : expireStr.strip());
+        String port = ConsoleManager.validateAndFormatPortInput(portStr);
+        Boolean enable = parseFlag(enableStr, true);
+        Boolean web = parseFlag(webStr, false);
+        if (balance == null || rate == null || expireTime == null || port == null || enable == null || web == null) {
+            return null;
+        }
+        return new SequenceKey(name, balance, expireTime, port, rate, enable, web);
+    }
+
+    /**
+     * JSONL 中开关字段只接受 JSON 布尔值；Gson 会把 "yes" 之类的字符串宽松地读成 false，这里不能放过
+     *
+     * @return 缺省时返回 null；非布尔值返回 {@link #INVALID_FLAG}
+     */
+    private static String jsonFlag(JsonElement value) {
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean()) {
+            return String.valueOf(value.getAsBoolean());
+        }
+        return INVALID_FLAG;
+    }
+
+    private static Double parseFinite(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value.strip());
+            return Double.isFinite(parsed) ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 缺省或空值时返回 defaultValue；无法识别时返回 null
+     */
+    private static Boolean parseFlag(String value, boolean defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return switch (value.strip().toLowerCase(Locale.ROOT)) {
+            case "true", "1", "on", "yes" -> true;
+            case "false", "0", "off", "no" -> false;
+            default -> null;
+        };
+    }
+
+    /**
+     * 按 RFC 4180 拆分一行：双引号包裹的字段可含逗号，{@code ""} 表示一个双引号
+     *
+     * @return 字段列表；引号未闭合时返回 null
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(7);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().strip());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().strip());
+        return fields;
+    }
+
+    private static String quoteCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * JSONL 一行的结构，字段名与 CSV 表头一致
+     */
+    private static final class KeyRecord {
+        String name;
+        Double balance;
+        String expireTime;
+        String port;
+        Double rate;
+        JsonElement enable;
+        JsonElement webHTML;
+    }
+}
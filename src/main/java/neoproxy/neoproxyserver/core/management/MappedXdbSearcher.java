@@ -0,0 +1,166 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedXdbSearcher - 直接在内存映射的 xdb 文件上查询的 ip2region 检索器
+ *
+ * <p>LOW_RAM 模式以前用 {@code Searcher.newWithFileOnly}，每次查询是若干次 seek + read，且每个 Searcher
+ * 只能单线程使用。现在把整个 xdb 用 {@link FileChannel#map} 映射进来：热点的向量索引和段索引由操作系统
+ * 页缓存持有，不占堆；查询只用绝对位置读，不修改 buffer 的任何状态，多个线程可以无锁共用一个实例。</p>
+ *
+ * <p>文件格式（与 ip2region xdb 一致，多字节整数均为小端）：</p>
+ * <ul>
+ *   <li>256 字节头部：版本、索引策略、创建时间、段索引起止指针、IP 版本（4 / 6）、运行时指针字节数</li>
+ *   <li>向量索引：按 IP 前两个字节分为 256 × 256 格，每格 8 字节，为该格第一个 / 最后一个段索引的指针</li>
+ *   <li>段索引：起始 IP、结束 IP、数据长度（2 字节）、数据指针（4 字节）；
+ *       IPv4 的 IP 以小端存放，IPv6 以大端（网络字节序）存放</li>
+ * </ul>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class MappedXdbSearcher {
+    static final int HEADER_LENGTH = 256;
+    static final int VECTOR_INDEX_COLS = 256;
+    static final int VECTOR_INDEX_SIZE = 8;
+
+    private final MappedByteBuffer content;
+    private final int ipBytes;
+    private final int segmentIndexSize;
+
+    private MappedXdbSearcher(MappedByteBuffer content, int ipBytes) {
+        this.content = content;
+        this.ipBytes = ipBytes;
+        this.segmentIndexSize = ipBytes * 2 + 6;
+    }
+
+    /**
+     * @param ipVersion 期望的库版本，4 或 6；与头部声明的不一致时拒绝打开
+     */
+    static MappedXdbSearcher open(Path xdbFile, int ipVersion) throws IOException {
+        if (ipVersion != 4 && ipVersion != 6) {
+            throw new IllegalArgumentException("ipVersion must be 4 or 6");
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(xdbFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + (long) VECTOR_INDEX_COLS * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE) {
+                throw new IOException("Truncated xdb file: " + xdbFile + " (" + size + " bytes)");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("xdb file too large to map: " + xdbFile + " (" + size + " bytes)");
+            }
+            // 映射建立后即使关闭通道也一直有效，直到 buffer 被回收
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        // 旧版（2.x）头部没有 IP 版本字段，只可能是 IPv4
+        int headerVersion = Short.toUnsignedInt(mapped.getShort(0));
+        int declared = headerVersion >= 3 ? Short.toUnsignedInt(mapped.getShort(16)) : 4;
+        if (declared != ipVersion) {
+            throw new IOException("xdb file " + xdbFile + " is IPv" + declared + ", expected IPv" + ipVersion);
+        }
+        return new MappedXdbSearcher(mapped, ipVersion == 4 ? 4 : 16);
+    }
+
+    /**
+     * @param ip IP 字面量；IPv6 库也接受 IPv4 地址，按 IPv4-mapped 形式查询
+     * @return 区域字符串，如 {@code 中国|广东省|深圳市|电信|CN}；没有对应段时为空串
+     */
+    String search(String ip) throws IOException {
+        return search(toBytes(ip));
+    }
+
+    /**
+     * @param ip 网络字节序的地址，长度须与库版本一致
+     */
+    String search(byte[] ip) {
+        if (ip.length != ipBytes) {
+            throw new IllegalArgumentException("Expected " + ipBytes + "-byte address, got " + ip.length);
+        }
+        int vectorOffset = HEADER_LENGTH
+                + ((ip[0] & 0xFF) * VECTOR_INDEX_COLS + (ip[1] & 0xFF)) * VECTOR_INDEX_SIZE;
+        long startPtr = Integer.toUnsignedLong(content.getInt(vectorOffset));
+        long endPtr = Integer.toUnsignedLong(content.getInt(vectorOffset + 4));
+        if (startPtr == 0) {
+            return "";
+        }
+
+        long low = 0;
+        long high = (endPtr - startPtr) / segmentIndexSize;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int segment = (int) (startPtr + middle * segmentIndexSize);
+            if (compare(ip, segment) < 0) {
+                high = middle - 1;
+            } else if (compare(ip, segment + ipBytes) > 0) {
+                low = middle + 1;
+            } else {
+                int dataLength = Short.toUnsignedInt(content.getShort(segment + ipBytes * 2));
+                int dataPtr = content.getInt(segment + ipBytes * 2 + 2);
+                if (dataLength == 0) {
+                    return "";
+                }
+                byte[] data = new byte[dataLength];
+                content.get(dataPtr, data);
+                return new String(data, StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 与段索引中 offset 处的 IP 比较；IPv4 在文件中是小端，倒序比较
+     */
+    private int compare(byte[] ip, int offset) {
+        for (int i = 0; i < ipBytes; i++) {
+            int stored = content.get(ipBytes == 4 ? offset + 3 - i : offset + i) & 0xFF;
+            int wanted = ip[i] & 0xFF;
+            if (wanted != stored) {
+                return wanted < stored ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private byte[] toBytes(String ip) throws IOException {
+        String trimmed = ip.trim();
+        byte[] raw;
+        if (trimmed.indexOf(':') < 0) {
+            GeolocationCache.Key key = GeolocationCache.keyOf(trimmed);
+            if (key == null) {
+                throw new IOException("Invalid IP address: " + ip);
+            }
+            int v4 = (int) key.low();
+            raw = new byte[]{(byte) (v4 >>> 24), (byte) (v4 >>> 16), (byte) (v4 >>> 8), (byte) v4};
+        } else {
+            // 含冒号的字符串只会按 IPv6 字面量解析，不会查 DNS
+            raw = InetAddress.getByName(trimmed).getAddress();
+        }
+        if (raw.length == ipBytes) {
+            return raw;
+        }
+        if (ipBytes == 16) {
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xFF;
+            mapped[11] = (byte) 0xFF;
+            System.arraycopy(raw, 0, mapped, 12, 4);
+            return mapped;
+        }
+        throw new IOException("IPv6 address " + ip + " cannot be searched in an IPv4 database");
+    }
+
+    long size() {
+        return content.capacity();
+    }
+}
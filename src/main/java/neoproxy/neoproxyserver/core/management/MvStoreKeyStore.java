@@ -0,0 +1,416 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.ServerLogger;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.type.ByteArrayDataType;
+import org.h2.mvstore.type.StringDataType;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MvStoreKeyStore - 基于 H2 MVStore 的 sk 存储后端（sk.mv）
+ *
+ * <p>与 SQLite 后端的差异：</p>
+ * <ul>
+ *   <li>读：MVMap 是写时复制的 B 树，读操作不加锁、不借连接，直接在调用线程上完成</li>
+ *   <li>写：同 SQLite 一样只有一个写者（ReentrantLock），但没有 SQL 解析与 JDBC 往返，
+ *       每次写操作在内存中改完后提交一次</li>
+ *   <li>原子性：关闭自动提交，每个方法只在结束时 commit 一次，异常时 rollback，
+ *       因此批量写入与账本段合并同样是全部生效或全部不生效</li>
+ * </ul>
+ *
+ * <p>一行编码为定长头 + 两个变长字符串（见 {@link Row}），密钥名即 MVMap 的键，
+ * 按字符串升序排列，{@link #getAllKeys} 直接顺序遍历。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class MvStoreKeyStore implements KeyStore {
+    static final String FILE_NAME = "sk.mv";
+    private static final String META_LAST_SEGMENT = "ledger.lastSegment";
+
+    private final String fileName;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile MVStore mvStore;
+    private volatile MVMap<String, byte[]> keys;
+    private volatile MVMap<String, Long> meta;
+
+    MvStoreKeyStore() {
+        this(new File(NeoProxyServer.CURRENT_DIR_PATH, FILE_NAME).getAbsolutePath());
+    }
+
+    MvStoreKeyStore(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @FunctionalInterface
+    private interface StoreWork<T> {
+        T run();
+    }
+
+    @Override
+    public String name() {
+        return Database.BACKEND_MVSTORE;
+    }
+
+    @Override
+    public void open() {
+        writeLock.lock();
+        try {
+            closeStore();
+            MVStore opened = new MVStore.Builder()
+                    .fileName(fileName)
+                    .autoCommitDisabled()
+                    .cacheSize(NeoProxyServer.LOW_RAM_MODE ? 4 : 16)
+                    .open();
+            keys = opened.openMap("sk", new MVMap.Builder<String, byte[]>()
+                    .keyType(StringDataType.INSTANCE)
+                    .valueType(ByteArrayDataType.INSTANCE));
+            meta = opened.openMap("ledger_meta");
+            mvStore = opened;
+        } finally {
+            writeLock.unlock();
+        }
+        ServerLogger.infoWithSource("Database", "db.mvStoreInitSuccess", fileName);
+    }
+
+    @Override
+    public void reload() {
+        open();
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            closeStore();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // 须持有 writeLock
+    private void closeStore() {
+        MVStore current = mvStore;
+        mvStore = null;
+        if (current != null && !current.isClosed()) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                Debugger.debugOperation(e);
+            }
+        }
+    }
+
+    /**
+     * 在写锁内执行一次写操作并提交；失败时回滚到上次提交并返回 fallback
+     */
+    private <T> T write(StoreWork<T> work, T fallback) {
+        writeLock.lock();
+        try {
+            MVStore current = mvStore;
+            if (current == null || current.isClosed()) {
+                return fallback;
+            }
+            try {
+                T result = work.run();
+                current.commit();
+                return result;
+            } catch (Exception e) {
+                Debugger.debugOperation(e);
+                try {
+                    current.rollback();
+                } catch (Exception rollbackError) {
+                    Debugger.debugOperation(rollbackError);
+                }
+                return fallback;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private <T> T read(StoreWork<T> work, T fallback) {
+        if (mvStore == null) {
+            return fallback;
+        }
+        try {
+            return work.run();
+        } catch (Exception e) {
+            // 读到一半被 close / reload
+            Debugger.debugOperation(e);
+            return fallback;
+        }
+    }
+
+    // ==================== 数据操作 ====================
+
+    @Override
+    public SequenceKey getKey(String name, boolean onlyEnabled) {
+        return read(() -> {
+            byte[] value = keys.get(name);
+            if (value == null) {
+                return null;
+            }
+            Row row = Row.decode(value);
+            return onlyEnabled && !row.isEnable() ? null : row.toKey(name);
+        }, null);
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return read(() -> keys.containsKey(name), false);
+    }
+
+    @Override
+    public boolean saveKey(SequenceKey key) {
+        Row row = Row.of(key);
+        return write(() -> {
+            keys.put(key.getName(), row.encode());
+            return true;
+        }, false);
+    }
+
+    @Override
+    public int saveKeys(Collection<SequenceKey> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        // 同 SQLite 后端：字段在调用线程上取快照
+        List<SequenceKey> owners = new ArrayList<>(batch);
+        List<Row> rows = new ArrayList<>(owners.size());
+        for (SequenceKey key : owners) {
+            rows.add(Row.of(key));
+        }
+        return write(() -> {
+            for (int i = 0; i < rows.size(); i++) {
+                keys.put(owners.get(i).getName(), rows.get(i).encode());
+            }
+            return rows.size();
+        }, -1);
+    }
+
+    @Override
+    public int insertKeys(Collection<SequenceKey> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<SequenceKey> owners = new ArrayList<>(batch);
+        List<Row> rows = new ArrayList<>(owners.size());
+        for (SequenceKey key : owners) {
+            rows.add(Row.of(key));
+        }
+        return write(() -> {
+            int inserted = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                if (keys.putIfAbsent(owners.get(i).getName(), rows.get(i).encode()) == null) {
+                    inserted++;
+                }
+            }
+            return inserted;
+        }, -1);
+    }
+
+    @Override
+    public boolean applyDelta(KeyDelta delta) {
+        return write(() -> {
+            applyInPlace(delta);
+            return true;
+        }, false);
+    }
+
+    @Override
+    public int applyDeltas(List<KeyDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        return write(() -> {
+            for (KeyDelta delta : deltas) {
+                applyInPlace(delta);
+            }
+            return deltas.size();
+        }, -1);
+    }
+
+    /**
+     * 语义与 {@link KeyDelta#toUpdateSql()} 一致：有 BALANCE 时写绝对值，否则扣减 debit；目标不存在时整行写入
+     */
+    private void applyInPlace(KeyDelta delta) {
+        byte[] current = keys.get(delta.name());
+        if (current == null) {
+            keys.put(delta.name(), new Row(delta.balance(), delta.expireTime(), delta.port(),
+                    delta.rate(), delta.isEnable(), delta.enableWebHTML()).encode());
+            return;
+        }
+        Row row = Row.decode(current);
+        keys.put(delta.name(), new Row(
+                delta.has(KeyDelta.BALANCE) ? delta.balance() : row.balance() - delta.debit(),
+                delta.has(KeyDelta.EXPIRE_TIME) ? delta.expireTime() : row.expireTime(),
+                delta.has(KeyDelta.PORT) ? delta.port() : row.port(),
+                delta.has(KeyDelta.RATE) ? delta.rate() : row.rate(),
+                delta.has(KeyDelta.ENABLE) ? delta.isEnable() : row.isEnable(),
+                delta.has(KeyDelta.WEB_HTML) ? delta.enableWebHTML() : row.enableWebHTML()
+        ).encode());
+    }
+
+    @Override
+    public long getLastLedgerSegment() {
+        return read(() -> {
+            Long last = meta.get(META_LAST_SEGMENT);
+            return last == null ? 0L : last;
+        }, 0L);
+    }
+
+    @Override
+    public boolean applyLedgerSegment(long segmentId, Map<String, Double> debits) {
+        return write(() -> {
+            Long last = meta.get(META_LAST_SEGMENT);
+            if (last != null && last >= segmentId) {
+                return true;
+            }
+            for (Map.Entry<String, Double> entry : debits.entrySet()) {
+                deduct(entry.getKey(), entry.getValue());
+            }
+            meta.put(META_LAST_SEGMENT, segmentId);
+            return true;
+        }, false);
+    }
+
+    @Override
+    public boolean createKey(String name, double balance, String expireTime, String portStr, double rate) {
+        return write(() -> {
+            if (keys.containsKey(name)) {
+                return false;
+            }
+            keys.put(name, new Row(balance, expireTime, portStr, rate, true, false).encode());
+            return true;
+        }, false);
+    }
+
+    @Override
+    public boolean deleteKey(String name) {
+        return write(() -> keys.remove(name) != null, false);
+    }
+
+    @Override
+    public boolean updateBalance(String name, double amountToDeduct) {
+        return write(() -> deduct(name, amountToDeduct), false);
+    }
+
+    private boolean deduct(String name, double amount) {
+        byte[] current = keys.get(name);
+        if (current == null) {
+            return false;
+        }
+        Row row = Row.decode(current);
+        keys.put(name, new Row(row.balance() - amount, row.expireTime(), row.port(),
+                row.rate(), row.isEnable(), row.enableWebHTML()).encode());
+        return true;
+    }
+
+    @Override
+    public boolean updateStatus(String name, boolean isEnable) {
+        return write(() -> {
+            byte[] current = keys.get(name);
+            if (current == null) {
+                return false;
+            }
+            Row row = Row.decode(current);
+            keys.put(name, new Row(row.balance(), row.expireTime(), row.port(),
+                    row.rate(), isEnable, row.enableWebHTML()).encode());
+            return true;
+        }, false);
+    }
+
+    @Override
+    public List<SequenceKey> getAllKeys() {
+        return read(() -> {
+            List<SequenceKey> list = new ArrayList<>();
+            for (Map.Entry<String, byte[]> entry : keys.entrySet()) {
+                list.add(Row.decode(entry.getValue()).toKey(entry.getKey()));
+            }
+            return list;
+        }, new ArrayList<>());
+    }
+
+    @Override
+    public List<SequenceKey> getKeysAfter(String afterName, int limit) {
+        return read(() -> {
+            List<SequenceKey> page = new ArrayList<>(Math.min(limit, 1024));
+            // 游标从 afterName 处开始（含），跳过它本身
+            Cursor<String, byte[]> cursor = keys.cursor(afterName);
+            while (page.size() < limit && cursor.hasNext()) {
+                String name = cursor.next();
+                if (!name.equals(afterName)) {
+                    page.add(Row.decode(cursor.getValue()).toKey(name));
+                }
+            }
+            return page;
+        }, null);
+    }
+
+    @Override
+    public int countKeys() {
+        return read(() -> keys.size(), 0);
+    }
+
+    /**
+     * 一行的值：[flags:1][balance:8][rate:8][expireTime 长度:2][expireTime][port 长度:2][port]
+     */
+    private record Row(double balance, String expireTime, String port,
+                       double rate, boolean isEnable, boolean enableWebHTML) {
+        private static final int FLAG_ENABLE = 1;
+        private static final int FLAG_WEB_HTML = 1 << 1;
+
+        static Row of(SequenceKey key) {
+            return new Row(key.getBalanceNoLock(), key.getExpireTime(), key.getPortStr(),
+                    key.getRateNoLock(), key.isEnableNoLock(), key.isHTMLEnabledNoLock());
+        }
+
+        byte[] encode() {
+            byte[] expire = (expireTime == null ? "" : expireTime).getBytes(StandardCharsets.UTF_8);
+            byte[] portBytes = (port == null ? "" : port).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 2 + expire.length + 2 + portBytes.length);
+            buffer.put((byte) ((isEnable ? FLAG_ENABLE : 0) | (enableWebHTML ? FLAG_WEB_HTML : 0)));
+            buffer.putDouble(balance);
+            buffer.putDouble(rate);
+            buffer.putShort((short) expire.length).put(expire);
+            buffer.putShort((short) portBytes.length).put(portBytes);
+            return buffer.array();
+        }
+
+        static Row decode(byte[] value) {
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            int flags = buffer.get();
+            double balance = buffer.getDouble();
+            double rate = buffer.getDouble();
+            String expireTime = readString(buffer);
+            String port = readString(buffer);
+            return new Row(balance, expireTime, port, rate,
+                    (flags & FLAG_ENABLE) != 0, (flags & FLAG_WEB_HTML) != 0);
+        }
+
+        private static String readString(ByteBuffer buffer) {
+            byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        SequenceKey toKey(String name) {
+            return new SequenceKey(name, balance, expireTime, port, rate, isEnable, enableWebHTML);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PortReservationCache - 动态端口粘性保留表
+ *
+ * <p>动态端口的客户端断线重连时，如果每次都从 {@code getDyStart()} 重新扫描，
+ * 既要对整个区间逐个尝试 bind，又会让客户端拿到一个和上次不同的公网端口，
+ * 外部访问者手里的地址随之失效。</p>
+ *
+ * <p>本类在 {@link neoproxy.neoproxyserver.core.HostClient#close()} 时记录
+ * "密钥 → 上次端口"，在宽限期内同一密钥重连可直接取回该端口；
+ * 宽限期内其他密钥扫描端口时也会优先跳过这些被保留的端口。</p>
+ *
+ * <p>核心特性：</p>
+ * <ul>
+ *   <li>有界：超过 {@link ServerConstants#PORT_RESERVE_MAX_ENTRIES} 条时淘汰最早的保留</li>
+ *   <li>TTL 淘汰：每条保留记下自己的截止时间。{@link #GRACE_SECONDS} 可随 reload 改变，
+ *       插入顺序不再等于过期顺序，所以清理按最早截止时间触发、整表扫描（表有上限，扫描代价有界）</li>
+ *   <li>使用 ReentrantLock 避免虚拟线程 Pinning</li>
+ * </ul>
+ *
+ * <p>线程安全：此类是线程安全的，所有状态变更都通过锁保护。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class PortReservationCache {
+    /**
+     * 保留宽限期（秒），0 表示禁用端口保留
+     */
+    public static int GRACE_SECONDS = ServerConstants.DEFAULT_PORT_RESERVE_SECONDS;
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    // 反向索引：端口 → 保留该端口的密钥，用于扫描时 O(1) 判断端口是否被别人保留
+    private static final Map<Integer, String> PORT_OWNERS = new HashMap<>();
+    // 插入顺序用于容量淘汰，重新保留时先 remove 再 put 以移动到队尾
+    private static final LinkedHashMap<String, Reservation> RESERVATIONS = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Reservation> eldest) {
+            if (size() > ServerConstants.PORT_RESERVE_MAX_ENTRIES) {
+                PORT_OWNERS.remove(eldest.getValue().port(), eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    // 所有保留中最早的截止时间（可能早于实际值，只会导致多扫一次）；未到这个时间不必清理
+    private static long nextExpiryNanos;
+
+    private PortReservationCache() {
+    }
+
+    /**
+     * 记录密钥最后使用的动态端口
+     *
+     * @param keyName 密钥名
+     * @param port    该密钥刚释放的端口
+     */
+    public static void reserve(String keyName, int port) {
+        if (keyName == null || port <= 0 || GRACE_SECONDS <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        LOCK.lock();
+        try {
+            purgeExpired(now);
+
+            // 端口此前被另一个密钥保留：那条保留已经名存实亡，直接覆盖
+            String previousOwner = PORT_OWNERS.put(port, keyName);
+            if (previousOwner != null && !previousOwner.equals(keyName)) {
+                RESERVATIONS.remove(previousOwner);
+            }
+
+            Reservation old = RESERVATIONS.remove(keyName);
+            if (old != null && old.port() != port) {
+                PORT_OWNERS.remove(old.port(), keyName);
+            }
+            long expireAt = now + TimeUnit.SECONDS.toNanos(GRACE_SECONDS);
+            if (RESERVATIONS.isEmpty() || expireAt - nextExpiryNanos < 0) {
+                nextExpiryNanos = expireAt;
+            }
+            RESERVATIONS.put(keyName, new Reservation(port, expireAt));
+        } finally {
+            LOCK.unlock();
+        }
+        Debugger.debugOperation("Port " + port + " reserved for key " + keyName + " (" + GRACE_SECONDS + "s).");
+    }
+
+    /**
+     * 取回并移除密钥的保留端口
+     *
+     * @param keyName 密钥名
+     * @return 保留的端口；没有保留或已过期时返回 -1
+     */
+    public static int claim(String keyName) {
+        if (keyName == null) {
+            return -1;
+        }
+        LOCK.lock();
+        try {
+            purgeExpired(System.nanoTime());
+            Reservation reservation = RESERVATIONS.remove(keyName);
+            if (reservation == null) {
+                return -1;
+            }
+            PORT_OWNERS.remove(reservation.port(), keyName);
+            return reservation.port();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * 判断端口是否正被其他密钥保留
+     *
+     * @param port    端口
+     * @param keyName 当前申请端口的密钥名
+     * @return 被其他密钥保留且未过期时返回 true
+     */
+    public static boolean isReservedByOther(int port, String keyName) {
+        LOCK.lock();
+        try {
+            String owner = PORT_OWNERS.get(port);
+            if (owner == null || owner.equals(keyName)) {
+                return false;
+            }
+            Reservation reservation = RESERVATIONS.get(owner);
+            return reservation != null && reservation.expireAtNanos() - System.nanoTime() > 0;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static int size() {
+        LOCK.lock();
+        try {
+            purgeExpired(System.nanoTime());
+            return RESERVATIONS.size();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static void clear() {
+        LOCK.lock();
+        try {
+            RESERVATIONS.clear();
+            PORT_OWNERS.clear();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void purgeExpired(long now) {
+        if (RESERVATIONS.isEmpty() || nextExpiryNanos - now > 0) {
+            return;
+        }
+        long earliest = 0;
+        boolean found = false;
+        Iterator<Map.Entry<String, Reservation>> iterator = RESERVATIONS.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Reservation> entry = iterator.next();
+            long expireAt = entry.getValue().expireAtNanos();
+            if (expireAt - now > 0) {
+                if (!found || expireAt - earliest < 0) {
+                    earliest = expireAt;
+                    found = true;
+                }
+                continue;
+            }
+            PORT_OWNERS.remove(entry.getValue().port(), entry.getKey());
+            iterator.remove();
+        }
+        nextExpiryNanos = earliest;
+    }
+
+    private record Reservation(int port, long expireAtNanos) {
+    }
+}
@@ -5,6 +5,8 @@ import neoproxy.neoproxyserver.NeoProxyServer;
 import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.HostClient;
 import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.management.provider.LocalKeyProvider;
+import neoproxy.neoproxyserver.core.management.provider.RemoteKeyProvider;
 import neoproxy.neoproxyserver.core.threads.UDPTransformer;
 import oshi.SystemInfo;
 import oshi.hardware.CentralProcessor;
@@ -17,6 +19,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.management.*;
+import java.net.http.HttpClient;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -454,6 +457,8 @@ public final class ProfileReporter {
         int totalHostClients = NeoProxyServer.availableHostClient.size();
         int tcpConnectionCount = 0;
         int udpConnectionCount = 0;
+        int pendingControlMessages = 0;
+        long droppedControlMessages = 0;
 
         // 遍历所有客户端统计连接数
         for (HostClient client : NeoProxyServer.availableHostClient) {
@@ -464,6 +469,10 @@ public final class ProfileReporter {
             if (client.getClientDatagramSocket() != null) {
                 udpConnectionCount++;
             }
+
+            // 统计Hook通道出站队列
+            pendingControlMessages += client.getControlChannel().getPendingCount();
+            droppedControlMessages += client.getControlChannel().getDroppedMessages();
         }
 
         // 统计UDP活跃连接数
@@ -475,6 +484,8 @@ public final class ProfileReporter {
         sb.append(String.format("│  TCP活跃连接数: %-57d│\n", tcpConnectionCount));
         sb.append(String.format("│  UDP监听端口数: %-57d│\n", udpConnectionCount));
         sb.append(String.format("│  UDP活跃会话数: %-57d│\n", activeUdpTransformers));
+        sb.append(String.format("│  控制消息待发数: %-56d│\n", pendingControlMessages));
+        sb.append(String.format("│  控制消息拒绝数: %-56d│\n", droppedControlMessages));
         sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
 
         // 客户端连接详情（Top 10）
@@ -546,6 +557,53 @@ public final class ProfileReporter {
                 keyInfoMap.values().stream().filter(i -> i.clientCount > 0).count()));
         sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
 
+        // 密钥缓存统计
+        KeyCache cache = SequenceKey.getKeyCache();
+        long lookups = cache.getHits() + cache.getMisses();
+        sb.append("┌─ 密钥缓存 ─────────────────────────────────────────────────────────────────┐\n");
+        sb.append(String.format("│  缓存条目: %-62s│\n", cache.size() + " / " + cache.maxEntries()));
+        sb.append(String.format("│  负向条目: %-62d│\n", cache.negativeSize()));
+        sb.append(String.format("│  命中 / 未命中: %-57s│\n", cache.getHits() + " / " + cache.getMisses()));
+        sb.append(String.format("│  命中率: %-64s│\n",
+                lookups == 0 ? "N/A" : String.format("%.1f%%", cache.getHits() * 100.0 / lookups)));
+        sb.append(String.format("│  负向命中: %-62d│\n", cache.getNegativeHits()));
+        sb.append(String.format("│  淘汰 / 过期: %-59s│\n", cache.getEvictions() + " / " + cache.getExpirations()));
+        sb.append(String.format("│  提前刷新: %-62d│\n", cache.getRefreshes()));
+        sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
+
+        // 本地模式刷盘统计
+        if (SequenceKey.getKeyDataProvider() instanceof LocalKeyProvider local) {
+            sb.append("┌─ 本地刷盘 ─────────────────────────────────────────────────────────────────┐\n");
+            sb.append(String.format("│  当前刷盘间隔: %-55d ms│\n", local.getFlushIntervalMs()));
+            sb.append(String.format("│  上次刷盘耗时: %-55d ms│\n", local.getLastFlushMillis()));
+            sb.append(String.format("│  上次刷盘行数: %-58d│\n", local.getLastFlushRows()));
+            sb.append(String.format("│  累计刷盘次数: %-58d│\n", local.getTotalFlushes()));
+            sb.append(String.format("│  累计写入行数: %-58d│\n", local.getTotalFlushedRows()));
+            sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
+        }
+
+        // 远程模式流量同步统计
+        if (SequenceKey.getKeyDataProvider() instanceof RemoteKeyProvider remote) {
+            sb.append("┌─ NKM 流量同步 ─────────────────────────────────────────────────────────────┐\n");
+            sb.append(String.format("│  上次同步耗时: %-55d ms│\n", remote.getLastSyncMillis()));
+            sb.append(String.format("│  上次同步密钥数: %-56d│\n", remote.getLastSyncKeys()));
+            sb.append(String.format("│  上次报文大小: %-58s│\n",
+                    remote.getLastSyncPayloadBytes() + " B (raw " + remote.getLastSyncRawBytes() + " B)"));
+            // 取值为三个全角字符，占 6 列
+            sb.append(String.format("│  gzip 压缩: %-58s│\n", remote.isSyncGzipEnabled() ? "已启用" : "未启用"));
+            sb.append(String.format("│  累计同步次数: %-58d│\n", remote.getTotalSyncs()));
+            sb.append(String.format("│  累计发送字节: %-58d│\n", remote.getTotalSyncPayloadBytes()));
+            sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
+
+            HttpClient.Version version = remote.getNegotiatedVersion();
+            sb.append("┌─ NKM 连接 ─────────────────────────────────────────────────────────────────┐\n");
+            sb.append(String.format("│  协商协议: %-62s│\n", version == null ? "-" : version.name()));
+            sb.append(String.format("│  在途请求: %-62s│\n", remote.getInFlightRequests() + " / " + remote.getMaxConcurrentRequests()));
+            sb.append(String.format("│  限流拒绝: %-62d│\n", remote.getRejectedRequests()));
+            sb.append(String.format("│  连接重建: %-62d│\n", remote.getClientRebuilds()));
+            sb.append("└────────────────────────────────────────────────────────────────────────────┘\n\n");
+        }
+
         // 密钥详情（显示Top 10）
         sb.append("┌─ 密钥详情 (Top 10) ────────────────────────────────────────────────────────┐\n");
 
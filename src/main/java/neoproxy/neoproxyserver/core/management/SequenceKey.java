@@ -12,9 +12,11 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
@@ -49,8 +51,10 @@ public class SequenceKey {
 
     // 【优化】预编译正则，避免每次调用 getPort() 都重新编译
     private static final Pattern DIGIT_ONLY_PATTERN = Pattern.compile("^\\d+$");
+    // 提前刷新时读库期间遇到落盘的最大重试次数
+    private static final int RELOAD_ATTEMPTS = 3;
 
-    private static final Map<String, SequenceKey> keyCache = new ConcurrentHashMap<>();
+    private static volatile KeyCache keyCache = newKeyCache();
 
     // 全局数据提供者
     public static KeyDataProvider PROVIDER;
@@ -74,6 +78,12 @@ public class SequenceKey {
     protected volatile boolean isEnable;
     protected volatile boolean enableWebHTML;
 
+    // 上次落盘以来的变更跟踪（受 lock 保护）：流量消耗按增量累计，管理操作按字段标记
+    private double pendingDebit;
+    private int dirtyFields;
+    // 变更被取走落盘的次数（受 lock 保护），提前刷新据此判断读库期间内存与存储的分界是否移动过
+    private long takenDeltas;
+
     public SequenceKey(String name, double balance, String expireTime, String port, double rate, boolean isEnable, boolean enableWebHTML) {
         this.name = name;
         this.balance = balance;
@@ -90,7 +100,16 @@ public class SequenceKey {
     }
 
     public static Map<String, SequenceKey> getKeyCacheSnapshot() {
-        return new HashMap<>(keyCache);
+        return keyCache.snapshot();
+    }
+
+    public static KeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    private static KeyCache newKeyCache() {
+        return new KeyCache(KeyCache.MAX_ENTRIES, KeyCache.TTL_SECONDS, KeyCache.NEGATIVE_TTL_SECONDS,
+                SequenceKey::reloadInPlace, SequenceKey::hasUnsavedUsage, System::nanoTime);
     }
 
     public static synchronized void reloadProvider() {
@@ -104,10 +123,11 @@ public class SequenceKey {
             }
         }
 
-        keyCache.clear();
+        // 按最新配置重建缓存
+        keyCache = newKeyCache();
         initProvider();
 
-        String type = (PROVIDER instanceof RemoteKeyProvider) ? "REMOTE (NKM)" : "LOCAL (SQLite)";
+        String type = (PROVIDER instanceof RemoteKeyProvider) ? "REMOTE (NKM)" : "LOCAL (" + Database.getBackendName() + ")";
         ServerLogger.info("sequenceKey.providerReloaded", type);
         Debugger.debugOperation("Provider reloaded. Type: " + type);
     }
@@ -138,19 +158,38 @@ public class SequenceKey {
             throws PortOccupiedException, NoMorePortException, UnRecognizedKeyException, OutDatedKeyException {
 
         if (name == null) return null;
+        KeyCache cache = keyCache;
         if (PROVIDER instanceof LocalKeyProvider) {
             // 本地模式必须复用同一个内存对象，否则扣费线程和落盘线程会读写两份余额快照。
-            SequenceKey cached = keyCache.get(name);
+            SequenceKey cached = cache.get(name);
             if (cached != null) return cached;
-            SequenceKey key = loadKeyFromDatabase(name, false);
-            if (key != null) keyCache.put(name, key);
-            return key;
+            if (cache.isMissing(name)) {
+                Debugger.debugOperation("Key rejected by negative cache: " + name);
+                return null;
+            }
+            SequenceKey key = PROVIDER.getKey(name);
+            if (key == null) {
+                cache.putMissing(name);
+                return null;
+            }
+            // 并发加载时以先放入的对象为准
+            return cache.putIfAbsent(name, key);
         }
 
         // 远程模式：getKey 内部直接抛出异常
         if (PROVIDER != null) {
-            SequenceKey key = PROVIDER.getKey(name);
-            if (key != null) keyCache.put(name, key);
+            if (cache.isMissing(name)) {
+                Debugger.debugOperation("Key rejected by negative cache: " + name);
+                UnRecognizedKeyException.throwException(name);
+            }
+            SequenceKey key;
+            try {
+                key = PROVIDER.getKey(name);
+            } catch (UnRecognizedKeyException e) {
+                cache.putMissing(name);
+                throw e;
+            }
+            if (key != null) cache.put(name, key);
             return key;
         }
         return null;
@@ -168,11 +207,15 @@ public class SequenceKey {
         if (key.isOutOfDate()) {
             OutDatedKeyException.throwException(name);
         }
-        return key;
+        // 在线期间钉在缓存里，HostClient 关闭时经 releaseKey 释放
+        return keyCache.acquire(name, key);
     }
 
     public static void releaseKey(String name) {
         Debugger.debugOperation("Releasing key: " + name);
+        if (name != null) {
+            keyCache.release(name);
+        }
         if (name != null && PROVIDER != null) {
             PROVIDER.releaseKey(name);
         }
@@ -190,20 +233,99 @@ public class SequenceKey {
         return null;
     }
 
+    /**
+     * 落盘上次以来的变更：流量消耗以增量 UPDATE 写入，管理操作修改的字段以绝对值写入，
+     * 无变更时不访问数据库。写入失败时变更放回密钥，下次重试。
+     *
+     * <p>用量账本打开时，纯消耗只追加到账本；含管理字段的变更先合并账本再写库。
+     * 取变更与写出在密钥锁内完成，保证同一密钥的消耗记录不会越过其后的绝对值写入。</p>
+     */
     public static boolean saveToDB(SequenceKey sequenceKey) {
         if (sequenceKey == null) return false;
         sequenceKey.lock.lock();
         try {
-            // [Refactor] 调用 Database
-            return Database.saveKey(sequenceKey);
+            KeyDelta delta = sequenceKey.takeDelta();
+            if (delta.isEmpty()) return true;
+            if (persistDelta(delta)) return true;
+            sequenceKey.restoreDelta(delta);
+            return false;
         } finally {
             sequenceKey.lock.unlock();
         }
     }
 
+    private static boolean persistDelta(KeyDelta delta) {
+        if (UsageLedger.isOpen()) {
+            if (delta.fields() == 0 && UsageLedger.appendUsage(delta.name(), delta.debit())) {
+                return true;
+            }
+            // 增量扣减彼此可交换，账本不可用时直接写库也不会重复扣费；绝对值写入则必须等账本合并完
+            if (delta.fields() != 0 && !UsageLedger.compactNow()) {
+                return false;
+            }
+        }
+        // [Refactor] 调用 Database
+        return Database.applyDelta(delta);
+    }
+
+    /**
+     * 批量落盘，单个事务内完成
+     *
+     * @return 写入行数；失败返回 -1
+     */
+    public static int saveAllToDB(Collection<SequenceKey> keys) {
+        if (keys == null || keys.isEmpty()) return 0;
+        if (UsageLedger.isOpen()) {
+            // 账本模式下逐个追加即可，已经是顺序写
+            int rows = 0;
+            boolean failed = false;
+            for (SequenceKey key : keys) {
+                if (saveToDB(key)) {
+                    rows++;
+                } else {
+                    failed = true;
+                }
+            }
+            return failed ? -1 : rows;
+        }
+        // 与 saveToDB 一样在密钥锁内取变更并写出，否则并发的绝对值写入可能排在这批增量之前；
+        // 按名称顺序加锁，避免两批落盘互相等待
+        List<SequenceKey> locked = new ArrayList<>(keys);
+        locked.sort(Comparator.comparing(key -> key.name));
+        int held = 0;
+        try {
+            for (SequenceKey key : locked) {
+                key.lock.lock();
+                held++;
+            }
+            List<SequenceKey> owners = new ArrayList<>(locked.size());
+            List<KeyDelta> deltas = new ArrayList<>(locked.size());
+            for (SequenceKey key : locked) {
+                KeyDelta delta = key.takeDelta();
+                if (!delta.isEmpty()) {
+                    owners.add(key);
+                    deltas.add(delta);
+                }
+            }
+            if (deltas.isEmpty()) return 0;
+            int rows = Database.applyDeltas(deltas);
+            if (rows < 0) {
+                for (int i = 0; i < owners.size(); i++) {
+                    owners.get(i).restoreDelta(deltas.get(i));
+                }
+            }
+            return rows;
+        } finally {
+            for (int i = held - 1; i >= 0; i--) {
+                locked.get(i).lock.unlock();
+            }
+        }
+    }
+
     public static boolean createNewKey(String name, double balance, String expireTime, String portStr, double rate) {
         Debugger.debugOperation("Creating new key: " + name + " Port: " + portStr);
         if (name == null) return false;
+        keyCache.remove(name);
         // [Refactor] 调用 Database
         return Database.createKey(name, balance, expireTime, portStr, rate);
     }
@@ -216,7 +338,7 @@ public class SequenceKey {
     }
 
     public static boolean isKeyExistsByName(String name) {
-        if (keyCache.containsKey(name)) return true;
+        if (keyCache.contains(name)) return true;
         // [Refactor] 调用 Database
         return Database.exists(name);
     }
@@ -228,7 +350,7 @@ public class SequenceKey {
 
     public static boolean enableKey(String name) {
         Debugger.debugOperation("Enabling key: " + name);
-        SequenceKey key = keyCache.get(name);
+        SequenceKey key = keyCache.peek(name);
         if (key != null) key.setEnable(true);
         // [Refactor] 调用 Database
         return Database.updateStatus(name, true);
@@ -236,7 +358,7 @@ public class SequenceKey {
 
     public static boolean disableKey(String name) {
         Debugger.debugOperation("Disabling key: " + name);
-        SequenceKey key = keyCache.get(name);
+        SequenceKey key = keyCache.peek(name);
         if (key != null) key.setEnable(false);
         // [Refactor] 调用 Database
         return Database.updateStatus(name, false);
@@ -259,16 +381,26 @@ public class SequenceKey {
         lock.lock();
         try {
             Debugger.debugOperation("Refreshing key data for: " + this.name);
-            this.balance = freshKey.balance;
-            this.isEnable = freshKey.isEnable;
-            this.enableWebHTML = freshKey.enableWebHTML;
-            this.rate = freshKey.rate;
-
-            if (!String.valueOf(this.expireTime).equals(freshKey.expireTime)) {
+            // 尚未落盘的管理修改（dirtyFields）以本地值为准，否则刷新会把它们悄悄丢掉
+            int dirty = this.dirtyFields;
+            if ((dirty & KeyDelta.BALANCE) == 0) {
+                // 尚未落盘的流量消耗不在 freshKey 中，需要继续扣除
+                this.balance = freshKey.balance - this.pendingDebit;
+            }
+            if ((dirty & KeyDelta.ENABLE) == 0) {
+                this.isEnable = freshKey.isEnable;
+            }
+            if ((dirty & KeyDelta.WEB_HTML) == 0) {
+                this.enableWebHTML = freshKey.enableWebHTML;
+            }
+            if ((dirty & KeyDelta.RATE) == 0) {
+                this.rate = freshKey.rate;
+            }
+            if ((dirty & KeyDelta.EXPIRE_TIME) == 0 && !String.valueOf(this.expireTime).equals(freshKey.expireTime)) {
                 this.expireTime = freshKey.expireTime;
                 updateExpireTimestamp(this.expireTime);
             }
-            if (!String.valueOf(this.port).equals(freshKey.port)) {
+            if ((dirty & KeyDelta.PORT) == 0 && !String.valueOf(this.port).equals(freshKey.port)) {
                 this.port = freshKey.port;
             }
         } finally {
@@ -289,10 +421,14 @@ public class SequenceKey {
                 NoMoreNetworkFlowException.throwException("SK-Manager", "exception.keyDisabled", name);
             }
 
+            double before = this.balance;
             this.balance -= mib;
+            this.pendingDebit += mib;
 
             if (this.balance <= 0) {
                 if (PROVIDER instanceof LocalKeyProvider) {
+                    // 归零时只记录实际扣掉的部分，保证数据库与内存一致
+                    this.pendingDebit -= mib - Math.max(before, 0);
                     this.balance = 0;
                     Debugger.debugOperation("Insufficient balance for: " + name);
                     NoMoreNetworkFlowException.throwException(sourceSubject, "exception.insufficientBalance", name);
@@ -307,6 +443,91 @@ public class SequenceKey {
         }
     }
 
+    /**
+     * 取出上次落盘以来的变更并清零；写入失败时须调用 {@link #restoreDelta} 放回
+     */
+    KeyDelta takeDelta() {
+        lock.lock();
+        try {
+            // 余额被直接设置时以绝对值写入，已包含之后的所有消耗
+            double debit = (dirtyFields & KeyDelta.BALANCE) != 0 ? 0 : pendingDebit;
+            KeyDelta delta = new KeyDelta(name, dirtyFields, debit, balance, expireTime, port, rate, isEnable, enableWebHTML);
+            if (pendingDebit != 0 || dirtyFields != 0) {
+                takenDeltas++;
+            }
+            pendingDebit = 0;
+            dirtyFields = 0;
+            return delta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void restoreDelta(KeyDelta delta) {
+        lock.lock();
+        try {
+            dirtyFields |= delta.fields();
+            if ((dirtyFields & KeyDelta.BALANCE) == 0) {
+                pendingDebit += delta.debit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存提前刷新：从数据库重新读取并原地写回，对象身份不变
+     *
+     * <p>读库在密钥锁外进行，不阻塞扣费与落盘。读到的余额已扣除账本中未合并的消耗，
+     * 与内存中的 pendingDebit 互补；若读库期间有变更被取走落盘，两者的分界已经移动，
+     * 这次读到的余额作废并重读，避免同一笔消耗被扣两次或漏扣。</p>
+     *
+     * @return 密钥已从数据库删除时返回 false
+     */
+    static boolean reloadInPlace(SequenceKey key) {
+        if (!(PROVIDER instanceof LocalKeyProvider local)) {
+            // 远程模式的元数据由流量同步推送，这里不重复拉取
+            return true;
+        }
+        for (int attempt = 0; attempt < RELOAD_ATTEMPTS; attempt++) {
+            long taken;
+            key.lock.lock();
+            try {
+                taken = key.takenDeltas;
+            } finally {
+                key.lock.unlock();
+            }
+            SequenceKey fresh = local.getKey(key.name);
+            if (fresh == null) return false;
+            key.lock.lock();
+            try {
+                if (key.takenDeltas == taken) {
+                    key.refreshFrom(fresh);
+                    return true;
+                }
+            } finally {
+                key.lock.unlock();
+            }
+        }
+        // 落盘过于频繁，保留当前数据到下一轮提前刷新
+        Debugger.debugOperation("Key refresh skipped, usage kept moving to storage: {}", key.name);
+        return true;
+    }
+
+    /**
+     * 判断是否还有未写入数据库的用量或修改，此时缓存不能丢弃该对象
+     */
+    static boolean hasUnsavedUsage(SequenceKey key) {
+        // 由缓存在其锁内调用：密钥正被扣费或落盘时不等待，直接视为仍在使用
+        if (!key.lock.tryLock()) return true;
+        try {
+            if (key.pendingDebit != 0 || key.dirtyFields != 0) return true;
+        } finally {
+            key.lock.unlock();
+        }
+        return UsageLedger.hasUncompacted(key.name);
+    }
+
     private void updateExpireTimestamp(String expireTime) {
         this.expireTime = expireTime;
         try {
@@ -351,6 +572,7 @@ public class SequenceKey {
         lock.lock();
         try {
             this.balance = balance;
+            this.dirtyFields |= KeyDelta.BALANCE;
         } finally {
             lock.unlock();
         }
@@ -370,6 +592,7 @@ public class SequenceKey {
         try {
             this.expireTime = expireTime;
             updateExpireTimestamp(expireTime);
+            this.dirtyFields |= KeyDelta.EXPIRE_TIME;
         } finally {
             lock.unlock();
         }
@@ -388,6 +611,7 @@ public class SequenceKey {
         lock.lock();
         try {
             this.rate = rate;
+            this.dirtyFields |= KeyDelta.RATE;
         } finally {
             lock.unlock();
         }
@@ -413,6 +637,7 @@ public class SequenceKey {
         lock.lock();
         try {
             this.isEnable = enable;
+            this.dirtyFields |= KeyDelta.ENABLE;
         } finally {
             lock.unlock();
         }
@@ -438,6 +663,7 @@ public class SequenceKey {
         lock.lock();
         try {
             this.enableWebHTML = enable;
+            this.dirtyFields |= KeyDelta.WEB_HTML;
         } finally {
             lock.unlock();
         }
@@ -475,6 +701,7 @@ public class SequenceKey {
         lock.lock();
         try {
             this.port = port;
+            this.dirtyFields |= KeyDelta.PORT;
         } finally {
             lock.unlock();
         }
@@ -82,7 +82,7 @@ public class TransferSocketAdapter implements Runnable {
                 // 若还能移除，说明没人领取 -> 超时真实发生，需要关闭 socket
                 HostReply removed = map.remove(entry.socketID);
                 if (removed != null) {
-                    Debugger.debugOperation("TransferSocket Cleaner: Cleaning up stale socket ID: " + entry.socketID);
+                    Debugger.debugOperation("TransferSocket Cleaner: Cleaning up stale socket ID: {}", entry.socketID);
                     try {
                         close(removed.host());
                     } catch (Exception ex) {
@@ -115,7 +115,7 @@ public class TransferSocketAdapter implements Runnable {
         // 1) 先尝试直接领取（常走路径）
         HostReply existing = map.remove(socketID);
         if (existing != null) {
-            Debugger.debugOperation("HostReply acquired immediately: " + socketID);
+            Debugger.debugOperation("HostReply acquired immediately: {}", socketID);
             return existing;
         }
 
@@ -130,7 +130,7 @@ public class TransferSocketAdapter implements Runnable {
         existing = map.remove(socketID);
         if (existing != null) {
             waiting.remove(socketID, cf);
-            Debugger.debugOperation("HostReply acquired (race win): " + socketID);
+            Debugger.debugOperation("HostReply acquired (race win): {}", socketID);
             return existing;
         }
 
@@ -140,7 +140,7 @@ public class TransferSocketAdapter implements Runnable {
             return cf.get(SO_TIMEOUT, TimeUnit.MILLISECONDS);
         } catch (TimeoutException te) {
             waiting.remove(socketID, cf);
-            Debugger.debugOperation("Timeout waiting for HostReply: " + socketID);
+            Debugger.debugOperation("Timeout waiting for HostReply: {}", socketID);
             throw new SocketTimeoutException();
         } catch (InterruptedException ie) {
             waiting.remove(socketID, cf);
@@ -184,9 +184,9 @@ public class TransferSocketAdapter implements Runnable {
                     }
 
                     String[] flags = handshake.split(";", -1);
-                    Debugger.debugOperation("TransferSocket received flags: " + handshake);
+                    Debugger.debugOperation("TransferSocket received flags: {}", handshake);
                     if (flags.length != 2 || flags[0].isBlank() || flags[1].isBlank()) {
-                        Debugger.debugOperation("TransferSocket rejected malformed handshake: " + handshake);
+                        Debugger.debugOperation("TransferSocket rejected malformed handshake: {}", handshake);
                         close(accepted);
                         return;
                     }
@@ -197,7 +197,7 @@ public class TransferSocketAdapter implements Runnable {
                     try {
                         socketID = Long.parseLong(flags[1].trim());
                     } catch (NumberFormatException e) {
-                        Debugger.debugOperation("TransferSocket rejected non-numeric socket id: " + flags[1]);
+                        Debugger.debugOperation("TransferSocket rejected non-numeric socket id: {}", flags[1]);
                         close(accepted);
                         return;
                     }
@@ -207,7 +207,7 @@ public class TransferSocketAdapter implements Runnable {
                     boolean isUdp = "UDP".equals(connectionType);
 
                     if (!isTcp && !isUdp) {
-                        Debugger.debugOperation("Invalid TransferSocket connection type: " + connectionType);
+                        Debugger.debugOperation("Invalid TransferSocket connection type: {}", connectionType);
                         close(accepted);
                         return;
                     }
@@ -220,13 +220,13 @@ public class TransferSocketAdapter implements Runnable {
                     // 优先尝试唤醒等待方（避免不必要的放入 map）
                     CompletableFuture<HostReply> waitCf = waiting.remove(socketID);
                     if (waitCf != null) {
-                        Debugger.debugOperation("TransferSocket matched waiting thread: " + socketID);
+                        Debugger.debugOperation("TransferSocket matched waiting thread: {}", socketID);
                         waitCf.complete(newReply);
                         return;
                     }
 
                     // 无等待方：把 hostReply 放入 map，并放入 DelayQueue 管理超时
-                    Debugger.debugOperation("TransferSocket queued (no waiter): " + socketID);
+                    Debugger.debugOperation("TransferSocket queued (no waiter): {}", socketID);
                     map.put(socketID, newReply);
 
                     DelayedEntry entry = new DelayedEntry(socketID, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SO_TIMEOUT), isTcp);
@@ -0,0 +1,457 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import top.ceroxe.api.thread.ThreadManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * UsageLedger - 本地模式的预写用量账本
+ *
+ * <p>流量消耗不再每次都写 SQLite，而是以定长小记录顺序追加到 ledger 目录下的段文件：</p>
+ * <pre>
+ * | nameLen (u16) | name (UTF-8) | debit (double, MiB) | timestamp (long) | crc32 (int) |
+ * </pre>
+ * <p>后台合并任务每 {@link #COMPACT_INTERVAL_SECONDS} 秒封存当前段，把封存段按密钥汇总后
+ * 在一个事务内扣减 sk 表，并在同一事务里记录"已应用的最大段号"，然后删除段文件。</p>
+ *
+ * <p>【崩溃恢复】</p>
+ * <ul>
+ *   <li>追加返回后记录已进入操作系统页缓存，进程被杀也不会丢失；合并前会 force 到磁盘</li>
+ *   <li>段尾被截断或损坏的记录（写到一半时进程退出）在 CRC 校验时被丢弃，不会被部分应用</li>
+ *   <li>段号与扣减在同一事务提交，事务提交后、删除文件前崩溃，重启时该段会被识别为已应用而跳过，
+ *       因此不会重复扣费</li>
+ *   <li>启动时先把遗留段计入未合并索引并合并，再开始新段；合并失败的段留待下次合并，读库照常扣除</li>
+ * </ul>
+ *
+ * <p>线程安全：追加与切段共用一把 ReentrantLock；合并由另一把锁串行化，期间不阻塞追加。
+ * 每个段的应用与内存索引的移除在 StampedLock 写锁内完成，读库方用乐观读校验读到的余额与
+ * 未合并消耗是否出自同一时刻，见 {@link #loadWithUncompacted}。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+public final class UsageLedger {
+    /**
+     * 合并间隔（秒），0 表示不使用账本
+     */
+    public static int COMPACT_INTERVAL_SECONDS = ServerConstants.DEFAULT_LEDGER_COMPACT_SECONDS;
+
+    private static final String SEGMENT_PREFIX = "usage-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // nameLen + debit + timestamp + crc
+    private static final int RECORD_OVERHEAD = 2 + 8 + 8 + 4;
+
+    private static volatile UsageLedger active;
+    private static ScheduledFuture<?> compactTask;
+
+    private final Path directory;
+    private final SegmentApplier applier;
+    private final long segmentMaxBytes;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock compactLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    // 密钥 → (段号 → 该段内的消耗合计)；段应用到数据库后移除
+    private final Map<String, Map<Long, Double>> uncompacted = new ConcurrentHashMap<>();
+    private final StampedLock applyLock = new StampedLock();
+    private FileChannel channel;
+    private long activeSegmentId;
+    private long activeSize;
+
+    /**
+     * 把一个封存段的汇总结果应用到存储，要求对同一段号幂等
+     */
+    @FunctionalInterface
+    interface SegmentApplier {
+        boolean apply(long segmentId, Map<String, Double> debits);
+    }
+
+    record Entry(String name, double debit, long timestamp) {
+    }
+
+    UsageLedger(Path directory, SegmentApplier applier, long segmentMaxBytes) {
+        this.directory = directory;
+        this.applier = applier;
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
+    // ==================== 全局实例 ====================
+
+    /**
+     * 打开账本：合并上次运行遗留的段，然后开始新段并启动后台合并。须在 Database 初始化之后调用
+     */
+    public static synchronized void open() {
+        if (active != null || COMPACT_INTERVAL_SECONDS <= 0) {
+            return;
+        }
+        UsageLedger ledger = new UsageLedger(Path.of(NeoProxyServer.CURRENT_DIR_PATH, "ledger"),
+                Database::applyLedgerSegment, ServerConstants.LEDGER_SEGMENT_MAX_BYTES);
+        try {
+            ledger.recover(Database.getLastLedgerSegment());
+        } catch (IOException e) {
+            ServerLogger.error("usageLedger.openFailed", e, e.getMessage());
+            Debugger.debugOperation(e);
+            return;
+        }
+        active = ledger;
+        compactTask = ThreadManager.getScheduledExecutor().scheduleWithFixedDelay(() -> {
+            try {
+                ledger.compact();
+            } catch (Exception e) {
+                Debugger.debugOperation(e);
+            }
+        }, COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Debugger.debugOperation("UsageLedger opened, compact interval " + COMPACT_INTERVAL_SECONDS + "s");
+    }
+
+    /**
+     * 合并全部记录并关闭账本
+     */
+    public static synchronized void close() {
+        UsageLedger ledger = active;
+        if (ledger == null) {
+            return;
+        }
+        if (compactTask != null) {
+            compactTask.cancel(false);
+            compactTask = null;
+        }
+        active = null;
+        ledger.compact();
+        ledger.closeChannel();
+        Debugger.debugOperation("UsageLedger closed.");
+    }
+
+    public static boolean isOpen() {
+        return active != null;
+    }
+
+    /**
+     * 追加一条消耗记录
+     *
+     * @return 账本未打开或写入失败时返回 false，调用方应改走数据库或保留待重试
+     */
+    public static boolean appendUsage(String name, double debit) {
+        UsageLedger ledger = active;
+        return ledger != null && ledger.append(name, debit);
+    }
+
+    /**
+     * 判断密钥是否还有未合并进数据库的消耗记录
+     */
+    public static boolean hasUncompacted(String name) {
+        UsageLedger ledger = active;
+        return ledger != null && ledger.uncompacted.containsKey(name);
+    }
+
+    /**
+     * 从数据库读取密钥，并扣除其在账本中尚未合并的消耗。不触发合并，可在握手路径上调用
+     *
+     * @param loader 读库，密钥不存在时返回 null
+     */
+    public static SequenceKey loadWithUncompacted(String name, Function<String, SequenceKey> loader) {
+        UsageLedger ledger = active;
+        return ledger == null ? loader.apply(name) : ledger.load(name, loader);
+    }
+
+    /**
+     * 立即合并。绝对值写入（如管理员设置余额）之前必须先调用，避免更早的消耗在其后被再次扣减
+     */
+    public static boolean compactNow() {
+        UsageLedger ledger = active;
+        return ledger == null || ledger.compact();
+    }
+
+    // ==================== 实例实现 ====================
+
+    void recover(long lastAppliedSegment) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments();
+        long maxId = lastAppliedSegment;
+        for (long id : segments) {
+            maxId = Math.max(maxId, id);
+            if (id > lastAppliedSegment) {
+                // 先计入索引：应用失败时段文件留到下次合并，期间读库仍须扣除这部分消耗
+                for (Entry entry : readSegment(segmentPath(id))) {
+                    index(entry.name(), id, entry.debit());
+                }
+            }
+        }
+        applySealedSegments(segments);
+        openSegment(maxId + 1);
+    }
+
+    boolean append(String name, double debit) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + nameBytes.length);
+        record.putShort((short) nameBytes.length);
+        record.put(nameBytes);
+        record.putDouble(debit);
+        record.putLong(System.currentTimeMillis());
+
+        appendLock.lock();
+        try {
+            if (channel == null) {
+                return false;
+            }
+            crc.reset();
+            crc.update(record.array(), 0, record.position());
+            record.putInt((int) crc.getValue());
+            record.flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                Debugger.debugOperation(e);
+                // 写到一半的记录会使其后的记录无法读取，换新段继续
+                rollSegmentQuietly();
+                return false;
+            }
+            activeSize += record.limit();
+            index(name, activeSegmentId, debit);
+            if (activeSize >= segmentMaxBytes) {
+                rollSegmentQuietly();
+                ThreadManager.runAsync(this::compact);
+            }
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前段并应用所有封存段
+     *
+     * @return 所有封存段都已应用时返回 true
+     */
+    boolean compact() {
+        compactLock.lock();
+        try {
+            long sealedBefore;
+            appendLock.lock();
+            try {
+                if (channel != null && activeSize > 0) {
+                    rollSegment();
+                }
+                sealedBefore = activeSegmentId;
+            } finally {
+                appendLock.unlock();
+            }
+            List<Long> sealed = new ArrayList<>();
+            for (long id : listSegments()) {
+                if (id < sealedBefore) {
+                    sealed.add(id);
+                }
+            }
+            return applySealedSegments(sealed);
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+            return false;
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    /**
+     * 读库与汇总未合并消耗在同一次乐观读内完成；期间有段被应用时改在读锁内重读，
+     * 否则刚应用的消耗可能既在读到的余额里、又在索引里，被扣两次
+     */
+    SequenceKey load(String name, Function<String, SequenceKey> loader) {
+        long stamp = applyLock.tryOptimisticRead();
+        if (stamp != 0) {
+            SequenceKey key = loader.apply(name);
+            double debit = uncompactedDebit(name);
+            if (applyLock.validate(stamp)) {
+                return deduct(key, debit);
+            }
+        }
+        stamp = applyLock.readLock();
+        try {
+            SequenceKey key = loader.apply(name);
+            return deduct(key, uncompactedDebit(name));
+        } finally {
+            applyLock.unlockRead(stamp);
+        }
+    }
+
+    double uncompactedDebit(String name) {
+        Map<Long, Double> segments = uncompacted.get(name);
+        if (segments == null) {
+            return 0;
+        }
+        double sum = 0;
+        for (double debit : segments.values()) {
+            sum += debit;
+        }
+        return sum;
+    }
+
+    private static SequenceKey deduct(SequenceKey key, double debit) {
+        // 刚从数据库读出、尚未共享的对象，直接改字段，不产生待落盘的变更
+        if (key != null && debit != 0) {
+            key.balance -= debit;
+        }
+        return key;
+    }
+
+    void closeChannel() {
+        appendLock.lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+        } finally {
+            channel = null;
+            appendLock.unlock();
+        }
+    }
+
+    private boolean applySealedSegments(List<Long> segments) throws IOException {
+        for (long id : segments) {
+            Path file = segmentPath(id);
+            Map<String, Double> debits = new HashMap<>();
+            for (Entry entry : readSegment(file)) {
+                debits.merge(entry.name(), entry.debit(), Double::sum);
+            }
+            long stamp = applyLock.writeLock();
+            try {
+                if (!debits.isEmpty() && !applier.apply(id, debits)) {
+                    ServerLogger.warn("usageLedger.compactFailed", file.getFileName().toString());
+                    return false;
+                }
+                forgetSegment(id);
+            } finally {
+                applyLock.unlockWrite(stamp);
+            }
+            Files.deleteIfExists(file);
+            Debugger.debugOperation("Ledger segment " + id + " compacted. Keys: " + debits.size());
+        }
+        return true;
+    }
+
+    private void index(String name, long segment, double debit) {
+        uncompacted.compute(name, (k, segments) -> {
+            if (segments == null) {
+                segments = new ConcurrentHashMap<>();
+            }
+            segments.merge(segment, debit, Double::sum);
+            return segments;
+        });
+    }
+
+    // 须持有 applyLock 写锁
+    private void forgetSegment(long id) {
+        for (String name : uncompacted.keySet()) {
+            uncompacted.computeIfPresent(name, (k, segments) -> {
+                segments.remove(id);
+                return segments.isEmpty() ? null : segments;
+            });
+        }
+    }
+
+    // 须持有 appendLock。切段失败时停止追加，调用方会改走数据库
+    private void rollSegmentQuietly() {
+        try {
+            rollSegment();
+        } catch (IOException e) {
+            Debugger.debugOperation(e);
+            channel = null;
+        }
+    }
+
+    // 须持有 appendLock
+    private void rollSegment() throws IOException {
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+        openSegment(activeSegmentId + 1);
+    }
+
+    private void openSegment(long id) throws IOException {
+        channel = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegmentId = id;
+        activeSize = channel.size();
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        ids.add(Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            });
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    Path segmentPath(long id) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%019d", id) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 读取段文件中的完整记录，遇到截断或 CRC 不符的记录即停止（视为写到一半的尾部）
+     */
+    static List<Entry> readSegment(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<Entry> entries = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int nameLength = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < nameLength + RECORD_OVERHEAD - 2) {
+                break;
+            }
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            double debit = buffer.getDouble();
+            long timestamp = buffer.getLong();
+            int expected = buffer.getInt();
+            checksum.reset();
+            checksum.update(data, start, RECORD_OVERHEAD - 4 + nameLength);
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            entries.add(new Entry(new String(nameBytes, StandardCharsets.UTF_8), debit, timestamp));
+        }
+        if (buffer.hasRemaining()) {
+            Debugger.debugOperation("Ledger segment " + file.getFileName() + " has " + buffer.remaining() + " trailing bytes discarded.");
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,122 @@
+package neoproxy.neoproxyserver.core.management.provider;
+
+import neoproxy.neoproxyserver.core.Debugger;
+import neoproxy.neoproxyserver.core.ServerLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * CircuitBreaker - NKM 请求熔断器
+ *
+ * <p>管理端宕机时，每次握手都要等满连接超时加一次重试，重连风暴会让所有握手排队。
+ * 熔断器在连续失败达到阈值后直接拒绝请求，冷却期过后只放行一个探测请求：</p>
+ * <pre>
+ * CLOSED --连续失败 N 次--> OPEN --冷却期结束--> HALF_OPEN --探测成功--> CLOSED
+ *                            ^                      |
+ *                            +------探测失败--------+
+ * </pre>
+ * <p>只有网络错误与 5xx 计为失败；4xx 是管理端给出的明确答复，说明它是活的。</p>
+ *
+ * <p>线程安全：状态由 ReentrantLock 保护。</p>
+ *
+ * @author Ceroxe
+ * @version 7.1.9
+ * @since 7.1.9
+ */
+final class CircuitBreaker {
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int failureThreshold, long openSeconds, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.SECONDS.toNanos(Math.max(1, openSeconds));
+        this.clock = clock;
+    }
+
+    /**
+     * @return false 表示熔断中，调用方应立即放弃请求
+     */
+    boolean allowRequest() {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (clock.getAsLong() - openedAt < openNanos) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probeInFlight = true;
+                    Debugger.debugOperation("NKM circuit half-open, probing.");
+                    return true;
+                default:
+                    if (probeInFlight) {
+                        return false;
+                    }
+                    probeInFlight = true;
+                    return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void recordSuccess() {
+        boolean recovered;
+        lock.lock();
+        try {
+            recovered = state != State.CLOSED;
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            probeInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+        if (recovered) {
+            ServerLogger.info("remoteProvider.circuitClosed");
+        }
+    }
+
+    void recordFailure() {
+        boolean opened = false;
+        int failures;
+        lock.lock();
+        try {
+            failures = ++consecutiveFailures;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                opened = state == State.CLOSED;
+                state = State.OPEN;
+                openedAt = clock.getAsLong();
+                probeInFlight = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (opened) {
+            ServerLogger.warn("remoteProvider.circuitOpened", failures, TimeUnit.NANOSECONDS.toSeconds(openNanos));
+        }
+    }
+
+    State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
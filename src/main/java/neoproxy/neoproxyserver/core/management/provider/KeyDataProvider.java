@@ -6,6 +6,8 @@ import neoproxy.neoproxyserver.core.exceptions.PortOccupiedException;
 import neoproxy.neoproxyserver.core.exceptions.UnRecognizedKeyException;
 import neoproxy.neoproxyserver.core.management.SequenceKey;
 
+import java.util.List;
+
 public interface KeyDataProvider {
     void init();
 
@@ -23,4 +25,12 @@ public interface KeyDataProvider {
     void shutdown();
 
     boolean sendHeartbeat(Protocol.HeartbeatPayload payload);
+
+    /**
+     * 批量发送心跳
+     *
+     * @param payloads 本周期所有隧道的心跳
+     * @return 与 payloads 按下标一一对应的保活结果，false 表示该隧道应被踢下线
+     */
+    boolean[] sendHeartbeatBatch(List<Protocol.HeartbeatPayload> payloads);
 }
\ No newline at end of file
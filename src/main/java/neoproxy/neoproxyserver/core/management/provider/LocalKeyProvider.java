@@ -3,25 +3,45 @@ package neoproxy.neoproxyserver.core.management.provider;
 import top.ceroxe.api.thread.ThreadManager;
 import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.management.Database;
 import neoproxy.neoproxyserver.core.management.SequenceKey;
+import neoproxy.neoproxyserver.core.management.UsageLedger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import static neoproxy.neoproxyserver.core.Debugger.debugOperation;
 
 /**
  * 工业级本地 Provider
  * 采用 "Dirty Flag" 机制，后台线程定期刷盘，解决高并发写入问题。
+ *
+ * <p>【批量刷盘】每轮先把脏密钥集合取快照，再在一个事务内用批量语句一次写完，
+ * 整轮只付出一次 WAL 提交。刷盘间隔随负载自适应：</p>
+ * <ul>
+ *   <li>单轮耗时超过间隔的一半时，间隔翻倍（上限 {@link #MAX_FLUSH_INTERVAL_MS}），避免刷盘首尾相接</li>
+ *   <li>单轮行数达到 {@link #FLUSH_HIGH_WATER_ROWS} 时，间隔减半（下限 {@link #MIN_FLUSH_INTERVAL_MS}），让每批保持小而快</li>
+ *   <li>其它情况逐步回到默认间隔</li>
+ * </ul>
  */
 public class LocalKeyProvider implements KeyDataProvider {
 
     private static final long FLUSH_INTERVAL_SECONDS = 5;
+    static final long MIN_FLUSH_INTERVAL_MS = 1000;
+    static final long MAX_FLUSH_INTERVAL_MS = 30_000;
+    static final int FLUSH_HIGH_WATER_ROWS = 2000;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(FLUSH_INTERVAL_SECONDS);
+
     private final Set<String> dirtyKeys = ConcurrentHashMap.newKeySet();
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -32,19 +52,30 @@ public class LocalKeyProvider implements KeyDataProvider {
 
     private final AtomicBoolean isFlushing = new AtomicBoolean(false);
 
+    // ==================== 刷盘统计 ====================
+    private volatile long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+    private volatile long lastFlushMillis = 0;
+    private volatile int lastFlushRows = 0;
+    private final LongAdder totalFlushes = new LongAdder();
+    private final LongAdder totalFlushedRows = new LongAdder();
+
     @Override
     public void init() {
         Debugger.debugOperation("Initializing LocalKeyProvider...");
         SequenceKey.initKeyDatabase();
-        scheduler.scheduleAtFixedRate(this::flushDirtyKeys, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
-        // 日志：LocalKeyProvider 已初始化。刷盘间隔：{0} 秒
-        ServerLogger.info("localProvider.init", FLUSH_INTERVAL_SECONDS);
-        Debugger.debugOperation("LocalKeyProvider init complete. Flush interval: " + FLUSH_INTERVAL_SECONDS + "s");
+        // 重放上次运行遗留的用量记录后才能开始接受流量
+        UsageLedger.open();
+        scheduleNextFlush();
+        // 日志：LocalKeyProvider 已初始化。初始刷盘间隔 {0} 毫秒，在 {1} 至 {2} 毫秒之间自适应
+        ServerLogger.info("localProvider.init", DEFAULT_FLUSH_INTERVAL_MS, MIN_FLUSH_INTERVAL_MS, MAX_FLUSH_INTERVAL_MS);
+        Debugger.debugOperation("LocalKeyProvider init complete. Flush interval: {}ms, adaptive {}ms-{}ms",
+                DEFAULT_FLUSH_INTERVAL_MS, MIN_FLUSH_INTERVAL_MS, MAX_FLUSH_INTERVAL_MS);
     }
 
     @Override
     public SequenceKey getKey(String name) { // 虽然本地模式不抛出 OutDated，但接口需要兼容
-        return SequenceKey.loadKeyFromDatabase(name, false);
+        // 账本中尚未合并的消耗不在数据库里，从读到的余额中扣除，握手路径上不触发合并
+        return UsageLedger.loadWithUncompacted(name, n -> SequenceKey.loadKeyFromDatabase(n, false));
     }
 
     @Override
@@ -55,6 +86,20 @@ public class LocalKeyProvider implements KeyDataProvider {
         }
     }
 
+    private void scheduleNextFlush() {
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    flushDirtyKeys();
+                } finally {
+                    scheduleNextFlush();
+                }
+            }, flushIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // 已 shutdown
+        }
+    }
+
     private void flushDirtyKeys() {
         if (dirtyKeys.isEmpty()) return;
 
@@ -64,29 +109,93 @@ public class LocalKeyProvider implements KeyDataProvider {
         }
 
         Debugger.debugOperation("Starting local DB flush. Dirty keys: " + dirtyKeys.size());
+        long start = System.nanoTime();
+        int rows = 0;
         try {
+            // 1. 取快照：先移除再读取，刷盘期间新产生的脏标记留到下一轮
+            List<String> names = new ArrayList<>(dirtyKeys.size());
+            List<SequenceKey> keys = new ArrayList<>(dirtyKeys.size());
+            List<String> failed = new ArrayList<>();
             Iterator<String> it = dirtyKeys.iterator();
             while (it.hasNext()) {
                 String name = it.next();
+                it.remove();
                 try {
                     SequenceKey key = SequenceKey.getKeyFromDB(name);
                     if (key != null) {
-                        if (!SequenceKey.saveToDB(key)) {
-                            ServerLogger.error("localProvider.flushError", name);
-                            continue;
-                        }
+                        names.add(name);
+                        keys.add(key);
                     }
-                    it.remove();
                 } catch (Exception e) {
                     // 日志：将密钥 {0} 刷入数据库失败：{1}
                     debugOperation(e);
                     ServerLogger.error("localProvider.flushError", e, name);
+                    failed.add(name);
                 }
             }
+            dirtyKeys.addAll(failed);
+
+            // 2. 单事务批量写入，失败则整批放回下一轮重试
+            rows = SequenceKey.saveAllToDB(keys);
+            if (rows < 0) {
+                ServerLogger.error("localProvider.batchFlushError", keys.size());
+                dirtyKeys.addAll(names);
+                rows = 0;
+            }
         } finally {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            recordFlush(elapsedMillis, rows);
             isFlushing.set(false);
-            Debugger.debugOperation("Local DB flush completed.");
+            Debugger.debugOperation("Local DB flush completed. Rows: " + rows + ", took " + elapsedMillis
+                    + "ms, next interval " + flushIntervalMs + "ms");
+        }
+    }
+
+    private void recordFlush(long elapsedMillis, int rows) {
+        lastFlushMillis = elapsedMillis;
+        lastFlushRows = rows;
+        totalFlushes.increment();
+        totalFlushedRows.add(rows);
+        flushIntervalMs = nextFlushInterval(flushIntervalMs, elapsedMillis, rows);
+    }
+
+    /**
+     * 根据上一轮刷盘的耗时与行数计算下一轮间隔
+     */
+    static long nextFlushInterval(long currentMs, long elapsedMillis, int rows) {
+        if (elapsedMillis * 2 > currentMs) {
+            return Math.min(MAX_FLUSH_INTERVAL_MS, currentMs * 2);
+        }
+        if (rows >= FLUSH_HIGH_WATER_ROWS) {
+            return Math.max(MIN_FLUSH_INTERVAL_MS, currentMs / 2);
         }
+        if (currentMs < DEFAULT_FLUSH_INTERVAL_MS) {
+            return Math.min(DEFAULT_FLUSH_INTERVAL_MS, currentMs * 2);
+        }
+        if (currentMs > DEFAULT_FLUSH_INTERVAL_MS) {
+            return Math.max(DEFAULT_FLUSH_INTERVAL_MS, currentMs / 2);
+        }
+        return currentMs;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public int getLastFlushRows() {
+        return lastFlushRows;
+    }
+
+    public long getTotalFlushes() {
+        return totalFlushes.sum();
+    }
+
+    public long getTotalFlushedRows() {
+        return totalFlushedRows.sum();
     }
 
     @Override
@@ -101,6 +210,8 @@ public class LocalKeyProvider implements KeyDataProvider {
         Debugger.debugOperation("Shutting down LocalKeyProvider...");
         scheduler.shutdown();
         flushDirtyKeys();
+        UsageLedger.close();
+        Database.close();
         Debugger.debugOperation("LocalKeyProvider shutdown complete.");
     }
 
@@ -109,4 +220,11 @@ public class LocalKeyProvider implements KeyDataProvider {
         // 本地模式无需远程心跳，直接返回 true 保持在线
         return true;
     }
+
+    @Override
+    public boolean[] sendHeartbeatBatch(List<Protocol.HeartbeatPayload> payloads) {
+        boolean[] keepAlive = new boolean[payloads.size()];
+        Arrays.fill(keepAlive, true);
+        return keepAlive;
+    }
 }
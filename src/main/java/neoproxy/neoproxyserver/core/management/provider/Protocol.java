@@ -1,10 +1,12 @@
 package neoproxy.neoproxyserver.core.management.provider;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class Protocol {
     public static final String API_GET_KEY = "/api/key";
     public static final String API_HEARTBEAT = "/api/heartbeat";
+    public static final String API_HEARTBEAT_BATCH = "/api/heartbeat/batch";
     public static final String API_RELEASE = "/api/release";
     public static final String API_SYNC = "/api/sync";
     public static final String API_NODE_STATUS = "/api/node/status";
@@ -24,6 +26,16 @@ public class Protocol {
         public String connectionDetail;
     }
 
+    /**
+     * 批量心跳：一个周期内本节点所有隧道的心跳合并为一次请求。
+     * NKM 以 {"kill":[{"serial":"...","port":"..."}]} 回复需要踢下线的隧道，port 为空表示该密钥的全部隧道。
+     */
+    public static class BatchHeartbeatPayload implements Serializable {
+        public String nodeId;
+        public long timestamp;
+        public List<HeartbeatPayload> tunnels;
+    }
+
     public static class NodeStatusPayload implements Serializable {
         public String nodeId;
         public String address;
@@ -2,34 +2,56 @@ package neoproxy.neoproxyserver.core.management.provider;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import top.ceroxe.api.thread.ThreadManager;
 import neoproxy.neoproxyserver.NeoProxyServer;
 import neoproxy.neoproxyserver.core.Debugger;
 import neoproxy.neoproxyserver.core.HostClient;
 import neoproxy.neoproxyserver.core.ServerLogger;
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
 import neoproxy.neoproxyserver.core.exceptions.*;
+import neoproxy.neoproxyserver.core.management.KeyCache;
 import neoproxy.neoproxyserver.core.management.SequenceKey;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 import static neoproxy.neoproxyserver.core.Debugger.debugOperation;
 
@@ -37,6 +59,15 @@ import static neoproxy.neoproxyserver.core.Debugger.debugOperation;
  * 工业级 NKM 远程适配器 (Golden Fix - Gson Edition)
  */
 public class RemoteKeyProvider implements KeyDataProvider {
+    /**
+     * 上次成功校验后多少秒内，握手可以直接用本地快照放行并在后台重新校验；0 表示每次都同步请求 NKM
+     */
+    public static int KEY_STALE_SECONDS = ServerConstants.DEFAULT_KEY_STALE_SECONDS;
+    /**
+     * 同时在途的 NKM 请求上限，超出的请求排队等待，最多等一个请求超时
+     */
+    public static int MAX_CONCURRENT_REQUESTS = ServerConstants.DEFAULT_NKM_MAX_CONCURRENT_REQUESTS;
+
     private static final String HEARTBEAT_STATUS_KILL = "kill";
 
     // ==================== 配置常量 ====================
@@ -44,16 +75,45 @@ public class RemoteKeyProvider implements KeyDataProvider {
     private static final double SYNC_THRESHOLD_MB = 50.0;
     private static final int REQUEST_TIMEOUT_MS = 5000;
     private static final int MAX_RETRIES = 1;
+    // NKM 不支持批量心跳时，退回逐隧道心跳的轮数（约 5 分钟），之后重新探测批量接口
+    private static final int BATCH_HEARTBEAT_REPROBE_ROUNDS = 60;
+    // 没有流量的在线密钥多久随同步报文带上一次，用于刷新元数据
+    private static final int IDLE_SYNC_INTERVAL_SECONDS = 300;
+    // 小报文压缩得不偿失
+    private static final int SYNC_GZIP_MIN_BYTES = 1024;
 
     // ==================== 成员变量 ====================
     private final String managerUrl;
     private final String token;
     private final String nodeId;
-    private final HttpClient httpClient;
     private final Gson gson;
     private final ExecutorService httpExecutor;
+    // 连接健康：连续出现连接级错误时丢弃整个客户端（连同其连接池）重建
+    private volatile HttpClient httpClient;
+    private final ReentrantLock clientLock = new ReentrantLock();
+    private final AtomicInteger consecutiveConnectionFailures = new AtomicInteger();
+    private final LongAdder clientRebuilds = new LongAdder();
+    private volatile HttpClient.Version lastResponseVersion;
+    // 并发限制
+    private final int maxConcurrentRequests;
+    private final Semaphore requestPermits;
+    private final LongAdder rejectedRequests = new LongAdder();
     private final ConcurrentHashMap<String, DoubleAdder> trafficBuffer = new ConcurrentHashMap<>();
     private final AtomicBoolean isFlushing = new AtomicBoolean(false);
+    private volatile int batchHeartbeatFallbackRounds = 0;
+    // 同步状态与指标：flushTraffic 由 isFlushing 串行化，其余线程只读
+    private volatile boolean syncGzipAccepted = false;
+    private long lastIdleSyncNanos = System.nanoTime();
+    private volatile long lastSyncMillis;
+    private volatile int lastSyncKeys;
+    private volatile long lastSyncRawBytes;
+    private volatile long lastSyncPayloadBytes;
+    private final LongAdder totalSyncs = new LongAdder();
+    private final LongAdder totalSyncPayloadBytes = new LongAdder();
+    // 最近一次 NKM 放行的密钥快照，用于 stale-while-revalidate 与管理端离线时的容错
+    private final ConcurrentHashMap<String, ValidatedKey> validatedKeys = new ConcurrentHashMap<>();
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            ServerConstants.NKM_BREAKER_FAILURE_THRESHOLD, ServerConstants.NKM_BREAKER_OPEN_SECONDS, System::nanoTime);
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(NeoProxyServer.LOW_RAM_MODE ? 1 : 2, r -> {
         Thread t = new Thread(r, "NKM-Worker-Thread");
@@ -70,7 +130,18 @@ public class RemoteKeyProvider implements KeyDataProvider {
         this.httpExecutor = Executors.newThreadPerTaskExecutor(
                 Thread.ofVirtual().name("NKM-Http-Thread-", 0).factory()
         );
-        this.httpClient = HttpClient.newBuilder()
+        this.httpClient = newHttpClient();
+        this.maxConcurrentRequests = Math.max(1, MAX_CONCURRENT_REQUESTS);
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * 显式优先 HTTP/2：https 经 ALPN 协商，http 经 h2c 升级；管理端不支持时自动退回 HTTP/1.1。
+     * HTTP/2 下所有并发请求复用同一条连接，重连风暴不会再为每个请求各开一条 TCP 连接。
+     */
+    private HttpClient newHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofMillis(REQUEST_TIMEOUT_MS))
                 .executor(httpExecutor)
                 .build();
@@ -144,7 +215,7 @@ public class RemoteKeyProvider implements KeyDataProvider {
                     .POST(HttpRequest.BodyPublishers.ofString(body))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(req, HttpResponse.BodyHandlers.ofString());
             if (response.statusCode() != 200) {
                 Debugger.debugOperation("Node status report failed: " + response.statusCode());
             }
@@ -155,9 +226,54 @@ public class RemoteKeyProvider implements KeyDataProvider {
 
     // ==================== 1. 登录鉴权 (Login) ====================
 
+    /**
+     * 登录鉴权。{@link #KEY_STALE_SECONDS} 内校验过的密钥直接用快照放行，同时在后台照常向 NKM 登录一次：
+     * NKM 拒绝时把放行出去的对象禁用，客户端随即被密钥检测线程断开；NKM 不可达时继续使用快照，
+     * 直到超出时效。没有可用快照时同步请求，熔断期间立即失败。
+     */
     @Override
     public SequenceKey getKey(String name) throws PortOccupiedException, NoMorePortException, OutDatedKeyException, UnRecognizedKeyException {
-        // ... (保持原有代码不变)
+        ValidatedKey snapshot = validatedKeys.get(name);
+        if (snapshot != null && snapshot.isFresh(System.nanoTime())) {
+            SequenceKey served = snapshot.toSequenceKey();
+            Debugger.debugOperation("Key served from validated snapshot, revalidating in background: " + name);
+            ThreadManager.runAsync(() -> revalidate(name, served));
+            return served;
+        }
+        return requestKey(name);
+    }
+
+    private void revalidate(String name, SequenceKey served) {
+        try {
+            SequenceKey fresh = requestKey(name);
+            if (fresh != null) {
+                // 端口在握手时已经绑定，这里只同步可以热更新的字段
+                served.setBalance(fresh.getBalance());
+                served.setRate(fresh.getRate());
+                served.setExpireTime(fresh.getExpireTime());
+                served.setHTMLEnabled(fresh.isHTMLEnabled());
+            }
+            // null 表示 NKM 不可达，继续使用快照
+        } catch (PortOccupiedException | NoMorePortException e) {
+            // 连接数或端口冲突只针对本次登录，密钥本身仍然有效
+            rejectServedKey(name, served, e);
+        } catch (Exception e) {
+            validatedKeys.remove(name);
+            rejectServedKey(name, served, e);
+        }
+    }
+
+    private void rejectServedKey(String name, SequenceKey served, Exception cause) {
+        ServerLogger.warn("remoteProvider.revalidateRejected", name, cause.getMessage());
+        served.setEnable(false);
+    }
+
+    /**
+     * 每次调用都单独向 NKM 登录一次，不与同一密钥的其他查询合并：
+     * NKM 按登录次数计连接数，每条隧道关闭时各自 {@link #releaseKey(String)} 一次，
+     * 登录与释放必须一一对应，否则连接数会漂移，"连接数过多" 的限制也会被绕过。
+     */
+    private SequenceKey requestKey(String name) throws PortOccupiedException, NoMorePortException, OutDatedKeyException, UnRecognizedKeyException {
         Debugger.debugOperation("Remote getKey request: " + name);
         try {
             String endpoint = String.format("%s%s?name=%s&nodeId=%s",
@@ -173,6 +289,7 @@ public class RemoteKeyProvider implements KeyDataProvider {
 
             if (statusCode == 200) {
                 NkmKeyResponse resp = gson.fromJson(body, NkmKeyResponse.class);
+                rememberValidated(resp);
                 return new SequenceKey(
                         resp.name,
                         resp.balance,
@@ -197,6 +314,7 @@ public class RemoteKeyProvider implements KeyDataProvider {
             }
 
             if (statusCode == 404 || statusCode == 403) {
+                validatedKeys.remove(name);
                 throwRejectedKeyException(name, statusCode, body);
             }
 
@@ -208,6 +326,7 @@ public class RemoteKeyProvider implements KeyDataProvider {
                 String errType = error.error != null ? error.error : "";
 
                 if ("PAUSED".equalsIgnoreCase(error.status)) {
+                    validatedKeys.remove(name);
                     if (reason.contains("Expired")) {
                         OutDatedKeyException.throwException(name);
                     } else if (reason.contains("Balance") || reason.contains("Depleted")) {
@@ -239,6 +358,18 @@ public class RemoteKeyProvider implements KeyDataProvider {
         return null;
     }
 
+    private void rememberValidated(NkmKeyResponse resp) {
+        if (KEY_STALE_SECONDS <= 0 || resp == null || resp.name == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        validatedKeys.put(resp.name, new ValidatedKey(resp.name, resp.balance, resp.rate, resp.expireTime,
+                resp.port, resp.enableWebHTML, now));
+        if (validatedKeys.size() > KeyCache.MAX_ENTRIES) {
+            validatedKeys.values().removeIf(key -> !key.isFresh(now));
+        }
+    }
+
     // ==================== 2. 流量上报与同步 (Sync) ====================
     // ... (保持原有代码不变)
 
@@ -256,32 +387,28 @@ public class RemoteKeyProvider implements KeyDataProvider {
         }
     }
 
+    /**
+     * 上报流量增量。只包含有变化的密钥；没有流量的在线密钥每 {@link #IDLE_SYNC_INTERVAL_SECONDS} 秒
+     * 随报文带上一次（增量为 0），以便 NKM 在同步响应中下发它们的最新元数据。
+     */
     private void flushTraffic() {
-        // ... (保持原有代码不变)
-        ConcurrentHashMap<String, Double> snapshot = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        Map<String, Double> snapshot = new HashMap<>();
         try {
             trafficBuffer.forEach((k, adder) -> {
                 double val = adder.sumThenReset();
                 if (val > 0.0001) snapshot.put(k, val);
             });
-            for (HostClient client : NeoProxyServer.availableHostClient) {
-                if (client.getKey() != null) snapshot.putIfAbsent(client.getKey().getName(), 0.0);
+            if (start - lastIdleSyncNanos >= TimeUnit.SECONDS.toNanos(IDLE_SYNC_INTERVAL_SECONDS)) {
+                lastIdleSyncNanos = start;
+                for (HostClient client : NeoProxyServer.availableHostClient) {
+                    if (client.getKey() != null) snapshot.putIfAbsent(client.getKey().getName(), 0.0);
+                }
             }
 
             if (snapshot.isEmpty()) return;
 
-            JsonObject jsonRoot = new JsonObject();
-            jsonRoot.addProperty("nodeId", nodeId);
-            JsonObject trafficObj = new JsonObject();
-            snapshot.forEach(trafficObj::addProperty);
-            jsonRoot.add("traffic", trafficObj);
-
-            String body = gson.toJson(jsonRoot);
-            HttpRequest req = buildRequest(managerUrl + Protocol.API_SYNC, "POST", body)
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-
-            HttpResponse<String> response = sendWithRetry(req);
+            HttpResponse<String> response = postSync(encodeTraffic(nodeId, snapshot));
 
             if (response.statusCode() == 200) {
                 processSyncResponse(response.body());
@@ -292,10 +419,97 @@ public class RemoteKeyProvider implements KeyDataProvider {
             debugOperation(e);
             snapshot.forEach((k, v) -> trafficBuffer.computeIfAbsent(k, x -> new DoubleAdder()).add(v));
         } finally {
+            if (!snapshot.isEmpty()) {
+                lastSyncMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lastSyncKeys = snapshot.size();
+                totalSyncs.increment();
+            }
             isFlushing.set(false);
         }
     }
 
+    /**
+     * 以流式 JsonWriter 编码同步报文，字段结构与原先的 {"nodeId":..,"traffic":{serial:MiB}} 一致
+     */
+    static byte[] encodeTraffic(String nodeId, Map<String, Double> traffic) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + traffic.size() * 32);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("nodeId").value(nodeId);
+            writer.name("traffic").beginObject();
+            for (Map.Entry<String, Double> entry : traffic.entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue().doubleValue());
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * NKM 在响应头 Accept-Encoding 中声明 gzip 后，较大的报文以 gzip 压缩发送。
+     * 签名始终针对未压缩的原文，NKM 先解压再验签；NKM 返回 415 时退回明文并重发。
+     */
+    private HttpResponse<String> postSync(byte[] raw) throws Exception {
+        boolean gzip = syncGzipAccepted && raw.length >= SYNC_GZIP_MIN_BYTES;
+        byte[] wire = gzip ? gzip(raw) : raw;
+        HttpRequest.Builder builder = buildRequest(managerUrl + Protocol.API_SYNC, "POST", raw);
+        if (gzip) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        HttpResponse<String> response = sendWithRetry(builder.POST(HttpRequest.BodyPublishers.ofByteArray(wire)).build());
+        lastSyncRawBytes = raw.length;
+        lastSyncPayloadBytes = wire.length;
+        totalSyncPayloadBytes.add(wire.length);
+
+        if (gzip && response.statusCode() == 415) {
+            Debugger.debugOperation("NKM rejected gzip sync payload. Falling back to identity encoding.");
+            syncGzipAccepted = false;
+            return postSync(raw);
+        }
+        response.headers().firstValue("Accept-Encoding")
+                .ifPresent(value -> syncGzipAccepted = value.toLowerCase(Locale.ROOT).contains("gzip"));
+        return response;
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+
+    // ==================== 同步指标 ====================
+
+    public long getLastSyncMillis() {
+        return lastSyncMillis;
+    }
+
+    public int getLastSyncKeys() {
+        return lastSyncKeys;
+    }
+
+    public long getLastSyncRawBytes() {
+        return lastSyncRawBytes;
+    }
+
+    public long getLastSyncPayloadBytes() {
+        return lastSyncPayloadBytes;
+    }
+
+    public long getTotalSyncs() {
+        return totalSyncs.sum();
+    }
+
+    public long getTotalSyncPayloadBytes() {
+        return totalSyncPayloadBytes.sum();
+    }
+
+    public boolean isSyncGzipEnabled() {
+        return syncGzipAccepted;
+    }
+
     private void processSyncResponse(String jsonBody) {
         // ... (保持原有代码不变)
         try {
@@ -341,8 +555,10 @@ public class RemoteKeyProvider implements KeyDataProvider {
                 HttpRequest req = buildRequest(managerUrl + Protocol.API_RELEASE, "POST", body)
                         .POST(HttpRequest.BodyPublishers.ofString(body))
                         .build();
-                httpClient.send(req, HttpResponse.BodyHandlers.discarding());
-            } catch (Exception ignored) {
+                send(req, HttpResponse.BodyHandlers.discarding());
+            } catch (Exception e) {
+                // 丢失的释放由心跳兜底：NKM 收不到该隧道的心跳后自然回收连接数
+                Debugger.debugOperation("Release key request dropped: " + name + " (" + e.getMessage() + ")");
             }
         });
     }
@@ -355,7 +571,7 @@ public class RemoteKeyProvider implements KeyDataProvider {
             HttpRequest req = buildRequest(managerUrl + Protocol.API_HEARTBEAT, "POST", body)
                     .POST(HttpRequest.BodyPublishers.ofString(body))
                     .build();
-            HttpResponse<String> response = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(req, HttpResponse.BodyHandlers.ofString());
             if (response.statusCode() == 200) {
                 return !shouldKillHeartbeatResponse(response.body());
             }
@@ -365,12 +581,120 @@ public class RemoteKeyProvider implements KeyDataProvider {
         }
     }
 
+    /**
+     * 一次 POST 发送本周期所有隧道的心跳，按 serial + port 逐隧道应用 kill 决定。
+     * 与单条心跳一样 fail-open：网络错误、非 200 或无法解析的响应都视为全部保活。
+     * 旧版 NKM 没有批量接口（404/405）时退回逐条发送，并在若干轮后重新探测。
+     */
+    @Override
+    public boolean[] sendHeartbeatBatch(List<Protocol.HeartbeatPayload> payloads) {
+        boolean[] keepAlive = new boolean[payloads.size()];
+        Arrays.fill(keepAlive, true);
+        if (payloads.isEmpty()) {
+            return keepAlive;
+        }
+        if (batchHeartbeatFallbackRounds > 0) {
+            batchHeartbeatFallbackRounds--;
+            return sendHeartbeatsIndividually(payloads);
+        }
+        try {
+            Protocol.BatchHeartbeatPayload batch = new Protocol.BatchHeartbeatPayload();
+            batch.nodeId = this.nodeId;
+            batch.timestamp = System.currentTimeMillis();
+            batch.tunnels = payloads;
+
+            String body = gson.toJson(batch);
+            HttpRequest req = buildRequest(managerUrl + Protocol.API_HEARTBEAT_BATCH, "POST", body)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> response = send(req, HttpResponse.BodyHandlers.ofString());
+            int statusCode = response.statusCode();
+            if (statusCode == 404 || statusCode == 405) {
+                Debugger.debugOperation("NKM does not support batch heartbeat (" + statusCode + "). Falling back to per-tunnel heartbeats.");
+                batchHeartbeatFallbackRounds = BATCH_HEARTBEAT_REPROBE_ROUNDS;
+                return sendHeartbeatsIndividually(payloads);
+            }
+            if (statusCode == 200) {
+                applyBatchKillDecisions(response.body(), payloads, keepAlive);
+            } else {
+                Debugger.debugOperation("Batch heartbeat failed: " + statusCode);
+            }
+        } catch (Exception e) {
+            Debugger.debugOperation("Batch heartbeat error: " + e.getMessage());
+        }
+        return keepAlive;
+    }
+
+    /**
+     * 逐隧道回退：各隧道的心跳在 HTTP 虚拟线程上并行发出，并发仍受 {@link #MAX_CONCURRENT_REQUESTS} 约束，
+     * 一轮耗时不随隧道数线性增长。与单个心跳一样 fail-open，发不出去的隧道保持连接
+     */
+    private boolean[] sendHeartbeatsIndividually(List<Protocol.HeartbeatPayload> payloads) {
+        boolean[] keepAlive = new boolean[payloads.size()];
+        Arrays.fill(keepAlive, true);
+        List<Future<Boolean>> results = new ArrayList<>(payloads.size());
+        try {
+            for (Protocol.HeartbeatPayload payload : payloads) {
+                results.add(httpExecutor.submit(() -> sendHeartbeat(payload)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    keepAlive[i] = results.get(i).get();
+                } catch (ExecutionException e) {
+                    Debugger.debugOperation("Heartbeat error: " + e.getCause());
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // 已 shutdown
+            results.forEach(result -> result.cancel(true));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(true));
+        }
+        return keepAlive;
+    }
+
+    private void applyBatchKillDecisions(String responseBody, List<Protocol.HeartbeatPayload> payloads, boolean[] keepAlive) {
+        if (responseBody == null || responseBody.isBlank()) {
+            return;
+        }
+        BatchHeartbeatResponse response;
+        try {
+            response = gson.fromJson(responseBody, BatchHeartbeatResponse.class);
+        } catch (Exception ignored) {
+            return;
+        }
+        if (response == null || response.kill == null || response.kill.isEmpty()) {
+            return;
+        }
+
+        Set<String> killedTunnels = new HashSet<>();
+        Set<String> killedSerials = new HashSet<>();
+        for (TunnelRef ref : response.kill) {
+            if (ref == null || ref.serial == null) {
+                continue;
+            }
+            if (ref.port == null || ref.port.isBlank()) {
+                killedSerials.add(ref.serial);
+            } else {
+                killedTunnels.add(ref.serial + '|' + ref.port);
+            }
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            Protocol.HeartbeatPayload payload = payloads.get(i);
+            if (killedSerials.contains(payload.serial) || killedTunnels.contains(payload.serial + '|' + payload.port)) {
+                keepAlive[i] = false;
+            }
+        }
+    }
+
     @Override
     public void shutdown() {
         // ... (保持原有代码不变)
         Debugger.debugOperation("Shutting down RemoteKeyProvider...");
         scheduler.shutdownNow();
         flushTraffic();
+        httpClient.shutdownNow();
         httpExecutor.shutdownNow();
         Debugger.debugOperation("RemoteKeyProvider shutdown complete.");
     }
@@ -380,6 +704,10 @@ public class RemoteKeyProvider implements KeyDataProvider {
     }
 
     private HttpRequest.Builder buildRequest(String uri, String method, String body) {
+        return buildRequest(uri, method, body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpRequest.Builder buildRequest(String uri, String method, byte[] body) {
         URI parsedUri = URI.create(uri);
         HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(parsedUri)
@@ -397,27 +725,138 @@ public class RemoteKeyProvider implements KeyDataProvider {
     }
 
     private String buildSignature(String method, String path, String timestamp, String nonce, String body) {
+        return buildSignature(method, path, timestamp, nonce, body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 正文按字节直接喂给 Mac，免去为签名再拼接一份完整字符串
+    private String buildSignature(String method, String path, String timestamp, String nonce, byte[] body) {
         try {
-            String data = method + "|" + path + "|" + timestamp + "|" + nonce + "|" + (body == null ? "" : body);
+            String prefix = method + "|" + path + "|" + timestamp + "|" + nonce + "|";
             Mac mac = Mac.getInstance("HmacSHA256");
             mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            return Base64.getEncoder().encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+            mac.update(prefix.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal(body));
         } catch (Exception e) {
             throw new IllegalStateException("Failed to sign NKM node request", e);
         }
     }
 
+    /**
+     * 经熔断器发送，网络错误时重试一次。熔断期间直接抛出 IOException，不产生网络请求。
+     * 许可在熔断判定之前取得：排队超时不是 NKM 的故障，不能计入熔断，也不能占住半开探测
+     */
     private HttpResponse<String> sendWithRetry(HttpRequest request) throws Exception {
-        Exception last = null;
-        for (int i = 0; i <= MAX_RETRIES; i++) {
-            try {
-                return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            } catch (Exception e) {
-                last = e;
-                if (i < MAX_RETRIES) Thread.sleep(200);
+        acquirePermit(request);
+        try {
+            Exception last = null;
+            for (int i = 0; i <= MAX_RETRIES; i++) {
+                if (!breaker.allowRequest()) {
+                    throw last != null ? last : new IOException("NKM circuit open: " + request.uri().getPath());
+                }
+                try {
+                    HttpResponse<String> response = sendPermitted(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() >= 500) {
+                        breaker.recordFailure();
+                    } else {
+                        breaker.recordSuccess();
+                    }
+                    return response;
+                } catch (Exception e) {
+                    breaker.recordFailure();
+                    last = e;
+                    if (i < MAX_RETRIES) Thread.sleep(200);
+                }
             }
+            throw last;
+        } finally {
+            requestPermits.release();
         }
-        throw last;
+    }
+
+    /**
+     * 受并发上限约束的单次发送，不重试、不经熔断器（心跳、释放、状态上报都是 fail-open 的）
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        acquirePermit(request);
+        try {
+            return sendPermitted(request, handler);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private void acquirePermit(HttpRequest request) throws IOException, InterruptedException {
+        if (!requestPermits.tryAcquire(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            rejectedRequests.increment();
+            throw new IOException("NKM request limit reached (" + maxConcurrentRequests + "): " + request.uri().getPath());
+        }
+    }
+
+    private <T> HttpResponse<T> sendPermitted(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        HttpClient client = httpClient;
+        try {
+            HttpResponse<T> response = client.send(request, handler);
+            consecutiveConnectionFailures.set(0);
+            lastResponseVersion = response.version();
+            return response;
+        } catch (HttpTimeoutException e) {
+            // 管理端慢不代表连接坏了，重建也无济于事
+            throw e;
+        } catch (IOException e) {
+            recordConnectionFailure(client, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 连接被重置、收到 GOAWAY 等连接级错误连续出现时，换一个新客户端，旧客户端等在途请求结束后关闭
+     */
+    private void recordConnectionFailure(HttpClient failed, IOException cause) {
+        if (consecutiveConnectionFailures.incrementAndGet() < ServerConstants.NKM_CLIENT_REBUILD_FAILURES) {
+            return;
+        }
+        clientLock.lock();
+        try {
+            if (httpClient != failed) {
+                return;
+            }
+            httpClient = newHttpClient();
+            consecutiveConnectionFailures.set(0);
+            clientRebuilds.increment();
+        } finally {
+            clientLock.unlock();
+        }
+        failed.shutdown();
+        Debugger.debugOperation("NKM HttpClient rebuilt after repeated connection failures: " + cause.getMessage());
+    }
+
+    CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    // ==================== 连接与并发指标 ====================
+
+    /**
+     * @return 最近一次响应协商出的协议版本，尚无响应时为 null
+     */
+    public HttpClient.Version getNegotiatedVersion() {
+        return lastResponseVersion;
+    }
+
+    public int getInFlightRequests() {
+        return maxConcurrentRequests - requestPermits.availablePermits();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    public long getClientRebuilds() {
+        return clientRebuilds.sum();
     }
 
     /**
@@ -492,6 +931,17 @@ public class RemoteKeyProvider implements KeyDataProvider {
         boolean enableWebHTML;
     }
 
+    private record ValidatedKey(String name, double balance, double rate, String expireTime,
+                                String port, boolean enableWebHTML, long validatedAt) {
+        boolean isFresh(long now) {
+            return KEY_STALE_SECONDS > 0 && now - validatedAt < TimeUnit.SECONDS.toNanos(KEY_STALE_SECONDS);
+        }
+
+        SequenceKey toSequenceKey() {
+            return new SequenceKey(name, balance, expireTime, port, rate, true, enableWebHTML);
+        }
+    }
+
     private static class NkmApiError {
         String error;
         String reason;
@@ -508,6 +958,15 @@ public class RemoteKeyProvider implements KeyDataProvider {
         String status;
     }
 
+    private static class BatchHeartbeatResponse {
+        List<TunnelRef> kill;
+    }
+
+    private static class TunnelRef {
+        String serial;
+        String port;
+    }
+
     private static class NkmKeyMetadata {
         boolean isValid;
         String reason;
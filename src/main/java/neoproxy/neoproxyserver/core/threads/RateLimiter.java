@@ -110,17 +110,19 @@ public class RateLimiter {
 
     /**
      * 记录传输字节并执行限速休眠
+     *
+     * @return 本次休眠的纳秒数，未限速时为 0；供访问日志统计限速等待时长
      */
-    public void onBytesTransferred(int bytes) {
+    public long onBytesTransferred(int bytes) {
         // 如果没有限速，直接返回，不获取锁
-        if (lastMbps <= 0) return;
+        if (lastMbps <= 0) return 0;
 
         long sleepNanos = 0;
 
         lock.lock();
         try {
             // 再次检查，防止并发修改导致 maxBytesPerSec 变动
-            if (maxBytesPerSec >= Double.MAX_VALUE) return;
+            if (maxBytesPerSec >= Double.MAX_VALUE) return 0;
 
             long currentNanos = System.nanoTime();
             long elapsedNanos = currentNanos - startTime;
@@ -167,5 +169,6 @@ public class RateLimiter {
                 debugOperation(e);
             }
         }
+        return sleepNanos;
     }
 }
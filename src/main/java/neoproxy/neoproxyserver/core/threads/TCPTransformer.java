@@ -4,9 +4,10 @@ import top.ceroxe.api.management.bufferedFile.SizeCalculator;
 import top.ceroxe.api.net.SecureSocket;
 import top.ceroxe.api.thread.ThreadManager;
 import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.AccessLog;
+import neoproxy.neoproxyserver.core.AccessLog.CloseReason;
 import neoproxy.neoproxyserver.core.HostClient;
 import neoproxy.neoproxyserver.core.HostReply;
-import neoproxy.neoproxyserver.core.LanguageData;
 import neoproxy.neoproxyserver.core.ServerLogger;
 import neoproxy.neoproxyserver.core.exceptions.IllegalWebSiteException;
 import neoproxy.neoproxyserver.core.exceptions.NoMoreNetworkFlowException;
@@ -29,6 +30,7 @@ import static neoproxy.neoproxyserver.core.InternetOperator.*;
 
 public class TCPTransformer {
 
+    // 余额变化达到该值（MiB）后才会提示客户端，由 BalanceNotifier 周期性检查
     public static int TELL_BALANCE_MIB = 10;
     public static int BUFFER_LEN = 65535;
     public static String CUSTOM_BLOCKING_MESSAGE = "如有疑问，请联系您的系统管理员。";
@@ -54,6 +56,7 @@ public class TCPTransformer {
     private final Socket client;
     private final HostReply hostReply;
     private final InputStream clientInputStream;
+    private final AccessLog.Session session;
 
     // 【优化】移除了 clientToHostBuffer 字段，内存更节省
 
@@ -61,6 +64,7 @@ public class TCPTransformer {
         this.hostClient = hostClient;
         this.client = client;
         this.hostReply = hostReply;
+        this.session = AccessLog.begin(hostClient, client.getInetAddress(), client.getPort());
         try {
             this.clientInputStream = (clientInputStream != null) ? clientInputStream : client.getInputStream();
         } catch (IOException e) {
@@ -73,20 +77,20 @@ public class TCPTransformer {
         hostClient.registerTransferSocket(hostReply.host());
         TCPTransformer transformer = new TCPTransformer(hostClient, client, hostReply, preCheckedStream);
 
-        final double[] aTenMibSize = {0};
-
-        Runnable clientToHostTask = () -> transformer.clientToHost(aTenMibSize);
-        Runnable hostToClientTask = () -> transformer.hostToClient(aTenMibSize);
+        Runnable clientToHostTask = transformer::clientToHost;
+        Runnable hostToClientTask = transformer::hostToClient;
 
         ThreadManager threadManager = new ThreadManager(clientToHostTask, hostToClientTask);
         threadManager.startAsyncWithCallback(result -> {
             try {
                 for (Throwable t : result.exceptions()) {
                     if (t instanceof NoMoreNetworkFlowException) {
+                        transformer.session.end(CloseReason.NO_FLOW);
                         kickAllWithMsg(hostClient, hostReply.host(), client);
                         return;
                     }
                 }
+                transformer.session.end(null);
                 hostClient.unregisterTcpSocket(client);
                 hostClient.unregisterTransferSocket(hostReply.host());
                 close(client, hostReply.host());
@@ -101,15 +105,6 @@ public class TCPTransformer {
         start(hostClient, hostReply, client, null);
     }
 
-    public static void tellRestBalance(HostClient hostClient, double[] aTenMibSize, int len, LanguageData languageData) throws IOException {
-        if (aTenMibSize[0] < TELL_BALANCE_MIB) {
-            aTenMibSize[0] = aTenMibSize[0] + SizeCalculator.byteToMib(len);
-        } else {
-            sendStr(hostClient, languageData.THIS_ACCESS_CODE_HAVE + hostClient.getKey().getBalance() + languageData.MB_OF_FLOW_LEFT);
-            aTenMibSize[0] = 0;
-        }
-    }
-
     public static void kickAllWithMsg(HostClient hostClient, SecureSocket host, Closeable client) {
         close(client, host);
         try {
@@ -303,7 +298,7 @@ public class TCPTransformer {
         }
     }
 
-    private void clientToHost(double[] aTenMibSize) {
+    private void clientToHost() {
         try {
             byte[] ppHeader = createProxyProtocolV2Header(this.client);
             if (ppHeader != null) {
@@ -329,18 +324,19 @@ public class TCPTransformer {
                 if (enLength > 0) {
                     NeoProxyServer.TOTAL_BYTES_COUNTER.add(enLength);
                     hostClient.getKey().mineMib("TCP-Transformer:C->H", SizeCalculator.byteToMib(enLength + 10));
-                    tellRestBalance(hostClient, aTenMibSize, enLength, hostClient.getLangData());
                     limiter.setMaxMbps(hostClient.getKey().getRate());
-                    limiter.onBytesTransferred(enLength);
+                    session.clientToHost(len, limiter.onBytesTransferred(enLength));
                 }
             }
+            session.closedBy(CloseReason.CLIENT_CLOSED);
             hostReply.host().sendBytes(null);
         } catch (IOException e) {
+            session.closedBy(CloseReason.ERROR);
             debugOperation(e);
         }
     }
 
-    private void hostToClient(double[] aTenMibSize) {
+    private void hostToClient() {
         // 【优化】直接使用 Socket 输出流，移除 BufferedOutputStream
         try {
             OutputStream outputStream = client.getOutputStream();
@@ -356,6 +352,7 @@ public class TCPTransformer {
                 if (htmlInspector != null) {
                     outputData = htmlInspector.inspect(data, outputStream, client, hostClient);
                     if (outputData == null) {
+                        session.closedBy(CloseReason.BLOCKED);
                         return;
                     }
                     if (outputData.length == 0) {
@@ -363,19 +360,21 @@ public class TCPTransformer {
                     }
                 }
 
-                writeToClient(outputStream, outputData, limiter, aTenMibSize);
+                writeToClient(outputStream, outputData, limiter);
             }
             if (htmlInspector != null) {
-                writeToClient(outputStream, htmlInspector.finish(), limiter, aTenMibSize);
+                writeToClient(outputStream, htmlInspector.finish(), limiter);
             }
+            session.closedBy(CloseReason.HOST_CLOSED);
             shutdownOutput(client);
         } catch (IOException e) {
+            session.closedBy(CloseReason.ERROR);
             debugOperation(e);
             shutdownOutput(client);
         }
     }
 
-    private void writeToClient(OutputStream outputStream, byte[] outputData, RateLimiter limiter, double[] aTenMibSize) throws IOException {
+    private void writeToClient(OutputStream outputStream, byte[] outputData, RateLimiter limiter) throws IOException {
         if (outputData == null || outputData.length == 0) {
             return;
         }
@@ -384,8 +383,7 @@ public class TCPTransformer {
         // SocketOutputStream 自动处理，不需要频繁显式 flush
         NeoProxyServer.TOTAL_BYTES_COUNTER.add(outputData.length);
         hostClient.getKey().mineMib("TCP-Transformer:H->C", SizeCalculator.byteToMib(outputData.length));
-        tellRestBalance(hostClient, aTenMibSize, outputData.length, hostClient.getLangData());
         limiter.setMaxMbps(hostClient.getKey().getRate());
-        limiter.onBytesTransferred(outputData.length);
+        session.hostToClient(outputData.length, limiter.onBytesTransferred(outputData.length));
     }
 }
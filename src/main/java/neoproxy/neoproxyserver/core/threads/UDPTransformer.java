@@ -5,9 +5,9 @@ import top.ceroxe.api.net.SecureSocket;
 import top.ceroxe.api.thread.ThreadManager;
 import neoproxy.neoproxyserver.NeoProxyServer;
 import neoproxy.neoproxyserver.core.*;
+import neoproxy.neoproxyserver.core.AccessLog.CloseReason;
 import neoproxy.neoproxyserver.core.exceptions.NoMoreNetworkFlowException;
 
-import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -22,7 +22,6 @@ import static neoproxy.neoproxyserver.core.Debugger.debugOperation;
 import static neoproxy.neoproxyserver.core.InternetOperator.close;
 import static neoproxy.neoproxyserver.core.constants.ServerConstants.UDP_PACKET_BUFFER_SIZE;
 import static neoproxy.neoproxyserver.core.constants.ServerConstants.UDP_SEND_QUEUE_CAPACITY;
-import static neoproxy.neoproxyserver.core.threads.TCPTransformer.TELL_BALANCE_MIB;
 
 public class UDPTransformer implements Runnable {
     public static int RECEIVE_BUFFER_LEN = UDP_PACKET_BUFFER_SIZE;
@@ -35,6 +34,7 @@ public class UDPTransformer implements Runnable {
     private final String clientIP;
     private final int clientOutPort;
     private final ArrayBlockingQueue<byte[]> sendQueue;
+    private final AccessLog.Session session;
     private volatile boolean isRunning = true;
 
     public UDPTransformer(HostClient hostClient, HostReply hostReply, DatagramSocket sharedDatagramSocket, String clientIP, int clientOutPort) {
@@ -44,6 +44,7 @@ public class UDPTransformer implements Runnable {
         this.clientIP = clientIP;
         this.clientOutPort = clientOutPort;
         this.sendQueue = new ArrayBlockingQueue<>(sendQueueCapacity);
+        this.session = AccessLog.begin(hostClient, clientIP, clientOutPort);
     }
 
     public static void setSendQueueCapacity(int capacity) {
@@ -122,17 +123,15 @@ public class UDPTransformer implements Runnable {
         return new DatagramPacket(data, data.length, address, port);
     }
 
-    public static void tellRestBalance(HostClient hostClient, double[] aTenMibSize, int len, LanguageData languageData) {
-        if (aTenMibSize[0] < TELL_BALANCE_MIB) {
-            aTenMibSize[0] = aTenMibSize[0] + SizeCalculator.byteToMib(len);
-        } else {
-            try {
-                InternetOperator.sendStr(hostClient, languageData.THIS_ACCESS_CODE_HAVE + hostClient.getKey().getBalance() + languageData.MB_OF_FLOW_LEFT);
-            } catch (IOException e) {
-                debugOperation(e);
-            }
-            aTenMibSize[0] = 0;
+    /**
+     * 从 {@link #serializeDatagramPacket} 的结果中读出载荷长度，不含封装头
+     */
+    private static int payloadLength(byte[] serializedData) {
+        if (serializedData.length < 8) {
+            return 0;
         }
+        return (serializedData[4] & 0xFF) << 24 | (serializedData[5] & 0xFF) << 16
+                | (serializedData[6] & 0xFF) << 8 | serializedData[7] & 0xFF;
     }
 
     public static void kickAllWithMsg(HostClient hostClient, SecureSocket host) {
@@ -172,7 +171,7 @@ public class UDPTransformer implements Runnable {
         return false;
     }
 
-    private void outClientToHostClient(double[] aTenMibSize) {
+    private void outClientToHostClient() {
         try {
             // 【核心修改】获取全局限速器
             RateLimiter limiter = hostClient.getGlobalRateLimiter();
@@ -182,7 +181,8 @@ public class UDPTransformer implements Runnable {
                 byte[] data = sendQueue.poll(1, TimeUnit.SECONDS);
                 if (data == null) {
                     if (System.nanoTime() >= idleDeadline) {
-                        debugOperation("UDP session idle timeout: " + clientIP + ":" + clientOutPort);
+                        debugOperation("UDP session idle timeout: {}:{}", clientIP, clientOutPort);
+                        session.closedBy(CloseReason.IDLE_TIMEOUT);
                         break;
                     }
                     continue;
@@ -194,21 +194,20 @@ public class UDPTransformer implements Runnable {
                 if (enLength > 0) {
                     NeoProxyServer.TOTAL_BYTES_COUNTER.add(enLength);
                     hostClient.getKey().mineMib("UDP-Transformer", SizeCalculator.byteToMib(enLength + 10));
-                    tellRestBalance(hostClient, aTenMibSize, enLength, hostClient.getLangData());
-
                     // 【核心修改】直接调用共享限速器
                     limiter.setMaxMbps(hostClient.getKey().getRate());
-                    limiter.onBytesTransferred(enLength);
+                    session.clientToHost(payloadLength(data), limiter.onBytesTransferred(enLength));
                 }
             }
         } catch (Exception e) {
+            session.closedBy(CloseReason.ERROR);
             debugOperation(e);
         } finally {
             stop();
         }
     }
 
-    private void hostClientToOutClient(double[] aTenMibSize) {
+    private void hostClientToOutClient() {
         try {
             // 【核心修改】获取全局限速器
             RateLimiter limiter = hostClient.getGlobalRateLimiter();
@@ -223,10 +222,8 @@ public class UDPTransformer implements Runnable {
 
                     NeoProxyServer.TOTAL_BYTES_COUNTER.add(packetLength);
                     hostClient.getKey().mineMib("UDP-Transformer", SizeCalculator.byteToMib(packetLength + 10));
-                    tellRestBalance(hostClient, aTenMibSize, packetLength, hostClient.getLangData());
-
                     limiter.setMaxMbps(hostClient.getKey().getRate());
-                    limiter.onBytesTransferred(packetLength);
+                    session.hostToClient(packetLength, limiter.onBytesTransferred(packetLength));
 
                     DatagramPacket outgoingPacket = new DatagramPacket(
                             packetToClient.getData(),
@@ -237,7 +234,11 @@ public class UDPTransformer implements Runnable {
                     sharedDatagramSocket.send(outgoingPacket);
                 }
             }
+            if (isRunning) {
+                session.closedBy(CloseReason.HOST_CLOSED);
+            }
         } catch (Exception e) {
+            session.closedBy(CloseReason.ERROR);
             debugOperation(e);
         } finally {
             stop();
@@ -247,10 +248,10 @@ public class UDPTransformer implements Runnable {
     @Override
     public void run() {
         hostClient.registerTransferSocket(hostReply.host());
+        CloseReason override = null;
         try {
-            final double[] aTenMibSize = {0};
-            Runnable clientToHostClientThread = () -> outClientToHostClient(aTenMibSize);
-            Runnable hostClientToClientThread = () -> hostClientToOutClient(aTenMibSize);
+            Runnable clientToHostClientThread = this::outClientToHostClient;
+            Runnable hostClientToClientThread = this::hostClientToOutClient;
 
             List<Throwable> exceptions;
             try (ThreadManager threadManager = new ThreadManager(clientToHostClientThread, hostClientToClientThread)) {
@@ -259,12 +260,14 @@ public class UDPTransformer implements Runnable {
 
             for (Throwable t : exceptions) {
                 if (t instanceof NoMoreNetworkFlowException) {
+                    override = CloseReason.NO_FLOW;
                     kickAllWithMsg(hostClient, hostReply.host());
                     return;
                 }
             }
         } catch (Exception ignore) {
         } finally {
+            session.end(override);
             hostClient.unregisterTransferSocket(hostReply.host());
             close(hostReply.host());
             udpClientConnections.remove(this);
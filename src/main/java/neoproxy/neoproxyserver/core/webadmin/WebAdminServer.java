@@ -1285,21 +1285,26 @@ public class WebAdminServer {
             boolean needComma = false;
             for (IPChecker.BanInfo info : IPChecker.getBannedIPInfos()) {
                 if (needComma) rows.append(",");
-                rows.append(String.format("[\"%s\",\"%s\",\"%s\"]",
-                        escapeJson(info.ip), escapeJson(info.location), escapeJson(info.isp)));
+                rows.append(String.format("[\"%s\",\"%s\",\"%s\",\"%s\"]",
+                        escapeJson(info.ip), escapeJson(info.location), escapeJson(info.isp),
+                        escapeJson(IPChecker.formatExpiry(info))));
                 needComma = true;
             }
             rows.append("]");
-            sendJsonRaw("{\"type\":\"ban_list\",\"payload\":{\"headers\":[\"ip\",\"location\",\"isp\"],\"rows\":" + rows + "}}");
+            sendJsonRaw("{\"type\":\"ban_list\",\"payload\":{\"headers\":[\"ip\",\"location\",\"isp\",\"expires\"],\"rows\":" + rows + "}}");
         }
 
-        private void handleBanCommand(String ip) {
-            if (!IPChecker.isValidIP(ip)) {
+        private void handleBanCommand(String args) {
+            // ban <ip|cidr> [duration]
+            String[] parts = args.trim().split("\\s+");
+            String ip = parts[0];
+            long duration = parts.length == 2 ? IPChecker.parseBanDuration(parts[1]) : 0;
+            if (parts.length > 2 || duration < 0 || !IPChecker.isValidRule(ip)) {
                 sendJson("error", "Invalid IP");
                 handleListBans();
                 return;
             }
-            boolean success = IPChecker.exec(ip, IPChecker.DO_BAN);
+            boolean success = IPChecker.ban(ip, duration);
             if (!success) {
                 sendJson("error", "Ban failed");
             }
@@ -1307,7 +1312,7 @@ public class WebAdminServer {
         }
 
         private void handleUnbanCommand(String ip) {
-            if (!IPChecker.isValidIP(ip)) {
+            if (!IPChecker.isValidRule(ip)) {
                 sendJson("error", "Invalid IP");
                 handleListBans();
                 return;
@@ -30,6 +30,9 @@ let dashInterval;              // 仪表盘轮询定时器
 let rawPortData = {tcp: [], udp: []};  // 端口原始数据
 let selectedFiles = new Set();             // 文件多选集合
 let lastKeyData = null;        // 缓存的密钥表格数据
+let keyPageCursor = null;      // 当前密钥页的游标 (上一页最后一个密钥名), null 为第一页
+let keyNextCursor = null;      // 下一页游标, 由 key list 输出的提示行给出
+const keyCursorHistory = [];   // 已翻过的页游标, 用于返回上一页
 let lastClientData = null;     // 缓存的客户端表格数据
 let lastBanData = null;        // 缓存的封禁表格数据
 let fileRequestTarget = 'view'; // 文件请求目标: view / modal
@@ -35,6 +35,7 @@ function renderBanTable(data) {
         "<th>" + t("th_ip") + "</th>" +
         "<th>" + t("th_loc") + "</th>" +
         "<th>" + t("th_isp") + "</th>" +
+        "<th>" + t("th_time") + "</th>" +
         "<th>" + t("th_op") + "</th>" +
         "</tr></thead><tbody>";
 
@@ -43,14 +44,17 @@ function renderBanTable(data) {
         if (!ip) return;
         var loc = row[1] || t("unknown");
         var isp = row[2] || "-";
+        var expires = row[3] || "PERMANENT";
         // 【安全修复】所有动态数据必须转义防止 XSS
         var escIp = escapeHtml(ip);
         var escLoc = escapeHtml(loc);
         var escIsp = escapeHtml(isp);
+        var escExpires = escapeHtml(expires);
         h += "<tr>" +
             '<td><span class="l-ip">' + escIp + "</span></td>" +
             "<td>" + escLoc + "</td>" +
             "<td>" + escIsp + "</td>" +
+            "<td>" + escExpires + "</td>" +
             '<td><button class="btn btn-action" onclick="ws.send(\'unban ' + escIp + '\');setTimeout(refreshBans,500)">' +
             '<i class="fas fa-unlock"></i> ' + t("act_unban") + "</button></td>" +
             "</tr>";
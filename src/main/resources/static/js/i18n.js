@@ -30,6 +30,8 @@ const LANG = {
         key_create_title: "Create Key",
         key_edit_title: "Edit Key",
         key_list: "Key List",
+        btn_prev_page: "Previous",
+        btn_next_page: "Next",
         ban_title: "Manual Ban IP",
         loading: "Loading data...",
         no_data: "No Data",
@@ -189,6 +191,8 @@ const LANG = {
         key_create_title: "创建新密钥",
         key_edit_title: "修改密钥",
         key_list: "密钥列表",
+        btn_prev_page: "上一页",
+        btn_next_page: "下一页",
         ban_title: "手动封禁 IP",
         loading: "数据加载中...",
         no_data: "暂无数据",
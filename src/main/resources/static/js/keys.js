@@ -80,17 +80,56 @@ async function reqDeleteKey(name) {
 }
 
 /**
- * 刷新密钥列表
+ * 刷新当前页的密钥列表
  */
 function refreshKeys() {
     isExpectingTable = true;
     tableTarget = 'key';
+    keyNextCursor = null;
+    updateKeyPager();
     document.getElementById('key-table-wrapper').innerHTML =
         `<div style="padding:2rem;text-align:center;color:var(--text-sub)">
             <i class="fas fa-circle-notch fa-spin"></i>
             <span data-i18n="loading">${t('loading')}</span>
         </div>`;
-    ws.send('key list');
+    ws.send(keyPageCursor ? `key list from ${keyPageCursor}` : 'key list');
+}
+
+/**
+ * 翻到下一页 (step > 0) 或上一页 (step < 0)
+ */
+function turnKeyPage(step) {
+    if (step > 0) {
+        if (!keyNextCursor) return;
+        keyCursorHistory.push(keyPageCursor);
+        keyPageCursor = keyNextCursor;
+    } else {
+        if (keyCursorHistory.length === 0) return;
+        keyPageCursor = keyCursorHistory.pop();
+    }
+    refreshKeys();
+}
+
+/**
+ * 从日志中捕获 key list 的下一页提示 ("... key list from <name>")
+ */
+function checkKeyPageHint(payload) {
+    const m = payload.match(/key list from (\S+)/);
+    if (!m) return;
+    keyNextCursor = m[1];
+    updateKeyPager();
+}
+
+/**
+ * 更新分页按钮状态
+ */
+function updateKeyPager() {
+    const prev = document.getElementById('btn-key-prev');
+    const next = document.getElementById('btn-key-next');
+    const label = document.getElementById('key-page-label');
+    if (prev) prev.disabled = keyCursorHistory.length === 0;
+    if (next) next.disabled = !keyNextCursor;
+    if (label) label.innerText = String(keyCursorHistory.length + 1);
 }
 
 /**
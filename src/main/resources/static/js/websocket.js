@@ -35,6 +35,7 @@ function connectWs() {
             if (msg.type === "log") {
                 logRaw(msg.payload);
                 if (isExpectingTable) checkAndParseTableData(msg.payload);
+                else if (tableTarget === 'key') checkKeyPageHint(msg.payload);
             } else if (msg.type === "logo") {
                 logLogo(msg.payload);
             } else if (msg.type === "cmd_result") {
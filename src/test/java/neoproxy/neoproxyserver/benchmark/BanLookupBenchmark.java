@@ -0,0 +1,149 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.core.management.BanSetAccess;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 封禁判断基准：BanSet（单个地址哈希表 + CIDR 前缀树）vs 旧实现
+ * （getHostAddress() 转字符串后查 ConcurrentHashMap，只能精确匹配）。
+ *
+ * <p>规则共 100k 条：IPv4 /24、IPv6 /48 与单个 IPv4 地址各占三分之一。
+ * BanSet 是包内类，经测试入口 {@link BanSetAccess} 直接构造快照，不碰 banList.json。
+ * 分别测快照构建耗时，以及命中 / 未命中查询在单线程与多线程下的吞吐。</p>
+ *
+ * <p>不属于单元测试，不会被 surefire 执行。手动运行：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.BanLookupBenchmark
+ * </pre>
+ */
+public final class BanLookupBenchmark {
+    private static final int RULES = 100_000;
+    private static final int QUERIES = 4_096;
+    private static final int OPERATIONS = 5_000_000;
+    private static final int THREADS = 8;
+
+    private BanLookupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> rules = new ArrayList<>(RULES);
+        ConcurrentHashMap<String, Boolean> legacy = new ConcurrentHashMap<>();
+        for (int i = 0; i < RULES; i++) {
+            rules.add(rule(i));
+            legacy.put(rule(i), Boolean.TRUE);
+        }
+        long buildStart = System.nanoTime();
+        BanSetAccess set = BanSetAccess.of(rules);
+        System.out.printf("%-34s %,12.1f ms  (%d rules)%n", "BanSet.of",
+                (System.nanoTime() - buildStart) / 1_000_000.0, set.size());
+
+        InetAddress[] hits = new InetAddress[QUERIES];
+        InetAddress[] misses = new InetAddress[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            hits[i] = InetAddress.getByName(hitAddress(i * (RULES / QUERIES)));
+            misses[i] = InetAddress.getByName(i % 2 == 0
+                    ? "198.18." + (i >> 8 & 0xFF) + "." + (i & 0xFF)
+                    : "2001:db9:" + Integer.toHexString(i) + "::1");
+        }
+        // 预热
+        setLookups(set, hits, OPERATIONS / 10);
+        legacyLookups(legacy, hits, OPERATIONS / 10);
+
+        report("BanSet  hit   1 thread", OPERATIONS, setLookups(set, hits, OPERATIONS));
+        report("BanSet  miss  1 thread", OPERATIONS, setLookups(set, misses, OPERATIONS));
+        report("BanSet  hit   " + THREADS + " threads", OPERATIONS, concurrent(() -> setLookups(set, hits, OPERATIONS / THREADS)));
+        // 旧实现只能精确匹配：命中组里只有单个地址那三分之一能命中
+        report("legacy  hit   1 thread", OPERATIONS, legacyLookups(legacy, hits, OPERATIONS));
+        report("legacy  miss  1 thread", OPERATIONS, legacyLookups(legacy, misses, OPERATIONS));
+        report("legacy  hit   " + THREADS + " threads", OPERATIONS, concurrent(() -> legacyLookups(legacy, hits, OPERATIONS / THREADS)));
+    }
+
+    // 每类规则按 j = i / 3 编号，保证 100k 条互不重复
+    private static String rule(int i) {
+        int j = i / 3;
+        return switch (i % 3) {
+            case 0 -> "10." + (j >> 8 & 0xFF) + "." + (j & 0xFF) + ".0/24";
+            case 1 -> "2001:db8:" + Integer.toHexString(j) + ":0:0:0:0:0/48";
+            default -> "100." + (j >> 16 & 0xFF) + "." + (j >> 8 & 0xFF) + "." + (j & 0xFF);
+        };
+    }
+
+    private static String hitAddress(int i) {
+        int j = i / 3;
+        return switch (i % 3) {
+            case 0 -> "10." + (j >> 8 & 0xFF) + "." + (j & 0xFF) + ".77";
+            case 1 -> "2001:db8:" + Integer.toHexString(j) + ":1::2";
+            default -> "100." + (j >> 16 & 0xFF) + "." + (j >> 8 & 0xFF) + "." + (j & 0xFF);
+        };
+    }
+
+    private static long setLookups(BanSetAccess set, InetAddress[] addresses, int count) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (set.contains(addresses[i & (QUERIES - 1)])) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        sink(found);
+        return nanos;
+    }
+
+    private static long legacyLookups(ConcurrentHashMap<String, Boolean> legacy, InetAddress[] addresses, int count) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (legacy.containsKey(addresses[i & (QUERIES - 1)].getHostAddress())) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        sink(found);
+        return nanos;
+    }
+
+    private static long concurrent(Runnable work) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    work.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private static void sink(int found) {
+        if (found < 0) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static void report(String name, int operations, long nanos) {
+        double perSecond = operations / (nanos / 1_000_000_000.0);
+        System.out.printf("%-34s %,12.0f ops/s%n", name, perSecond);
+    }
+}
@@ -0,0 +1,103 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.core.ControlFrameCodec;
+import neoproxy.neoproxyserver.core.ControlFrameCodec.ControlMessage;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hook 通道控制消息吞吐基准：文本逐条发送 vs 二进制控制帧批量发送。
+ *
+ * <p>每次"写出"都做一次 AES-GCM 加密，用来模拟 SecureSocket 的逐帧加密开销——
+ * 这正是逐条文本命令在连接突发时的主要成本。</p>
+ *
+ * <p>不属于单元测试，不会被 surefire 执行。手动运行：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.ControlFrameBenchmark
+ * </pre>
+ */
+public final class ControlFrameBenchmark {
+    private static final int MESSAGES = 200_000;
+    private static final int[] BATCH_SIZES = {1, 8, 32, 128};
+
+    private ControlFrameBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SecretKey key = KeyGenerator.getInstance("AES").generateKey();
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        SecureRandom random = new SecureRandom();
+        InetAddress address = InetAddress.getByName("203.0.113.7");
+
+        // 预热
+        runText(cipher, key, random, address, MESSAGES / 4);
+        for (int batch : BATCH_SIZES) {
+            runBinary(cipher, key, random, address, MESSAGES / 4, batch);
+        }
+
+        long textNanos = runText(cipher, key, random, address, MESSAGES);
+        report("text (1 msg / write)", textNanos);
+        for (int batch : BATCH_SIZES) {
+            long binaryNanos = runBinary(cipher, key, random, address, MESSAGES, batch);
+            report("binary (" + batch + " msg / frame)", binaryNanos);
+        }
+    }
+
+    private static long runText(Cipher cipher, SecretKey key, SecureRandom random, InetAddress address, int count) throws Exception {
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < count; i++) {
+            String text = ControlMessage.openTcp(i, address, 25565).toLegacyText();
+            sink += encrypt(cipher, key, random, text.getBytes(StandardCharsets.UTF_8));
+        }
+        blackhole(sink);
+        return System.nanoTime() - start;
+    }
+
+    private static long runBinary(Cipher cipher, SecretKey key, SecureRandom random, InetAddress address, int count, int batch) throws Exception {
+        long start = System.nanoTime();
+        long sink = 0;
+        List<ControlMessage> pending = new ArrayList<>(batch);
+        for (int i = 0; i < count; i++) {
+            pending.add(ControlMessage.openTcp(i, address, 25565));
+            if (pending.size() == batch) {
+                for (byte[] frame : ControlFrameCodec.encode(pending)) {
+                    sink += encrypt(cipher, key, random, frame);
+                }
+                pending.clear();
+            }
+        }
+        for (byte[] frame : ControlFrameCodec.encode(pending)) {
+            sink += encrypt(cipher, key, random, frame);
+        }
+        blackhole(sink);
+        return System.nanoTime() - start;
+    }
+
+    private static int encrypt(Cipher cipher, SecretKey key, SecureRandom random, byte[] data) throws Exception {
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return cipher.doFinal(data).length;
+    }
+
+    private static void report(String name, long nanos) {
+        double perSecond = MESSAGES / (nanos / 1_000_000_000.0);
+        System.out.printf("%-28s %,14.0f control msgs/s%n", name, perSecond);
+    }
+
+    private static void blackhole(long value) {
+        if (value == 42) {
+            System.out.print("");
+        }
+    }
+}
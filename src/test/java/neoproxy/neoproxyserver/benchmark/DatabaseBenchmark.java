@@ -0,0 +1,132 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.management.Database;
+import neoproxy.neoproxyserver.core.management.SequenceKey;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * sk 表读写吞吐基准：每次调用新建连接（旧实现） vs 写线程 + 读连接池（当前实现）。
+ *
+ * <p>"旧实现"一列按原先 Database 的做法内联复现：每次操作打开连接、执行四条 PRAGMA、
+ * 重新编译语句。两列操作的是同一个 sk 文件中的同一批基准密钥，结束后删除。</p>
+ *
+ * <p>不属于单元测试，不会被 surefire 执行。手动运行：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.DatabaseBenchmark
+ * </pre>
+ */
+public final class DatabaseBenchmark {
+    private static final String DB_URL = "jdbc:sqlite:" + new File(NeoProxyServer.CURRENT_DIR_PATH, "sk").getAbsolutePath();
+    private static final int KEYS = 200;
+    private static final int OPERATIONS = 5_000;
+
+    private DatabaseBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Database.init();
+        for (int i = 0; i < KEYS; i++) {
+            Database.createKey(keyName(i), 1024, "PERMANENT", "10000", 10);
+        }
+        try {
+            // 预热
+            legacyLookups(OPERATIONS / 10);
+            legacySaves(OPERATIONS / 10);
+            pooledLookups(OPERATIONS / 10);
+            pooledSaves(OPERATIONS / 10);
+
+            report("lookup  per-call connection", legacyLookups(OPERATIONS));
+            report("lookup  reader pool", pooledLookups(OPERATIONS));
+            report("save    per-call connection", legacySaves(OPERATIONS));
+            report("save    single writer", pooledSaves(OPERATIONS));
+        } finally {
+            for (int i = 0; i < KEYS; i++) {
+                Database.deleteKey(keyName(i));
+            }
+        }
+    }
+
+    private static long pooledLookups(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (Database.getKey(keyName(i % KEYS), false) == null) {
+                throw new IllegalStateException("missing benchmark key");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long pooledSaves(int count) {
+        SequenceKey key = new SequenceKey(keyName(0), 1024, "PERMANENT", "10000", 10, true, false);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            key.setBalance(1024 - i * 0.001);
+            SequenceKey.saveToDB(key);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long legacyLookups(int count) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            try (Connection conn = openLegacyConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT * FROM sk WHERE name = ?")) {
+                stmt.setString(1, keyName(i % KEYS));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new IllegalStateException("missing benchmark key");
+                    }
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long legacySaves(int count) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            try (Connection conn = openLegacyConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "REPLACE INTO sk (name, balance, expireTime, port, rate, isEnable, enableWebHTML) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                stmt.setString(1, keyName(0));
+                stmt.setDouble(2, 1024 - i * 0.001);
+                stmt.setString(3, "PERMANENT");
+                stmt.setString(4, "10000");
+                stmt.setDouble(5, 10);
+                stmt.setBoolean(6, true);
+                stmt.setBoolean(7, false);
+                stmt.executeUpdate();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Connection openLegacyConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(DB_URL);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL;");
+            stmt.execute("PRAGMA synchronous = NORMAL;");
+            stmt.execute("PRAGMA busy_timeout = 5000;");
+            stmt.execute("PRAGMA temp_store = MEMORY;");
+        }
+        return connection;
+    }
+
+    private static String keyName(int i) {
+        return "bench-" + i;
+    }
+
+    private static void report(String name, long nanos) {
+        double perSecond = OPERATIONS / (nanos / 1_000_000_000.0);
+        System.out.printf("%-30s %,12.0f ops/s%n", name, perSecond);
+    }
+}
@@ -0,0 +1,88 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.Debugger;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * debug 关闭时调试日志调用点的开销：字符串拼接 vs 模板 + 参数 vs Supplier。
+ *
+ * <p>仓库没有引入 JMH，分配量用 {@code com.sun.management.ThreadMXBean} 的线程分配计数统计，
+ * 每种写法先预热再计时，输出 ns/op 与 bytes/op。模板写法在关闭时应为 0 bytes/op；
+ * 捕获局部变量的 Supplier 每次要创建 lambda 实例，是否为 0 取决于 JIT 的逃逸分析。</p>
+ *
+ * <p>不属于单元测试，不会被 surefire 执行。手动运行：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.DebugLoggingBenchmark
+ * </pre>
+ */
+public final class DebugLoggingBenchmark {
+    private static final int OPERATIONS = 20_000_000;
+    private static final String CLIENT_IP = "203.0.113.7";
+
+    private DebugLoggingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("thread allocation counters are not supported on this JVM");
+            return;
+        }
+        NeoProxyServer.IS_DEBUG_MODE = false;
+
+        // 预热
+        concat(OPERATIONS / 10);
+        template(OPERATIONS / 10);
+        supplier(OPERATIONS / 10);
+
+        measure(threads, "concat   \"..\" + id + \"..\"", DebugLoggingBenchmark::concat);
+        measure(threads, "template \"..{}..{}\", id, port", DebugLoggingBenchmark::template);
+        measure(threads, "supplier () -> \"..\" + ..", DebugLoggingBenchmark::supplier);
+    }
+
+    private static void concat(int count) {
+        for (int i = 0; i < count; i++) {
+            long socketID = i;
+            int clientOutPort = i & 0xFFFF;
+            Debugger.debugOperation("Allocated UDP SocketID: " + socketID);
+            Debugger.debugOperation("UDP: New session for " + CLIENT_IP + ":" + clientOutPort);
+        }
+    }
+
+    private static void template(int count) {
+        for (int i = 0; i < count; i++) {
+            long socketID = i;
+            int clientOutPort = i & 0xFFFF;
+            Debugger.debugOperation("Allocated UDP SocketID: {}", socketID);
+            Debugger.debugOperation("UDP: New session for {}:{}", CLIENT_IP, clientOutPort);
+        }
+    }
+
+    private static void supplier(int count) {
+        for (int i = 0; i < count; i++) {
+            long socketID = i;
+            int clientOutPort = i & 0xFFFF;
+            Debugger.debugOperation(() -> "Allocated UDP SocketID: " + socketID);
+            Debugger.debugOperation(() -> "UDP: New session for " + CLIENT_IP + ":" + clientOutPort);
+        }
+    }
+
+    private static void measure(com.sun.management.ThreadMXBean threads, String name, Workload workload) {
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        workload.run(OPERATIONS);
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        // 每次循环两个调用点
+        double operations = OPERATIONS * 2.0;
+        System.out.printf("%-34s %8.2f ns/op %10.2f bytes/op%n", name, nanos / operations, bytes / operations);
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        void run(int count);
+    }
+}
@@ -0,0 +1,175 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.core.management.MappedXdbSearcherAccess;
+import org.lionsoul.ip2region.xdb.LongByteArray;
+import org.lionsoul.ip2region.xdb.Searcher;
+import org.lionsoul.ip2region.xdb.Version;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 归属地查询基准：堆内 {@code Searcher.newWithBuffer}、逐次读文件 {@code Searcher.newWithFileOnly}
+ * 与内存映射 MappedXdbSearcher 三种模式。
+ *
+ * <p>先用随机地址核对三种模式的结果一致，再分别测单线程与多线程吞吐。多线程下两种 Searcher
+ * 每个线程各持一个（它们不是线程安全的），内存映射则所有线程共用一个实例。
+ * 另外打印加载前后的堆占用，对比堆内模式与映射模式的内存代价。</p>
+ *
+ * <p>MappedXdbSearcher 是包内类，经测试入口 {@link MappedXdbSearcherAccess} 使用。xdb 文件不在仓库中，需要手动指定：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.GeolocationBenchmark \
+ *     -Dexec.args="path/to/ip2region_v4.xdb"
+ * </pre>
+ */
+public final class GeolocationBenchmark {
+    private static final int QUERIES = 4_096;
+    private static final int OPERATIONS = 2_000_000;
+    private static final int THREADS = 8;
+    private static final int LOAD_SLICE_BYTES = 1024 * 1024;
+
+    private GeolocationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path xdb = Path.of(args.length > 0 ? args[0] : "ip2region_v4.xdb");
+        if (!Files.isRegularFile(xdb)) {
+            System.err.println("xdb file not found: " + xdb.toAbsolutePath());
+            return;
+        }
+        File file = xdb.toFile();
+
+        long heapBefore = usedHeap();
+        LongByteArray content;
+        try (InputStream in = Files.newInputStream(xdb)) {
+            content = Searcher.loadContentFromInputStream(in, LOAD_SLICE_BYTES);
+        }
+        long heapLoaded = usedHeap();
+        MappedXdbSearcherAccess mapped = MappedXdbSearcherAccess.open(xdb, 4);
+        long heapMapped = usedHeap();
+        System.out.printf("%-34s %,12d bytes%n", "xdb file size", Files.size(xdb));
+        System.out.printf("%-34s %,12d bytes%n", "heap  +heap-loaded content", heapLoaded - heapBefore);
+        System.out.printf("%-34s %,12d bytes%n", "heap  +mmap", heapMapped - heapLoaded);
+
+        String[] addresses = new String[QUERIES];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < QUERIES; i++) {
+            int ip = random.nextInt();
+            addresses[i] = (ip >>> 24) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF);
+        }
+
+        Searcher heap = Searcher.newWithBuffer(Version.IPv4, content);
+        Searcher fileOnly = Searcher.newWithFileOnly(Version.IPv4, file);
+        int mismatches = 0;
+        for (String address : addresses) {
+            String expected = heap.search(address);
+            if (!expected.equals(fileOnly.search(address)) || !expected.equals(mapped.search(address))) {
+                mismatches++;
+                if (mismatches <= 5) {
+                    System.out.println("MISMATCH " + address + ": heap=" + expected
+                            + " file=" + fileOnly.search(address) + " mmap=" + mapped.search(address));
+                }
+            }
+        }
+        System.out.printf("%-34s %,12d / %d%n", "result mismatches", mismatches, QUERIES);
+        fileOnly.close();
+
+        // 预热
+        lookups(heap::search, addresses, OPERATIONS / 10);
+        lookups(mapped::search, addresses, OPERATIONS / 10);
+
+        report("heap  1 thread", OPERATIONS, lookups(heap::search, addresses, OPERATIONS));
+        Searcher single = Searcher.newWithFileOnly(Version.IPv4, file);
+        report("file  1 thread", OPERATIONS / 10, lookups(single::search, addresses, OPERATIONS / 10));
+        single.close();
+        report("mmap  1 thread", OPERATIONS, lookups(mapped::search, addresses, OPERATIONS));
+
+        report("heap  " + THREADS + " threads (one each)", OPERATIONS, concurrent(() -> {
+            Searcher own = Searcher.newWithBuffer(Version.IPv4, content);
+            lookups(own::search, addresses, OPERATIONS / THREADS);
+        }));
+        report("file  " + THREADS + " threads (one each)", OPERATIONS / 10, concurrent(() -> {
+            Searcher own = Searcher.newWithFileOnly(Version.IPv4, file);
+            try {
+                lookups(own::search, addresses, OPERATIONS / 10 / THREADS);
+            } finally {
+                own.close();
+            }
+        }));
+        report("mmap  " + THREADS + " threads (shared)", OPERATIONS, concurrent(() ->
+                lookups(mapped::search, addresses, OPERATIONS / THREADS)));
+        heap.close();
+    }
+
+    private static long lookups(Lookup lookup, String[] addresses, int count) throws Exception {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            found += lookup.search(addresses[i & (QUERIES - 1)]).length();
+        }
+        long nanos = System.nanoTime() - start;
+        sink(found);
+        return nanos;
+    }
+
+    private static long concurrent(Work work) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    work.run();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void sink(int found) {
+        if (found < 0) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static void report(String name, int operations, long nanos) {
+        double perSecond = operations / (nanos / 1_000_000_000.0);
+        System.out.printf("%-34s %,12.0f ops/s%n", name, perSecond);
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        String search(String ip) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,138 @@
+package neoproxy.neoproxyserver.benchmark;
+
+import neoproxy.neoproxyserver.NeoProxyServer;
+import neoproxy.neoproxyserver.core.management.Database;
+import neoproxy.neoproxyserver.core.management.SequenceKey;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * sk 存储后端对比基准：SQLite（sk） vs H2 MVStore（sk.mv）。
+ *
+ * <p>两个后端依次通过 {@link Database#STORAGE_BACKEND} + {@link Database#init()} 打开，
+ * 走与运行时完全相同的 Database 静态入口，测同一组操作：单线程查找、多线程查找、
+ * 余额扣减、批量保存与全表遍历。基准密钥结束后删除；sk.mv 若是本次新建的，也一并删除。</p>
+ *
+ * <p>不属于单元测试，不会被 surefire 执行。手动运行：</p>
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=neoproxy.neoproxyserver.benchmark.StorageBackendBenchmark
+ * </pre>
+ */
+public final class StorageBackendBenchmark {
+    private static final int KEYS = 2_000;
+    private static final int OPERATIONS = 20_000;
+    private static final int THREADS = 8;
+
+    private StorageBackendBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File mvFile = new File(NeoProxyServer.CURRENT_DIR_PATH, "sk.mv");
+        boolean mvExisted = mvFile.exists();
+        String original = Database.STORAGE_BACKEND;
+        try {
+            for (String backend : new String[]{"sqlite", "mvstore"}) {
+                Database.STORAGE_BACKEND = backend;
+                Database.init();
+                try {
+                    run(backend);
+                } finally {
+                    for (int i = 0; i < KEYS; i++) {
+                        Database.deleteKey(keyName(i));
+                    }
+                }
+            }
+        } finally {
+            Database.close();
+            Database.STORAGE_BACKEND = original;
+            if (!mvExisted && !mvFile.delete()) {
+                System.err.println("Failed to delete " + mvFile);
+            }
+        }
+    }
+
+    private static void run(String backend) throws InterruptedException {
+        List<SequenceKey> batch = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            batch.add(new SequenceKey(keyName(i), 1024, "PERMANENT", "10000", 10, true, false));
+        }
+        long saveAll = timed(() -> Database.saveKeys(batch));
+
+        // 预热
+        lookups(OPERATIONS / 10);
+        deductions(OPERATIONS / 10);
+
+        report(backend, "lookup  1 thread", OPERATIONS, lookups(OPERATIONS));
+        report(backend, "lookup  " + THREADS + " threads", OPERATIONS, concurrentLookups());
+        report(backend, "deduct  updateBalance", OPERATIONS, deductions(OPERATIONS));
+        report(backend, "batch   saveKeys", KEYS, saveAll);
+        report(backend, "scan    getAllKeys", KEYS, timed(() -> {
+            if (Database.getAllKeys().size() < KEYS) {
+                throw new IllegalStateException("missing benchmark keys");
+            }
+        }));
+    }
+
+    private static long lookups(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (Database.getKey(keyName(i % KEYS), true) == null) {
+                throw new IllegalStateException("missing benchmark key");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long concurrentLookups() throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    lookups(OPERATIONS / THREADS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private static long deductions(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Database.updateBalance(keyName(i % KEYS), 0.001);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timed(Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        return System.nanoTime() - start;
+    }
+
+    private static String keyName(int i) {
+        return "bench-" + i;
+    }
+
+    private static void report(String backend, String name, int operations, long nanos) {
+        double perSecond = operations / (nanos / 1_000_000_000.0);
+        System.out.printf("%-8s %-26s %,12.0f ops/s%n", backend, name, perSecond);
+    }
+}
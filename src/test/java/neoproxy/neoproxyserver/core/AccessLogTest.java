@@ -0,0 +1,167 @@
+package neoproxy.neoproxyserver.core;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import neoproxy.neoproxyserver.core.AccessLog.CloseReason;
+import neoproxy.neoproxyserver.core.AccessLog.Entry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AccessLog 测试")
+class AccessLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static Entry entry(String key, long clientToHost) {
+        return new Entry(1_700_000_000_000L, 1532, "TCP", key, 25565, "203.0.113.7", 51234,
+                clientToHost, 40960, 120, CloseReason.CLIENT_CLOSED);
+    }
+
+    private List<Path> rotatedFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> !p.getFileName().toString().equals(AccessLog.ACTIVE_FILE)).sorted().toList();
+        }
+    }
+
+    private List<String> activeLines() throws Exception {
+        return Files.readAllLines(dir.resolve(AccessLog.ACTIVE_FILE), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("测试toJson - 字段齐全且转义正确")
+    void testToJson_Fields() {
+        JsonObject json = JsonParser.parseString(AccessLog.toJson(entry("密钥\"a\\b", 1024))).getAsJsonObject();
+
+        assertEquals("2023-11-14T22:13:20Z", json.get("start").getAsString());
+        assertEquals(1532, json.get("durationMs").getAsLong());
+        assertEquals("TCP", json.get("protocol").getAsString());
+        assertEquals("密钥\"a\\b", json.get("key").getAsString());
+        assertEquals(25565, json.get("outPort").getAsInt());
+        assertEquals("203.0.113.7", json.get("clientIp").getAsString());
+        assertEquals(51234, json.get("clientPort").getAsInt());
+        assertEquals(1024, json.get("clientToHost").getAsLong());
+        assertEquals(40960, json.get("hostToClient").getAsLong());
+        assertEquals(120, json.get("stallMs").getAsLong());
+        assertEquals("CLIENT_CLOSED", json.get("closeReason").getAsString());
+        assertFalse(AccessLog.toJson(entry("a\nb", 0)).contains("\n"));
+    }
+
+    @Test
+    @DisplayName("测试写出 - 每条记录一行，flush后可读")
+    void testOffer_WritesLines() throws Exception {
+        AccessLog log = new AccessLog(dir, 1024 * 1024, 0, 0, System::currentTimeMillis);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(log.offer(entry("k" + i, i)));
+            }
+            assertTrue(log.flush(5000));
+
+            List<String> lines = activeLines();
+            assertEquals(100, lines.size());
+            assertEquals("k42", JsonParser.parseString(lines.get(42)).getAsJsonObject().get("key").getAsString());
+        } finally {
+            log.shutdown(5000);
+        }
+    }
+
+    @Test
+    @DisplayName("测试按大小切分 - 超出上限时改名并只保留最近的文件")
+    void testRotate_BySize() throws Exception {
+        int lineBytes = (AccessLog.toJson(entry("k", 0)) + "\n").getBytes(StandardCharsets.UTF_8).length;
+        AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+        AccessLog log = new AccessLog(dir, lineBytes * 2L, 0, 2, () -> clock.addAndGet(1000));
+        try {
+            for (int i = 0; i < 10; i++) {
+                log.offer(entry("k", 0));
+            }
+            assertTrue(log.flush(5000));
+
+            assertEquals(2, rotatedFiles().size());
+            assertTrue(Files.size(dir.resolve(AccessLog.ACTIVE_FILE)) <= lineBytes * 2L);
+            for (Path rotated : rotatedFiles()) {
+                assertTrue(rotated.getFileName().toString().matches("access-\\d{8}-\\d{6}(-\\d+)?\\.jsonl"));
+                assertEquals(2, Files.readAllLines(rotated).size());
+            }
+        } finally {
+            log.shutdown(5000);
+        }
+    }
+
+    @Test
+    @DisplayName("测试按时切分 - 超过间隔后的第一条记录写入新文件")
+    void testRotate_ByTime() throws Exception {
+        AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+        AccessLog log = new AccessLog(dir, 1024 * 1024, TimeUnit.HOURS.toMillis(1), 0, clock::get);
+        try {
+            log.offer(entry("before", 0));
+            assertTrue(log.flush(5000));
+            clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+            log.offer(entry("after", 0));
+            assertTrue(log.flush(5000));
+
+            List<Path> rotated = rotatedFiles();
+            assertEquals(1, rotated.size());
+            assertTrue(Files.readString(rotated.get(0)).contains("\"before\""));
+            List<String> lines = activeLines();
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).contains("\"after\""));
+        } finally {
+            log.shutdown(5000);
+        }
+    }
+
+    @Test
+    @DisplayName("测试shutdown - 关闭前写完队列中的记录")
+    void testShutdown_DrainsQueue() throws Exception {
+        AccessLog log = new AccessLog(dir, 1024 * 1024, 0, 0, System::currentTimeMillis);
+        for (int i = 0; i < 1000; i++) {
+            log.offer(entry("k", i));
+        }
+        log.shutdown(5000);
+
+        assertEquals(1000, activeLines().size());
+        assertEquals(0, log.dropped());
+    }
+
+    @Test
+    @DisplayName("测试Session - 累计字节与限速时长，结束原因以最先记录的为准")
+    void testSession_Accumulates() {
+        AccessLog.Session session = new AccessLog.Session("UDP", "k", 25565, "203.0.113.7", 40000);
+        session.clientToHost(100, 0);
+        session.clientToHost(50, TimeUnit.MILLISECONDS.toNanos(30));
+        session.hostToClient(1000, TimeUnit.MILLISECONDS.toNanos(20));
+        session.closedBy(CloseReason.IDLE_TIMEOUT);
+        session.closedBy(CloseReason.ERROR);
+
+        Entry entry = session.toEntry(null);
+        assertEquals("UDP", entry.protocol());
+        assertEquals(150, entry.clientToHostBytes());
+        assertEquals(1000, entry.hostToClientBytes());
+        assertEquals(50, entry.stallMillis());
+        assertEquals(CloseReason.IDLE_TIMEOUT, entry.closeReason());
+        assertTrue(entry.durationMillis() >= 0);
+    }
+
+    @Test
+    @DisplayName("测试Session - 覆盖原因与缺省原因")
+    void testSession_Reasons() {
+        AccessLog.Session session = new AccessLog.Session("TCP", "k", 25565, "203.0.113.7", 40000);
+        assertEquals(CloseReason.ERROR, session.toEntry(null).closeReason());
+
+        session.closedBy(CloseReason.HOST_CLOSED);
+        assertEquals(CloseReason.NO_FLOW, session.toEntry(CloseReason.NO_FLOW).closeReason());
+        assertEquals(CloseReason.HOST_CLOSED, session.toEntry(null).closeReason());
+    }
+}
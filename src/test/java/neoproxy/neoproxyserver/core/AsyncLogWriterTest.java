@@ -0,0 +1,102 @@
+package neoproxy.neoproxyserver.core;
+
+import neoproxy.neoproxyserver.core.AsyncLogWriter.Level;
+import neoproxy.neoproxyserver.core.AsyncLogWriter.LogEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AsyncLogWriter 测试")
+class AsyncLogWriterTest {
+
+    private static LogEvent event(Level level, String message) {
+        return new LogEvent(level, "Test", null, null, message, null);
+    }
+
+    @Test
+    @DisplayName("测试事件在后台线程上按顺序写出，flush 等待写完")
+    void testSubmit_WrittenInOrderOffCallerThread() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        List<Thread> writers = new CopyOnWriteArrayList<>();
+        AsyncLogWriter writer = new AsyncLogWriter(64, 8, e -> {
+            written.add(e.message());
+            writers.add(Thread.currentThread());
+        }, count -> {
+        });
+
+        for (int i = 0; i < 50; i++) {
+            writer.submit(event(Level.INFO, "m" + i));
+        }
+        assertTrue(writer.flush(5_000));
+
+        assertEquals(50, written.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("m" + i, written.get(i));
+        }
+        assertFalse(writers.contains(Thread.currentThread()));
+    }
+
+    @Test
+    @DisplayName("测试队列满时丢弃INFO并汇总，WARN/ERROR同步写出")
+    void testOverflow_DropInfoKeepWarn() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        AtomicLong reported = new AtomicLong();
+        AsyncLogWriter writer = new AsyncLogWriter(4, 8, e -> {
+            if ("block".equals(e.message())) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            written.add(e.message());
+        }, reported::addAndGet);
+
+        writer.submit(event(Level.INFO, "block"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            writer.submit(event(Level.INFO, "queued" + i));
+        }
+        writer.submit(event(Level.INFO, "dropped"));
+        writer.submit(event(Level.WARN, "warn"));
+        writer.submit(event(Level.ERROR, "error"));
+
+        // 溢出的 WARN / ERROR 已在调用线程上写出
+        assertEquals(List.of("warn", "error"), written);
+        assertEquals(1, writer.dropped());
+
+        release.countDown();
+        assertTrue(writer.flush(5_000));
+        assertFalse(written.contains("dropped"));
+        assertTrue(written.containsAll(List.of("block", "queued0", "queued3")));
+        assertEquals(1, reported.get());
+    }
+
+    @Test
+    @DisplayName("测试sink抛异常不影响后续事件")
+    void testSinkFailure_Isolated() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        AsyncLogWriter writer = new AsyncLogWriter(16, 8, e -> {
+            if ("boom".equals(e.message())) {
+                throw new IllegalStateException("boom");
+            }
+            written.add(e.message());
+        }, count -> {
+        });
+
+        writer.submit(event(Level.INFO, "boom"));
+        writer.submit(event(Level.INFO, "after"));
+        assertTrue(writer.flush(5_000));
+
+        assertEquals(List.of("after"), written);
+    }
+}
@@ -0,0 +1,151 @@
+package neoproxy.neoproxyserver.core;
+
+import neoproxy.neoproxyserver.core.ControlFrameCodec.ControlMessage;
+import neoproxy.neoproxyserver.core.constants.ProtocolConstants;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ControlFrameCodec 测试")
+class ControlFrameCodecTest {
+
+    @Test
+    @DisplayName("测试单帧批量编解码 - 保持顺序与字段")
+    void testEncodeDecode_Batch() throws Exception {
+        InetAddress v4 = InetAddress.getByName("203.0.113.7");
+        InetAddress v6 = InetAddress.getByName("2001:db8::1");
+        List<ControlMessage> messages = List.of(
+                ControlMessage.openTcp(42L, v4, 25565),
+                ControlMessage.openUdp(43L, v6, 19132),
+                ControlMessage.command("exitNoFlow"),
+                ControlMessage.info("剩余流量 10 MB")
+        );
+
+        List<byte[]> frames = ControlFrameCodec.encode(messages);
+
+        assertEquals(1, frames.size());
+        assertTrue(ControlFrameCodec.isControlFrame(frames.get(0)));
+        List<ControlMessage> decoded = ControlFrameCodec.decode(frames.get(0));
+        assertEquals(messages, decoded);
+    }
+
+    @Test
+    @DisplayName("测试单条消息编码")
+    void testEncode_Single() throws Exception {
+        ControlMessage message = ControlMessage.command("exit");
+
+        List<ControlMessage> decoded = ControlFrameCodec.decode(ControlFrameCodec.encode(message));
+
+        assertEquals(List.of(message), decoded);
+    }
+
+    @Test
+    @DisplayName("测试超过单帧条数上限时自动拆帧")
+    void testEncode_SplitByCount() throws Exception {
+        InetAddress address = InetAddress.getByName("198.51.100.1");
+        List<ControlMessage> messages = new ArrayList<>();
+        for (int i = 0; i < ProtocolConstants.CONTROL_FRAME_MAX_MESSAGES + 10; i++) {
+            messages.add(ControlMessage.openTcp(i, address, 1000 + i));
+        }
+
+        List<byte[]> frames = ControlFrameCodec.encode(messages);
+
+        assertEquals(2, frames.size());
+        List<ControlMessage> decoded = new ArrayList<>();
+        for (byte[] frame : frames) {
+            decoded.addAll(ControlFrameCodec.decode(frame));
+        }
+        assertEquals(messages, decoded);
+    }
+
+    @Test
+    @DisplayName("测试超过消息体上限时自动拆帧")
+    void testEncode_SplitByBodyLength() throws Exception {
+        String large = "x".repeat(40_000);
+        List<ControlMessage> messages = List.of(ControlMessage.info(large), ControlMessage.info(large));
+
+        List<byte[]> frames = ControlFrameCodec.encode(messages);
+
+        assertEquals(2, frames.size());
+        for (byte[] frame : frames) {
+            assertTrue(frame.length - ProtocolConstants.HEADER_LENGTH <= ProtocolConstants.MAX_BODY_LENGTH);
+        }
+    }
+
+    @Test
+    @DisplayName("测试空列表不产生帧")
+    void testEncode_Empty() {
+        assertTrue(ControlFrameCodec.encode(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试文本过长被拒绝")
+    void testEncode_TextTooLong() {
+        ControlMessage message = ControlMessage.info("x".repeat(70_000));
+
+        assertThrows(IllegalArgumentException.class, () -> ControlFrameCodec.encode(message));
+    }
+
+    @Test
+    @DisplayName("测试非法帧 - 魔数/版本/长度/截断")
+    void testDecode_Malformed() {
+        byte[] valid = ControlFrameCodec.encode(ControlMessage.command("exit"));
+
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(null));
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(new byte[3]));
+
+        byte[] badMagic = valid.clone();
+        badMagic[0] = 'X';
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(badMagic));
+
+        byte[] badVersion = valid.clone();
+        badVersion[2] = 99;
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(badVersion));
+
+        byte[] truncated = java.util.Arrays.copyOf(valid, valid.length - 1);
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(truncated));
+
+        byte[] badCount = valid.clone();
+        badCount[3] = 2;
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(badCount));
+
+        byte[] badType = valid.clone();
+        badType[ProtocolConstants.HEADER_LENGTH] = 0x7F;
+        assertThrows(IOException.class, () -> ControlFrameCodec.decode(badType));
+    }
+
+    @Test
+    @DisplayName("测试isControlFrame - 文本数据不被误判")
+    void testIsControlFrame() {
+        assertFalse(ControlFrameCodec.isControlFrame(null));
+        assertFalse(ControlFrameCodec.isControlFrame("PING".getBytes()));
+        assertFalse(ControlFrameCodec.isControlFrame(":>sendSocketTCP;1;1.1.1.1:80".getBytes()));
+    }
+
+    @Test
+    @DisplayName("测试toLegacyText - 与旧文本协议一致")
+    void testToLegacyText() throws Exception {
+        InetAddress address = InetAddress.getByName("192.0.2.10");
+
+        assertEquals(":>sendSocketTCP;7;192.0.2.10:8080", ControlMessage.openTcp(7, address, 8080).toLegacyText());
+        assertEquals(":>sendSocketUDP;8;192.0.2.10:53", ControlMessage.openUdp(8, address, 53).toLegacyText());
+        assertEquals(":>exit", ControlMessage.command("exit").toLegacyText());
+        assertEquals("hello", ControlMessage.info("hello").toLegacyText());
+    }
+
+    @Test
+    @DisplayName("测试私有构造器")
+    void testPrivateConstructor() throws Exception {
+        Constructor<ControlFrameCodec> constructor = ControlFrameCodec.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        assertNotNull(constructor.newInstance());
+    }
+}
@@ -1,11 +1,14 @@
 package neoproxy.neoproxyserver.core;
 
+import neoproxy.neoproxyserver.NeoProxyServer;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,4 +70,72 @@ class DebuggerTest {
         assertTrue(Modifier.isPublic(method.getModifiers()));
         assertEquals(void.class, method.getReturnType());
     }
+
+    @Test
+    @DisplayName("测试format - 按顺序替换占位符")
+    void testFormat_Placeholders() {
+        assertEquals("Allocated UDP SocketID: 42", Debugger.format("Allocated UDP SocketID: {}", 42L));
+        assertEquals("UDP: New session for 1.2.3.4:25565", Debugger.format("UDP: New session for {}:{}", "1.2.3.4", 25565));
+        assertEquals("a null b", Debugger.format("a {} b", (Object) null));
+    }
+
+    @Test
+    @DisplayName("测试format - 占位符与参数个数不符")
+    void testFormat_Mismatch() {
+        assertEquals("x=1 y={}", Debugger.format("x={} y={}", 1));
+        assertEquals("no placeholder", Debugger.format("no placeholder", 1, 2));
+        assertNull(Debugger.format(null, 1));
+    }
+
+    @Test
+    @DisplayName("测试Supplier重载 - debug关闭时不求值")
+    void testDebugOperation_SupplierSkippedWhenDisabled() {
+        boolean previous = NeoProxyServer.IS_DEBUG_MODE;
+        NeoProxyServer.IS_DEBUG_MODE = false;
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            Debugger.debugOperation(() -> "value " + calls.incrementAndGet());
+            assertEquals(0, calls.get());
+            assertFalse(Debugger.isEnabled());
+        } finally {
+            NeoProxyServer.IS_DEBUG_MODE = previous;
+        }
+    }
+
+    @Test
+    @DisplayName("测试模板重载 - debug关闭时不分配对象")
+    void testDebugOperation_NoAllocationWhenDisabled() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        boolean previous = NeoProxyServer.IS_DEBUG_MODE;
+        NeoProxyServer.IS_DEBUG_MODE = false;
+        try {
+            String clientIP = "203.0.113.7";
+            Object address = new Object();
+            // 先让调用点完成解释执行期的类加载与 JIT 编译
+            for (int i = 0; i < 100_000; i++) {
+                callSites(i, clientIP, address);
+            }
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                callSites(i, clientIP, address);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            // 计数器本身的调用可能有少量分配，这里只要求远小于每次调用分配一个对象
+            assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        } finally {
+            NeoProxyServer.IS_DEBUG_MODE = previous;
+        }
+    }
+
+    private static void callSites(long socketID, String clientIP, Object address) {
+        int clientOutPort = (int) socketID & 0xFFFF;
+        Debugger.debugOperation("Allocated UDP SocketID: {}", socketID);
+        Debugger.debugOperation("UDP: New session for {}:{}", clientIP, clientOutPort);
+        Debugger.debugOperation("Allocated TCP SocketID: {} for {}", socketID, address);
+        Debugger.debugOperation("TransferSocket received flags: {}", clientIP);
+        Debugger.debugOperation(() -> "constant supplier");
+    }
 }
@@ -0,0 +1,176 @@
+package neoproxy.neoproxyserver.core;
+
+import neoproxy.neoproxyserver.core.ControlFrameCodec.ControlMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import top.ceroxe.api.net.SecureSocket;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("HostControlChannel 测试")
+class HostControlChannelTest {
+
+    private HostClient hostClient;
+    private SecureSocket hook;
+    private List<String> written;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        hostClient = mock(HostClient.class);
+        hook = mock(SecureSocket.class);
+        written = Collections.synchronizedList(new ArrayList<>());
+        when(hostClient.getHostServerHook()).thenReturn(hook);
+        when(hook.sendStr(anyString())).thenAnswer(invocation -> {
+            String text = invocation.getArgument(0);
+            written.add(text);
+            return text.length();
+        });
+    }
+
+    @Test
+    @DisplayName("测试sendNow - 同步写出文本")
+    void testSendNow_Text() throws Exception {
+        HostControlChannel channel = new HostControlChannel(hostClient, 8);
+
+        channel.sendNow(ControlMessage.info("hello"));
+        channel.sendNow(ControlMessage.command("exit"));
+
+        assertEquals(List.of("hello", ":>exit"), written);
+    }
+
+    @Test
+    @DisplayName("测试优先级与余额合并 - 建连请求优先，旧余额被覆盖")
+    void testPriorityAndBalanceCoalescing() throws Exception {
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        // doAnswer 重设桩，when(hook.sendStr(...)) 会先调用 setUp 中的桩，往 written 里写入一条空串
+        doAnswer(invocation -> {
+            String text = invocation.getArgument(0);
+            if (written.isEmpty()) {
+                firstWriteStarted.countDown();
+                releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            }
+            written.add(text);
+            return text.length();
+        }).when(hook).sendStr(anyString());
+        HostControlChannel channel = new HostControlChannel(hostClient, 8);
+        InetAddress address = InetAddress.getByName("192.0.2.1");
+
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(1, address, 80)));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        channel.enqueueBalance("balance-1");
+        channel.enqueueBalance("balance-2");
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(2, address, 80)));
+        releaseFirstWrite.countDown();
+
+        waitUntil(() -> written.size() == 3);
+        assertEquals(List.of(":>sendSocketTCP;1;192.0.2.1:80", ":>sendSocketTCP;2;192.0.2.1:80", "balance-2"), written);
+    }
+
+    @Test
+    @DisplayName("测试有界队列 - 满时拒绝建连请求并计数")
+    void testBoundedQueue() throws Exception {
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            releaseWrite.await(5, TimeUnit.SECONDS);
+            written.add(invocation.getArgument(0));
+            return 1;
+        }).when(hook).sendStr(anyString());
+        HostControlChannel channel = new HostControlChannel(hostClient, 2);
+        InetAddress address = InetAddress.getByName("192.0.2.1");
+
+        // 第一条被写者取走并阻塞在 Socket 上，之后队列只能再容纳 2 条
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(1, address, 80)));
+        waitUntil(() -> channel.getPendingCount() == 0);
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(2, address, 80)));
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(3, address, 80)));
+        assertFalse(channel.enqueueUrgent(ControlMessage.openTcp(4, address, 80)));
+        assertEquals(1, channel.getDroppedMessages());
+
+        releaseWrite.countDown();
+        waitUntil(() -> written.size() == 3);
+    }
+
+    @Test
+    @DisplayName("测试二进制控制帧 - 一批消息合并为一次写出")
+    void testControlFrameBatch() throws Exception {
+        List<byte[]> frames = Collections.synchronizedList(new ArrayList<>());
+        when(hostClient.isControlFrameEnabled()).thenReturn(true);
+        when(hook.sendBytes(any(byte[].class))).thenAnswer(invocation -> {
+            byte[] frame = invocation.getArgument(0);
+            frames.add(frame);
+            return frame.length;
+        });
+        HostControlChannel channel = new HostControlChannel(hostClient, 8);
+        InetAddress address = InetAddress.getByName("192.0.2.1");
+
+        channel.enqueueBalance("balance");
+        channel.enqueueUrgent(ControlMessage.openTcp(1, address, 80));
+        channel.sendNow(ControlMessage.command("exit"));
+
+        waitUntil(() -> !frames.isEmpty());
+        List<ControlMessage> decoded = new ArrayList<>();
+        synchronized (frames) {
+            for (byte[] frame : frames) {
+                decoded.addAll(ControlFrameCodec.decode(frame));
+            }
+        }
+        assertEquals(3, decoded.size());
+        assertEquals(ControlMessage.command("exit"), decoded.get(decoded.size() - 1));
+        verify(hook, never()).sendStr(anyString());
+    }
+
+    @Test
+    @DisplayName("测试close - 关闭后拒绝入队与同步发送，并丢弃待发消息")
+    void testClose() throws Exception {
+        HostControlChannel channel = new HostControlChannel(hostClient, 8);
+
+        channel.close();
+
+        assertFalse(channel.enqueueUrgent(ControlMessage.command("exit")));
+        assertEquals(1, channel.getDroppedMessages());
+        channel.enqueueBalance("balance");
+        assertEquals(0, channel.getPendingCount());
+        assertThrows(IOException.class, () -> channel.sendNow(ControlMessage.info("late")));
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试写出失败 - 关闭客户端而不是静默丢弃建连请求")
+    void testWriteFailure_ClosesClient() throws Exception {
+        doThrow(new IOException("broken pipe")).when(hook).sendStr(anyString());
+        doAnswer(invocation -> {
+            hostClient.getControlChannel().close();
+            return null;
+        }).when(hostClient).close();
+        HostControlChannel channel = new HostControlChannel(hostClient, 8);
+        when(hostClient.getControlChannel()).thenReturn(channel);
+
+        assertTrue(channel.enqueueUrgent(ControlMessage.openTcp(1, InetAddress.getByName("192.0.2.1"), 80)));
+
+        verify(hostClient, timeout(5000)).close();
+        assertFalse(channel.enqueueUrgent(ControlMessage.openTcp(2, InetAddress.getByName("192.0.2.1"), 80)));
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met within timeout");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package neoproxy.neoproxyserver.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LogRingBuffer 测试")
+class LogRingBufferTest {
+
+    @Test
+    @DisplayName("测试先进先出与满时拒绝")
+    void testOfferDrain_FifoAndFull() {
+        LogRingBuffer<Integer> ring = new LogRingBuffer<>(4);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.isEmpty());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(3, ring.drain(out::add, 3));
+        assertEquals(List.of(0, 1, 2), out);
+        assertTrue(ring.offer(5));
+        assertEquals(2, ring.drain(out::add, 16));
+        assertEquals(List.of(0, 1, 2, 3, 5), out);
+        assertTrue(ring.isEmpty());
+        assertEquals(5, ring.enqueued());
+    }
+
+    @Test
+    @DisplayName("测试容量向上取整为2的幂")
+    void testCapacity_RoundedUp() {
+        assertEquals(8, new LogRingBuffer<>(5).capacity());
+        assertEquals(2, new LogRingBuffer<>(1).capacity());
+    }
+
+    @Test
+    @DisplayName("测试消费者抛异常不会卡住队列")
+    void testDrain_ConsumerThrows() {
+        LogRingBuffer<Integer> ring = new LogRingBuffer<>(4);
+        ring.offer(1);
+        ring.offer(2);
+
+        assertThrows(IllegalStateException.class, () -> ring.drain(e -> {
+            throw new IllegalStateException();
+        }, 4));
+        List<Integer> out = new ArrayList<>();
+        ring.drain(out::add, 4);
+        assertEquals(List.of(2), out);
+    }
+
+    @Test
+    @DisplayName("测试多生产者并发入队不丢不重，且每个生产者内部有序")
+    void testConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        LogRingBuffer<long[]> ring = new LogRingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long[] event = {id, i};
+                    while (!ring.offer(event)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        int[] outOfOrder = new int[1];
+        int received = 0;
+        start.countDown();
+        while (received < producers * perProducer) {
+            received += ring.drain(event -> {
+                int id = (int) event[0];
+                if (event[1] != next[id]) {
+                    outOfOrder[0]++;
+                }
+                next[id] = event[1] + 1;
+            }, 256);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, outOfOrder[0]);
+        for (long count : next) {
+            assertEquals(perProducer, count);
+        }
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Locale;
@@ -18,6 +20,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -111,6 +114,16 @@ class ServerLoggerTest {
         assertTrue(message.contains("not found"));
     }
 
+    @Test
+    @DisplayName("测试getMessage方法 - 地址参数在格式化时拼成ip:port")
+    void testGetMessage_AddressArg() {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 51234);
+
+        String message = ServerLogger.getMessage("infoBox.killingClientConnection", address);
+
+        assertEquals("Terminating client-side connection: 127.0.0.1:51234", message);
+    }
+
     @Test
     @DisplayName("测试logRaw方法")
     void testLogRaw() {
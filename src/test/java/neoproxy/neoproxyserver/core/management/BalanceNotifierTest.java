@@ -0,0 +1,127 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.HostClient;
+import neoproxy.neoproxyserver.core.HostControlChannel;
+import neoproxy.neoproxyserver.core.LanguageData;
+import neoproxy.neoproxyserver.core.threads.TCPTransformer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@DisplayName("BalanceNotifier 测试")
+class BalanceNotifierTest {
+
+    private int originalThreshold;
+
+    @BeforeEach
+    void setUp() {
+        originalThreshold = TCPTransformer.TELL_BALANCE_MIB;
+        TCPTransformer.TELL_BALANCE_MIB = 10;
+        BalanceNotifier.stop();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TCPTransformer.TELL_BALANCE_MIB = originalThreshold;
+        BalanceNotifier.stop();
+    }
+
+    @Test
+    @DisplayName("测试首轮只记录基线，不发送提示")
+    void testFirstRound_BaselineOnly() {
+        SequenceKey key = new SequenceKey("key-a", 1000, "PERMANENT", "8080", 10, true, true);
+        HostControlChannel channel = mock(HostControlChannel.class);
+        HostClient client = mockClient(key, channel);
+
+        assertEquals(0, BalanceNotifier.notifyChangedBalances(List.of(client)));
+        verify(channel, never()).enqueueBalance(anyString());
+    }
+
+    @Test
+    @DisplayName("测试变化未达阈值时不发送")
+    void testBelowThreshold() {
+        SequenceKey key = new SequenceKey("key-a", 1000, "PERMANENT", "8080", 10, true, true);
+        HostControlChannel channel = mock(HostControlChannel.class);
+        HostClient client = mockClient(key, channel);
+
+        BalanceNotifier.notifyChangedBalances(List.of(client));
+        key.setBalance(995);
+
+        assertEquals(0, BalanceNotifier.notifyChangedBalances(List.of(client)));
+        verify(channel, never()).enqueueBalance(anyString());
+    }
+
+    @Test
+    @DisplayName("测试按密钥合并 - 同一密钥的多个客户端每轮各收到一次")
+    void testPerKeyNotification() {
+        SequenceKey key = new SequenceKey("key-a", 1000, "PERMANENT", "8080", 10, true, true);
+        HostControlChannel channel1 = mock(HostControlChannel.class);
+        HostControlChannel channel2 = mock(HostControlChannel.class);
+        HostClient client1 = mockClient(key, channel1);
+        HostClient client2 = mockClient(key, channel2);
+
+        BalanceNotifier.notifyChangedBalances(List.of(client1, client2));
+        key.setBalance(900);
+
+        assertEquals(1, BalanceNotifier.notifyChangedBalances(List.of(client1, client2)));
+        verify(channel1, times(1)).enqueueBalance(contains("900.0"));
+        verify(channel2, times(1)).enqueueBalance(contains("900.0"));
+
+        // 余额没再变化，下一轮不应重复提示
+        assertEquals(0, BalanceNotifier.notifyChangedBalances(List.of(client1, client2)));
+        verify(channel1, times(1)).enqueueBalance(anyString());
+    }
+
+    @Test
+    @DisplayName("测试已停止或无密钥的客户端被忽略")
+    void testSkipStoppedClients() {
+        HostClient noKey = mock(HostClient.class);
+        SequenceKey key = new SequenceKey("key-a", 1000, "PERMANENT", "8080", 10, true, true);
+        HostControlChannel channel = mock(HostControlChannel.class);
+        HostClient stopped = mockClient(key, channel);
+        when(stopped.isStopped()).thenReturn(true);
+
+        BalanceNotifier.notifyChangedBalances(List.of(noKey, stopped));
+        key.setBalance(0);
+
+        assertEquals(0, BalanceNotifier.notifyChangedBalances(List.of(noKey, stopped)));
+        verify(channel, never()).enqueueBalance(anyString());
+    }
+
+    @Test
+    @DisplayName("测试start/stop可重复调用")
+    void testStartStop() {
+        assertDoesNotThrow(() -> {
+            BalanceNotifier.start();
+            BalanceNotifier.start();
+            BalanceNotifier.stop();
+            BalanceNotifier.stop();
+        });
+    }
+
+    @Test
+    @DisplayName("测试私有构造器")
+    void testPrivateConstructor() throws Exception {
+        Constructor<BalanceNotifier> constructor = BalanceNotifier.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        assertNotNull(constructor.newInstance());
+    }
+
+    private static HostClient mockClient(SequenceKey key, HostControlChannel channel) {
+        HostClient client = mock(HostClient.class);
+        when(client.getKey()).thenReturn(key);
+        when(client.getLangData()).thenReturn(new LanguageData());
+        when(client.getControlChannel()).thenReturn(channel);
+        return client;
+    }
+}
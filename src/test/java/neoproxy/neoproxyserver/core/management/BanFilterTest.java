@@ -0,0 +1,69 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BanFilter 测试")
+class BanFilterTest {
+
+    @Test
+    @DisplayName("测试单个地址与前缀规则的增删")
+    void testAddRemove_ExactAndPrefix() throws Exception {
+        BanFilter filter = new BanFilter(() -> null);
+        filter.add("1.2.3.4");
+        filter.add("203.0.113.0/24");
+        filter.add("2001:db8:0:0:0:0:0:1");
+
+        assertEquals(3, filter.size());
+        assertTrue(filter.contains(InetAddress.getByName("1.2.3.4")));
+        assertTrue(filter.contains(InetAddress.getByName("203.0.113.77")));
+        assertTrue(filter.contains(InetAddress.getByName("2001:db8::1")));
+        assertFalse(filter.contains(InetAddress.getByName("1.2.3.5")));
+        assertFalse(filter.contains(null));
+
+        filter.remove("1.2.3.4");
+        filter.remove("203.0.113.0/24");
+        assertFalse(filter.contains(InetAddress.getByName("1.2.3.4")));
+        assertFalse(filter.contains(InetAddress.getByName("203.0.113.77")));
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    @DisplayName("测试忽略列表只收单个地址且增量更新")
+    void testIgnoreList_Incremental() {
+        CopyOnWriteArrayList<String> ignoreList = new CopyOnWriteArrayList<>(List.of("stale"));
+        BanFilter filter = new BanFilter(() -> ignoreList);
+
+        filter.reset(List.of("1.1.1.1", "10.0.0.0/8"));
+        assertEquals(List.of("1.1.1.1"), ignoreList);
+
+        filter.add("2.2.2.2");
+        filter.add("2.2.2.2");
+        filter.add("172.16.0.0/12");
+        assertEquals(List.of("1.1.1.1", "2.2.2.2"), ignoreList);
+
+        filter.remove("1.1.1.1");
+        assertEquals(List.of("2.2.2.2"), ignoreList);
+    }
+
+    @Test
+    @DisplayName("测试 hook 端口晚于加载创建时，首次修改整体同步一次")
+    void testIgnoreList_LateSocket() {
+        AtomicReference<CopyOnWriteArrayList<String>> socketList = new AtomicReference<>();
+        BanFilter filter = new BanFilter(socketList::get);
+        filter.reset(List.of("1.1.1.1"));
+
+        CopyOnWriteArrayList<String> created = new CopyOnWriteArrayList<>();
+        socketList.set(created);
+        filter.add("2.2.2.2");
+
+        assertEquals(List.of("1.1.1.1", "2.2.2.2"), created);
+    }
+}
@@ -0,0 +1,185 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BanJournal 测试")
+class BanJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private File snapshot;
+    private File journalFile;
+    private BanJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = dir.resolve("banList.json").toFile();
+        journalFile = dir.resolve("banList.journal").toFile();
+        journal = new BanJournal(snapshot, journalFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    private BanJournal reopen() {
+        journal.close();
+        journal = new BanJournal(snapshot, journalFile);
+        return journal;
+    }
+
+    @Test
+    @DisplayName("测试追加日志后重新加载按顺序重放")
+    void testAppend_ReplayedOnLoad() throws Exception {
+        assertFalse(journal.exists());
+        assertTrue(journal.appendBan(new IPChecker.BanInfo("1.2.3.4", "Beijing", "Telecom")));
+        assertTrue(journal.appendBan(new IPChecker.BanInfo("10.0.0.0/8", "LAN", "")));
+        assertTrue(journal.appendUnban("1.2.3.4"));
+        assertFalse(snapshot.exists());
+
+        Map<String, IPChecker.BanInfo> loaded = reopen().load();
+
+        assertEquals(List.of("10.0.0.0/8"), List.copyOf(loaded.keySet()));
+        assertEquals("LAN", loaded.get("10.0.0.0/8").location);
+        assertEquals(3, journal.journalEntries());
+    }
+
+    @Test
+    @DisplayName("测试压缩写出快照并清空日志，特殊字符原样保留")
+    void testCompact_WritesSnapshotAndClearsJournal() throws Exception {
+        IPChecker.BanInfo info = new IPChecker.BanInfo("2001:db8:0:0:0:0:0:1", "Quote \" and \\ slash", "ISP\nline");
+        journal.appendBan(info);
+
+        assertTrue(journal.compact(List.of(info)));
+        assertFalse(journalFile.exists());
+        assertEquals(0, journal.journalEntries());
+        assertFalse(dir.resolve("banList.json.tmp").toFile().exists());
+
+        IPChecker.BanInfo loaded = reopen().load().get(info.ip);
+        assertEquals(info.location, loaded.location);
+        assertEquals(info.isp, loaded.isp);
+    }
+
+    @Test
+    @DisplayName("测试压缩后继续追加，快照与日志合并加载")
+    void testCompact_ThenAppend() throws Exception {
+        journal.appendBan(new IPChecker.BanInfo("1.1.1.1", "", ""));
+        journal.compact(List.of(new IPChecker.BanInfo("1.1.1.1", "", "")));
+        journal.appendBan(new IPChecker.BanInfo("2.2.2.2", "", ""));
+        journal.appendUnban("1.1.1.1");
+
+        Map<String, IPChecker.BanInfo> loaded = reopen().load();
+        assertEquals(List.of("2.2.2.2"), List.copyOf(loaded.keySet()));
+    }
+
+    @Test
+    @DisplayName("测试到期时间在日志与快照中往返保留，永久封禁为 0")
+    void testExpiresAt_RoundTrip() throws Exception {
+        journal.appendBan(new IPChecker.BanInfo("6.6.6.6", "", "", 1_700_000_000_000L));
+        journal.appendBan(new IPChecker.BanInfo("7.7.7.7", "", ""));
+
+        Map<String, IPChecker.BanInfo> fromJournal = reopen().load();
+        assertEquals(1_700_000_000_000L, fromJournal.get("6.6.6.6").expiresAt);
+        assertEquals(0, fromJournal.get("7.7.7.7").expiresAt);
+
+        journal.compact(fromJournal.values());
+        Map<String, IPChecker.BanInfo> fromSnapshot = reopen().load();
+        assertEquals(1_700_000_000_000L, fromSnapshot.get("6.6.6.6").expiresAt);
+        assertEquals(0, fromSnapshot.get("7.7.7.7").expiresAt);
+        assertFalse(Files.readString(snapshot.toPath()).contains("\"expiresAt\": 0"));
+    }
+
+    @Test
+    @DisplayName("测试批量解封只计入对应行数")
+    void testAppendUnbans_Batch() throws Exception {
+        journal.appendBan(new IPChecker.BanInfo("1.1.1.1", "", ""));
+        journal.appendBan(new IPChecker.BanInfo("2.2.2.2", "", ""));
+        journal.appendBan(new IPChecker.BanInfo("3.3.3.3", "", ""));
+
+        assertTrue(journal.appendUnbans(List.of("1.1.1.1", "3.3.3.3")));
+        assertEquals(5, journal.journalEntries());
+        assertEquals(List.of("2.2.2.2"), List.copyOf(reopen().load().keySet()));
+    }
+
+    @Test
+    @DisplayName("测试读取旧版手写格式的 banList.json")
+    void testLoad_LegacySnapshot() throws Exception {
+        Files.writeString(snapshot.toPath(), """
+                [
+                  {
+                    "ip": "8.8.8.8",
+                    "location": "US",
+                    "isp": "Google",
+                    "extra": {"ignored": [1, 2]}
+                  },
+                  {
+                    "ip": "9.9.9.9",
+                    "location": null,
+                    "isp": "Quad9"
+                  }
+                ]""", StandardCharsets.UTF_8);
+
+        Map<String, IPChecker.BanInfo> loaded = journal.load();
+
+        assertEquals(2, loaded.size());
+        assertEquals("Google", loaded.get("8.8.8.8").isp);
+        assertNull(loaded.get("9.9.9.9").location);
+    }
+
+    @Test
+    @DisplayName("测试空快照与写到一半的日志行被跳过")
+    void testLoad_EmptySnapshotAndTornLine() throws Exception {
+        Files.writeString(snapshot.toPath(), "", StandardCharsets.UTF_8);
+        Files.writeString(journalFile.toPath(),
+                "{\"op\":\"+\",\"ip\":\"3.3.3.3\",\"location\":\"\",\"isp\":\"\"}\n{\"op\":\"+\",\"ip\":\"4.4", StandardCharsets.UTF_8);
+
+        Map<String, IPChecker.BanInfo> loaded = journal.load();
+
+        assertEquals(List.of("3.3.3.3"), List.copyOf(loaded.keySet()));
+        // 坏行同样计入，IPChecker 据此在启动时压缩掉它
+        assertEquals(2, journal.journalEntries());
+    }
+
+    @Test
+    @DisplayName("测试日志末尾是半行时，新追加的行另起一行")
+    void testAppend_AfterTornLineStartsNewLine() throws Exception {
+        Files.writeString(journalFile.toPath(),
+                "{\"op\":\"+\",\"ip\":\"3.3.3.3\",\"location\":\"\",\"isp\":\"\"}\n{\"op\":\"+\",\"ip\":\"4.4", StandardCharsets.UTF_8);
+
+        assertTrue(journal.appendBan(new IPChecker.BanInfo("5.5.5.5", "", "")));
+
+        Map<String, IPChecker.BanInfo> loaded = reopen().load();
+        assertEquals(List.of("3.3.3.3", "5.5.5.5"), List.copyOf(loaded.keySet()));
+        assertEquals(3, journal.journalEntries());
+    }
+
+    @Test
+    @DisplayName("测试压缩阈值取最小行数与规则数中较大者")
+    void testNeedsCompaction_Threshold() {
+        int min = ServerConstants.BAN_JOURNAL_COMPACT_MIN_ENTRIES;
+        for (int i = 0; i < min; i++) {
+            journal.appendBan(new IPChecker.BanInfo("5.5.5.5", "", ""));
+        }
+        assertFalse(journal.needsCompaction(0));
+
+        journal.appendUnban("5.5.5.5");
+        assertTrue(journal.needsCompaction(0));
+        assertFalse(journal.needsCompaction(min * 2));
+    }
+}
@@ -0,0 +1,27 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.net.InetAddress;
+import java.util.Collection;
+
+/**
+ * 测试用入口：{@link BanSet} 是包内类，包外的基准通过这里构造快照并查询。
+ */
+public final class BanSetAccess {
+    private final BanSet set;
+
+    private BanSetAccess(BanSet set) {
+        this.set = set;
+    }
+
+    public static BanSetAccess of(Collection<String> rules) {
+        return new BanSetAccess(BanSet.of(rules));
+    }
+
+    public boolean contains(InetAddress address) {
+        return set.contains(address);
+    }
+
+    public int size() {
+        return set.size();
+    }
+}
@@ -0,0 +1,85 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BanSet 测试")
+class BanSetTest {
+
+    @Test
+    @DisplayName("测试空集合不命中任何地址")
+    void testEmpty_ContainsNothing() throws Exception {
+        assertEquals(0, BanSet.of(List.of()).size());
+        assertFalse(BanSet.EMPTY.contains(InetAddress.getByName("1.1.1.1")));
+        assertFalse(BanSet.EMPTY.contains(null));
+    }
+
+    @Test
+    @DisplayName("测试 IPv4 精确匹配")
+    void testContains_IPv4() throws Exception {
+        BanSet set = BanSet.of(List.of("1.2.3.4", "10.0.0.1"));
+
+        assertTrue(set.contains(InetAddress.getByName("1.2.3.4")));
+        assertTrue(set.contains(InetAddress.getByName("10.0.0.1")));
+        assertFalse(set.contains(InetAddress.getByName("1.2.3.5")));
+        // IPv4 映射地址由 JDK 解析为 Inet4Address，同样命中
+        assertTrue(set.contains(InetAddress.getByName("::ffff:1.2.3.4")));
+    }
+
+    @Test
+    @DisplayName("测试 IPv6 按字节匹配，与书写形式无关")
+    void testContains_IPv6() throws Exception {
+        BanSet set = BanSet.of(List.of("2001:db8:0:0:0:0:0:1"));
+
+        assertTrue(set.contains(InetAddress.getByName("2001:db8::1")));
+        assertTrue(set.contains(InetAddress.getByName("2001:0db8:0000::0001")));
+        assertFalse(set.contains(InetAddress.getByName("2001:db8::2")));
+    }
+
+    @Test
+    @DisplayName("测试大量地址全部命中且去重")
+    void testOf_ManyAddressesAndDuplicates() throws Exception {
+        List<String> ips = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ips.add("172.16." + (i >> 8) + "." + (i & 0xFF));
+        }
+        ips.add("172.16.0.0");
+        BanSet set = BanSet.of(ips);
+
+        assertEquals(5000, set.size());
+        for (int i = 0; i < 5000; i += 97) {
+            assertTrue(set.contains(InetAddress.getByName("172.16." + (i >> 8) + "." + (i & 0xFF))));
+        }
+        assertFalse(set.contains(InetAddress.getByName("172.17.0.0")));
+    }
+
+    @Test
+    @DisplayName("测试 CIDR 规则与单个地址混合")
+    void testContains_CidrRules() throws Exception {
+        BanSet set = BanSet.of(List.of("203.0.113.0/24", "2001:db8::/32", "198.51.100.7", "bad/8", "1.2.3.4/40"));
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(InetAddress.getByName("203.0.113.0")));
+        assertTrue(set.contains(InetAddress.getByName("203.0.113.255")));
+        assertFalse(set.contains(InetAddress.getByName("203.0.114.0")));
+        assertTrue(set.contains(InetAddress.getByName("198.51.100.7")));
+        assertTrue(set.contains(InetAddress.getByName("2001:db8:1234::5")));
+        assertFalse(set.contains(InetAddress.getByName("2001:db9::1")));
+    }
+
+    @Test
+    @DisplayName("测试 IPv4 前缀不会误伤 IPv6 地址")
+    void testContains_IPv4PrefixIsolatedFromIPv6() throws Exception {
+        BanSet set = BanSet.of(List.of("0.0.0.0/0"));
+
+        assertTrue(set.contains(InetAddress.getByName("8.8.8.8")));
+        assertFalse(set.contains(InetAddress.getByName("::1")));
+        assertFalse(set.contains(InetAddress.getByName("2001:db8::1")));
+    }
+}
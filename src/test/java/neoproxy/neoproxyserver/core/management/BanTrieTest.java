@@ -0,0 +1,95 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BanTrie 测试")
+class BanTrieTest {
+
+    private static BanTrie trie(long[] highs, long[] lows, int[] lengths) {
+        return BanTrie.build(highs.clone(), lows.clone(), lengths.clone(), lengths.length);
+    }
+
+    @Test
+    @DisplayName("测试空树不命中任何地址")
+    void testEmpty_ContainsNothing() {
+        assertSame(BanTrie.EMPTY, BanTrie.build(new long[0], new long[0], new int[0], 0));
+        assertFalse(BanTrie.EMPTY.contains(0, 0));
+        assertFalse(BanTrie.EMPTY.contains(-1L, -1L));
+    }
+
+    @Test
+    @DisplayName("测试高 64 位内的前缀")
+    void testContains_HighPrefixes() {
+        // 2001:db8::/32 与 2001:db8:1::/48
+        BanTrie t = trie(new long[]{0x2001_0db8_0000_0000L, 0x3000_0000_0000_0000L},
+                new long[]{0, 0}, new int[]{32, 4});
+
+        assertTrue(t.contains(0x2001_0db8_ffff_0000L, 123));
+        assertTrue(t.contains(0x3fff_0000_0000_0000L, 0));
+        assertFalse(t.contains(0x2001_0db9_0000_0000L, 0));
+        assertFalse(t.contains(0x4000_0000_0000_0000L, 0));
+        assertEquals(2, t.ruleCount());
+    }
+
+    @Test
+    @DisplayName("测试跨越低 64 位的前缀，低于长度的位构造时清零")
+    void testContains_LowPrefixes() {
+        // ::ffff:10.1.2.0/120，写入时带着主机位
+        BanTrie t = trie(new long[]{0}, new long[]{0xFFFF_0A01_0203L}, new int[]{120});
+
+        assertTrue(t.contains(0, 0xFFFF_0A01_02FFL));
+        assertTrue(t.contains(0, 0xFFFF_0A01_0200L));
+        assertFalse(t.contains(0, 0xFFFF_0A01_0300L));
+        assertFalse(t.contains(1, 0xFFFF_0A01_0200L));
+    }
+
+    @Test
+    @DisplayName("测试被更短前缀覆盖的规则在构造时剪掉")
+    void testBuild_PrunesCoveredPrefixes() {
+        BanTrie t = trie(new long[]{0x0A00_0000_0000_0000L, 0x0A01_0000_0000_0000L, 0x0A01_0200_0000_0000L},
+                new long[]{0, 0, 0}, new int[]{8, 16, 24});
+
+        assertEquals(1, t.ruleCount());
+        assertEquals(1, t.nodeCount());
+        assertTrue(t.contains(0x0AFF_0000_0000_0000L, 0));
+        assertFalse(t.contains(0x0B00_0000_0000_0000L, 0));
+    }
+
+    @Test
+    @DisplayName("测试 /0 命中全部地址，重复前缀只计一次")
+    void testBuild_ZeroLengthAndDuplicates() {
+        BanTrie all = trie(new long[]{0x1234L}, new long[]{0x5678L}, new int[]{0});
+        assertTrue(all.contains(0, 0));
+        assertTrue(all.contains(-1L, -1L));
+
+        BanTrie dup = trie(new long[]{0x0A00_0000_0000_0000L, 0x0A00_0000_0000_0000L},
+                new long[]{0, 0}, new int[]{8, 8});
+        assertEquals(1, dup.ruleCount());
+    }
+
+    @Test
+    @DisplayName("测试大量互不覆盖的前缀全部命中，相邻前缀不误判")
+    void testContains_ManyDisjointPrefixes() {
+        int count = 4096;
+        long[] highs = new long[count];
+        long[] lows = new long[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            // 偶数号 /24：10.(i>>8).(i&0xff).0/24 左移到 128 位空间的 ::ffff: 段
+            lows[i] = 0xFFFF_0000_0000L | (0x0A00_0000L | (long) (2 * i) << 8);
+            lengths[i] = 120;
+        }
+        BanTrie t = trie(highs, lows, lengths);
+
+        assertEquals(count, t.ruleCount());
+        assertTrue(t.nodeCount() <= 2 * count - 1);
+        for (int i = 0; i < count; i++) {
+            long base = 0xFFFF_0000_0000L | 0x0A00_0000L;
+            assertTrue(t.contains(0, base | (long) (2 * i) << 8 | 0x7F));
+            assertFalse(t.contains(0, base | (long) (2 * i + 1) << 8));
+        }
+    }
+}
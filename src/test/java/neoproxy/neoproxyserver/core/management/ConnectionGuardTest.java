@@ -0,0 +1,103 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConnectionGuard 测试")
+class ConnectionGuardTest {
+
+    private int originalLimit;
+    private int originalBanSeconds;
+
+    @BeforeEach
+    void setUp() {
+        originalLimit = ConnectionGuard.CONNECTS_PER_SECOND;
+        originalBanSeconds = ConnectionGuard.TEMP_BAN_SECONDS;
+        ConnectionGuard.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ConnectionGuard.CONNECTS_PER_SECOND = originalLimit;
+        ConnectionGuard.TEMP_BAN_SECONDS = originalBanSeconds;
+        ConnectionGuard.clear();
+    }
+
+    @Test
+    @DisplayName("测试超速后临时封禁，解除后恢复")
+    void testAdmit_TempBanAfterBurst() throws Exception {
+        ConnectionGuard.CONNECTS_PER_SECOND = 5;
+        ConnectionGuard.TEMP_BAN_SECONDS = 60;
+        InetAddress flooder = InetAddress.getByName("198.51.100.10");
+        InetAddress other = InetAddress.getByName("198.51.100.11");
+
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (ConnectionGuard.admit(flooder)) {
+                admitted++;
+            }
+        }
+        assertEquals(5, admitted);
+        assertEquals(15, ConnectionGuard.droppedRateLimited());
+        assertEquals(1, ConnectionGuard.autoBans());
+        assertEquals(1, ConnectionGuard.activeTempBans());
+        assertTrue(ConnectionGuard.admit(other));
+
+        assertTrue(ConnectionGuard.lift(flooder));
+        assertFalse(ConnectionGuard.lift(flooder));
+        assertEquals(0, ConnectionGuard.activeTempBans());
+    }
+
+    @Test
+    @DisplayName("测试封禁秒数为 0 时只丢弃超速连接")
+    void testAdmit_DropOnlyWithoutBan() throws Exception {
+        ConnectionGuard.CONNECTS_PER_SECOND = 3;
+        ConnectionGuard.TEMP_BAN_SECONDS = 0;
+        InetAddress flooder = InetAddress.getByName("198.51.100.20");
+
+        for (int i = 0; i < 10; i++) {
+            ConnectionGuard.admit(flooder);
+        }
+        assertEquals(7, ConnectionGuard.droppedRateLimited());
+        assertEquals(0, ConnectionGuard.autoBans());
+        assertEquals(0, ConnectionGuard.activeTempBans());
+    }
+
+    @Test
+    @DisplayName("测试限速为 0 与回环地址不受限")
+    void testAdmit_DisabledAndLoopback() throws Exception {
+        ConnectionGuard.CONNECTS_PER_SECOND = 0;
+        InetAddress address = InetAddress.getByName("198.51.100.30");
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ConnectionGuard.admit(address));
+        }
+
+        ConnectionGuard.CONNECTS_PER_SECOND = 1;
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ConnectionGuard.admit(loopback));
+        }
+        assertEquals(0, ConnectionGuard.droppedRateLimited());
+    }
+
+    @Test
+    @DisplayName("测试过期的临时封禁由清理任务移除")
+    void testSweep_RemovesExpired() throws Exception {
+        ConnectionGuard.CONNECTS_PER_SECOND = 1;
+        ConnectionGuard.TEMP_BAN_SECONDS = 1;
+        InetAddress flooder = InetAddress.getByName("198.51.100.40");
+        ConnectionGuard.admit(flooder);
+        ConnectionGuard.admit(flooder);
+        assertEquals(1, ConnectionGuard.activeTempBans());
+
+        Thread.sleep(1100);
+        ConnectionGuard.sweep();
+        assertEquals(0, ConnectionGuard.activeTempBans());
+    }
+}
@@ -0,0 +1,71 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConnectionRateSketch 测试")
+class ConnectionRateSketchTest {
+
+    private static final long SECOND = ConnectionRateSketch.WINDOW_NANOS;
+
+    @Test
+    @DisplayName("测试宽度向上取整为 2 的幂")
+    void testWidth_RoundedToPowerOfTwo() {
+        assertEquals(16384, new ConnectionRateSketch(16384).width());
+        assertEquals(1024, new ConnectionRateSketch(1000).width());
+        assertEquals(16, new ConnectionRateSketch(1).width());
+    }
+
+    @Test
+    @DisplayName("测试同一秒内计数累加，不同来源互不影响")
+    void testRecord_CountsPerSource() {
+        ConnectionRateSketch sketch = new ConnectionRateSketch(4096);
+        long start = 100 * SECOND;
+
+        for (int i = 1; i <= 50; i++) {
+            assertEquals(i, sketch.record(0x0A000001, start + i));
+        }
+        assertEquals(1, sketch.record(0x0A000002, start + 100));
+    }
+
+    @Test
+    @DisplayName("测试滑动窗口：上一秒计数按剩余比例折算")
+    void testRecord_SlidingWindow() {
+        ConnectionRateSketch sketch = new ConnectionRateSketch(4096);
+        long start = 100 * SECOND;
+        for (int i = 0; i < 100; i++) {
+            sketch.record(42, start + i);
+        }
+
+        // 下一秒的四分之一处：上一秒还有 75% 落在窗口内
+        int estimate = sketch.record(42, start + SECOND + SECOND / 4);
+        assertEquals(1 + 75, estimate, 1);
+    }
+
+    @Test
+    @DisplayName("测试空闲超过一秒后计数归零")
+    void testRecord_ResetAfterIdle() {
+        ConnectionRateSketch sketch = new ConnectionRateSketch(4096);
+        long start = 100 * SECOND;
+        for (int i = 0; i < 100; i++) {
+            sketch.record(42, start + i);
+        }
+
+        assertEquals(1, sketch.record(42, start + 3 * SECOND));
+    }
+
+    @Test
+    @DisplayName("测试大量来源下只会高估不会低估")
+    void testRecord_NeverUnderestimates() {
+        ConnectionRateSketch sketch = new ConnectionRateSketch(1024);
+        long now = 100 * SECOND;
+        for (int source = 0; source < 20_000; source++) {
+            sketch.record(source, now);
+        }
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(sketch.record(7, now) >= i + 1);
+        }
+    }
+}
@@ -202,4 +202,23 @@ class DatabaseTest {
         assertTrue(Modifier.isPublic(method.getModifiers()));
         assertEquals(java.util.List.class, method.getReturnType());
     }
+
+    @Test
+    @DisplayName("测试写操作在单一写线程上串行执行")
+    void testCallOnWriterUsesSingleWriterThread() throws Exception {
+        Class<?> workType = Class.forName(Database.class.getName() + "$SqlWork");
+        Method callOnWriter = Database.class.getDeclaredMethod("callOnWriter", workType);
+        callOnWriter.setAccessible(true);
+        Object work = java.lang.reflect.Proxy.newProxyInstance(
+                workType.getClassLoader(),
+                new Class<?>[]{workType},
+                (proxy, method, args) -> Thread.currentThread().getName()
+        );
+
+        Object first = callOnWriter.invoke(null, work);
+        Object second = callOnWriter.invoke(null, work);
+
+        assertEquals("SQLite-Writer-Thread", first);
+        assertEquals(first, second);
+    }
 }
@@ -0,0 +1,69 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("GeolocationCache 测试")
+class GeolocationCacheTest {
+
+    private static IPGeolocationHelper.LocationInfo info(String location) {
+        return new IPGeolocationHelper.LocationInfo(location, "ISP", true, "Test");
+    }
+
+    @Test
+    @DisplayName("测试同一地址的不同写法得到同一个键")
+    void testKeyOf_SameAddress() {
+        assertEquals(GeolocationCache.keyOf("::1"), GeolocationCache.keyOf("0:0:0:0:0:0:0:1"));
+        assertEquals(GeolocationCache.keyOf("2001:db8::1"), GeolocationCache.keyOf("2001:DB8:0:0:0:0:0:1"));
+        assertEquals(GeolocationCache.keyOf("1.2.3.4"), GeolocationCache.keyOf("::ffff:1.2.3.4"));
+        assertEquals(GeolocationCache.keyOf("1.2.3.4"), GeolocationCache.keyOf(" 1.2.3.4 "));
+        assertNotEquals(GeolocationCache.keyOf("1.2.3.4"), GeolocationCache.keyOf("1.2.3.5"));
+        assertEquals(new GeolocationCache.Key(0, 0xFFFF_FFFF_FFFFL), GeolocationCache.keyOf("255.255.255.255"));
+    }
+
+    @Test
+    @DisplayName("测试非 IP 字面量返回 null 且不查 DNS")
+    void testKeyOf_Invalid() {
+        assertNull(GeolocationCache.keyOf(null));
+        assertNull(GeolocationCache.keyOf("localhost"));
+        assertNull(GeolocationCache.keyOf("256.1.1.1"));
+        assertNull(GeolocationCache.keyOf("1.2.3"));
+        assertNull(GeolocationCache.keyOf("1..2.3"));
+        assertNull(GeolocationCache.keyOf("1.2.3.4.5"));
+        assertNull(GeolocationCache.keyOf("1:2:3"));
+    }
+
+    @Test
+    @DisplayName("测试超过容量时淘汰最久未使用的条目")
+    void testEviction_LeastRecentlyUsed() {
+        GeolocationCache cache = new GeolocationCache(2);
+        GeolocationCache.Key a = GeolocationCache.keyOf("1.1.1.1");
+        GeolocationCache.Key b = GeolocationCache.keyOf("2.2.2.2");
+        GeolocationCache.Key c = GeolocationCache.keyOf("3.3.3.3");
+
+        cache.put(a, info("A"));
+        cache.put(b, info("B"));
+        assertEquals("A", cache.get(a).location());
+        cache.put(c, info("C"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    @DisplayName("测试clear清空条目")
+    void testClear() {
+        GeolocationCache cache = new GeolocationCache(8);
+        cache.put(GeolocationCache.keyOf("1.1.1.1"), info("A"));
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(GeolocationCache.keyOf("1.1.1.1")));
+    }
+}
@@ -0,0 +1,119 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.HostClient;
+import neoproxy.neoproxyserver.core.management.provider.KeyDataProvider;
+import neoproxy.neoproxyserver.core.management.provider.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@DisplayName("HeartbeatBatcher 测试")
+class HeartbeatBatcherTest {
+
+    @BeforeEach
+    void setUp() {
+        HeartbeatBatcher.stop();
+    }
+
+    @AfterEach
+    void tearDown() {
+        HeartbeatBatcher.stop();
+    }
+
+    @Test
+    @DisplayName("测试多个隧道每轮只调用一次批量心跳")
+    void testSendBatch_OneCallPerRound() {
+        KeyDataProvider provider = mock(KeyDataProvider.class);
+        when(provider.sendHeartbeatBatch(anyList())).thenReturn(new boolean[]{true, true, true});
+        HostClient c1 = mockClient("key-a");
+        HostClient c2 = mockClient("key-b");
+        HostClient c3 = mockClient("key-c");
+        HeartbeatBatcher.register(c1);
+        HeartbeatBatcher.register(c2);
+        HeartbeatBatcher.register(c3);
+
+        assertEquals(3, HeartbeatBatcher.sendBatch(provider));
+        verify(provider, times(1)).sendHeartbeatBatch(anyList());
+        verify(provider, never()).sendHeartbeat(any());
+        verify(c1, never()).close();
+    }
+
+    @Test
+    @DisplayName("测试踢出决定按隧道应用")
+    void testSendBatch_KickPerTunnel() {
+        KeyDataProvider provider = mock(KeyDataProvider.class);
+        when(provider.sendHeartbeatBatch(anyList())).thenAnswer(invocation -> {
+            List<Protocol.HeartbeatPayload> payloads = invocation.getArgument(0);
+            boolean[] keepAlive = new boolean[payloads.size()];
+            for (int i = 0; i < payloads.size(); i++) {
+                keepAlive[i] = !"key-kill".equals(payloads.get(i).serial);
+            }
+            return keepAlive;
+        });
+        HostClient alive = mockClient("key-ok");
+        HostClient killed = mockClient("key-kill");
+        HeartbeatBatcher.register(alive);
+        HeartbeatBatcher.register(killed);
+
+        HeartbeatBatcher.sendBatch(provider);
+
+        verify(killed, times(1)).close();
+        verify(alive, never()).close();
+    }
+
+    @Test
+    @DisplayName("测试已停止或无密钥的客户端被移除")
+    void testSendBatch_SkipStopped() {
+        KeyDataProvider provider = mock(KeyDataProvider.class);
+        HostClient stopped = mockClient("key-a");
+        when(stopped.isStopped()).thenReturn(true);
+        HostClient noKey = mock(HostClient.class);
+        HeartbeatBatcher.register(stopped);
+        HeartbeatBatcher.register(noKey);
+
+        assertEquals(0, HeartbeatBatcher.sendBatch(provider));
+        assertEquals(0, HeartbeatBatcher.size());
+        verify(provider, never()).sendHeartbeatBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("测试register/unregister")
+    void testRegisterUnregister() {
+        HostClient client = mockClient("key-a");
+
+        HeartbeatBatcher.register(client);
+        HeartbeatBatcher.register(client);
+        assertEquals(1, HeartbeatBatcher.size());
+
+        HeartbeatBatcher.unregister(client);
+        assertEquals(0, HeartbeatBatcher.size());
+        assertEquals(0, HeartbeatBatcher.sendBatch(null));
+    }
+
+    @Test
+    @DisplayName("测试私有构造器")
+    void testPrivateConstructor() throws Exception {
+        Constructor<HeartbeatBatcher> constructor = HeartbeatBatcher.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        assertNotNull(constructor.newInstance());
+    }
+
+    private static HostClient mockClient(String keyName) {
+        HostClient client = mock(HostClient.class);
+        SequenceKey key = new SequenceKey(keyName, 1000, "PERMANENT", "8080", 10, true, true);
+        Protocol.HeartbeatPayload payload = new Protocol.HeartbeatPayload();
+        payload.serial = keyName;
+        when(client.getKey()).thenReturn(key);
+        when(client.buildHeartbeatPayload()).thenReturn(payload);
+        return client;
+    }
+}
@@ -65,6 +65,13 @@ class IPCheckerTest {
         assertFalse(result);
     }
 
+    @Test
+    @DisplayName("测试isBanned方法 - 未封禁地址与null")
+    void testIsBanned_NotBanned() throws Exception {
+        assertFalse(IPChecker.isBanned(java.net.InetAddress.getByName("8.8.8.8")));
+        assertFalse(IPChecker.isBanned(null));
+    }
+
     @Test
     @DisplayName("测试exec方法 - null参数")
     void testExec_NullIP() {
@@ -83,6 +90,65 @@ class IPCheckerTest {
         assertFalse(IPChecker.exec("8.8.8.8", 999));
     }
 
+    @Test
+    @DisplayName("测试isValidRule - 单个地址与CIDR前缀")
+    void testIsValidRule_AddressesAndPrefixes() {
+        assertTrue(IPChecker.isValidRule("8.8.8.8"));
+        assertTrue(IPChecker.isValidRule("10.0.0.0/24"));
+        assertTrue(IPChecker.isValidRule("0.0.0.0/0"));
+        assertTrue(IPChecker.isValidRule("2001:db8::/32"));
+        assertTrue(IPChecker.isValidRule("2001:db8::1/128"));
+
+        assertFalse(IPChecker.isValidRule(null));
+        assertFalse(IPChecker.isValidRule("1.2.3.4/33"));
+        assertFalse(IPChecker.isValidRule("1.2.3.4/x"));
+        assertFalse(IPChecker.isValidRule("1.2.3.4/"));
+        assertFalse(IPChecker.isValidRule("1.2.3.4/-1"));
+        assertFalse(IPChecker.isValidRule("2001:db8::/129"));
+        assertFalse(IPChecker.isValidRule("256.1.1.1/8"));
+    }
+
+    @Test
+    @DisplayName("测试normalizeRule - 清零主机位，全长前缀退化为单个地址")
+    void testNormalizeRule_MasksHostBits() {
+        assertEquals("10.1.2.0/24", IPChecker.normalizeRule("10.1.2.3/24"));
+        assertEquals("10.0.0.0/9", IPChecker.normalizeRule(" 10.127.255.255/9 "));
+        assertEquals("0.0.0.0/0", IPChecker.normalizeRule("1.2.3.4/0"));
+        assertEquals("1.2.3.4", IPChecker.normalizeRule("1.2.3.4/32"));
+        assertEquals("2001:db8:0:0:0:0:0:0/32", IPChecker.normalizeRule("2001:db8:ffff::1/32"));
+    }
+
+    @Test
+    @DisplayName("测试parseBanDuration - 秒数与单位后缀")
+    void testParseBanDuration() {
+        assertEquals(90, IPChecker.parseBanDuration("90"));
+        assertEquals(90, IPChecker.parseBanDuration("90s"));
+        assertEquals(1800, IPChecker.parseBanDuration("30m"));
+        assertEquals(43200, IPChecker.parseBanDuration("12H"));
+        assertEquals(604800, IPChecker.parseBanDuration(" 7d "));
+
+        assertEquals(-1, IPChecker.parseBanDuration(null));
+        assertEquals(-1, IPChecker.parseBanDuration("0"));
+        assertEquals(-1, IPChecker.parseBanDuration("-5m"));
+        assertEquals(-1, IPChecker.parseBanDuration("1w"));
+        assertEquals(-1, IPChecker.parseBanDuration("1.5h"));
+        assertEquals(-1, IPChecker.parseBanDuration("999999999999d"));
+    }
+
+    @Test
+    @DisplayName("测试BanInfo到期判断与显示")
+    void testBanInfo_Expiry() {
+        IPChecker.BanInfo permanent = new IPChecker.BanInfo("1.1.1.1", "", "");
+        IPChecker.BanInfo timed = new IPChecker.BanInfo("1.1.1.1", "", "", 1_000);
+
+        assertEquals(0, permanent.expiresAt);
+        assertFalse(permanent.isExpired(Long.MAX_VALUE));
+        assertFalse(timed.isExpired(999));
+        assertTrue(timed.isExpired(1_000));
+        assertEquals("PERMANENT", IPChecker.formatExpiry(permanent));
+        assertNotEquals("PERMANENT", IPChecker.formatExpiry(timed));
+    }
+
     @Test
     @DisplayName("测试listBannedIPs方法")
     void testListBannedIPs() {
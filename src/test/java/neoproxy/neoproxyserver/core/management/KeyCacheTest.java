@@ -0,0 +1,236 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("KeyCache 测试")
+class KeyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    private static SequenceKey key(String name) {
+        return new SequenceKey(name, 100, "PERMANENT", "10000", 10, true, false);
+    }
+
+    private KeyCache cache(int maxEntries, KeyCache.Refresher refresher) {
+        return new KeyCache(maxEntries, 10, 5, refresher, null, clock::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    @DisplayName("测试超出容量时淘汰最久未使用的条目")
+    void testPut_EvictsLeastRecentlyUsed() {
+        KeyCache cache = cache(2, null);
+        cache.putIfAbsent("a", key("a"));
+        cache.putIfAbsent("b", key("b"));
+        assertNotNull(cache.get("a"));
+
+        cache.putIfAbsent("c", key("c"));
+
+        assertNotNull(cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertNotNull(cache.peek("c"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    @DisplayName("测试在线持有的条目不会被淘汰，释放后可以淘汰")
+    void testAcquire_PinsEntry() {
+        KeyCache cache = cache(1, null);
+        SequenceKey a = key("a");
+        assertSame(a, cache.acquire("a", a));
+
+        cache.putIfAbsent("b", key("b"));
+        assertSame(a, cache.peek("a"));
+        assertNull(cache.peek("b"));
+
+        cache.release("a");
+        cache.putIfAbsent("c", key("c"));
+        assertNull(cache.peek("a"));
+        assertNotNull(cache.peek("c"));
+    }
+
+    @Test
+    @DisplayName("测试钉住条件成立时条目不被淘汰也不过期")
+    void testPinnedPredicate() {
+        KeyCache cache = new KeyCache(1, 10, 5, null, k -> k.getName().equals("dirty"), clock::get);
+        SequenceKey dirty = key("dirty");
+        cache.putIfAbsent("dirty", dirty);
+        cache.putIfAbsent("clean", key("clean"));
+
+        assertSame(dirty, cache.peek("dirty"));
+        assertNull(cache.peek("clean"));
+
+        advanceSeconds(60);
+        assertSame(dirty, cache.get("dirty"));
+    }
+
+    @Test
+    @DisplayName("测试正向条目超过 TTL 后视为未命中")
+    void testGet_ExpiresAfterTtl() {
+        KeyCache cache = cache(10, null);
+        cache.putIfAbsent("a", key("a"));
+        advanceSeconds(9);
+        assertNotNull(cache.get("a"));
+
+        advanceSeconds(1);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("测试 putIfAbsent 保留先放入的对象")
+    void testPutIfAbsent_KeepsFirstObject() {
+        KeyCache cache = cache(10, null);
+        SequenceKey first = key("a");
+        assertSame(first, cache.putIfAbsent("a", first));
+        assertSame(first, cache.putIfAbsent("a", key("a")));
+    }
+
+    @Test
+    @DisplayName("测试 put 替换对象但保留持有计数")
+    void testPut_ReplacesKeepingRefs() {
+        KeyCache cache = cache(1, null);
+        cache.acquire("a", key("a"));
+        SequenceKey replacement = key("a");
+        cache.put("a", replacement);
+        cache.putIfAbsent("b", key("b"));
+
+        assertSame(replacement, cache.peek("a"));
+        assertNull(cache.peek("b"));
+    }
+
+    @Test
+    @DisplayName("测试负向缓存在 TTL 内拒绝，过期后放行")
+    void testNegativeCache() {
+        KeyCache cache = cache(10, null);
+        assertFalse(cache.isMissing("ghost"));
+        cache.putMissing("ghost");
+        assertTrue(cache.isMissing("ghost"));
+        assertEquals(1, cache.getNegativeHits());
+
+        advanceSeconds(5);
+        assertFalse(cache.isMissing("ghost"));
+        assertEquals(0, cache.negativeSize());
+    }
+
+    @Test
+    @DisplayName("测试负向缓存有界，放入正向条目时清除负向条目")
+    void testNegativeCache_BoundedAndClearedByPut() {
+        KeyCache cache = cache(2, null);
+        cache.putMissing("x");
+        cache.putMissing("y");
+        cache.putMissing("z");
+        assertEquals(2, cache.negativeSize());
+        assertFalse(cache.isMissing("x"));
+
+        cache.putIfAbsent("y", key("y"));
+        assertFalse(cache.isMissing("y"));
+    }
+
+    @Test
+    @DisplayName("测试 removeMissing 只清除负向条目，不逐出已缓存的密钥")
+    void testRemoveMissing_KeepsCachedEntry() {
+        KeyCache cache = cache(10, null);
+        SequenceKey a = key("a");
+        cache.putIfAbsent("a", a);
+        cache.putMissing("ghost");
+
+        cache.removeMissing("ghost");
+        cache.removeMissing("a");
+
+        assertFalse(cache.isMissing("ghost"));
+        assertSame(a, cache.peek("a"));
+    }
+
+    @Test
+    @DisplayName("测试负向 TTL 为 0 时不缓存")
+    void testNegativeCache_Disabled() {
+        KeyCache cache = new KeyCache(10, 10, 0, null, null, clock::get);
+        cache.putMissing("ghost");
+        assertFalse(cache.isMissing("ghost"));
+        assertEquals(0, cache.negativeSize());
+    }
+
+    @Test
+    @DisplayName("测试接近过期的热点条目被异步提前刷新，且只刷新一次")
+    void testGet_RefreshAhead() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        KeyCache cache = cache(10, k -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        SequenceKey a = key("a");
+        cache.putIfAbsent("a", a);
+
+        advanceSeconds(7);
+        assertSame(a, cache.get("a"));
+        assertEquals(0, calls.get());
+
+        advanceSeconds(2);
+        assertSame(a, cache.get("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertSame(a, cache.get("a"));
+        proceed.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getRefreshes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getRefreshes());
+
+        // 刷新后重新计算寿命
+        advanceSeconds(5);
+        assertSame(a, cache.get("a"));
+    }
+
+    @Test
+    @DisplayName("测试刷新发现密钥已删除时移除条目")
+    void testRefresh_RemovesDeletedKey() throws Exception {
+        KeyCache cache = cache(10, k -> false);
+        cache.putIfAbsent("a", key("a"));
+        advanceSeconds(9);
+        assertNotNull(cache.get("a"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.peek("a") != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(cache.peek("a"));
+    }
+
+    @Test
+    @DisplayName("测试 remove 与 snapshot")
+    void testRemoveAndSnapshot() {
+        KeyCache cache = cache(10, null);
+        cache.putIfAbsent("a", key("a"));
+        cache.putIfAbsent("b", key("b"));
+        cache.remove("a");
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.snapshot().containsKey("b"));
+        assertFalse(cache.contains("a"));
+        assertEquals(10, cache.maxEntries());
+    }
+}
@@ -0,0 +1,91 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("KeyTransfer 测试")
+class KeyTransferTest {
+
+    @Test
+    @DisplayName("测试 CSV 行解析：必填五列，启用与 WebHTML 可省略")
+    void testParseCsvLine_Valid() {
+        SequenceKey key = KeyTransfer.parseCsvLine("alpha, 1024, 2099/1/2-3:04, 20000-20010, 10");
+        assertNotNull(key);
+        assertEquals("alpha", key.getName());
+        assertEquals(1024, key.getBalance(), 1e-9);
+        assertEquals("2099/01/02-03:04", key.getExpireTime());
+        assertEquals("20000-20010", key.getPortStr());
+        assertTrue(key.isEnable());
+        assertFalse(key.isHTMLEnabled());
+
+        SequenceKey flagged = KeyTransfer.parseCsvLine("beta,1,PERMANENT,20000,1,off,yes");
+        assertNotNull(flagged);
+        assertEquals("PERMANENT", flagged.getExpireTime());
+        assertFalse(flagged.isEnable());
+        assertTrue(flagged.isHTMLEnabled());
+    }
+
+    @Test
+    @DisplayName("测试 CSV 行解析：非法字段返回 null")
+    void testParseCsvLine_Invalid() {
+        assertNull(KeyTransfer.parseCsvLine("alpha,1024,2099/01/01-00:00,20000"));
+        assertNull(KeyTransfer.parseCsvLine("alpha,abc,2099/01/01-00:00,20000,1"));
+        assertNull(KeyTransfer.parseCsvLine("alpha,1,tomorrow,20000,1"));
+        assertNull(KeyTransfer.parseCsvLine("alpha,1,2099/01/01-00:00,70000,1"));
+        assertNull(KeyTransfer.parseCsvLine("alpha,1,2099/01/01-00:00,20000,NaN"));
+        assertNull(KeyTransfer.parseCsvLine("al pha,1,2099/01/01-00:00,20000,1"));
+        assertNull(KeyTransfer.parseCsvLine("alpha,1,2099/01/01-00:00,20000,1,maybe"));
+    }
+
+    @Test
+    @DisplayName("测试 CSV 拆分处理引号、转义与未闭合引号")
+    void testSplitCsv_Quotes() {
+        assertEquals(List.of("a,b", "say \"hi\"", "c"), KeyTransfer.splitCsv("\"a,b\",\"say \"\"hi\"\"\",c"));
+        assertEquals(List.of("", ""), KeyTransfer.splitCsv(","));
+        assertNull(KeyTransfer.splitCsv("\"open,1"));
+    }
+
+    @Test
+    @DisplayName("测试 CSV 导出行可以原样导回")
+    void testToCsvLine_RoundTrip() {
+        SequenceKey original = new SequenceKey("a,b", 12.5, "PERMANENT", "20000-20001", 3, false, true);
+        SequenceKey parsed = KeyTransfer.parseCsvLine(KeyTransfer.toCsvLine(original));
+
+        assertNotNull(parsed);
+        assertEquals("a,b", parsed.getName());
+        assertEquals(12.5, parsed.getBalance(), 1e-9);
+        assertEquals("20000-20001", parsed.getPortStr());
+        assertFalse(parsed.isEnable());
+        assertTrue(parsed.isHTMLEnabled());
+    }
+
+    @Test
+    @DisplayName("测试 JSONL 行解析与导出往返")
+    void testJsonLine_RoundTrip() {
+        SequenceKey original = new SequenceKey("alpha", 64, "2099/12/31-23:59", "30000", 5, true, false);
+        SequenceKey parsed = KeyTransfer.parseJsonLine(KeyTransfer.toJsonLine(original));
+
+        assertNotNull(parsed);
+        assertEquals("alpha", parsed.getName());
+        assertEquals(64, parsed.getBalance(), 1e-9);
+        assertEquals("2099/12/31-23:59", parsed.getExpireTime());
+
+        assertNull(KeyTransfer.parseJsonLine("{\"name\":\"alpha\"}"));
+        assertNull(KeyTransfer.parseJsonLine("{not json"));
+        assertNull(KeyTransfer.parseJsonLine("{\"name\":\"a\",\"balance\":1,\"expireTime\":\"PERMANENT\",\"port\":\"1\",\"rate\":1,\"enable\":\"yes\"}"));
+    }
+
+    @Test
+    @DisplayName("测试按扩展名识别 JSONL")
+    void testIsJsonl_ByExtension() {
+        assertTrue(KeyTransfer.isJsonl(new File("keys.jsonl")));
+        assertTrue(KeyTransfer.isJsonl(new File("KEYS.NDJSON")));
+        assertFalse(KeyTransfer.isJsonl(new File("keys.csv")));
+        assertFalse(KeyTransfer.isJsonl(new File("keys.txt")));
+    }
+}
@@ -0,0 +1,23 @@
+package neoproxy.neoproxyserver.core.management;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 测试用入口：{@link MappedXdbSearcher} 是包内类，包外的基准通过这里映射 xdb 文件并查询。
+ */
+public final class MappedXdbSearcherAccess {
+    private final MappedXdbSearcher searcher;
+
+    private MappedXdbSearcherAccess(MappedXdbSearcher searcher) {
+        this.searcher = searcher;
+    }
+
+    public static MappedXdbSearcherAccess open(Path xdbFile, int ipVersion) throws IOException {
+        return new MappedXdbSearcherAccess(MappedXdbSearcher.open(xdbFile, ipVersion));
+    }
+
+    public String search(String ip) throws IOException {
+        return searcher.search(ip);
+    }
+}
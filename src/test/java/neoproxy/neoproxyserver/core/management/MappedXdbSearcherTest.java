@@ -0,0 +1,163 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MappedXdbSearcher 测试")
+class MappedXdbSearcherTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 按 xdb 格式写一个小库；每段不得跨越前两个字节决定的向量索引格
+     */
+    private static Path writeXdb(Path file, int ipVersion, List<String[]> segments) throws Exception {
+        int ipBytes = ipVersion == 4 ? 4 : 16;
+        int segmentSize = ipBytes * 2 + 6;
+        int vectorLength = MappedXdbSearcher.VECTOR_INDEX_COLS * MappedXdbSearcher.VECTOR_INDEX_COLS
+                * MappedXdbSearcher.VECTOR_INDEX_SIZE;
+        int dataStart = MappedXdbSearcher.HEADER_LENGTH + vectorLength;
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] dataPtrs = new int[segments.size()];
+        int[] dataLengths = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            byte[] region = segments.get(i)[2].getBytes(StandardCharsets.UTF_8);
+            dataPtrs[i] = dataStart + data.size();
+            dataLengths[i] = region.length;
+            data.write(region);
+        }
+        int indexStart = dataStart + data.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(indexStart + segments.size() * segmentSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(0, (short) 3);
+        buffer.putInt(8, indexStart);
+        buffer.putInt(12, indexStart + (segments.size() - 1) * segmentSize);
+        buffer.putShort(16, (short) ipVersion);
+        buffer.putShort(18, (short) 4);
+        buffer.put(dataStart, data.toByteArray());
+
+        for (int i = 0; i < segments.size(); i++) {
+            byte[] start = InetAddress.getByName(segments.get(i)[0]).getAddress();
+            byte[] end = InetAddress.getByName(segments.get(i)[1]).getAddress();
+            int ptr = indexStart + i * segmentSize;
+            putIp(buffer, ptr, start);
+            putIp(buffer, ptr + ipBytes, end);
+            buffer.putShort(ptr + ipBytes * 2, (short) dataLengths[i]);
+            buffer.putInt(ptr + ipBytes * 2 + 2, dataPtrs[i]);
+
+            int vector = MappedXdbSearcher.HEADER_LENGTH
+                    + ((start[0] & 0xFF) * MappedXdbSearcher.VECTOR_INDEX_COLS + (start[1] & 0xFF))
+                    * MappedXdbSearcher.VECTOR_INDEX_SIZE;
+            if (buffer.getInt(vector) == 0) {
+                buffer.putInt(vector, ptr);
+            }
+            buffer.putInt(vector + 4, ptr);
+        }
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    // IPv4 以小端存放，IPv6 以网络字节序存放
+    private static void putIp(ByteBuffer buffer, int offset, byte[] ip) {
+        for (int i = 0; i < ip.length; i++) {
+            buffer.put(offset + i, ip.length == 4 ? ip[3 - i] : ip[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("测试IPv4库 - 段内、边界与未覆盖地址")
+    void testSearch_IPv4() throws Exception {
+        Path file = writeXdb(dir.resolve("v4.xdb"), 4, List.of(
+                new String[]{"1.2.0.0", "1.2.3.255", "中国|0|北京|电信|CN"},
+                new String[]{"1.2.4.0", "1.2.4.9", "A|0|0|0|0"},
+                new String[]{"1.2.4.10", "1.2.255.255", "B|0|0|0|0"},
+                new String[]{"8.8.0.0", "8.8.255.255", "美国|0|0|Google|US"}));
+        MappedXdbSearcher searcher = MappedXdbSearcher.open(file, 4);
+
+        assertEquals("中国|0|北京|电信|CN", searcher.search("1.2.3.4"));
+        assertEquals("中国|0|北京|电信|CN", searcher.search("1.2.0.0"));
+        assertEquals("A|0|0|0|0", searcher.search("1.2.4.9"));
+        assertEquals("B|0|0|0|0", searcher.search("1.2.4.10"));
+        assertEquals("B|0|0|0|0", searcher.search(" 1.2.200.1 "));
+        assertEquals("美国|0|0|Google|US", searcher.search("8.8.8.8"));
+        assertEquals("", searcher.search("9.9.9.9"));
+    }
+
+    @Test
+    @DisplayName("测试IPv6库 - 按网络字节序比较，IPv4 地址按 mapped 形式查询")
+    void testSearch_IPv6() throws Exception {
+        Path file = writeXdb(dir.resolve("v6.xdb"), 6, List.of(
+                new String[]{"::ffff:0:0", "::ffff:ffff:ffff", "IPv4|0|0|0|0"},
+                new String[]{"2001:db8::", "2001:db8:7fff:ffff:ffff:ffff:ffff:ffff", "Doc-Low|0|0|0|0"},
+                new String[]{"2001:db8:8000::", "2001:db8:ffff:ffff:ffff:ffff:ffff:ffff", "Doc-High|0|0|0|0"}));
+        MappedXdbSearcher searcher = MappedXdbSearcher.open(file, 6);
+
+        assertEquals("Doc-Low|0|0|0|0", searcher.search("2001:db8::1"));
+        assertEquals("Doc-High|0|0|0|0", searcher.search("2001:db8:8000::1"));
+        assertEquals("IPv4|0|0|0|0", searcher.search("::ffff:1.2.3.4"));
+        assertEquals("IPv4|0|0|0|0", searcher.search("1.2.3.4"));
+        assertEquals("", searcher.search("2400::1"));
+    }
+
+    @Test
+    @DisplayName("测试多线程共用同一实例")
+    void testSearch_Concurrent() throws Exception {
+        Path file = writeXdb(dir.resolve("v4.xdb"), 4, List.of(
+                new String[]{"10.1.0.0", "10.1.127.255", "Low|0|0|0|0"},
+                new String[]{"10.1.128.0", "10.1.255.255", "High|0|0|0|0"}));
+        MappedXdbSearcher searcher = MappedXdbSearcher.open(file, 4);
+
+        Thread[] threads = new Thread[4];
+        int[] wrong = new int[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    int third = i & 0xFF;
+                    String expected = third < 128 ? "Low|0|0|0|0" : "High|0|0|0|0";
+                    if (!expected.equals(searcher.search(new byte[]{10, 1, (byte) third, (byte) index}))) {
+                        wrong[index]++;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int count : wrong) {
+            assertEquals(0, count);
+        }
+    }
+
+    @Test
+    @DisplayName("测试库版本不符、文件过短与非法地址")
+    void testOpen_Rejected() throws Exception {
+        Path v4 = writeXdb(dir.resolve("v4.xdb"), 4, List.<String[]>of(new String[]{"1.0.0.0", "1.0.255.255", "X"}));
+        assertThrows(IOException.class, () -> MappedXdbSearcher.open(v4, 6));
+
+        Path truncated = dir.resolve("short.xdb");
+        Files.write(truncated, new byte[1024]);
+        assertThrows(IOException.class, () -> MappedXdbSearcher.open(truncated, 4));
+
+        MappedXdbSearcher searcher = MappedXdbSearcher.open(v4, 4);
+        assertThrows(IOException.class, () -> searcher.search("not-an-ip"));
+        assertThrows(IOException.class, () -> searcher.search("2001:db8::1"));
+        assertThrows(IllegalArgumentException.class, () -> searcher.search(new byte[16]));
+    }
+}
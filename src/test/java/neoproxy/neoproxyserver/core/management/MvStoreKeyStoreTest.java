@@ -0,0 +1,207 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MvStoreKeyStore 测试")
+class MvStoreKeyStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private MvStoreKeyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MvStoreKeyStore(dir.resolve("sk.mv").toString());
+        store.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static KeyDelta debit(String name, double amount) {
+        return new KeyDelta(name, 0, amount, 0, null, null, 0, true, false);
+    }
+
+    @Test
+    @DisplayName("测试创建后读取，onlyEnabled 过滤禁用密钥")
+    void testCreateKey_GetAndOnlyEnabled() {
+        assertTrue(store.createKey("alpha", 100, "PERMANENT", "20000-20010", 5));
+        assertTrue(store.exists("alpha"));
+        assertFalse(store.exists("beta"));
+
+        SequenceKey key = store.getKey("alpha", true);
+        assertNotNull(key);
+        assertEquals(100, key.getBalance(), 1e-9);
+        assertEquals("PERMANENT", key.getExpireTime());
+        assertEquals("20000-20010", key.getPortStr());
+        assertTrue(key.isEnable());
+
+        assertTrue(store.updateStatus("alpha", false));
+        assertNull(store.getKey("alpha", true));
+        assertNotNull(store.getKey("alpha", false));
+    }
+
+    @Test
+    @DisplayName("测试重复创建返回 false 且不覆盖原值")
+    void testCreateKey_DuplicateRejected() {
+        assertTrue(store.createKey("alpha", 100, "PERMANENT", "20000", 5));
+        assertFalse(store.createKey("alpha", 1, "PERMANENT", "30000", 1));
+        assertEquals(100, store.getKey("alpha", false).getBalance(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("测试增量变更：debit 扣减、字段绝对值写入、缺失行整行写入")
+    void testApplyDelta_Semantics() {
+        store.createKey("alpha", 100, "PERMANENT", "20000", 5);
+
+        assertTrue(store.applyDelta(debit("alpha", 30)));
+        assertEquals(70, store.getKey("alpha", false).getBalance(), 1e-9);
+
+        assertTrue(store.applyDelta(new KeyDelta("alpha", KeyDelta.BALANCE | KeyDelta.PORT, 0,
+                500, "ignored", "30000", 99, false, true)));
+        SequenceKey key = store.getKey("alpha", false);
+        assertEquals(500, key.getBalance(), 1e-9);
+        assertEquals("30000", key.getPortStr());
+        // 未标记的字段保持原值
+        assertEquals("PERMANENT", key.getExpireTime());
+        assertTrue(key.isEnable());
+
+        assertTrue(store.applyDelta(new KeyDelta("beta", 0, 0,
+                42, "PERMANENT", "40000", 3, true, false)));
+        assertEquals(42, store.getKey("beta", false).getBalance(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("测试批量增量与批量保存")
+    void testApplyDeltasAndSaveKeys_Batch() {
+        store.createKey("alpha", 100, "PERMANENT", "20000", 5);
+        store.createKey("beta", 100, "PERMANENT", "20001", 5);
+
+        assertEquals(2, store.applyDeltas(List.of(debit("alpha", 1), debit("beta", 2))));
+        assertEquals(99, store.getKey("alpha", false).getBalance(), 1e-9);
+        assertEquals(98, store.getKey("beta", false).getBalance(), 1e-9);
+
+        List<SequenceKey> keys = List.of(
+                new SequenceKey("gamma", 10, "PERMANENT", "20002", 1, true, false),
+                new SequenceKey("delta", 20, "PERMANENT", "20003", 1, false, true));
+        assertEquals(2, store.saveKeys(keys));
+        assertEquals(0, store.saveKeys(List.of()));
+        assertFalse(store.getKey("delta", false).isEnable());
+    }
+
+    @Test
+    @DisplayName("测试账本段按段号幂等合并")
+    void testApplyLedgerSegment_Idempotent() {
+        store.createKey("alpha", 100, "PERMANENT", "20000", 5);
+        assertEquals(0, store.getLastLedgerSegment());
+
+        assertTrue(store.applyLedgerSegment(1, Map.of("alpha", 10.0)));
+        assertTrue(store.applyLedgerSegment(1, Map.of("alpha", 10.0)));
+        assertEquals(90, store.getKey("alpha", false).getBalance(), 1e-9);
+        assertEquals(1, store.getLastLedgerSegment());
+
+        // 已删除密钥的扣减被忽略，段号照常推进
+        assertTrue(store.applyLedgerSegment(2, Map.of("ghost", 5.0)));
+        assertEquals(2, store.getLastLedgerSegment());
+        assertFalse(store.exists("ghost"));
+    }
+
+    @Test
+    @DisplayName("测试 getAllKeys 按名称升序")
+    void testGetAllKeys_Sorted() {
+        store.createKey("charlie", 1, "PERMANENT", "20000", 1);
+        store.createKey("alpha", 1, "PERMANENT", "20001", 1);
+        store.createKey("bravo", 1, "PERMANENT", "20002", 1);
+
+        List<String> names = store.getAllKeys().stream().map(SequenceKey::getName).toList();
+        assertEquals(List.of("alpha", "bravo", "charlie"), names);
+
+        assertTrue(store.deleteKey("bravo"));
+        assertFalse(store.deleteKey("bravo"));
+        assertEquals(2, store.getAllKeys().size());
+    }
+
+    @Test
+    @DisplayName("测试批量插入跳过已存在的密钥且不覆盖")
+    void testInsertKeys_SkipsExisting() {
+        store.createKey("alpha", 100, "PERMANENT", "20000", 5);
+
+        int inserted = store.insertKeys(List.of(
+                new SequenceKey("alpha", 1, "PERMANENT", "30000", 1, true, false),
+                new SequenceKey("beta", 2, "PERMANENT", "30001", 1, true, false)));
+
+        assertEquals(1, inserted);
+        assertEquals(100, store.getKey("alpha", false).getBalance(), 1e-9);
+        assertEquals(2, store.getKey("beta", false).getBalance(), 1e-9);
+        assertEquals(2, store.countKeys());
+    }
+
+    @Test
+    @DisplayName("测试键集分页按名称续读且不重复不遗漏")
+    void testGetKeysAfter_Pages() {
+        for (int i = 0; i < 25; i++) {
+            store.createKey(String.format("key-%02d", i), 1, "PERMANENT", "20000", 1);
+        }
+
+        List<SequenceKey> first = store.getKeysAfter(null, 10);
+        assertEquals(10, first.size());
+        assertEquals("key-00", first.getFirst().getName());
+
+        List<SequenceKey> second = store.getKeysAfter(first.getLast().getName(), 10);
+        assertEquals("key-10", second.getFirst().getName());
+
+        List<SequenceKey> last = store.getKeysAfter(second.getLast().getName(), 10);
+        assertEquals(5, last.size());
+        assertEquals("key-24", last.getLast().getName());
+        assertTrue(store.getKeysAfter("key-24", 10).isEmpty());
+        // 游标不必是现存的密钥
+        assertEquals("key-05", store.getKeysAfter("key-04x", 1).getFirst().getName());
+    }
+
+    @Test
+    @DisplayName("测试分页读取失败返回 null，与读完的空页区分")
+    void testGetKeysAfter_FailureReturnsNull() {
+        store.createKey("alpha", 1, "PERMANENT", "20000", 1);
+        assertTrue(store.getKeysAfter("alpha", 10).isEmpty());
+
+        store.close();
+        assertNull(store.getKeysAfter(null, 10));
+    }
+
+    @Test
+    @DisplayName("测试关闭后重新打开数据仍在")
+    void testReopen_Persists() {
+        store.createKey("alpha", 100, "PERMANENT", "20000", 5);
+        assertTrue(store.updateBalance("alpha", 25));
+        store.applyLedgerSegment(7, Map.of());
+        store.close();
+
+        store.open();
+        assertEquals(75, store.getKey("alpha", false).getBalance(), 1e-9);
+        assertEquals(7, store.getLastLedgerSegment());
+    }
+
+    @Test
+    @DisplayName("测试关闭后写操作返回失败值而不抛异常")
+    void testClosed_WritesReturnFallback() {
+        store.close();
+        assertFalse(store.createKey("alpha", 1, "PERMANENT", "20000", 1));
+        assertFalse(store.updateBalance("alpha", 1));
+        assertEquals(-1, store.applyDeltas(List.of(debit("alpha", 1))));
+        assertNull(store.getKey("alpha", false));
+        assertTrue(store.getAllKeys().isEmpty());
+    }
+}
@@ -0,0 +1,147 @@
+package neoproxy.neoproxyserver.core.management;
+
+import neoproxy.neoproxyserver.core.constants.ServerConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PortReservationCache 测试")
+class PortReservationCacheTest {
+
+    private int originalGraceSeconds;
+
+    @BeforeEach
+    void setUp() {
+        originalGraceSeconds = PortReservationCache.GRACE_SECONDS;
+        PortReservationCache.GRACE_SECONDS = 60;
+        PortReservationCache.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        PortReservationCache.GRACE_SECONDS = originalGraceSeconds;
+        PortReservationCache.clear();
+    }
+
+    @Test
+    @DisplayName("测试reserve/claim - 同一密钥取回原端口")
+    void testReserveAndClaim() {
+        PortReservationCache.reserve("key-a", 50001);
+
+        assertEquals(50001, PortReservationCache.claim("key-a"));
+        assertEquals(-1, PortReservationCache.claim("key-a"));
+    }
+
+    @Test
+    @DisplayName("测试claim - 未保留的密钥返回-1")
+    void testClaim_Unknown() {
+        assertEquals(-1, PortReservationCache.claim("missing"));
+        assertEquals(-1, PortReservationCache.claim(null));
+    }
+
+    @Test
+    @DisplayName("测试reserve - 非法参数被忽略")
+    void testReserve_InvalidArguments() {
+        PortReservationCache.reserve(null, 50001);
+        PortReservationCache.reserve("key-a", 0);
+        PortReservationCache.reserve("key-a", -1);
+
+        assertEquals(0, PortReservationCache.size());
+    }
+
+    @Test
+    @DisplayName("测试reserve - 宽限期为0时禁用保留")
+    void testReserve_Disabled() {
+        PortReservationCache.GRACE_SECONDS = 0;
+
+        PortReservationCache.reserve("key-a", 50001);
+
+        assertEquals(-1, PortReservationCache.claim("key-a"));
+    }
+
+    @Test
+    @DisplayName("测试isReservedByOther - 仅对其他密钥生效")
+    void testIsReservedByOther() {
+        PortReservationCache.reserve("key-a", 50001);
+
+        assertTrue(PortReservationCache.isReservedByOther(50001, "key-b"));
+        assertFalse(PortReservationCache.isReservedByOther(50001, "key-a"));
+        assertFalse(PortReservationCache.isReservedByOther(50002, "key-b"));
+    }
+
+    @Test
+    @DisplayName("测试reserve - 同一密钥重新保留会释放旧端口")
+    void testReserve_SameKeyNewPort() {
+        PortReservationCache.reserve("key-a", 50001);
+        PortReservationCache.reserve("key-a", 50002);
+
+        assertFalse(PortReservationCache.isReservedByOther(50001, "key-b"));
+        assertEquals(50002, PortReservationCache.claim("key-a"));
+    }
+
+    @Test
+    @DisplayName("测试reserve - 端口被另一密钥重新保留时覆盖旧保留")
+    void testReserve_PortTakenOver() {
+        PortReservationCache.reserve("key-a", 50001);
+        PortReservationCache.reserve("key-b", 50001);
+
+        assertEquals(-1, PortReservationCache.claim("key-a"));
+        assertEquals(50001, PortReservationCache.claim("key-b"));
+    }
+
+    @Test
+    @DisplayName("测试TTL - 过期保留被淘汰")
+    void testExpiry() throws Exception {
+        PortReservationCache.GRACE_SECONDS = 1;
+        PortReservationCache.reserve("key-a", 50001);
+
+        Thread.sleep(1100);
+
+        assertEquals(0, PortReservationCache.size());
+        assertEquals(-1, PortReservationCache.claim("key-a"));
+        assertFalse(PortReservationCache.isReservedByOther(50001, "key-b"));
+    }
+
+    @Test
+    @DisplayName("测试TTL - reload缩短宽限期后，新保留先于旧保留过期")
+    void testExpiry_GraceShortenedAfterReload() throws Exception {
+        PortReservationCache.reserve("key-a", 50001);
+        PortReservationCache.GRACE_SECONDS = 1;
+        PortReservationCache.reserve("key-b", 50002);
+
+        Thread.sleep(1100);
+
+        assertEquals(1, PortReservationCache.size());
+        assertFalse(PortReservationCache.isReservedByOther(50002, "key-c"));
+        assertEquals(-1, PortReservationCache.claim("key-b"));
+        assertEquals(50001, PortReservationCache.claim("key-a"));
+    }
+
+    @Test
+    @DisplayName("测试容量上限 - 超出后淘汰最早的保留")
+    void testBounded() {
+        int max = ServerConstants.PORT_RESERVE_MAX_ENTRIES;
+        for (int i = 0; i <= max; i++) {
+            PortReservationCache.reserve("key-" + i, 1 + i);
+        }
+
+        assertEquals(max, PortReservationCache.size());
+        assertEquals(-1, PortReservationCache.claim("key-0"));
+        assertFalse(PortReservationCache.isReservedByOther(1, "other"));
+        assertEquals(max + 1, PortReservationCache.claim("key-" + max));
+    }
+
+    @Test
+    @DisplayName("测试私有构造器")
+    void testPrivateConstructor() throws Exception {
+        Constructor<PortReservationCache> constructor = PortReservationCache.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        assertNotNull(constructor.newInstance());
+    }
+}
@@ -1,6 +1,8 @@
 package neoproxy.neoproxyserver.core.management;
 
 import neoproxy.neoproxyserver.core.exceptions.NoMoreNetworkFlowException;
+import neoproxy.neoproxyserver.core.management.provider.KeyDataProvider;
+import neoproxy.neoproxyserver.core.management.provider.LocalKeyProvider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,6 +11,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -260,4 +263,136 @@ class SequenceKeyTest {
     void testGetPortStr() {
         assertEquals("8080", sequenceKey.getPortStr());
     }
+
+    @Test
+    @DisplayName("测试变更跟踪 - 无变更时为空")
+    void testTakeDelta_Empty() {
+        assertTrue(sequenceKey.takeDelta().isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试变更跟踪 - 流量消耗累计为增量")
+    void testTakeDelta_Debit() throws Exception {
+        sequenceKey.mineMib("test", 10.0);
+        sequenceKey.mineMib("test", 5.0);
+
+        KeyDelta delta = sequenceKey.takeDelta();
+
+        assertEquals(15.0, delta.debit());
+        assertEquals(0, delta.fields());
+        assertEquals("UPDATE sk SET balance = balance - ? WHERE name = ?", delta.toUpdateSql());
+        assertTrue(sequenceKey.takeDelta().isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试变更跟踪 - 管理操作按字段标记，直接设置余额覆盖增量")
+    void testTakeDelta_AdminFields() throws Exception {
+        sequenceKey.mineMib("test", 10.0);
+        sequenceKey.setBalance(500.0);
+        sequenceKey.setRate(20.0);
+
+        KeyDelta delta = sequenceKey.takeDelta();
+
+        assertEquals(0.0, delta.debit());
+        assertTrue(delta.has(KeyDelta.BALANCE));
+        assertTrue(delta.has(KeyDelta.RATE));
+        assertFalse(delta.has(KeyDelta.PORT));
+        assertEquals(500.0, delta.balance());
+        assertEquals("UPDATE sk SET balance = ?, rate = ? WHERE name = ?", delta.toUpdateSql());
+    }
+
+    @Test
+    @DisplayName("测试变更跟踪 - 写入失败后放回")
+    void testRestoreDelta() throws Exception {
+        sequenceKey.mineMib("test", 10.0);
+        KeyDelta first = sequenceKey.takeDelta();
+        sequenceKey.mineMib("test", 5.0);
+        sequenceKey.setHTMLEnabled(false);
+
+        sequenceKey.restoreDelta(first);
+        KeyDelta merged = sequenceKey.takeDelta();
+
+        assertEquals(15.0, merged.debit());
+        assertTrue(merged.has(KeyDelta.WEB_HTML));
+        assertEquals("UPDATE sk SET balance = balance - ?, enableWebHTML = ? WHERE name = ?", merged.toUpdateSql());
+    }
+
+    @Test
+    @DisplayName("测试变更跟踪 - 本地模式余额归零时只记录实际扣减")
+    void testTakeDelta_ClampedDebit() {
+        KeyDataProvider original = SequenceKey.PROVIDER;
+        SequenceKey.PROVIDER = new LocalKeyProvider();
+        try {
+            SequenceKey key = new SequenceKey("clamp", 30.0, "PERMANENT", "8080", 10, true, false);
+
+            assertThrows(NoMoreNetworkFlowException.class, () -> key.mineMib("test", 50.0));
+
+            assertEquals(0.0, key.getBalance());
+            assertEquals(30.0, key.takeDelta().debit());
+        } finally {
+            SequenceKey.PROVIDER = original;
+        }
+    }
+
+    @Test
+    @DisplayName("测试refreshFrom - 保留未落盘的消耗")
+    void testRefreshFrom_KeepsPendingDebit() throws Exception {
+        sequenceKey.mineMib("test", 100.0);
+        SequenceKey fresh = new SequenceKey("test-key", 2000.0, "PERMANENT", "8080", 100.0, true, true);
+
+        sequenceKey.refreshFrom(fresh);
+
+        assertEquals(1900.0, sequenceKey.getBalance());
+        assertEquals(100.0, sequenceKey.takeDelta().debit());
+    }
+
+    @Test
+    @DisplayName("测试refreshFrom - 不覆盖未落盘的管理修改")
+    void testRefreshFrom_KeepsDirtyFields() {
+        sequenceKey.setBalance(50.0);
+        sequenceKey.setEnable(false);
+        SequenceKey fresh = new SequenceKey("test-key", 2000.0, "PERMANENT", "9090", 200.0, true, false);
+
+        sequenceKey.refreshFrom(fresh);
+
+        assertEquals(50.0, sequenceKey.getBalance());
+        assertFalse(sequenceKey.isEnable());
+        // 未修改过的字段照常刷新
+        assertEquals(200.0, sequenceKey.getRate());
+        assertFalse(sequenceKey.isHTMLEnabled());
+        assertEquals(9090, sequenceKey.getPort());
+
+        KeyDelta delta = sequenceKey.takeDelta();
+        assertEquals(50.0, delta.balance());
+        assertFalse(delta.isEnable());
+    }
+
+    @Test
+    @DisplayName("测试reloadInPlace - 读库期间有消耗落盘时重读，不漏扣")
+    void testReloadInPlace_RereadsWhenDeltaTakenDuringRead() throws Exception {
+        KeyDataProvider original = SequenceKey.PROVIDER;
+        double[] stored = {1000.0};
+        AtomicInteger reads = new AtomicInteger();
+        sequenceKey.mineMib("test", 10.0);
+        SequenceKey.PROVIDER = new LocalKeyProvider() {
+            @Override
+            public SequenceKey getKey(String name) {
+                SequenceKey row = new SequenceKey(name, stored[0], "PERMANENT", "8080", 100.0, true, true);
+                if (reads.incrementAndGet() == 1) {
+                    // 读到旧余额之后，落盘线程把内存中的消耗写入存储
+                    stored[0] -= sequenceKey.takeDelta().debit();
+                }
+                return row;
+            }
+        };
+        try {
+            assertTrue(SequenceKey.reloadInPlace(sequenceKey));
+
+            assertEquals(2, reads.get());
+            assertEquals(990.0, sequenceKey.getBalance());
+            assertTrue(sequenceKey.takeDelta().isEmpty());
+        } finally {
+            SequenceKey.PROVIDER = original;
+        }
+    }
 }
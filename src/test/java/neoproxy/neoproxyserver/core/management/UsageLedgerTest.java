@@ -0,0 +1,305 @@
+package neoproxy.neoproxyserver.core.management;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("UsageLedger 测试")
+class UsageLedgerTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 模拟 sk 表与 ledger_meta：按段号幂等地扣减余额
+     */
+    private static final class FakeStore implements UsageLedger.SegmentApplier {
+        final Map<String, Double> charged = new HashMap<>();
+        long lastSegment = 0;
+        int applyCalls = 0;
+        boolean failing = false;
+
+        @Override
+        public boolean apply(long segmentId, Map<String, Double> debits) {
+            applyCalls++;
+            if (failing) return false;
+            if (segmentId <= lastSegment) return true;
+            debits.forEach((name, debit) -> charged.merge(name, debit, Double::sum));
+            lastSegment = segmentId;
+            return true;
+        }
+
+        double charged(String name) {
+            return charged.getOrDefault(name, 0.0);
+        }
+    }
+
+    /**
+     * 按 FakeStore 已扣减的用量读库，初始余额 100
+     */
+    private static Function<String, SequenceKey> loader(FakeStore store) {
+        return name -> name.equals("missing") ? null
+                : new SequenceKey(name, 100 - store.charged(name), "PERMANENT", "20000", 10, true, false);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    @DisplayName("测试追加后合并扣减并删除段文件")
+    void testAppend_CompactAppliesAndDeletes() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+
+        assertTrue(ledger.append("alpha", 1.5));
+        assertTrue(ledger.append("alpha", 2.5));
+        assertTrue(ledger.append("beta", 0.25));
+        assertTrue(ledger.compact());
+
+        assertEquals(4.0, store.charged("alpha"), 1e-9);
+        assertEquals(0.25, store.charged("beta"), 1e-9);
+        // 只剩新的活动段
+        assertEquals(1, segmentCount());
+        ledger.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试进程被杀（未关闭）后重启重放全部记录")
+    void testRecover_AfterKillReplaysEverything() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger crashed = new UsageLedger(dir, store, 1 << 20);
+        crashed.recover(store.lastSegment);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(crashed.append("key-" + (i % 10), 0.5));
+        }
+        // 不调用 compact / closeChannel，直接丢弃实例，等同于进程被杀
+
+        UsageLedger restarted = new UsageLedger(dir, store, 1 << 20);
+        restarted.recover(store.lastSegment);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(50.0, store.charged("key-" + i), 1e-9);
+        }
+        assertTrue(restarted.append("key-0", 1));
+        assertTrue(restarted.compact());
+        assertEquals(51.0, store.charged("key-0"), 1e-9);
+        restarted.closeChannel();
+        crashed.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试写到一半被杀：只丢弃不完整的尾部记录")
+    void testReadSegment_TruncatedTailDiscarded() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+        assertTrue(ledger.append("alpha", 1));
+        assertTrue(ledger.append("alpha", 2));
+        ledger.closeChannel();
+
+        Path segment = ledger.segmentPath(1);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        List<UsageLedger.Entry> entries = UsageLedger.readSegment(segment);
+        assertEquals(1, entries.size());
+        assertEquals(1.0, entries.get(0).debit(), 1e-9);
+
+        UsageLedger restarted = new UsageLedger(dir, store, 1 << 20);
+        restarted.recover(store.lastSegment);
+        assertEquals(1.0, store.charged("alpha"), 1e-9);
+        restarted.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试 CRC 不符的记录及其后记录均被丢弃")
+    void testReadSegment_CorruptRecordStopsReading() throws Exception {
+        UsageLedger ledger = new UsageLedger(dir, new FakeStore(), 1 << 20);
+        ledger.recover(0);
+        assertTrue(ledger.append("alpha", 1));
+        assertTrue(ledger.append("alpha", 2));
+        ledger.closeChannel();
+
+        Path segment = ledger.segmentPath(1);
+        byte[] bytes = Files.readAllBytes(segment);
+        // 破坏第二条记录的 debit
+        bytes[bytes.length - 14] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        assertEquals(1, UsageLedger.readSegment(segment).size());
+    }
+
+    @Test
+    @DisplayName("测试事务提交后、删除段文件前被杀不会重复扣费")
+    void testRecover_CrashAfterApplyBeforeDelete() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+        assertTrue(ledger.append("alpha", 3));
+        ledger.closeChannel();
+
+        // 模拟：段 1 已在事务中应用并记录段号，但文件还没删掉
+        Path segment = ledger.segmentPath(1);
+        byte[] sealed = Files.readAllBytes(segment);
+        UsageLedger applier = new UsageLedger(dir, store, 1 << 20);
+        applier.recover(store.lastSegment);
+        applier.closeChannel();
+        Files.write(segment, sealed);
+        assertEquals(3.0, store.charged("alpha"), 1e-9);
+
+        UsageLedger restarted = new UsageLedger(dir, store, 1 << 20);
+        restarted.recover(store.lastSegment);
+
+        assertEquals(3.0, store.charged("alpha"), 1e-9);
+        assertFalse(Files.exists(segment));
+        restarted.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试应用失败时保留段文件，下次合并重试")
+    void testCompact_FailureKeepsSegment() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+        assertTrue(ledger.append("alpha", 2));
+
+        store.failing = true;
+        assertFalse(ledger.compact());
+        assertTrue(Files.exists(ledger.segmentPath(1)));
+        assertEquals(0.0, store.charged("alpha"), 1e-9);
+
+        store.failing = false;
+        assertTrue(ledger.compact());
+        assertEquals(2.0, store.charged("alpha"), 1e-9);
+        assertFalse(Files.exists(ledger.segmentPath(1)));
+        ledger.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试启动时应用失败：遗留段仍计入未合并消耗，读库照常扣除")
+    void testRecover_ApplyFailureStillDeducts() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger crashed = new UsageLedger(dir, store, 1 << 20);
+        crashed.recover(store.lastSegment);
+        assertTrue(crashed.append("alpha", 3));
+        crashed.closeChannel();
+
+        store.failing = true;
+        UsageLedger restarted = new UsageLedger(dir, store, 1 << 20);
+        restarted.recover(store.lastSegment);
+
+        assertTrue(Files.exists(restarted.segmentPath(1)));
+        assertEquals(3.0, restarted.uncompactedDebit("alpha"), 1e-9);
+        assertEquals(97, restarted.load("alpha", loader(store)).getBalance(), 1e-9);
+
+        store.failing = false;
+        assertTrue(restarted.compact());
+        assertEquals(0.0, restarted.uncompactedDebit("alpha"), 1e-9);
+        assertEquals(97, restarted.load("alpha", loader(store)).getBalance(), 1e-9);
+        restarted.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试段达到上限后自动切换新段")
+    void testAppend_RollsSegmentBySize() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 64);
+        ledger.recover(store.lastSegment);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(ledger.append("alpha", 1));
+        }
+        assertTrue(ledger.compact());
+
+        assertEquals(20.0, store.charged("alpha"), 1e-9);
+        assertTrue(store.lastSegment > 1);
+        ledger.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试关闭后追加返回 false")
+    void testAppend_AfterCloseReturnsFalse() throws Exception {
+        UsageLedger ledger = new UsageLedger(dir, new FakeStore(), 1 << 20);
+        ledger.recover(0);
+        ledger.closeChannel();
+
+        assertFalse(ledger.append("alpha", 1));
+    }
+
+    @Test
+    @DisplayName("测试全局账本未打开时的静态入口")
+    void testStaticApi_WhenNotOpen() {
+        assertFalse(UsageLedger.isOpen());
+        assertFalse(UsageLedger.appendUsage("alpha", 1));
+        assertTrue(UsageLedger.compactNow());
+        UsageLedger.close();
+    }
+
+    @Test
+    @DisplayName("测试读库 - 扣除未合并的消耗且不触发合并")
+    void testLoad_DeductsUncompactedWithoutCompacting() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+
+        assertTrue(ledger.append("alpha", 1.5));
+        assertTrue(ledger.append("alpha", 2.5));
+        assertEquals(96, ledger.load("alpha", loader(store)).getBalance(), 1e-9);
+        assertEquals(100, ledger.load("beta", loader(store)).getBalance(), 1e-9);
+        assertNull(ledger.load("missing", loader(store)));
+        assertEquals(0, store.applyCalls);
+
+        assertTrue(ledger.compact());
+        assertEquals(0, ledger.uncompactedDebit("alpha"), 1e-9);
+        assertEquals(96, ledger.load("alpha", loader(store)).getBalance(), 1e-9);
+        ledger.closeChannel();
+    }
+
+    @Test
+    @DisplayName("测试读库 - 读库期间有段被应用时重读，不重复扣减也不漏扣")
+    void testLoad_RereadsWhenSegmentAppliedDuringRead() throws Exception {
+        FakeStore store = new FakeStore();
+        UsageLedger ledger = new UsageLedger(dir, store, 1 << 20);
+        ledger.recover(store.lastSegment);
+        assertTrue(ledger.append("alpha", 4));
+
+        AtomicInteger reads = new AtomicInteger();
+        Function<String, SequenceKey> racing = name -> {
+            SequenceKey key = loader(store).apply(name);
+            if (reads.incrementAndGet() == 1) {
+                // 读到旧余额之后、汇总索引之前，另一个线程把段应用到数据库
+                Thread compactor = new Thread(ledger::compact);
+                compactor.start();
+                try {
+                    compactor.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return key;
+        };
+
+        assertEquals(96, ledger.load("alpha", racing).getBalance(), 1e-9);
+        assertEquals(2, reads.get());
+        ledger.closeChannel();
+    }
+}
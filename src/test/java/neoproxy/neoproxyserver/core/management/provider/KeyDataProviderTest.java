@@ -84,4 +84,14 @@ class KeyDataProviderTest {
         assertTrue(Modifier.isAbstract(method.getModifiers()));
         assertEquals(boolean.class, method.getReturnType());
     }
+
+    @Test
+    @DisplayName("测试 sendHeartbeatBatch 方法存在")
+    void testSendHeartbeatBatchMethodExists() throws Exception {
+        Method method = KeyDataProvider.class.getDeclaredMethod("sendHeartbeatBatch", java.util.List.class);
+        assertNotNull(method);
+        assertTrue(Modifier.isPublic(method.getModifiers()));
+        assertTrue(Modifier.isAbstract(method.getModifiers()));
+        assertEquals(boolean[].class, method.getReturnType());
+    }
 }
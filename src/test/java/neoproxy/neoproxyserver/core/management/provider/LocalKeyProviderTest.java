@@ -6,7 +6,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DisplayName("LocalKeyProvider 测试")
@@ -53,6 +57,52 @@ class LocalKeyProviderTest {
         assertTrue(provider.sendHeartbeat(payload));
     }
 
+    @Test
+    @DisplayName("测试sendHeartbeatBatch方法 - 本地模式全部保活")
+    void testSendHeartbeatBatch() {
+        Protocol.HeartbeatPayload first = new Protocol.HeartbeatPayload();
+        first.serial = "key-a";
+        Protocol.HeartbeatPayload second = new Protocol.HeartbeatPayload();
+        second.serial = "key-b";
+
+        assertArrayEquals(new boolean[]{true, true}, provider.sendHeartbeatBatch(List.of(first, second)));
+    }
+
+    @Test
+    @DisplayName("测试刷盘间隔自适应 - 耗时过长时放慢")
+    void testNextFlushInterval_SlowFlushBacksOff() {
+        assertEquals(10_000, LocalKeyProvider.nextFlushInterval(5000, 3000, 10));
+        assertEquals(LocalKeyProvider.MAX_FLUSH_INTERVAL_MS,
+                LocalKeyProvider.nextFlushInterval(LocalKeyProvider.MAX_FLUSH_INTERVAL_MS, 20_000, 10));
+    }
+
+    @Test
+    @DisplayName("测试刷盘间隔自适应 - 批量过大时加快")
+    void testNextFlushInterval_LargeBatchSpeedsUp() {
+        assertEquals(2500, LocalKeyProvider.nextFlushInterval(5000, 100, LocalKeyProvider.FLUSH_HIGH_WATER_ROWS));
+        assertEquals(LocalKeyProvider.MIN_FLUSH_INTERVAL_MS,
+                LocalKeyProvider.nextFlushInterval(LocalKeyProvider.MIN_FLUSH_INTERVAL_MS, 100, LocalKeyProvider.FLUSH_HIGH_WATER_ROWS));
+    }
+
+    @Test
+    @DisplayName("测试刷盘间隔自适应 - 负载正常时回到默认间隔")
+    void testNextFlushInterval_ReturnsToDefault() {
+        assertEquals(2000, LocalKeyProvider.nextFlushInterval(1000, 10, 10));
+        assertEquals(5000, LocalKeyProvider.nextFlushInterval(4000, 10, 10));
+        assertEquals(5000, LocalKeyProvider.nextFlushInterval(8000, 10, 10));
+        assertEquals(5000, LocalKeyProvider.nextFlushInterval(5000, 10, 10));
+    }
+
+    @Test
+    @DisplayName("测试刷盘统计初始值")
+    void testFlushStatsInitialValues() {
+        assertEquals(5000, provider.getFlushIntervalMs());
+        assertEquals(0, provider.getLastFlushMillis());
+        assertEquals(0, provider.getLastFlushRows());
+        assertEquals(0, provider.getTotalFlushes());
+        assertEquals(0, provider.getTotalFlushedRows());
+    }
+
     @Test
     @DisplayName("测试shutdown方法")
     void testShutdown() {
@@ -1,9 +1,27 @@
 package neoproxy.neoproxyserver.core.management.provider;
 
+import com.sun.net.httpserver.HttpServer;
+import neoproxy.neoproxyserver.core.exceptions.UnRecognizedKeyException;
+import neoproxy.neoproxyserver.core.management.SequenceKey;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -137,4 +155,526 @@ class RemoteKeyProviderTest {
 
         assertNull(url);
     }
+
+    @Test
+    @DisplayName("测试批量心跳 - 每个周期只发一次请求，并逐隧道应用kill")
+    void testSendHeartbeatBatch_SingleRequestPerInterval() throws Exception {
+        AtomicInteger batchRequests = new AtomicInteger();
+        AtomicInteger singleRequests = new AtomicInteger();
+        HttpServer server = startNkmStandIn(batchRequests, singleRequests, 200,
+                "{\"kill\":[{\"serial\":\"key-3\",\"port\":\"20003\"},{\"serial\":\"key-7\"}]}");
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(baseUrl(server), "", "test-node");
+            List<Protocol.HeartbeatPayload> payloads = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                payloads.add(payload("key-" + (i % 10), String.valueOf(20000 + i)));
+            }
+
+            boolean[] keepAlive = provider.sendHeartbeatBatch(payloads);
+
+            assertEquals(1, batchRequests.get());
+            assertEquals(0, singleRequests.get());
+            for (int i = 0; i < payloads.size(); i++) {
+                boolean killed = i == 3 || i % 10 == 7;
+                assertEquals(!killed, keepAlive[i], "tunnel " + i);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("测试批量心跳 - NKM不支持批量接口时退回逐条发送")
+    void testSendHeartbeatBatch_FallbackWhenUnsupported() throws Exception {
+        AtomicInteger batchRequests = new AtomicInteger();
+        AtomicInteger singleRequests = new AtomicInteger();
+        HttpServer server = startNkmStandIn(batchRequests, singleRequests, 404, "");
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(baseUrl(server), "", "test-node");
+            List<Protocol.HeartbeatPayload> payloads = List.of(payload("key-a", "20000"), payload("key-b", "20001"));
+
+            assertArrayEquals(new boolean[]{true, true}, provider.sendHeartbeatBatch(payloads));
+            assertArrayEquals(new boolean[]{true, true}, provider.sendHeartbeatBatch(payloads));
+
+            // 首轮探测失败后，后续轮次不再请求批量接口
+            assertEquals(1, batchRequests.get());
+            assertEquals(4, singleRequests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("测试批量心跳 - 逐条回退并行发出，并发不超过请求上限")
+    void testSendHeartbeatBatch_FallbackInParallel() throws Exception {
+        int original = RemoteKeyProvider.MAX_CONCURRENT_REQUESTS;
+        AtomicInteger singleRequests = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peakActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext(Protocol.API_HEARTBEAT, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            if (Protocol.API_HEARTBEAT_BATCH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            singleRequests.incrementAndGet();
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            byte[] response = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            RemoteKeyProvider.MAX_CONCURRENT_REQUESTS = 4;
+            RemoteKeyProvider provider = new RemoteKeyProvider(baseUrl(server), "", "test-node");
+            List<Protocol.HeartbeatPayload> payloads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                payloads.add(payload("key-" + i, String.valueOf(20000 + i)));
+            }
+
+            long start = System.nanoTime();
+            boolean[] keepAlive = provider.sendHeartbeatBatch(payloads);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertArrayEquals(new boolean[]{true, true, true, true, true, true, true, true}, keepAlive);
+            assertEquals(8, singleRequests.get());
+            assertTrue(peakActive.get() > 1);
+            assertTrue(peakActive.get() <= 4);
+            // 逐条串行至少 8 × 300ms
+            assertTrue(elapsedMillis < 8 * 300, "elapsed " + elapsedMillis + "ms");
+        } finally {
+            RemoteKeyProvider.MAX_CONCURRENT_REQUESTS = original;
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("测试批量心跳 - 管理端不可达时fail-open")
+    void testSendHeartbeatBatch_FailOpen() {
+        RemoteKeyProvider provider = new RemoteKeyProvider("http://127.0.0.1:1", "", "test-node");
+
+        assertArrayEquals(new boolean[]{true}, provider.sendHeartbeatBatch(List.of(payload("key-a", "20000"))));
+        assertEquals(0, provider.sendHeartbeatBatch(List.of()).length);
+    }
+
+    @Test
+    @DisplayName("测试密钥查询 - 校验过的密钥立即放行，并在后台重新校验")
+    void testGetKey_StaleWhileRevalidate() throws Exception {
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            assertNotNull(provider.getKey("key-a"));
+            assertEquals(1, nkm.requests.get());
+
+            // 管理端变慢：握手不再等待，后台照常登录一次
+            nkm.delayMillis.set(1500);
+            nkm.balance.set(42);
+            long start = System.nanoTime();
+            SequenceKey served = provider.getKey("key-a");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertNotNull(served);
+            assertTrue(elapsedMillis < 500, "served in " + elapsedMillis + " ms");
+            waitUntil(() -> served.getBalance() == 42);
+            assertEquals(2, nkm.requests.get());
+            assertTrue(served.isEnable());
+        } finally {
+            nkm.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("测试密钥查询 - 后台校验被拒绝时禁用已放行的会话并丢弃快照")
+    void testGetKey_RevalidationRejected() throws Exception {
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            assertNotNull(provider.getKey("key-a"));
+
+            nkm.status.set(404);
+            SequenceKey served = provider.getKey("key-a");
+            assertNotNull(served);
+            waitUntil(() -> !served.isEnableNoLock());
+
+            assertThrows(UnRecognizedKeyException.class, () -> provider.getKey("key-a"));
+        } finally {
+            nkm.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("测试密钥查询 - 管理端宕机时熔断并快速失败，校验过的密钥仍可登录")
+    void testGetKey_OutageTripsCircuitBreaker() throws Exception {
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            assertNotNull(provider.getKey("key-a"));
+
+            nkm.status.set(503);
+            for (int i = 0; i < 5 && provider.getCircuitState() == CircuitBreaker.State.CLOSED; i++) {
+                assertNull(provider.getKey("unknown-" + i));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitState());
+
+            int requestsWhenOpened = nkm.requests.get();
+            long start = System.nanoTime();
+            assertNull(provider.getKey("unknown-x"));
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 200);
+
+            // 离线容错：快照仍在时效内
+            SequenceKey served = provider.getKey("key-a");
+            assertNotNull(served);
+            Thread.sleep(300);
+            assertTrue(served.isEnableNoLock());
+            assertEquals(requestsWhenOpened, nkm.requests.get());
+        } finally {
+            nkm.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("测试密钥查询 - 快照超过时效后回到同步校验")
+    void testGetKey_StalenessBound() throws Exception {
+        int original = RemoteKeyProvider.KEY_STALE_SECONDS;
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        try {
+            RemoteKeyProvider.KEY_STALE_SECONDS = 1;
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            assertNotNull(provider.getKey("key-a"));
+
+            Thread.sleep(1100);
+            nkm.status.set(404);
+            assertThrows(UnRecognizedKeyException.class, () -> provider.getKey("key-a"));
+        } finally {
+            RemoteKeyProvider.KEY_STALE_SECONDS = original;
+            nkm.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("测试熔断器 - 半开状态只放行一个探测请求")
+    void testCircuitBreaker_HalfOpenProbe() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, 10, clock::get);
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    @DisplayName("测试流量同步编码 - 与原 JsonObject 结构一致")
+    void testEncodeTraffic_MatchesTreeModel() throws Exception {
+        java.util.Map<String, Double> traffic = new java.util.LinkedHashMap<>();
+        traffic.put("key-a", 1.5);
+        traffic.put("key-\"b\"", 0.25);
+
+        String encoded = new String(RemoteKeyProvider.encodeTraffic("node-1", traffic), StandardCharsets.UTF_8);
+
+        com.google.gson.JsonObject expected = new com.google.gson.JsonObject();
+        expected.addProperty("nodeId", "node-1");
+        com.google.gson.JsonObject trafficObj = new com.google.gson.JsonObject();
+        traffic.forEach(trafficObj::addProperty);
+        expected.add("traffic", trafficObj);
+        assertEquals(expected, com.google.gson.JsonParser.parseString(encoded));
+    }
+
+    @Test
+    @DisplayName("测试流量同步 - 管理端声明 gzip 后压缩发送，签名针对未压缩原文")
+    void testFlushTraffic_GzipWhenAdvertised() throws Exception {
+        List<byte[]> bodies = new java.util.concurrent.CopyOnWriteArrayList<>();
+        List<com.sun.net.httpserver.Headers> headers = new java.util.concurrent.CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Protocol.API_SYNC, exchange -> {
+            bodies.add(exchange.getRequestBody().readAllBytes());
+            headers.add(exchange.getRequestHeaders());
+            exchange.getResponseHeaders().add("Accept-Encoding", "gzip");
+            byte[] response = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(baseUrl(server), "token-123", "test-node");
+            Method flushTraffic = RemoteKeyProvider.class.getDeclaredMethod("flushTraffic");
+            flushTraffic.setAccessible(true);
+
+            for (int i = 0; i < 200; i++) {
+                provider.consumeFlow("key-" + i, 1.0);
+            }
+            flushTraffic.invoke(provider);
+            assertFalse(headers.get(0).containsKey("Content-Encoding"));
+            assertTrue(provider.isSyncGzipEnabled());
+
+            for (int i = 0; i < 200; i++) {
+                provider.consumeFlow("key-" + i, 2.0);
+            }
+            flushTraffic.invoke(provider);
+
+            assertEquals(2, bodies.size());
+            assertEquals("gzip", headers.get(1).getFirst("Content-Encoding"));
+            byte[] raw;
+            try (java.util.zip.GZIPInputStream in = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(bodies.get(1)))) {
+                raw = in.readAllBytes();
+            }
+            com.google.gson.JsonObject json = com.google.gson.JsonParser.parseString(new String(raw, StandardCharsets.UTF_8)).getAsJsonObject();
+            assertEquals(200, json.getAsJsonObject("traffic").size());
+            assertEquals(2.0, json.getAsJsonObject("traffic").get("key-7").getAsDouble());
+
+            Method buildSignature = RemoteKeyProvider.class.getDeclaredMethod("buildSignature",
+                    String.class, String.class, String.class, String.class, String.class);
+            buildSignature.setAccessible(true);
+            String expected = (String) buildSignature.invoke(provider, "POST", Protocol.API_SYNC,
+                    headers.get(1).getFirst("X-Timestamp"), headers.get(1).getFirst("X-Nonce"),
+                    new String(raw, StandardCharsets.UTF_8));
+            assertEquals(expected, headers.get(1).getFirst("X-Signature"));
+
+            assertEquals(raw.length, provider.getLastSyncRawBytes());
+            assertEquals(bodies.get(1).length, provider.getLastSyncPayloadBytes());
+            assertTrue(provider.getLastSyncPayloadBytes() < provider.getLastSyncRawBytes());
+            assertEquals(200, provider.getLastSyncKeys());
+            assertEquals(2, provider.getTotalSyncs());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("测试流量同步 - 没有变化的密钥不上报，失败时增量放回缓冲")
+    void testFlushTraffic_OnlyChangedKeysAndRequeueOnFailure() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger status = new AtomicInteger(500);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Protocol.API_SYNC, exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            RemoteKeyProvider provider = new RemoteKeyProvider(baseUrl(server), "", "test-node");
+            Method flushTraffic = RemoteKeyProvider.class.getDeclaredMethod("flushTraffic");
+            flushTraffic.setAccessible(true);
+
+            flushTraffic.invoke(provider);
+            assertEquals(0, requests.get());
+
+            provider.consumeFlow("key-a", 3.0);
+            flushTraffic.invoke(provider);
+            assertEquals(1, requests.get());
+
+            // 上一轮失败的增量仍在缓冲区里，下一轮会再次上报
+            status.set(200);
+            flushTraffic.invoke(provider);
+            assertEquals(2, requests.get());
+            flushTraffic.invoke(provider);
+            assertEquals(2, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("测试密钥查询 - 同一密钥的N次并发登录在NKM记为N次登录，与N次释放对应")
+    void testGetKey_ConcurrentLoginsEachReachNkm() throws Exception {
+        int original = RemoteKeyProvider.KEY_STALE_SECONDS;
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        ExecutorService pool = Executors.newFixedThreadPool(20);
+        try {
+            RemoteKeyProvider.KEY_STALE_SECONDS = 0;
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            nkm.delayMillis.set(500);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SequenceKey>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return provider.getKey("key-a");
+                }));
+            }
+            start.countDown();
+
+            Set<SequenceKey> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Future<SequenceKey> result : results) {
+                SequenceKey key = result.get(5, TimeUnit.SECONDS);
+                assertNotNull(key);
+                assertEquals(100, key.getBalance(), 1e-9);
+                distinct.add(key);
+            }
+            assertEquals(20, nkm.requests.get());
+            assertEquals(20, distinct.size());
+
+            for (SequenceKey key : distinct) {
+                provider.releaseKey(key.getName());
+            }
+            waitUntil(() -> nkm.releases.get() == 20);
+            assertEquals(nkm.requests.get(), nkm.releases.get());
+        } finally {
+            RemoteKeyProvider.KEY_STALE_SECONDS = original;
+            pool.shutdownNow();
+            nkm.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("测试并发上限 - 在途请求不超过上限，超出的排队而不是失败")
+    void testMaxConcurrentRequests_Bounded() throws Exception {
+        int original = RemoteKeyProvider.MAX_CONCURRENT_REQUESTS;
+        KeyManagerStandIn nkm = new KeyManagerStandIn();
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            RemoteKeyProvider.MAX_CONCURRENT_REQUESTS = 2;
+            RemoteKeyProvider provider = new RemoteKeyProvider(nkm.baseUrl(), "", "test-node");
+            nkm.delayMillis.set(300);
+
+            List<Future<SequenceKey>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String name = "key-" + i;
+                results.add(pool.submit(() -> provider.getKey(name)));
+            }
+            for (Future<SequenceKey> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(6, nkm.requests.get());
+            assertTrue(nkm.peakActive.get() <= 2, "peak " + nkm.peakActive.get());
+            assertEquals(0, provider.getInFlightRequests());
+            assertEquals(0, provider.getRejectedRequests());
+            assertNotNull(provider.getNegotiatedVersion());
+        } finally {
+            RemoteKeyProvider.MAX_CONCURRENT_REQUESTS = original;
+            pool.shutdownNow();
+            nkm.stop();
+        }
+    }
+
+    /**
+     * NKM /api/key 替身：可注入延迟与状态码
+     */
+    private static final class KeyManagerStandIn {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger releases = new AtomicInteger();
+        final AtomicInteger status = new AtomicInteger(200);
+        final AtomicLong delayMillis = new AtomicLong();
+        final AtomicLong balance = new AtomicLong(100);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peakActive = new AtomicInteger();
+        final HttpServer server;
+
+        KeyManagerStandIn() throws Exception {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext(Protocol.API_GET_KEY, exchange -> {
+                requests.incrementAndGet();
+                peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(delayMillis.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                }
+                String query = exchange.getRequestURI().getQuery();
+                String name = query.substring("name=".length(), query.indexOf('&'));
+                int code = status.get();
+                byte[] response = (code == 200
+                        ? "{\"name\":\"" + name + "\",\"balance\":" + balance.get()
+                        + ",\"rate\":10,\"expireTime\":\"PERMANENT\",\"port\":\"20000\",\"enableWebHTML\":false}"
+                        : "{\"error\":\"unavailable\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(code, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            });
+            server.createContext(Protocol.API_RELEASE, exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                releases.incrementAndGet();
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.start();
+        }
+
+        String baseUrl() {
+            return RemoteKeyProviderTest.baseUrl(server);
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static HttpServer startNkmStandIn(AtomicInteger batchRequests, AtomicInteger singleRequests,
+                                              int batchStatus, String batchBody) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Protocol.API_HEARTBEAT, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            int status;
+            byte[] response;
+            if (Protocol.API_HEARTBEAT_BATCH.equals(path)) {
+                batchRequests.incrementAndGet();
+                status = batchStatus;
+                response = batchBody.getBytes(StandardCharsets.UTF_8);
+            } else {
+                singleRequests.incrementAndGet();
+                status = 200;
+                response = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+            if (response.length > 0) {
+                exchange.getResponseBody().write(response);
+            }
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static String baseUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static Protocol.HeartbeatPayload payload(String serial, String port) {
+        Protocol.HeartbeatPayload payload = new Protocol.HeartbeatPayload();
+        payload.serial = serial;
+        payload.nodeId = "test-node";
+        payload.port = port;
+        payload.connectionDetail = "T:0 U:0";
+        return payload;
+    }
 }
@@ -147,4 +147,23 @@ class RateLimiterTest {
 
         assertDoesNotThrow(() -> rateLimiter.onBytesTransferred(1000));
     }
+
+    @Test
+    @DisplayName("测试onBytesTransferred返回值 - 不限速时为0")
+    void testOnBytesTransferred_ReturnsZeroWhenUnlimited() {
+        RateLimiter limiter = new RateLimiter(0);
+
+        assertEquals(0, limiter.onBytesTransferred(1_000_000));
+    }
+
+    @Test
+    @DisplayName("测试onBytesTransferred返回值 - 超速时返回休眠时长")
+    void testOnBytesTransferred_ReturnsStall() {
+        // 0.01 Mbps = 1250 字节/秒，125 字节约需 100 毫秒
+        RateLimiter limiter = new RateLimiter(0.01);
+
+        long stalled = limiter.onBytesTransferred(125);
+
+        assertTrue(stalled >= 50_000_000L, "stalled " + stalled + " ns");
+    }
 }